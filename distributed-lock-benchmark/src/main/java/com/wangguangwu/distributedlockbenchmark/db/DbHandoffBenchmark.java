@@ -0,0 +1,110 @@
+package com.wangguangwu.distributedlockbenchmark.db;
+
+import com.wangguangwu.distributedlockbenchmark.support.DbLockBackend;
+import com.wangguangwu.distributedlockdb.service.PessimisticLockService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 悲观锁的交接延迟：另一个事务持有行锁时，从持有者开始提交到等待者获取到行锁并提交的时间。
+ * <p>
+ * 乐观锁与 fencing token 写入不会阻塞等待，没有交接，只测悲观锁。
+ *
+ * @author wangguangwu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DbHandoffBenchmark {
+
+    private static final String RESOURCE = "benchmark:handoff";
+
+    private static final Runnable NOOP = () -> {
+    };
+
+    private DbLockBackend database;
+
+    private PessimisticLockService pessimisticLockService;
+
+    private ExecutorService holder;
+
+    private CountDownLatch release;
+
+    private Future<?> held;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = DbLockBackend.start();
+        database.createResources(Collections.singletonList(RESOURCE));
+        pessimisticLockService = database.pessimisticLockService();
+        holder = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "handoff-holder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        holder.shutdownNow();
+        database.close();
+    }
+
+    /**
+     * 持有线程开启事务并获取行锁，等待 release 后提交
+     */
+    @Setup(Level.Invocation)
+    public void hold() throws InterruptedException {
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch releaseLatch = new CountDownLatch(1);
+        held = holder.submit(() -> pessimisticLockService.withLock(RESOURCE, () -> {
+            locked.countDown();
+            awaitUninterruptibly(releaseLatch);
+        }));
+        locked.await();
+        release = releaseLatch;
+    }
+
+    @Benchmark
+    public void handoff() throws ExecutionException, InterruptedException {
+        release.countDown();
+        pessimisticLockService.withLock(RESOURCE, NOOP);
+        held.get();
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
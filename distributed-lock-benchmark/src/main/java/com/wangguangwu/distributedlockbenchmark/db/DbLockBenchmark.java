@@ -0,0 +1,123 @@
+package com.wangguangwu.distributedlockbenchmark.db;
+
+import com.wangguangwu.distributedlockbenchmark.support.DbLockBackend;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 数据库锁的吞吐量与延迟，场景与 {@link com.wangguangwu.distributedlockbenchmark.redis.RedisLockBenchmark} 相同：
+ * <ul>
+ *   <li>uncontended：每个线程使用自己的资源</li>
+ *   <li>contended：多个线程争用同一资源。悲观锁排队等待行锁；乐观锁版本冲突时重试，重试用尽即放弃；
+ *   fencing token 写入不等待，token 落后的写入被拒绝</li>
+ *   <li>manyKeys：多个线程轮流使用 keyCount 个资源</li>
+ * </ul>
+ * 数据库为 MySQL 模式的 H2 内存数据库，测得的是锁的实现与事务本身的开销，不包含网络往返，见 {@link DbLockBackend}。
+ *
+ * @author wangguangwu
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DbLockBenchmark {
+
+    @Param({DbLockBackend.PESSIMISTIC, DbLockBackend.OPTIMISTIC, DbLockBackend.FENCING})
+    public String backend;
+
+    /**
+     * manyKeys 使用的资源数量
+     */
+    @Param({"1024"})
+    public int keyCount;
+
+    private static final String CONTENDED_RESOURCE = "benchmark:contended";
+
+    private final AtomicInteger threadIds = new AtomicInteger();
+
+    private DbLockBackend database;
+
+    private Consumer<String> operation;
+
+    private String[] resources;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = DbLockBackend.start();
+        operation = database.operation(backend);
+        resources = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            resources[i] = "benchmark:keys:" + i;
+        }
+        List<String> resourceIds = new ArrayList<>(keyCount + 1);
+        Collections.addAll(resourceIds, resources);
+        resourceIds.add(CONTENDED_RESOURCE);
+        database.createResources(resourceIds);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * 每个线程的资源与 manyKeys 的游标
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private String ownResource;
+
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(DbLockBenchmark benchmark) {
+            int threadId = benchmark.threadIds.getAndIncrement();
+            ownResource = "benchmark:uncontended:" + threadId;
+            benchmark.database.createResources(Collections.singletonList(ownResource));
+            next = threadId * 7919;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void uncontended(ThreadState state) {
+        operation.accept(state.ownResource);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(4)
+    public void contended() {
+        operation.accept(CONTENDED_RESOURCE);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(4)
+    public void manyKeys(ThreadState state) {
+        operation.accept(resources[Math.floorMod(state.next++, keyCount)]);
+    }
+}
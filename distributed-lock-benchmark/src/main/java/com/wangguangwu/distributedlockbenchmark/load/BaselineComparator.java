@@ -0,0 +1,58 @@
+package com.wangguangwu.distributedlockbenchmark.load;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 与基线报告比较已修正的延迟百分位与错误率。
+ * <p>
+ * 某个百分位同时满足以下两个条件时视为退化：超过基线的 (1 + tolerance) 倍，
+ * 且比基线多出 {@value #MIN_DELTA_MILLIS}ms 以上，避免亚毫秒级的抖动被当作退化。
+ * 错误率比基线高出 {@value #MAX_ERROR_RATE_DELTA} 以上同样视为退化。
+ *
+ * @author wangguangwu
+ */
+public final class BaselineComparator {
+
+    static final double MIN_DELTA_MILLIS = 1.0;
+
+    static final double MAX_ERROR_RATE_DELTA = 0.01;
+
+    private BaselineComparator() {
+    }
+
+    /**
+     * 比较本次结果与基线
+     *
+     * @param current   本次结果
+     * @param baseline  基线
+     * @param tolerance 允许的退化比例
+     * @return 退化项的说明，为空表示没有退化
+     */
+    public static List<String> compare(LatencyReport current, LatencyReport baseline, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        if (!current.getEndpoint().equals(baseline.getEndpoint()) || !current.getProfile().equals(baseline.getProfile())) {
+            regressions.add("基线的 endpoint 或 profile 不同：基线 " + baseline.getEndpoint() + " " + baseline.getProfile()
+                    + "，本次 " + current.getEndpoint() + " " + current.getProfile());
+            return regressions;
+        }
+        LatencyReport.Percentiles now = current.getLatency();
+        LatencyReport.Percentiles base = baseline.getLatency();
+        check(regressions, "p50", now.getP50(), base.getP50(), tolerance);
+        check(regressions, "p90", now.getP90(), base.getP90(), tolerance);
+        check(regressions, "p99", now.getP99(), base.getP99(), tolerance);
+        check(regressions, "p99.9", now.getP999(), base.getP999(), tolerance);
+        if (current.getErrorRate() > baseline.getErrorRate() + MAX_ERROR_RATE_DELTA) {
+            regressions.add(String.format("错误率 %.2f%% 高于基线 %.2f%%",
+                    current.getErrorRate() * 100, baseline.getErrorRate() * 100));
+        }
+        return regressions;
+    }
+
+    private static void check(List<String> regressions, String name, double current, double baseline, double tolerance) {
+        if (current > baseline * (1 + tolerance) && current - baseline > MIN_DELTA_MILLIS) {
+            regressions.add(String.format("%s 延迟 %.3fms 高于基线 %.3fms（允许 %.0f%%）",
+                    name, current, baseline, tolerance * 100));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.wangguangwu.distributedlockbenchmark.load;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次压测的结果，以 JSON 写出，也作为基线读入。延迟单位为毫秒：
+ * <ul>
+ *   <li>latency：从计划发出请求的时间到收到响应，已修正 coordinated omission，是调用方实际感受到的延迟</li>
+ *   <li>serviceTime：从实际发出请求到收到响应，未修正，两者差距大说明压测端或连接数已成为瓶颈</li>
+ *   <li>resources：每个资源的请求数与延迟，按请求数从多到少排列</li>
+ * </ul>
+ *
+ * @author wangguangwu
+ */
+@Data
+public class LatencyReport {
+
+    private String endpoint;
+
+    private String profile;
+
+    private double targetRate;
+
+    private int durationSeconds;
+
+    private long requests;
+
+    /**
+     * 连接失败、超时与 5xx 响应的数量
+     */
+    private long errors;
+
+    private double achievedRate;
+
+    /**
+     * 各状态码的响应数量，连接失败与超时记为 error
+     */
+    private Map<String, Long> statusCounts = new TreeMap<>();
+
+    private Percentiles latency;
+
+    private Percentiles serviceTime;
+
+    private List<ResourceStats> resources = new ArrayList<>();
+
+    /**
+     * 已修正的完整延迟分布（纳秒），单独写出为 .hgrm 文件
+     */
+    @JsonIgnore
+    private Histogram histogram;
+
+    @JsonIgnore
+    public double getErrorRate() {
+        return requests == 0 ? 0 : (double) errors / requests;
+    }
+
+    /**
+     * 延迟分布的百分位（毫秒）
+     */
+    @Data
+    public static class Percentiles {
+
+        private double mean;
+
+        private double p50;
+
+        private double p90;
+
+        private double p99;
+
+        private double p999;
+
+        private double max;
+
+        public static Percentiles of(Histogram histogram) {
+            Percentiles percentiles = new Percentiles();
+            percentiles.mean = toMillis(histogram.getMean());
+            percentiles.p50 = toMillis(histogram.getValueAtPercentile(50));
+            percentiles.p90 = toMillis(histogram.getValueAtPercentile(90));
+            percentiles.p99 = toMillis(histogram.getValueAtPercentile(99));
+            percentiles.p999 = toMillis(histogram.getValueAtPercentile(99.9));
+            percentiles.max = toMillis(histogram.getMaxValue());
+            return percentiles;
+        }
+
+        private static double toMillis(double nanos) {
+            return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+
+    /**
+     * 单个资源的请求数与延迟
+     */
+    @Data
+    public static class ResourceStats {
+
+        private String resourceId;
+
+        private long requests;
+
+        private Percentiles latency;
+    }
+}
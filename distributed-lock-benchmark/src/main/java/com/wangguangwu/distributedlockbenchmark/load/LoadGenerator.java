@@ -0,0 +1,179 @@
+package com.wangguangwu.distributedlockbenchmark.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 开放模型的请求发生器：按固定速率计划每个请求的发出时间，请求异步发出，不等待前一个请求的响应。
+ * <p>
+ * 延迟从计划发出的时间开始计算。服务变慢时压测端不会随之放慢（coordinated omission），
+ * 因为 max-in-flight 或压测端自身的停顿而晚发出的请求，晚发出的时间同样计入延迟，
+ * 与真实调用方在固定到达速率下感受到的延迟一致。
+ *
+ * @author wangguangwu
+ */
+public class LoadGenerator {
+
+    /**
+     * 可记录的最大延迟，超过的按该值记录
+     */
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+
+    private final HttpClient client;
+
+    private final String baseUrl;
+
+    private final String endpoint;
+
+    private final LoadTestOptions options;
+
+    /**
+     * fencing 接口的 token，每个请求递增
+     */
+    private final AtomicLong fencingTokens = new AtomicLong();
+
+    public LoadGenerator(String baseUrl, LoadTestOptions options) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.baseUrl = baseUrl;
+        this.endpoint = options.getEndpoint();
+        this.options = options;
+    }
+
+    /**
+     * 以 rate 的速率发出 seconds 秒的请求，等待全部完成后返回结果
+     *
+     * @param seconds 持续时间（秒）
+     * @return 本轮的结果
+     */
+    public LatencyReport run(int seconds) throws InterruptedException {
+        Recording recording = new Recording();
+        Semaphore inFlight = new Semaphore(options.getMaxInFlight());
+        SplittableRandom random = new SplittableRandom(42);
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / options.getRate());
+        long startNanos = System.nanoTime();
+        long endNanos = startNanos + TimeUnit.SECONDS.toNanos(seconds);
+        for (long i = 0; ; i++) {
+            long intendedNanos = startNanos + i * intervalNanos;
+            if (intendedNanos >= endNanos) {
+                break;
+            }
+            long now;
+            while ((now = System.nanoTime()) < intendedNanos) {
+                LockSupport.parkNanos(intendedNanos - now);
+            }
+            inFlight.acquire();
+            String resourceId = options.getProfile().next(random);
+            long sentNanos = System.nanoTime();
+            client.sendAsync(request(resourceId), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        recording.record(resourceId, intendedNanos, sentNanos,
+                                error == null ? String.valueOf(response.statusCode()) : "error");
+                        inFlight.release();
+                    });
+        }
+        long sendingNanos = System.nanoTime() - startNanos;
+        // 等待全部请求完成
+        inFlight.acquire(options.getMaxInFlight());
+        inFlight.release(options.getMaxInFlight());
+        return recording.toReport(sendingNanos, seconds);
+    }
+
+    private HttpRequest request(String resourceId) {
+        StringBuilder uri = new StringBuilder(baseUrl).append("/lock/").append(endpoint)
+                .append("?resourceId=").append(URLEncoder.encode(resourceId, StandardCharsets.UTF_8));
+        if ("fencing".equals(endpoint)) {
+            uri.append("&fencingToken=").append(fencingTokens.incrementAndGet()).append("&description=load");
+        }
+        return HttpRequest.newBuilder(URI.create(uri.toString()))
+                .timeout(REQUEST_TIMEOUT)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    private static Histogram newHistogram() {
+        return new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    }
+
+    /**
+     * 一轮压测的记录，响应回调在 HttpClient 的线程中并发写入
+     */
+    private final class Recording {
+
+        private final Histogram latency = newHistogram();
+
+        private final Histogram serviceTime = newHistogram();
+
+        private final ConcurrentHashMap<String, Histogram> resourceLatency = new ConcurrentHashMap<>();
+
+        private final ConcurrentHashMap<String, LongAdder> statusCounts = new ConcurrentHashMap<>();
+
+        private final LongAdder errors = new LongAdder();
+
+        private void record(String resourceId, long intendedNanos, long sentNanos, String status) {
+            long now = System.nanoTime();
+            long latencyNanos = Math.min(now - intendedNanos, HIGHEST_TRACKABLE_NANOS);
+            latency.recordValue(latencyNanos);
+            serviceTime.recordValue(Math.min(now - sentNanos, HIGHEST_TRACKABLE_NANOS));
+            resourceLatency.computeIfAbsent(resourceId, id -> newHistogram()).recordValue(latencyNanos);
+            statusCounts.computeIfAbsent(status, s -> new LongAdder()).increment();
+            if ("error".equals(status) || status.startsWith("5")) {
+                errors.increment();
+            }
+        }
+
+        /**
+         * @param sendingNanos 发出全部请求用的时间，压测端跟不上计划速率时大于 seconds
+         */
+        private LatencyReport toReport(long sendingNanos, int seconds) {
+            LatencyReport report = new LatencyReport();
+            report.setEndpoint(endpoint);
+            report.setProfile(options.getProfile().getSpec());
+            report.setTargetRate(options.getRate());
+            report.setDurationSeconds(seconds);
+            report.setRequests(latency.getTotalCount());
+            report.setErrors(errors.sum());
+            report.setAchievedRate(latency.getTotalCount() * 1e9 / sendingNanos);
+            statusCounts.forEach((status, count) -> report.getStatusCounts().put(status, count.sum()));
+            report.setLatency(LatencyReport.Percentiles.of(latency));
+            report.setServiceTime(LatencyReport.Percentiles.of(serviceTime));
+            List<LatencyReport.ResourceStats> resources = new ArrayList<>();
+            resourceLatency.forEach((resourceId, histogram) -> {
+                LatencyReport.ResourceStats stats = new LatencyReport.ResourceStats();
+                stats.setResourceId(resourceId);
+                stats.setRequests(histogram.getTotalCount());
+                stats.setLatency(LatencyReport.Percentiles.of(histogram));
+                resources.add(stats);
+            });
+            resources.sort(Comparator.comparingLong(LatencyReport.ResourceStats::getRequests).reversed()
+                    .thenComparing(LatencyReport.ResourceStats::getResourceId));
+            report.setResources(resources);
+            report.setHistogram(latency.copy());
+            return report;
+        }
+    }
+}
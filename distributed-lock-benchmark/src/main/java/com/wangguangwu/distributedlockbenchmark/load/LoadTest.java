@@ -0,0 +1,153 @@
+package com.wangguangwu.distributedlockbenchmark.load;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.wangguangwu.distributedlockbenchmark.support.DbLockBackend;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * LockController 的 HTTP 压测，参数见 {@link LoadTestOptions}：
+ * <pre>
+ * java -cp target/benchmarks.jar com.wangguangwu.distributedlockbenchmark.load.LoadTest \
+ *     --endpoint=optimistic --rate=500 --duration=30 --profile=hotspot:64:0.5 \
+ *     --baseline=baseline/optimistic.json
+ * </pre>
+ * 未指定 url 时在本进程内以 H2 数据库启动 distributed-lock-db 并写入 profile 中的资源；
+ * 指定 url 压测已部署的服务时，数据库中需要已有 load:0 到 load:N-1 的资源记录。
+ * <p>
+ * 结果写入 output 指定的 JSON 文件与同名的 .hgrm 文件。退出状态码：
+ * {@value #EXIT_OK} 表示完成且没有退化，{@value #EXIT_ERROR} 表示参数错误或压测失败，
+ * {@value #EXIT_REGRESSION} 表示与基线相比延迟或错误率退化。
+ *
+ * @author wangguangwu
+ */
+public final class LoadTest {
+
+    public static final int EXIT_OK = 0;
+
+    public static final int EXIT_ERROR = 1;
+
+    public static final int EXIT_REGRESSION = 2;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .enable(SerializationFeature.INDENT_OUTPUT)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * 执行压测
+     *
+     * @param args 命令行参数
+     * @return 退出状态码
+     */
+    public static int run(String[] args) {
+        LoadTestOptions options;
+        try {
+            options = LoadTestOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return EXIT_ERROR;
+        }
+        DbLockBackend server = null;
+        try {
+            String url = options.getUrl();
+            if (url == null) {
+                server = DbLockBackend.startServer();
+                server.createResources(options.getProfile().getResourceIds());
+                url = "http://127.0.0.1:" + server.getPort();
+            }
+            LoadGenerator generator = new LoadGenerator(url, options);
+            if (options.getWarmupSeconds() > 0) {
+                generator.run(options.getWarmupSeconds());
+            }
+            LatencyReport report = generator.run(options.getDurationSeconds());
+            write(report, options.getOutput());
+            print(report, System.out);
+            return compareWithBaseline(report, options);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("压测失败: " + e);
+            return EXIT_ERROR;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EXIT_ERROR;
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    /**
+     * 读取 JSON 报告
+     *
+     * @param path 报告路径
+     * @return 报告
+     */
+    public static LatencyReport read(Path path) throws IOException {
+        return MAPPER.readValue(path.toFile(), LatencyReport.class);
+    }
+
+    private static int compareWithBaseline(LatencyReport report, LoadTestOptions options) throws IOException {
+        Path baseline = options.getBaseline();
+        if (baseline == null) {
+            return EXIT_OK;
+        }
+        if (options.isUpdateBaseline()) {
+            write(report, baseline);
+            System.out.println("已更新基线 " + baseline);
+            return EXIT_OK;
+        }
+        if (!Files.exists(baseline)) {
+            System.err.println("基线 " + baseline + " 不存在，可使用 --update-baseline 生成");
+            return EXIT_ERROR;
+        }
+        List<String> regressions = BaselineComparator.compare(report, read(baseline), options.getTolerance());
+        if (regressions.isEmpty()) {
+            System.out.println("与基线 " + baseline + " 相比没有退化");
+            return EXIT_OK;
+        }
+        System.err.println("与基线 " + baseline + " 相比出现退化：");
+        regressions.forEach(regression -> System.err.println("  " + regression));
+        return EXIT_REGRESSION;
+    }
+
+    private static void write(LatencyReport report, Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        MAPPER.writeValue(path.toFile(), report);
+        if (report.getHistogram() != null) {
+            String name = path.getFileName().toString().replaceFirst("\\.json$", "") + ".hgrm";
+            try (PrintStream out = new PrintStream(Files.newOutputStream(parent.resolve(name)), false, "UTF-8")) {
+                // 纳秒换算为毫秒
+                report.getHistogram().outputPercentileDistribution(out, 1_000_000.0);
+            }
+        }
+    }
+
+    private static void print(LatencyReport report, PrintStream out) {
+        LatencyReport.Percentiles latency = report.getLatency();
+        LatencyReport.Percentiles serviceTime = report.getServiceTime();
+        out.printf("[LoadTest] /lock/%s profile=%s 目标 %.0f req/s，实际 %.1f req/s，请求 %d，错误 %d，状态码 %s%n",
+                report.getEndpoint(), report.getProfile(), report.getTargetRate(), report.getAchievedRate(),
+                report.getRequests(), report.getErrors(), report.getStatusCounts());
+        out.printf("[LoadTest] 延迟(ms)     p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f%n",
+                latency.getP50(), latency.getP90(), latency.getP99(), latency.getP999(), latency.getMax());
+        out.printf("[LoadTest] 服务时间(ms) p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f%n",
+                serviceTime.getP50(), serviceTime.getP90(), serviceTime.getP99(), serviceTime.getP999(), serviceTime.getMax());
+        report.getResources().stream().limit(5).forEach(resource -> out.printf(
+                "[LoadTest]   %-12s 请求 %6d p50=%.3f p99=%.3f%n", resource.getResourceId(), resource.getRequests(),
+                resource.getLatency().getP50(), resource.getLatency().getP99()));
+    }
+}
@@ -0,0 +1,125 @@
+package com.wangguangwu.distributedlockbenchmark.load;
+
+import lombok.Data;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 压测参数，命令行格式为 {@code --name=value}：
+ * <ul>
+ *   <li>url：被测服务地址，如 http://127.0.0.1:8080，不指定时在本进程内以 H2 数据库启动 distributed-lock-db</li>
+ *   <li>endpoint：pessimistic、optimistic 或 fencing，对应 LockController 的 /lock/{endpoint}</li>
+ *   <li>rate：每秒发出的请求数，按固定间隔发出，不受响应快慢影响</li>
+ *   <li>duration、warmup：测量与预热的秒数，预热的结果不计入报告</li>
+ *   <li>profile：请求在资源之间的分布，见 {@link ResourceProfile}</li>
+ *   <li>max-in-flight：同时未完成的请求上限，达到上限时等待，等待的时间计入延迟</li>
+ *   <li>output：JSON 报告路径，同目录下同名的 .hgrm 文件为完整的百分位分布</li>
+ *   <li>baseline：基线报告路径，指定时与之比较，延迟退化时以非 0 状态码退出</li>
+ *   <li>tolerance：允许的退化比例，默认 0.10，即百分位延迟超过基线 10% 视为退化</li>
+ *   <li>update-baseline：把本次报告写入 baseline 路径，作为之后比较的基线</li>
+ * </ul>
+ *
+ * @author wangguangwu
+ */
+@Data
+public class LoadTestOptions {
+
+    static final List<String> ENDPOINTS = Arrays.asList("pessimistic", "optimistic", "fencing");
+
+    private String url;
+
+    private String endpoint = "optimistic";
+
+    private double rate = 200;
+
+    private int durationSeconds = 30;
+
+    private int warmupSeconds = 5;
+
+    private ResourceProfile profile = ResourceProfile.parse("uniform:64");
+
+    private int maxInFlight = 1024;
+
+    private Path output;
+
+    private Path baseline;
+
+    private double tolerance = 0.10;
+
+    private boolean updateBaseline;
+
+    /**
+     * 解析命令行参数
+     *
+     * @param args {@code --name=value} 形式的参数
+     * @return 参数，未指定的使用默认值
+     */
+    public static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("参数应为 --name=value 格式: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            String name = separator < 0 ? arg.substring(2) : arg.substring(2, separator);
+            String value = separator < 0 ? "true" : arg.substring(separator + 1);
+            options.set(name, value);
+        }
+        if (!ENDPOINTS.contains(options.endpoint)) {
+            throw new IllegalArgumentException("endpoint 应为 " + ENDPOINTS + " 之一: " + options.endpoint);
+        }
+        if (options.rate <= 0 || options.durationSeconds <= 0 || options.warmupSeconds < 0 || options.maxInFlight <= 0) {
+            throw new IllegalArgumentException("rate、duration、max-in-flight 应大于 0，warmup 不能小于 0");
+        }
+        if (options.updateBaseline && options.baseline == null) {
+            throw new IllegalArgumentException("update-baseline 需要同时指定 baseline");
+        }
+        if (options.output == null) {
+            options.output = Paths.get("target", "load-test", options.endpoint + ".json");
+        }
+        return options;
+    }
+
+    private void set(String name, String value) {
+        switch (name) {
+            case "url":
+                url = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+                break;
+            case "endpoint":
+                endpoint = value;
+                break;
+            case "rate":
+                rate = Double.parseDouble(value);
+                break;
+            case "duration":
+                durationSeconds = Integer.parseInt(value);
+                break;
+            case "warmup":
+                warmupSeconds = Integer.parseInt(value);
+                break;
+            case "profile":
+                profile = ResourceProfile.parse(value);
+                break;
+            case "max-in-flight":
+                maxInFlight = Integer.parseInt(value);
+                break;
+            case "output":
+                output = Paths.get(value);
+                break;
+            case "baseline":
+                baseline = Paths.get(value);
+                break;
+            case "tolerance":
+                tolerance = Double.parseDouble(value);
+                break;
+            case "update-baseline":
+                updateBaseline = Boolean.parseBoolean(value);
+                break;
+            default:
+                throw new IllegalArgumentException("未知参数: --" + name);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.wangguangwu.distributedlockbenchmark.load;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 请求在资源之间的分布，决定同一 resourceId 上的争用程度：
+ * <ul>
+ *   <li>{@code single}：所有请求访问同一资源，争用最激烈</li>
+ *   <li>{@code uniform:N}：请求均匀分布在 N 个资源上</li>
+ *   <li>{@code hotspot:N:P}：比例 P 的请求访问热点资源（第一个资源），其余均匀分布在 N 个资源上</li>
+ * </ul>
+ *
+ * @author wangguangwu
+ */
+public final class ResourceProfile {
+
+    private static final String RESOURCE_PREFIX = "load:";
+
+    private final String spec;
+
+    private final List<String> resourceIds;
+
+    /**
+     * 访问热点资源的比例，非 hotspot 分布为 0
+     */
+    private final double hotFraction;
+
+    private ResourceProfile(String spec, int resourceCount, double hotFraction) {
+        this.spec = spec;
+        List<String> ids = new ArrayList<>(resourceCount);
+        for (int i = 0; i < resourceCount; i++) {
+            ids.add(RESOURCE_PREFIX + i);
+        }
+        this.resourceIds = Collections.unmodifiableList(ids);
+        this.hotFraction = hotFraction;
+    }
+
+    /**
+     * 解析分布描述
+     *
+     * @param spec {@code single}、{@code uniform:N} 或 {@code hotspot:N:P}
+     * @return 资源分布
+     */
+    public static ResourceProfile parse(String spec) {
+        String[] parts = spec.split(":");
+        try {
+            switch (parts[0]) {
+                case "single":
+                    if (parts.length == 1) {
+                        return new ResourceProfile(spec, 1, 0);
+                    }
+                    break;
+                case "uniform":
+                    if (parts.length == 2 && Integer.parseInt(parts[1]) > 0) {
+                        return new ResourceProfile(spec, Integer.parseInt(parts[1]), 0);
+                    }
+                    break;
+                case "hotspot":
+                    double fraction = parts.length == 3 ? Double.parseDouble(parts[2]) : -1;
+                    if (parts.length == 3 && Integer.parseInt(parts[1]) > 0 && fraction >= 0 && fraction <= 1) {
+                        return new ResourceProfile(spec, Integer.parseInt(parts[1]), fraction);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            // 与格式错误一并处理
+        }
+        throw new IllegalArgumentException("无法解析资源分布 " + spec + "，应为 single、uniform:N 或 hotspot:N:P");
+    }
+
+    /**
+     * 下一个请求访问的资源
+     *
+     * @param random 调用方线程独占的随机数生成器
+     * @return 资源ID
+     */
+    public String next(SplittableRandom random) {
+        if (hotFraction > 0 && random.nextDouble() < hotFraction) {
+            return resourceIds.get(0);
+        }
+        return resourceIds.get(random.nextInt(resourceIds.size()));
+    }
+
+    public List<String> getResourceIds() {
+        return resourceIds;
+    }
+
+    public String getSpec() {
+        return spec;
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
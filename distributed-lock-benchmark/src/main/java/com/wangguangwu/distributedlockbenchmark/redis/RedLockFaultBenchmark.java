@@ -0,0 +1,229 @@
+package com.wangguangwu.distributedlockbenchmark.redis;
+
+import com.wangguangwu.distributedlockbenchmark.support.RedisServers;
+import com.wangguangwu.distributedlockredis.lock.AbstractDistributedLock;
+import com.wangguangwu.distributedlockredis.lock.factory.RedLockFactory;
+import com.wangguangwu.distributedlockredis.properties.RedissonRedLockProperties;
+import com.wangguangwu.distributedlocktestsupport.proxy.FaultProxy;
+import com.wangguangwu.distributedlocktestsupport.proxy.NetworkFault;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RedLock 在个别节点变慢或被分区时的加锁延迟与成功率。
+ * <p>
+ * 启动 {@value #NODES} 个 redis-server，每个节点前放一个 {@link FaultProxy}，Redisson 客户端连接代理，
+ * 连接建立后按 scenario 给部分节点注入故障：
+ * <ul>
+ *   <li>healthy：没有故障</li>
+ *   <li>oneSlow / twoSlow / threeSlow：1、2、3 个节点单向增加 {@value #SLOW_MILLIS}ms 延迟，
+ *       3 个节点变慢后多数派必须包含慢节点</li>
+ *   <li>jitter：全部节点增加 1ms 延迟与 [0, {@value #JITTER_MILLIS}]ms 的抖动</li>
+ *   <li>throttled：1 个节点限速 {@value #THROTTLED_BYTES_PER_SECOND}B/s</li>
+ *   <li>oneBlackhole / twoBlackhole / threeBlackhole：1、2、3 个节点暂停转发全部数据，3 个节点分区后无法达到多数</li>
+ * </ul>
+ * acquire 测量单次 tryLock 的延迟分布，等待 {@value #WAIT_MILLIS}ms 仍未获取到锁的调用同样计入；
+ * successRate 以吞吐量模式重复 tryLock，acquired 与 timedOut 两个计数器之比即成功率。
+ * 解锁在调用之后执行，不计入测得的时间。单线程运行，没有锁竞争，结果只反映故障的影响。
+ *
+ * @author wangguangwu
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedLockFaultBenchmark {
+
+    private static final int NODES = 5;
+
+    private static final long WAIT_MILLIS = 1000;
+
+    private static final long LEASE_MILLIS = 30_000;
+
+    private static final long SLOW_MILLIS = 50;
+
+    private static final long JITTER_MILLIS = 20;
+
+    private static final long THROTTLED_BYTES_PER_SECOND = 2 * 1024;
+
+    /**
+     * 被分区节点上的命令在超时后失败，超时不宜过长，否则无法达到多数时每轮都要等满默认的 3 秒
+     */
+    private static final int COMMAND_TIMEOUT_MILLIS = 300;
+
+    private static final String HOST = "127.0.0.1";
+
+    @Param({"healthy", "oneSlow", "twoSlow", "threeSlow", "jitter", "throttled",
+            "oneBlackhole", "twoBlackhole", "threeBlackhole"})
+    public String scenario;
+
+    private RedisServers servers;
+
+    private final List<FaultProxy> proxies = new ArrayList<>();
+
+    private final List<RedissonClient> clients = new ArrayList<>();
+
+    private AbstractDistributedLock lock;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        servers = RedisServers.start(NODES);
+        for (int port : servers.getPorts()) {
+            FaultProxy proxy = FaultProxy.start(HOST, port);
+            proxies.add(proxy);
+            clients.add(redissonClient(proxy.getPort()));
+        }
+        lock = new RedLockFactory(clients, new RedissonRedLockProperties()).getLock("benchmark:redlock-fault");
+        // 客户端已建立连接后再注入故障，模拟运行中的节点变慢或被分区
+        NetworkFault[] faults = faults(scenario);
+        for (int i = 0; i < NODES; i++) {
+            proxies.get(i).setFault(faults[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        clients.forEach(RedissonClient::shutdown);
+        clients.clear();
+        proxies.forEach(FaultProxy::close);
+        proxies.clear();
+        servers.close();
+    }
+
+    /**
+     * 调用之后释放本次获取的锁
+     */
+    @State(Scope.Thread)
+    public static class Holder {
+
+        private AbstractDistributedLock lock;
+
+        private boolean acquired;
+
+        @Setup(Level.Trial)
+        public void setUp(RedLockFaultBenchmark benchmark) {
+            lock = benchmark.lock;
+        }
+
+        @TearDown(Level.Invocation)
+        public void release() {
+            if (acquired) {
+                lock.unlock();
+                acquired = false;
+            }
+        }
+
+        private boolean tryAcquire() throws InterruptedException {
+            acquired = lock.tryLock(WAIT_MILLIS, LEASE_MILLIS, TimeUnit.MILLISECONDS);
+            return acquired;
+        }
+    }
+
+    /**
+     * 每轮迭代中获取成功与超时的次数
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+
+        public long acquired;
+
+        public long timedOut;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            acquired = 0;
+            timedOut = 0;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean acquire(Holder holder) throws InterruptedException {
+        return holder.tryAcquire();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void successRate(Holder holder, Outcomes outcomes) throws InterruptedException {
+        if (holder.tryAcquire()) {
+            outcomes.acquired++;
+        } else {
+            outcomes.timedOut++;
+        }
+    }
+
+    /**
+     * 各节点的故障，故障总是注入在前几个节点上
+     */
+    static NetworkFault[] faults(String scenario) {
+        NetworkFault[] faults = new NetworkFault[NODES];
+        Arrays.fill(faults, NetworkFault.none());
+        NetworkFault slow = NetworkFault.latency(SLOW_MILLIS, TimeUnit.MILLISECONDS);
+        switch (scenario) {
+            case "healthy":
+                break;
+            case "oneSlow":
+                Arrays.fill(faults, 0, 1, slow);
+                break;
+            case "twoSlow":
+                Arrays.fill(faults, 0, 2, slow);
+                break;
+            case "threeSlow":
+                Arrays.fill(faults, 0, 3, slow);
+                break;
+            case "jitter":
+                Arrays.fill(faults, NetworkFault.latency(1, TimeUnit.MILLISECONDS).withJitter(JITTER_MILLIS, TimeUnit.MILLISECONDS));
+                break;
+            case "throttled":
+                faults[0] = NetworkFault.none().withBandwidth(THROTTLED_BYTES_PER_SECOND);
+                break;
+            case "oneBlackhole":
+                Arrays.fill(faults, 0, 1, NetworkFault.blackhole());
+                break;
+            case "twoBlackhole":
+                Arrays.fill(faults, 0, 2, NetworkFault.blackhole());
+                break;
+            case "threeBlackhole":
+                Arrays.fill(faults, 0, 3, NetworkFault.blackhole());
+                break;
+            default:
+                throw new IllegalArgumentException("未知的故障场景: " + scenario);
+        }
+        return faults;
+    }
+
+    private static RedissonClient redissonClient(int port) {
+        Config config = new Config();
+        config.useSingleServer()
+                .setAddress("redis://" + HOST + ":" + port)
+                .setTimeout(COMMAND_TIMEOUT_MILLIS)
+                .setRetryAttempts(0)
+                .setConnectionMinimumIdleSize(4)
+                .setConnectionPoolSize(8);
+        config.setUseScriptCache(true);
+        return Redisson.create(config);
+    }
+}
@@ -0,0 +1,91 @@
+package com.wangguangwu.distributedlockbenchmark.redis;
+
+import com.wangguangwu.distributedlockbenchmark.support.RedisLockBackend;
+import com.wangguangwu.distributedlockredis.lock.AbstractDistributedLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis 锁的交接延迟：另一个线程持有锁时，从持有者开始解锁到等待者获取到锁的时间。
+ * <p>
+ * 每次调用前由持有线程加锁；调用中让持有线程解锁，当前线程立即以阻塞方式等待加锁，
+ * 测得的时间包括解锁的往返、释放通知（Jedis 的 pub/sub、Redisson 的订阅）与再次加锁的往返。
+ * 当前线程的解锁在调用之后执行，不计入测得的时间。
+ *
+ * @author wangguangwu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedisHandoffBenchmark {
+
+    @Param({RedisLockBackend.JEDIS, RedisLockBackend.REDISSON, RedisLockBackend.REDLOCK})
+    public String backend;
+
+    private RedisLockBackend locks;
+
+    private AbstractDistributedLock lock;
+
+    /**
+     * 持有线程，锁的持有者以线程区分，加锁与解锁必须在同一个线程中执行
+     */
+    private ExecutorService holder;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        locks = RedisLockBackend.start(backend);
+        lock = locks.lock("benchmark:handoff");
+        holder = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "handoff-holder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        holder.shutdownNow();
+        locks.close();
+    }
+
+    @Setup(Level.Invocation)
+    public void hold() throws ExecutionException, InterruptedException {
+        if (!holder.submit(() -> lock.tryLock(30, 30, TimeUnit.SECONDS)).get()) {
+            throw new IllegalStateException("持有线程未获取到锁");
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void release() {
+        lock.unlock();
+    }
+
+    @Benchmark
+    public void handoff() throws ExecutionException, InterruptedException {
+        Future<?> released = holder.submit(() -> lock.unlock());
+        if (!lock.tryLock(30, 30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("等待 30 秒仍未获取到锁");
+        }
+        released.get();
+    }
+}
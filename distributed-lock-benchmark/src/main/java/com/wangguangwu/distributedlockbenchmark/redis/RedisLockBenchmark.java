@@ -0,0 +1,124 @@
+package com.wangguangwu.distributedlockbenchmark.redis;
+
+import com.wangguangwu.distributedlockbenchmark.support.RedisLockBackend;
+import com.wangguangwu.distributedlockredis.lock.AbstractDistributedLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Redis 锁的加锁、解锁吞吐量与延迟：
+ * <ul>
+ *   <li>uncontended：每个线程使用自己的 key，没有竞争，反映单次加锁、解锁的往返开销</li>
+ *   <li>contended：多个线程争用同一个 key，反映等待、唤醒与重试的开销（线程数可用 -t 调整）</li>
+ *   <li>manyKeys：多个线程轮流使用 keyCount 个 key，反映资源分散时的总吞吐量</li>
+ * </ul>
+ * 每个 backend 在 Trial 开始时启动自己的 redis-server 进程，结束时销毁，见 {@link RedisLockBackend}。
+ *
+ * @author wangguangwu
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedisLockBenchmark {
+
+    private static final long WAIT_SECONDS = 30;
+
+    private static final long LEASE_SECONDS = 30;
+
+    @Param({RedisLockBackend.JEDIS, RedisLockBackend.REDISSON, RedisLockBackend.REDLOCK})
+    public String backend;
+
+    /**
+     * manyKeys 使用的 key 数量
+     */
+    @Param({"1024"})
+    public int keyCount;
+
+    private final AtomicInteger threadIds = new AtomicInteger();
+
+    private RedisLockBackend locks;
+
+    private AbstractDistributedLock sharedLock;
+
+    private AbstractDistributedLock[] keyLocks;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        locks = RedisLockBackend.start(backend);
+        sharedLock = locks.lock("benchmark:contended");
+        keyLocks = new AbstractDistributedLock[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keyLocks[i] = locks.lock("benchmark:keys:" + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        locks.close();
+    }
+
+    /**
+     * 每个线程的 key 与 manyKeys 的游标
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private AbstractDistributedLock ownLock;
+
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(RedisLockBenchmark benchmark) {
+            int threadId = benchmark.threadIds.getAndIncrement();
+            ownLock = benchmark.locks.lock("benchmark:uncontended:" + threadId);
+            // 各线程从不同的位置开始轮转，减少偶然的争用
+            next = threadId * 7919;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void uncontended(ThreadState state) throws InterruptedException {
+        lockAndUnlock(state.ownLock);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(4)
+    public void contended() throws InterruptedException {
+        lockAndUnlock(sharedLock);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(4)
+    public void manyKeys(ThreadState state) throws InterruptedException {
+        lockAndUnlock(keyLocks[Math.floorMod(state.next++, keyCount)]);
+    }
+
+    static void lockAndUnlock(AbstractDistributedLock lock) throws InterruptedException {
+        if (!lock.tryLock(WAIT_SECONDS, LEASE_SECONDS, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("等待 " + WAIT_SECONDS + " 秒仍未获取到锁");
+        }
+        lock.unlock();
+    }
+}
@@ -0,0 +1,124 @@
+package com.wangguangwu.distributedlockbenchmark.support;
+
+import com.wangguangwu.distributedlockdb.DistributedLockDbApplication;
+import com.wangguangwu.distributedlockdb.service.FencingTokenService;
+import com.wangguangwu.distributedlockdb.service.OptimisticLockService;
+import com.wangguangwu.distributedlockdb.service.PessimisticLockService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 基准测试使用的数据库锁：以 MySQL 模式的 H2 内存数据库启动 distributed-lock-db 的 Spring 上下文，
+ * 配置见 benchmark-db.yaml。JMH 基准测试直接调用各 Service，不启动 Web 服务；HTTP 压测通过 {@link #startServer()} 启动 Web 服务。
+ * <ul>
+ *   <li>{@value #PESSIMISTIC}：{@link PessimisticLockService#withLock(String, Runnable)}，持有行锁执行空操作后提交</li>
+ *   <li>{@value #OPTIMISTIC}：{@link OptimisticLockService#lockResource(String)}，版本号更新，冲突时最多重试 3 次</li>
+ *   <li>{@value #FENCING}：{@link FencingTokenService#write(String, long, String)}，携带递增的 fencing token 写入</li>
+ * </ul>
+ *
+ * @author wangguangwu
+ */
+public class DbLockBackend implements AutoCloseable {
+
+    public static final String PESSIMISTIC = "pessimistic";
+
+    public static final String OPTIMISTIC = "optimistic";
+
+    public static final String FENCING = "fencing";
+
+    private static final Runnable NOOP = () -> {
+    };
+
+    private final ConfigurableApplicationContext context;
+
+    private final AtomicLong fencingTokens = new AtomicLong();
+
+    private DbLockBackend(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    /**
+     * 启动 Spring 上下文并建表
+     *
+     * @return 数据库锁，使用完毕后需要关闭
+     */
+    public static DbLockBackend start() {
+        return start(WebApplicationType.NONE);
+    }
+
+    /**
+     * 启动 Spring 上下文与 Web 服务，端口随机，通过 {@link #getPort()} 获取
+     *
+     * @return 数据库锁，使用完毕后需要关闭
+     */
+    public static DbLockBackend startServer() {
+        return start(WebApplicationType.SERVLET);
+    }
+
+    private static DbLockBackend start(WebApplicationType webApplicationType) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(DistributedLockDbApplication.class)
+                .web(webApplicationType)
+                .logStartupInfo(false)
+                // 只加载 benchmark-db.yaml，不读取各模块自带的 application.yaml
+                .run("--spring.config.name=benchmark-db", "--server.port=0");
+        return new DbLockBackend(context);
+    }
+
+    /**
+     * Web 服务监听的端口
+     */
+    public int getPort() {
+        return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    /**
+     * 写入资源记录，已存在的资源忽略
+     *
+     * @param resourceIds 资源ID
+     */
+    public void createResources(List<String> resourceIds) {
+        List<Object[]> args = new ArrayList<>(resourceIds.size());
+        for (String resourceId : resourceIds) {
+            args.add(new Object[]{resourceId, resourceId});
+        }
+        context.getBean(JdbcTemplate.class).batchUpdate(
+                "MERGE INTO lock_record (resource_id, description) KEY (resource_id) VALUES (?, ?)", args);
+    }
+
+    /**
+     * 指定实现对资源加锁、释放一次的操作
+     *
+     * @param backend {@value #PESSIMISTIC}、{@value #OPTIMISTIC} 或 {@value #FENCING}
+     * @return 以资源ID为参数的操作
+     */
+    public Consumer<String> operation(String backend) {
+        switch (backend) {
+            case PESSIMISTIC:
+                PessimisticLockService pessimisticLockService = context.getBean(PessimisticLockService.class);
+                return resourceId -> pessimisticLockService.withLock(resourceId, NOOP);
+            case OPTIMISTIC:
+                return context.getBean(OptimisticLockService.class)::lockResource;
+            case FENCING:
+                FencingTokenService fencingTokenService = context.getBean(FencingTokenService.class);
+                return resourceId -> fencingTokenService.write(resourceId, fencingTokens.incrementAndGet(), "benchmark");
+            default:
+                throw new IllegalArgumentException("未知的数据库锁实现: " + backend);
+        }
+    }
+
+    public PessimisticLockService pessimisticLockService() {
+        return context.getBean(PessimisticLockService.class);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,157 @@
+package com.wangguangwu.distributedlockbenchmark.support;
+
+import com.wangguangwu.distributedlockredis.lock.AbstractDistributedLock;
+import com.wangguangwu.distributedlockredis.lock.factory.JedisLockFactory;
+import com.wangguangwu.distributedlockredis.lock.factory.RedLockFactory;
+import com.wangguangwu.distributedlockredis.lock.impl.RedissonDistributedLockImpl;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockWatchdog;
+import com.wangguangwu.distributedlockredis.properties.JedisLockProperties;
+import com.wangguangwu.distributedlockredis.properties.RedissonRedLockProperties;
+import com.wangguangwu.distributedlockredis.script.JedisScriptExecutor;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 基准测试使用的 Redis 锁实现：在本机启动所需的 redis-server 进程，不经过 Spring，按与各工厂相同的方式组装锁。
+ * <ul>
+ *   <li>{@value #JEDIS}：{@link JedisLockFactory}，单节点</li>
+ *   <li>{@value #REDISSON}：{@link RedissonDistributedLockImpl}，单节点</li>
+ *   <li>{@value #REDLOCK}：{@link RedLockFactory}，{@value #REDLOCK_NODES} 个节点</li>
+ * </ul>
+ * 同一 key 返回同一个锁实例，调用方在多个线程之间共用实例，与应用中从工厂获取锁的方式一致。
+ *
+ * @author wangguangwu
+ */
+public class RedisLockBackend implements AutoCloseable {
+
+    public static final String JEDIS = "jedis";
+
+    public static final String REDISSON = "redisson";
+
+    public static final String REDLOCK = "redlock";
+
+    public static final int REDLOCK_NODES = 3;
+
+    private static final String HOST = "127.0.0.1";
+
+    private final RedisServers servers;
+
+    private final ConcurrentHashMap<String, AbstractDistributedLock> locks = new ConcurrentHashMap<>();
+
+    /**
+     * 按创建的逆序关闭
+     */
+    private final Deque<AutoCloseable> resources = new ArrayDeque<>();
+
+    private Function<String, AbstractDistributedLock> factory;
+
+    private RedisLockBackend(RedisServers servers) {
+        this.servers = servers;
+    }
+
+    /**
+     * 启动 redis-server 并组装指定的锁实现
+     *
+     * @param backend {@value #JEDIS}、{@value #REDISSON} 或 {@value #REDLOCK}
+     * @return 锁实现，使用完毕后需要关闭
+     */
+    public static RedisLockBackend start(String backend) {
+        RedisLockBackend lockBackend = new RedisLockBackend(RedisServers.start(REDLOCK.equals(backend) ? REDLOCK_NODES : 1));
+        try {
+            switch (backend) {
+                case JEDIS:
+                    lockBackend.useJedis();
+                    break;
+                case REDISSON:
+                    lockBackend.useRedisson();
+                    break;
+                case REDLOCK:
+                    lockBackend.useRedLock();
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知的 Redis 锁实现: " + backend);
+            }
+            return lockBackend;
+        } catch (RuntimeException e) {
+            lockBackend.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 指定 key 的锁实例
+     *
+     * @param lockKey 锁 key
+     * @return 锁实例，同一 key 返回同一个实例
+     */
+    public AbstractDistributedLock lock(String lockKey) {
+        return locks.computeIfAbsent(lockKey, factory);
+    }
+
+    @Override
+    public void close() {
+        while (!resources.isEmpty()) {
+            try {
+                resources.pop().close();
+            } catch (Exception e) {
+                // 继续关闭其余资源
+            }
+        }
+        servers.close();
+    }
+
+    private void useJedis() {
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(64);
+        poolConfig.setMaxIdle(64);
+        JedisPool jedisPool = new JedisPool(poolConfig, HOST, servers.getPort());
+        resources.push(jedisPool::close);
+        JedisLockProperties properties = new JedisLockProperties();
+        JedisScriptExecutor executor = new JedisScriptExecutor(jedisPool, properties);
+        resources.push(executor::shutdown);
+        executor.preload();
+        JedisLockReleaseSubscriber releaseSubscriber = new JedisLockReleaseSubscriber(new HostAndPort(HOST, servers.getPort()));
+        releaseSubscriber.start();
+        resources.push(releaseSubscriber::shutdown);
+        JedisLockWatchdog watchdog = new JedisLockWatchdog(executor, properties);
+        watchdog.start();
+        resources.push(watchdog::shutdown);
+        JedisLockFactory jedisLockFactory = new JedisLockFactory(executor, releaseSubscriber, watchdog, properties);
+        factory = jedisLockFactory::getLock;
+    }
+
+    private void useRedisson() {
+        RedissonClient client = redissonClient(servers.getPort());
+        factory = lockKey -> new RedissonDistributedLockImpl(lockKey, client);
+    }
+
+    private void useRedLock() {
+        List<RedissonClient> clients = new ArrayList<>();
+        for (int port : servers.getPorts()) {
+            clients.add(redissonClient(port));
+        }
+        RedLockFactory redLockFactory = new RedLockFactory(clients, new RedissonRedLockProperties());
+        factory = redLockFactory::getLock;
+    }
+
+    private RedissonClient redissonClient(int port) {
+        Config config = new Config();
+        config.useSingleServer().setAddress("redis://" + HOST + ":" + port);
+        config.setUseScriptCache(true);
+        RedissonClient client = Redisson.create(config);
+        resources.push(client::shutdown);
+        return client;
+    }
+}
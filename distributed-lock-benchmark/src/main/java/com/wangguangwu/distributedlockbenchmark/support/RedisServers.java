@@ -0,0 +1,150 @@
+package com.wangguangwu.distributedlockbenchmark.support;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在本机空闲端口上启动若干 redis-server 进程，关闭时销毁。
+ * <p>
+ * 进程不持久化（--save "" --appendonly no），工作目录为临时目录，基准测试之间互不影响，也不会占用 6379 等常用端口。
+ * redis-server 可执行文件默认从 PATH 查找，可通过系统属性 {@value #REDIS_SERVER_PROPERTY} 指定。
+ *
+ * @author wangguangwu
+ */
+public class RedisServers implements AutoCloseable {
+
+    public static final String REDIS_SERVER_PROPERTY = "benchmark.redis-server";
+
+    private static final long STARTUP_TIMEOUT_MILLIS = 10_000;
+
+    private final List<Process> processes = new ArrayList<>();
+
+    private final List<Integer> ports = new ArrayList<>();
+
+    private final Thread shutdownHook = new Thread(this::destroyAll, "redis-servers-shutdown");
+
+    private RedisServers() {
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * 启动 count 个 redis-server 进程，全部可以响应 PING 后返回
+     *
+     * @param count 进程数量
+     * @return 已启动的进程
+     */
+    public static RedisServers start(int count) {
+        RedisServers servers = new RedisServers();
+        try {
+            for (int i = 0; i < count; i++) {
+                servers.startOne();
+            }
+            for (int port : servers.ports) {
+                awaitReady(port);
+            }
+            return servers;
+        } catch (RuntimeException e) {
+            servers.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 各进程监听的端口
+     */
+    public List<Integer> getPorts() {
+        return Collections.unmodifiableList(ports);
+    }
+
+    /**
+     * 第一个进程监听的端口
+     */
+    public int getPort() {
+        return ports.get(0);
+    }
+
+    @Override
+    public void close() {
+        destroyAll();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // JVM 正在退出，钩子会自行执行
+        }
+    }
+
+    private void startOne() {
+        int port = freePort();
+        String executable = System.getProperty(REDIS_SERVER_PROPERTY, "redis-server");
+        ProcessBuilder builder = new ProcessBuilder(executable,
+                "--port", String.valueOf(port),
+                "--bind", "127.0.0.1",
+                "--save", "",
+                "--appendonly", "no",
+                "--dir", System.getProperty("java.io.tmpdir"))
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(new File(System.getProperty("java.io.tmpdir"),
+                        "redis-benchmark-" + port + ".log")));
+        try {
+            processes.add(builder.start());
+            ports.add(port);
+        } catch (IOException e) {
+            throw new IllegalStateException("无法启动 " + executable + "，请安装 redis-server 或通过 -D"
+                    + REDIS_SERVER_PROPERTY + " 指定路径", e);
+        }
+    }
+
+    private static void awaitReady(int port) {
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        while (true) {
+            try (Jedis jedis = new Jedis("127.0.0.1", port)) {
+                jedis.ping();
+                return;
+            } catch (JedisConnectionException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("redis-server 在 " + STARTUP_TIMEOUT_MILLIS + "ms 内未就绪，端口 " + port, e);
+                }
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待 redis-server 启动时被中断", e);
+            }
+        }
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            socket.setReuseAddress(true);
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new IllegalStateException("无法分配空闲端口", e);
+        }
+    }
+
+    private synchronized void destroyAll() {
+        for (Process process : processes) {
+            process.destroy();
+        }
+        for (Process process : processes) {
+            try {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+            }
+        }
+        processes.clear();
+    }
+}
@@ -0,0 +1,8 @@
+-- 与 docker/config/lock_record.sql 相同的表结构，去掉 H2 不支持的 MySQL 表选项
+CREATE TABLE IF NOT EXISTS lock_record (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    resource_id VARCHAR(255) NOT NULL UNIQUE,
+    version INT NOT NULL DEFAULT 0,
+    description VARCHAR(255),
+    fencing_token BIGINT NOT NULL DEFAULT 0
+);
@@ -0,0 +1,59 @@
+package com.wangguangwu.distributedlockbenchmark;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 以最短的迭代运行全部基准测试，验证套件可以在本机离线完成：
+ * 自行启动 redis-server 进程与 H2 数据库，每个 backend 的每个场景都产生结果。
+ * 结果只用于冒烟，不代表性能，完整的测量请运行 java -jar target/benchmarks.jar。
+ *
+ * @author wangguangwu
+ */
+@DisplayName("测试基准测试套件")
+public class BenchmarkSuiteTest {
+
+    /**
+     * RedisLockBenchmark 3 个场景 × 3 个 backend，RedisHandoffBenchmark 3 个 backend，
+     * RedLockFaultBenchmark 2 个场景 × 9 种故障，DbLockBenchmark 3 个场景 × 3 个 backend，DbHandoffBenchmark 1 个
+     */
+    private static final int EXPECTED_RUNS = 9 + 3 + 18 + 9 + 1;
+
+    @Test
+    @DisplayName("全部基准测试：各 backend 的各场景均能运行并产生结果")
+    void testRunAll() throws Exception {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(BenchmarkSuiteTest.class.getPackageName() + ".*Benchmark")
+                // 在当前 JVM 内运行，避免依赖 surefire 的类路径启动子进程
+                .forks(0)
+                .warmupIterations(0)
+                .measurementIterations(1)
+                .measurementTime(TimeValue.milliseconds(300))
+                .param("keyCount", "64")
+                .build()).run();
+
+        Set<String> names = new HashSet<>();
+        for (RunResult result : results) {
+            String backend = result.getParams().getParam("backend");
+            String variant = backend == null ? result.getParams().getParam("scenario") : backend;
+            String name = result.getParams().getBenchmark().replaceAll(".*\\.(\\w+\\.\\w+)$", "$1")
+                    + (variant == null ? "" : ":" + variant);
+            double score = result.getPrimaryResult().getScore();
+            System.out.printf("[Benchmark] %-40s %12.3f %s%n", name, score, result.getPrimaryResult().getScoreUnit());
+            assertTrue(score > 0, name + " 没有完成任何操作");
+            names.add(name);
+        }
+        assertEquals(EXPECTED_RUNS, names.size(), "应运行全部场景: " + names);
+    }
+}
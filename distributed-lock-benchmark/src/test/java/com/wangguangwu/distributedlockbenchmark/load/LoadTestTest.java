@@ -0,0 +1,121 @@
+package com.wangguangwu.distributedlockbenchmark.load;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 测试 LockController 的 HTTP 压测：
+ * <ul>
+ *   <li>以 H2 数据库启动服务，按固定速率压测并写出 JSON 报告与基线</li>
+ *   <li>服务变慢、请求被迫晚发出时，修正后的延迟包含晚发出的时间</li>
+ *   <li>与基线比较，百分位或错误率退化时报告退化</li>
+ * </ul>
+ *
+ * @author wangguangwu
+ */
+@DisplayName("测试 HTTP 压测")
+public class LoadTestTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("内置服务：按固定速率压测乐观锁接口，写出报告与基线")
+    void testRunAgainstEmbeddedServer() throws IOException {
+        Path output = tempDir.resolve("optimistic.json");
+        Path baseline = tempDir.resolve("baseline/optimistic.json");
+        int exitCode = LoadTest.run(new String[]{
+                "--endpoint=optimistic", "--rate=100", "--duration=2", "--warmup=1", "--profile=hotspot:8:0.5",
+                "--output=" + output, "--baseline=" + baseline, "--update-baseline"});
+
+        assertEquals(LoadTest.EXIT_OK, exitCode);
+        assertTrue(Files.exists(tempDir.resolve("optimistic.hgrm")), "应写出完整的百分位分布");
+        LatencyReport report = LoadTest.read(output);
+        assertEquals(report, LoadTest.read(baseline), "基线应与本次报告相同");
+        assertEquals(200, report.getRequests(), "2 秒内应按 100 req/s 发出 200 个请求");
+        assertEquals(0, report.getErrors(), "不应有错误: " + report.getStatusCounts());
+        assertEquals("load:0", report.getResources().get(0).getResourceId(), "热点资源的请求最多");
+        assertTrue(report.getResources().get(0).getRequests() > 200 / 3, "约一半请求访问热点资源");
+    }
+
+    @Test
+    @DisplayName("coordinated omission：请求因连接数上限晚发出时，修正后的延迟包含等待时间")
+    void testCoordinatedOmissionCorrection() throws Exception {
+        // 单线程、每个请求处理 20ms 的服务，最多 50 req/s
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        server.setExecutor(executor);
+        server.createContext("/lock/optimistic", exchange -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            LoadTestOptions options = LoadTestOptions.parse(new String[]{"--rate=100", "--max-in-flight=1"});
+            LatencyReport report = new LoadGenerator("http://127.0.0.1:" + server.getAddress().getPort(), options).run(1);
+
+            assertEquals(100, report.getRequests());
+            assertTrue(report.getServiceTime().getP99() < 200, "单个请求的服务时间约 20ms");
+            // 计划 1 秒发完的请求实际用了约 2 秒，最后的请求比计划晚约 1 秒
+            assertTrue(report.getLatency().getP99() > 500, "修正后的 p99 应包含晚发出的时间: " + report.getLatency());
+            assertTrue(report.getAchievedRate() < 75, "实际速率低于计划速率: " + report.getAchievedRate());
+        } finally {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("基线比较：百分位超过允许比例或错误率升高时报告退化，亚毫秒抖动不算退化")
+    void testCompareWithBaseline() {
+        LatencyReport baseline = report(2.0, 5.0, 0);
+
+        assertTrue(BaselineComparator.compare(report(2.1, 5.4, 0), baseline, 0.10).isEmpty(), "10% 以内不算退化");
+        assertTrue(BaselineComparator.compare(report(0.3, 0.8, 0), report(0.1, 0.2, 0), 0.10).isEmpty(),
+                "差值不足 1ms 不算退化");
+
+        List<String> regressions = BaselineComparator.compare(report(2.0, 12.0, 0), baseline, 0.10);
+        assertEquals(2, regressions.size(), "p99 与 p99.9 退化: " + regressions);
+        assertTrue(regressions.get(0).startsWith("p99 "));
+
+        assertEquals(1, BaselineComparator.compare(report(2.0, 5.0, 10), baseline, 0.10).size(), "错误率升高");
+
+        LatencyReport otherProfile = report(2.0, 5.0, 0);
+        otherProfile.setProfile("single");
+        assertFalse(BaselineComparator.compare(otherProfile, baseline, 0.10).isEmpty(), "profile 不同不能比较");
+    }
+
+    private static LatencyReport report(double p50, double p99, long errors) {
+        LatencyReport report = new LatencyReport();
+        report.setEndpoint("optimistic");
+        report.setProfile("uniform:64");
+        report.setRequests(100);
+        report.setErrors(errors);
+        LatencyReport.Percentiles latency = new LatencyReport.Percentiles();
+        latency.setP50(p50);
+        latency.setP90(p50);
+        latency.setP99(p99);
+        latency.setP999(p99);
+        latency.setMax(p99);
+        report.setLatency(latency);
+        return report;
+    }
+}
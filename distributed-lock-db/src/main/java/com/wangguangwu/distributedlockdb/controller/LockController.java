@@ -1,8 +1,10 @@
 package com.wangguangwu.distributedlockdb.controller;
 
+import com.wangguangwu.distributedlockdb.service.FencingTokenService;
 import com.wangguangwu.distributedlockdb.service.OptimisticLockService;
 import com.wangguangwu.distributedlockdb.service.PessimisticLockService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -16,6 +18,7 @@ public class LockController {
 
     private final PessimisticLockService pessimisticLockService;
     private final OptimisticLockService optimisticLockService;
+    private final FencingTokenService fencingTokenService;
 
     @PostMapping("/pessimistic")
     public ResponseEntity<String> pessimisticLock(@RequestParam("resourceId") String resourceId) {
@@ -28,4 +31,14 @@ public class LockController {
         optimisticLockService.lockResource(resourceId);
         return ResponseEntity.ok("乐观锁处理成功");
     }
+
+    @PostMapping("/fencing")
+    public ResponseEntity<String> fencingWrite(@RequestParam("resourceId") String resourceId,
+                                               @RequestParam("fencingToken") long fencingToken,
+                                               @RequestParam("description") String description) {
+        if (fencingTokenService.write(resourceId, fencingToken, description)) {
+            return ResponseEntity.ok("写入成功");
+        }
+        return ResponseEntity.status(HttpStatus.CONFLICT).body("fencing token 已过期或资源不存在");
+    }
 }
@@ -23,4 +23,9 @@ public class LockRecord {
 
     private String description;
 
+    /**
+     * 最近一次写入时携带的 fencing token，只接受不小于该值的写入
+     */
+    private Long fencingToken;
+
 }
\ No newline at end of file
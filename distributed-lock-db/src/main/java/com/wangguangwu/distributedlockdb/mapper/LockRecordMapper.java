@@ -5,6 +5,7 @@ import com.wangguangwu.distributedlockdb.entity.LockRecord;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 /**
  * @author wangguangwu
@@ -30,4 +31,20 @@ public interface LockRecordMapper extends BaseMapper<LockRecord> {
     @Select("SELECT * FROM lock_record WHERE resource_id = #{resourceId}")
     LockRecord selectByResourceId(@Param("resourceId") String resourceId);
 
+    /**
+     * 携带 fencing token 的条件更新：只有 token 不小于记录中已见的最大 token 时才写入，并记录该 token。
+     * 同一次持有的多次写入使用相同的 token，均可成功；租期过期的旧持有者 token 更小，写入被拒绝。
+     * 判断与写入在同一条语句中完成，写入后无需再次查询校验
+     *
+     * @param resourceId   资源ID
+     * @param description  描述信息
+     * @param fencingToken 加锁时获得的 fencing token
+     * @return 更新的行数，0 表示 token 已过期或资源不存在
+     */
+    @Update("UPDATE lock_record SET description = #{description}, fencing_token = #{fencingToken}, version = version + 1 " +
+            "WHERE resource_id = #{resourceId} AND fencing_token <= #{fencingToken}")
+    int updateWithFencingToken(@Param("resourceId") String resourceId,
+                               @Param("description") String description,
+                               @Param("fencingToken") long fencingToken);
+
 }
@@ -0,0 +1,256 @@
+package com.wangguangwu.distributedlockdb.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据库锁的 Micrometer 指标，名称与标签和 Redis 模块的锁指标一致，按 backend 与 group（资源 ID 分组）打标签：
+ * <ul>
+ *   <li>{@value #ACQUIRE}：悲观锁 SELECT ... FOR UPDATE 的等待时间，乐观锁从第一次读取到更新成功的耗时</li>
+ *   <li>{@value #HELD}：悲观锁从获取行锁到事务结束（行锁释放）的时间</li>
+ *   <li>{@value #CONTENDED}：乐观锁版本冲突的次数</li>
+ *   <li>{@value #FAILURES}：失败次数，reason 为 exhausted（乐观锁重试用尽）、stale_token（fencing token 过期被拒绝）、
+ *   error（加锁异常，如行锁等待超时）</li>
+ *   <li>{@value #OPTIMISTIC_RETRIES}：每次乐观锁调用的重试次数分布</li>
+ * </ul>
+ * 每个分组的 Meter 在第一次使用时创建并缓存；解析出的分组再按资源 ID 缓存（每个 backend 最多 {@value #MAX_RESOURCES} 个），
+ * 已缓存的资源 ID 只有 backend 与资源 ID 两次 Map 查找与 Meter 自身的记录开销，不再截取分组、拼接 key，没有内存分配。
+ * 分组规则与 Redis 模块的锁指标相同：取资源 ID 第一个冒号之前的部分并去掉 hash tag 的花括号，
+ * 同一个业务 key 在两种锁下落入同一分组；每个 backend 的分组数量超过 {@value #MAX_GROUPS} 后新的分组统一归入 {@value #OTHER_GROUP}。
+ *
+ * @author wangguangwu
+ */
+@Component
+public class LockMetrics {
+
+    public static final String ACQUIRE = "distributed.lock.acquire";
+
+    public static final String HELD = "distributed.lock.held";
+
+    public static final String CONTENDED = "distributed.lock.contended";
+
+    public static final String FAILURES = "distributed.lock.failures";
+
+    public static final String OPTIMISTIC_RETRIES = "distributed.lock.optimistic.retries";
+
+    public static final String PESSIMISTIC = "mysql-pessimistic";
+
+    public static final String OPTIMISTIC = "mysql-optimistic";
+
+    public static final String FENCING = "mysql-fencing";
+
+    /**
+     * 每个 backend 最多的分组数量
+     */
+    static final int MAX_GROUPS = 256;
+
+    static final String OTHER_GROUP = "other";
+
+    /**
+     * 每个 backend 最多缓存的资源 ID 数量，超过后新的资源 ID 每次调用重新解析分组
+     */
+    static final int MAX_RESOURCES = 4096;
+
+    private final MeterRegistry registry;
+
+    /**
+     * backend -> 该 backend 的 Meter
+     */
+    private final ConcurrentHashMap<String, BackendMeters> backends = new ConcurrentHashMap<>();
+
+    public LockMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * 加锁成功，记录从 startNanos 开始的加锁耗时
+     *
+     * @return 当前 System.nanoTime，作为持有时间的起点
+     */
+    public long acquired(String backend, String resourceId, long startNanos) {
+        long now = System.nanoTime();
+        of(backend, resourceId).acquire.record(now - startNanos, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    /**
+     * 在当前事务结束（行锁释放）时记录持有时间，没有事务时立即记录
+     *
+     * @param acquiredNanos {@link #acquired(String, String, long)} 的返回值
+     */
+    public void releasedOnCompletion(String backend, String resourceId, long acquiredNanos) {
+        Timer held = of(backend, resourceId).held;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            held.record(System.nanoTime() - acquiredNanos, TimeUnit.NANOSECONDS);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                held.record(System.nanoTime() - acquiredNanos, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    public void contended(String backend, String resourceId) {
+        of(backend, resourceId).contended.increment();
+    }
+
+    public void retries(String backend, String resourceId, int retries) {
+        of(backend, resourceId).retries.record(retries);
+    }
+
+    public void exhausted(String backend, String resourceId) {
+        of(backend, resourceId).exhausted.increment();
+    }
+
+    public void staleToken(String backend, String resourceId) {
+        of(backend, resourceId).staleToken.increment();
+    }
+
+    public void error(String backend, String resourceId) {
+        of(backend, resourceId).errors.increment();
+    }
+
+    /**
+     * 资源 ID 所属的分组：第一个冒号之前的部分，去掉 hash tag 的花括号
+     */
+    static String groupOf(String resourceId) {
+        int end = resourceId.indexOf(':');
+        String group = end < 0 ? resourceId : resourceId.substring(0, end);
+        if (group.length() > 2 && group.charAt(0) == '{' && group.charAt(group.length() - 1) == '}') {
+            group = group.substring(1, group.length() - 1);
+        }
+        return group;
+    }
+
+    private Meters of(String backend, String resourceId) {
+        BackendMeters current = backends.get(backend);
+        if (current == null) {
+            current = backends.computeIfAbsent(backend, BackendMeters::new);
+        }
+        return current.of(resourceId);
+    }
+
+    /**
+     * 一个 backend 的全部分组，分组数量上限按 backend 分别计算
+     */
+    private final class BackendMeters {
+
+        private final String backend;
+
+        /**
+         * 分组 -> Meter
+         */
+        private final ConcurrentHashMap<String, Meters> groups = new ConcurrentHashMap<>();
+
+        /**
+         * 资源 ID -> 所属分组的 Meter
+         */
+        private final ConcurrentHashMap<String, Meters> resources = new ConcurrentHashMap<>();
+
+        private BackendMeters(String backend) {
+            this.backend = backend;
+        }
+
+        private Meters of(String resourceId) {
+            Meters current = resources.get(resourceId);
+            if (current != null) {
+                return current;
+            }
+            String group = groupOf(resourceId);
+            current = groups.get(group);
+            if (current == null) {
+                current = create(group);
+            }
+            if (resources.size() < MAX_RESOURCES) {
+                resources.putIfAbsent(resourceId, current);
+            }
+            return current;
+        }
+
+        private synchronized Meters create(String group) {
+            Meters current = groups.get(group);
+            if (current != null) {
+                return current;
+            }
+            if (groups.size() >= MAX_GROUPS) {
+                group = OTHER_GROUP;
+                current = groups.get(group);
+                if (current != null) {
+                    return current;
+                }
+            }
+            current = new Meters(registry, backend, group);
+            groups.put(group, current);
+            return current;
+        }
+    }
+
+    /**
+     * 一个分组的全部 Meter
+     */
+    private static final class Meters {
+
+        private final Timer acquire;
+
+        private final Timer held;
+
+        private final Counter contended;
+
+        private final DistributionSummary retries;
+
+        private final Counter exhausted;
+
+        private final Counter staleToken;
+
+        private final Counter errors;
+
+        private Meters(MeterRegistry registry, String backend, String group) {
+            this.acquire = Timer.builder(ACQUIRE)
+                    .description("从调用加锁到成功获取锁的耗时")
+                    .tags("backend", backend, "group", group)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(60))
+                    .register(registry);
+            this.held = Timer.builder(HELD)
+                    .description("从获取锁到释放锁的持有时间")
+                    .tags("backend", backend, "group", group)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofMinutes(10))
+                    .register(registry);
+            this.contended = Counter.builder(CONTENDED)
+                    .description("乐观锁版本冲突的次数")
+                    .tags("backend", backend, "group", group)
+                    .register(registry);
+            this.retries = DistributionSummary.builder(OPTIMISTIC_RETRIES)
+                    .description("每次乐观锁调用的重试次数")
+                    .tags("backend", backend, "group", group)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(1.0)
+                    .maximumExpectedValue(16.0)
+                    .register(registry);
+            this.exhausted = failures(registry, backend, group, "exhausted");
+            this.staleToken = failures(registry, backend, group, "stale_token");
+            this.errors = failures(registry, backend, group, "error");
+        }
+
+        private static Counter failures(MeterRegistry registry, String backend, String group, String reason) {
+            return Counter.builder(FAILURES)
+                    .description("乐观锁重试用尽、fencing token 过期与加锁异常的次数")
+                    .tags("backend", backend, "group", group, "reason", reason)
+                    .register(registry);
+        }
+    }
+}
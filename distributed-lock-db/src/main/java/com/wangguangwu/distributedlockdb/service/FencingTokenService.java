@@ -0,0 +1,47 @@
+package com.wangguangwu.distributedlockdb.service;
+
+import com.wangguangwu.distributedlockdb.mapper.LockRecordMapper;
+import com.wangguangwu.distributedlockdb.metrics.LockMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * 基于 fencing token 的写入保护
+ * <p>
+ * 分布式锁每次被新的持有者获取时返回严格递增的 fencing token，持有者写入时带上 token，
+ * 由数据库在同一条 UPDATE 中拒绝 token 小于已见最大值的写入。
+ * 持有者因 GC 停顿、网络延迟等原因在租期过期后才发出的写请求会被拒绝，
+ * 不需要在加锁后或写入后反复查询记录校验持有状态。
+ * <p>
+ * 被拒绝的写入计入 {@link LockMetrics#FAILURES}（reason=stale_token）。
+ *
+ * @author wangguangwu
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FencingTokenService {
+
+    private final LockRecordMapper lockRecordMapper;
+
+    private final LockMetrics lockMetrics;
+
+    /**
+     * 携带 fencing token 更新资源
+     *
+     * @param resourceId   资源ID
+     * @param fencingToken 加锁时获得的 fencing token
+     * @param description  要写入的描述信息
+     * @return true 表示写入成功，false 表示 token 已过期（已有更新的持有者写入）或资源不存在
+     */
+    public boolean write(String resourceId, long fencingToken, String description) {
+        if (lockRecordMapper.updateWithFencingToken(resourceId, description, fencingToken) > 0) {
+            log.debug("写入成功，资源 {}，fencing token：{}", resourceId, fencingToken);
+            return true;
+        }
+        lockMetrics.staleToken(LockMetrics.FENCING, resourceId);
+        log.warn("写入被拒绝，资源 {} 不存在或 fencing token {} 已过期", resourceId, fencingToken);
+        return false;
+    }
+}
@@ -2,29 +2,36 @@ package com.wangguangwu.distributedlockdb.service;
 
 import com.wangguangwu.distributedlockdb.entity.LockRecord;
 import com.wangguangwu.distributedlockdb.mapper.LockRecordMapper;
+import com.wangguangwu.distributedlockdb.metrics.LockMetrics;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
  * 乐观锁实现
+ * <p>
+ * 每次调用记录重试次数，版本冲突计入竞争次数，重试用尽计入失败次数，见 {@link LockMetrics}。
  *
  * @author wangguangwu
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class OptimisticLockService {
 
     private final LockRecordMapper lockRecordMapper;
 
+    private final LockMetrics lockMetrics;
+
     @Transactional
     public void lockResource(String resourceId) {
         final int maxRetries = 3;
         int attempt = 0;
         boolean success = false;
+        long startNanos = System.nanoTime();
         while (attempt < maxRetries && !success) {
             attempt++;
-            String threadName = Thread.currentThread().getName();
             // 查询记录
             LockRecord record = lockRecordMapper.selectByResourceId(resourceId);
             if (record == null) {
@@ -33,20 +40,22 @@ public class OptimisticLockService {
             if (record.getVersion() == null) {
                 throw new RuntimeException("数据版本号丢失，无法使用乐观锁");
             }
-            System.out.println("[" + threadName + "] 尝试更新，第 " + attempt + " 次，更新前版本号：" + record.getVersion());
-            // 执行更新操作（MyBatis-Plus 会自动处理版本号加1）
+            log.debug("尝试更新，第 {} 次，更新前版本号：{}", attempt, record.getVersion());
+            // 执行更新操作（MyBatis-Plus 会自动处理版本号加1，并把新版本号写回实体，无需再次查询）
             int updatedRows = lockRecordMapper.updateById(record);
             if (updatedRows > 0) {
-                LockRecord updatedRecord = lockRecordMapper.selectById(record.getId());
-                System.out.println("[" + threadName + "] 更新成功，第 " + attempt + " 次，更新后版本号：" + updatedRecord.getVersion());
-                System.out.println("[" + threadName + "] 成功获取乐观锁，处理业务...");
+                lockMetrics.acquired(LockMetrics.OPTIMISTIC, resourceId, startNanos);
+                log.debug("更新成功，第 {} 次，更新后版本号：{}，处理业务...", attempt, record.getVersion());
                 success = true;
             } else {
-                System.out.println("[" + threadName + "] 更新失败，第 " + attempt + " 次，版本冲突。");
+                lockMetrics.contended(LockMetrics.OPTIMISTIC, resourceId);
+                log.debug("更新失败，第 {} 次，版本冲突", attempt);
             }
         }
+        lockMetrics.retries(LockMetrics.OPTIMISTIC, resourceId, attempt - 1);
         if (!success) {
-            System.out.println("乐观锁连续 " + maxRetries + " 次更新失败，请重试");
+            lockMetrics.exhausted(LockMetrics.OPTIMISTIC, resourceId);
+            log.warn("乐观锁连续 {} 次更新失败，请重试", maxRetries);
         }
     }
 }
@@ -2,7 +2,9 @@ package com.wangguangwu.distributedlockdb.service;
 
 import com.wangguangwu.distributedlockdb.entity.LockRecord;
 import com.wangguangwu.distributedlockdb.mapper.LockRecordMapper;
+import com.wangguangwu.distributedlockdb.metrics.LockMetrics;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -10,30 +12,30 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * 悲观锁实现
+ * <p>
+ * 记录 SELECT ... FOR UPDATE 的等待时间与行锁的持有时间（到事务提交或回滚为止），见 {@link LockMetrics}。
  *
  * @author wangguangwu
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class PessimisticLockService {
 
     private final LockRecordMapper lockRecordMapper;
 
+    private final LockMetrics lockMetrics;
+
     @Transactional(timeout = 60)
     public void lockResource(String resourceId) {
-        String threadName = Thread.currentThread().getName();
-
         // 通过 SELECT ... FOR UPDATE 获取数据库锁，此方法会阻塞其他线程直到锁释放
-        LockRecord record = lockRecordMapper.selectForUpdate(resourceId);
-        if (record == null) {
-            throw new RuntimeException("资源不存在");
-        }
+        LockRecord record = selectForUpdate(resourceId);
 
-        System.out.println("[" + threadName + "] 成功获取悲观锁，资源 " + record.getResourceId() + " 已被锁定。");
+        log.debug("成功获取悲观锁，资源 {} 已被锁定", record.getResourceId());
 
         // 模拟业务逻辑处理，控制事务时长
         try {
-            System.out.println("[" + threadName + "] 正在处理业务...");
+            log.debug("正在处理业务...");
             // 模拟耗时 1 秒的业务处理
             TimeUnit.SECONDS.sleep(1);
         } catch (InterruptedException e) {
@@ -45,7 +47,36 @@ public class PessimisticLockService {
         record.setDescription("业务处理完成");
         lockRecordMapper.updateById(record);
 
-        System.out.println("[" + threadName + "] 业务处理完成，资源 " + record.getResourceId() +
-                " 的描述已更新为：" + record.getDescription());
+        log.debug("业务处理完成，资源 {} 的描述已更新为：{}", record.getResourceId(), record.getDescription());
+    }
+
+    /**
+     * 持有资源的行锁执行 action，事务结束时释放行锁
+     *
+     * @param resourceId 资源ID
+     * @param action     持有行锁期间执行的操作
+     */
+    @Transactional(timeout = 60)
+    public void withLock(String resourceId, Runnable action) {
+        selectForUpdate(resourceId);
+        action.run();
+    }
+
+    private LockRecord selectForUpdate(String resourceId) {
+        long startNanos = System.nanoTime();
+        LockRecord record;
+        try {
+            record = lockRecordMapper.selectForUpdate(resourceId);
+        } catch (RuntimeException e) {
+            lockMetrics.error(LockMetrics.PESSIMISTIC, resourceId);
+            throw e;
+        }
+        if (record == null) {
+            throw new RuntimeException("资源不存在");
+        }
+        long acquiredNanos = lockMetrics.acquired(LockMetrics.PESSIMISTIC, resourceId, startNanos);
+        // 行锁在事务结束时才释放，持有时间在事务完成的回调中记录
+        lockMetrics.releasedOnCompletion(LockMetrics.PESSIMISTIC, resourceId, acquiredNanos);
+        return record;
     }
 }
@@ -0,0 +1,63 @@
+package com.wangguangwu.distributedlockdb.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 测试数据库锁指标的分组规则，与 Redis 模块的锁指标保持一致，不依赖数据库：
+ * <ul>
+ *   <li>取第一个冒号之前的部分，去掉 hash tag 的花括号</li>
+ *   <li>分组数量上限按 backend 分别计算</li>
+ *   <li>资源 ID 缓存达到上限后仍按分组记录</li>
+ * </ul>
+ */
+@DisplayName("测试数据库锁指标")
+public class LockMetricsTest {
+
+    @Test
+    @DisplayName("分组：取第一个冒号之前的部分并去掉 hash tag")
+    void testGroupOf() {
+        assertEquals("order", LockMetrics.groupOf("order:1001"));
+        assertEquals("order", LockMetrics.groupOf("{order}:1001"));
+        assertEquals("order", LockMetrics.groupOf("order"));
+        assertEquals("{}", LockMetrics.groupOf("{}:1001"));
+    }
+
+    @Test
+    @DisplayName("分组上限：每个 backend 分别计算，超过上限后归入 other")
+    void testGroupCapPerBackend() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        LockMetrics metrics = new LockMetrics(registry);
+        for (int i = 0; i < LockMetrics.MAX_GROUPS; i++) {
+            metrics.contended(LockMetrics.OPTIMISTIC, "group" + i + ":1");
+        }
+        metrics.contended(LockMetrics.OPTIMISTIC, "overflow:1");
+        assertEquals(1, registry.get(LockMetrics.CONTENDED)
+                .tags("backend", LockMetrics.OPTIMISTIC, "group", LockMetrics.OTHER_GROUP).counter().count(),
+                "超过上限的分组应归入 other");
+
+        metrics.contended(LockMetrics.PESSIMISTIC, "order:1");
+        assertEquals(1, registry.get(LockMetrics.CONTENDED)
+                .tags("backend", LockMetrics.PESSIMISTIC, "group", "order").counter().count(),
+                "其他 backend 的分组不受该 backend 上限影响");
+    }
+
+    @Test
+    @DisplayName("资源 ID 缓存：超过缓存上限的资源 ID 仍记录到所属分组")
+    void testResourceCacheCap() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        LockMetrics metrics = new LockMetrics(registry);
+        for (int i = 0; i < LockMetrics.MAX_RESOURCES + 10; i++) {
+            metrics.contended(LockMetrics.OPTIMISTIC, "order:" + i);
+        }
+        metrics.contended(LockMetrics.OPTIMISTIC, "order:0");
+        metrics.contended(LockMetrics.OPTIMISTIC, "{order}:1");
+        assertEquals(LockMetrics.MAX_RESOURCES + 12, registry.get(LockMetrics.CONTENDED)
+                .tags("backend", LockMetrics.OPTIMISTIC, "group", "order").counter().count(),
+                "缓存与未缓存的资源 ID 都应记录到同一分组");
+    }
+}
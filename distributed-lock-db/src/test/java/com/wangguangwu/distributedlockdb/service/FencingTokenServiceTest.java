@@ -0,0 +1,72 @@
+package com.wangguangwu.distributedlockdb.service;
+
+import com.wangguangwu.distributedlockdb.entity.LockRecord;
+import com.wangguangwu.distributedlockdb.mapper.LockRecordMapper;
+import com.wangguangwu.distributedlockdb.metrics.LockMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 使用测试专用的记录，不修改其他测试共用的种子数据
+ *
+ * @author wangguangwu
+ */
+@SpringBootTest
+class FencingTokenServiceTest {
+
+    /**
+     * 测试记录的资源 ID 前缀，同时是指标的分组
+     */
+    private static final String GROUP = "fencingTokenTest";
+
+    @Autowired
+    private FencingTokenService fencingTokenService;
+
+    @Autowired
+    private LockRecordMapper lockRecordMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private LockRecord record;
+
+    @BeforeEach
+    void setUp() {
+        record = new LockRecord();
+        record.setResourceId(GROUP + ":" + UUID.randomUUID());
+        record.setVersion(0);
+        record.setDescription("fencing token 测试");
+        record.setFencingToken(0L);
+        lockRecordMapper.insert(record);
+    }
+
+    @AfterEach
+    void tearDown() {
+        lockRecordMapper.deleteById(record.getId());
+    }
+
+    @Test
+    @DisplayName("测试 fencing token：同一 token 可重复写入，过期 token 写入被拒绝")
+    void testRejectStaleToken() {
+        String resourceId = record.getResourceId();
+        assertTrue(fencingTokenService.write(resourceId, 1, "持有者 A 写入"), "新的 token 应写入成功");
+        assertTrue(fencingTokenService.write(resourceId, 1, "持有者 A 再次写入"), "同一次持有的多次写入应成功");
+        assertTrue(fencingTokenService.write(resourceId, 2, "持有者 B 写入"), "更大的 token 应写入成功");
+        assertFalse(fencingTokenService.write(resourceId, 1, "持有者 A 停顿后写入"), "过期的 token 应被拒绝");
+        assertEquals(2L, lockRecordMapper.selectById(record.getId()).getFencingToken(), "记录应保留持有者 B 的 token");
+        assertEquals(1, meterRegistry.get(LockMetrics.FAILURES)
+                .tags("backend", LockMetrics.FENCING, "group", GROUP, "reason", "stale_token")
+                .counter().count(), "应记录一次过期 token");
+    }
+}
@@ -1,5 +1,7 @@
 package com.wangguangwu.distributedlockdb.service;
 
+import com.wangguangwu.distributedlockdb.metrics.LockMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,6 +12,8 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 /**
  * @author wangguangwu
  */
@@ -19,6 +23,9 @@ class OptimisticLockServiceTest {
     @Autowired
     private OptimisticLockService optimisticLockService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private static final int THREAD_COUNT = 30;
 
     @Test
@@ -41,5 +48,10 @@ class OptimisticLockServiceTest {
 
         latch.await();
         executorService.shutdown();
+
+        // 每次调用都记录一次重试次数，不论最终成功还是重试用尽
+        assertEquals(THREAD_COUNT, meterRegistry.get(LockMetrics.OPTIMISTIC_RETRIES)
+                .tags("backend", LockMetrics.OPTIMISTIC, "group", "optimisticLock")
+                .summary().count(), "每次乐观锁调用都应记录重试次数");
     }
 }
\ No newline at end of file
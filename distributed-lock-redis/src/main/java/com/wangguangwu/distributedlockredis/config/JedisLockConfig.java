@@ -1,9 +1,19 @@
 package com.wangguangwu.distributedlockredis.config;
 
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber;
+import com.wangguangwu.distributedlockredis.properties.JedisLockProperties;
+import com.wangguangwu.distributedlockredis.transport.RespConnection;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisCluster;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Protocol;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
  * @author wangguangwu
@@ -21,4 +31,37 @@ public class JedisLockConfig {
     public JedisPool jedisPool() {
         return new JedisPool(jedisHost, jedisPort);
     }
-}
\ No newline at end of file
+
+    /**
+     * 锁释放消息订阅器，使用独立连接，不占用 JedisPool 中的连接
+     */
+    @Bean(initMethod = "start", destroyMethod = "shutdown")
+    public JedisLockReleaseSubscriber jedisLockReleaseSubscriber() {
+        return new JedisLockReleaseSubscriber(new HostAndPort(jedisHost, jedisPort));
+    }
+
+    /**
+     * NIO 传输层的多路复用连接，仅在 jedis.lock.transport=nio 时创建，JedisScriptExecutor 存在该连接时改用它执行脚本
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "jedis.lock", name = "transport", havingValue = "nio")
+    public RespConnection respConnection() {
+        return new RespConnection(new HostAndPort(jedisHost, jedisPort), Protocol.DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * 集群模式下的 JedisCluster，仅在 jedis.lock.cluster-mode=true 时创建，JedisMultiKeyLock 通过它把每个 slot 的脚本发往对应节点
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "jedis.lock", name = "cluster-mode", havingValue = "true")
+    public JedisCluster jedisCluster(JedisLockProperties jedisLockProperties) {
+        Set<HostAndPort> nodes = new LinkedHashSet<>();
+        for (String node : jedisLockProperties.getClusterNodes()) {
+            nodes.add(HostAndPort.from(node));
+        }
+        if (nodes.isEmpty()) {
+            throw new IllegalStateException("jedis.lock.cluster-mode 开启时必须配置 jedis.lock.cluster-nodes");
+        }
+        return new JedisCluster(nodes);
+    }
+}
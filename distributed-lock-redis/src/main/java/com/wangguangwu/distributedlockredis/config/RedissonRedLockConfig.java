@@ -1,10 +1,10 @@
 package com.wangguangwu.distributedlockredis.config;
 
+import com.wangguangwu.distributedlockredis.lock.factory.RedLockFactory;
+import com.wangguangwu.distributedlockredis.lock.impl.RedLockDistributedLockImpl;
 import com.wangguangwu.distributedlockredis.properties.RedissonRedLockProperties;
 import lombok.RequiredArgsConstructor;
 import org.redisson.Redisson;
-import org.redisson.RedissonMultiLock;
-import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
 import org.redisson.config.Config;
 import org.springframework.context.annotation.Bean;
@@ -28,18 +28,17 @@ public class RedissonRedLockConfig {
         for (String address : redissonRedLockProperties.getAddresses()) {
             Config config = new Config();
             config.useSingleServer().setAddress(address);
+            config.setUseScriptCache(true);
             clients.add(Redisson.create(config));
         }
         return clients;
     }
 
-    @Bean(name = "redissonMultiLock")
-    public RedissonMultiLock redissonMultiLock(List<RedissonClient> redissonClientsForRedLock) {
-        List<RLock> locks = new ArrayList<>();
-        // 此处所有客户端都使用同一把锁名称 "myLock"，以实现 RedLock 效果
-        for (RedissonClient client : redissonClientsForRedLock) {
-            locks.add(client.getLock("RedLock"));
-        }
-        return new RedissonMultiLock(locks.toArray(new RLock[0]));
+    /**
+     * 默认 key 为 "RedLock" 的锁实例，其他 key 通过 RedLockFactory#getLock 获取
+     */
+    @Bean
+    public RedLockDistributedLockImpl redLockDistributedLockImpl(RedLockFactory redLockFactory) {
+        return redLockFactory.getLock("RedLock");
     }
 }
\ No newline at end of file
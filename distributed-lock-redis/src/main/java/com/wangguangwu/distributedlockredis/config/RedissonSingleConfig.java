@@ -20,6 +20,8 @@ public class RedissonSingleConfig {
     public RedissonClient redissonSingleClient() {
         Config config = new Config();
         config.useSingleServer().setAddress(redissonAddress);
+        // 锁操作的 Lua 脚本通过 EVALSHA 执行，NOSCRIPT 时由 Redisson 自动重新加载
+        config.setUseScriptCache(true);
         return Redisson.create(config);
     }
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package com.wangguangwu.distributedlockredis.config;
+
+import com.wangguangwu.distributedlockredis.lock.factory.ShardedJedisLockFactory;
+import com.wangguangwu.distributedlockredis.lock.factory.ShardedRedissonLockFactory;
+import com.wangguangwu.distributedlockredis.properties.JedisLockProperties;
+import com.wangguangwu.distributedlockredis.properties.ShardedLockProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 配置了 sharded-lock.nodes 时创建按一致性哈希分片的 Jedis 与 Redisson 锁工厂
+ *
+ * @author wangguangwu
+ */
+@Configuration
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "sharded-lock", name = "nodes[0]")
+public class ShardedLockConfig {
+
+    private final ShardedLockProperties shardedLockProperties;
+
+    @Bean(destroyMethod = "shutdown")
+    public ShardedJedisLockFactory shardedJedisLockFactory(JedisLockProperties jedisLockProperties) {
+        return new ShardedJedisLockFactory(shardedLockProperties.getNodes(), shardedLockProperties.getVirtualNodes(),
+                jedisLockProperties);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ShardedRedissonLockFactory shardedRedissonLockFactory() {
+        return new ShardedRedissonLockFactory(shardedLockProperties.getNodes(), shardedLockProperties.getVirtualNodes(),
+                shardedLockProperties.getMaxCachedLocks());
+    }
+}
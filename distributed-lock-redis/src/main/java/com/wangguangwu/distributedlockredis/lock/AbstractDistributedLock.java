@@ -1,9 +1,34 @@
 package com.wangguangwu.distributedlockredis.lock;
 
+import com.wangguangwu.distributedlockredis.lock.support.DaemonThreadFactory;
+import com.wangguangwu.distributedlockredis.metrics.LockMetrics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 分布式锁的抽象类，定义了 lock 与 unlock 方法。
+ * <p>
+ * 异步方法返回 {@link CompletionStage}，等待期间不占用调用线程。异步调用的回调通常不在发起调用的线程上执行，
+ * 因此持有者以 ownerId 显式传递：加锁与解锁使用同一个 ownerId 即视为同一持有者，
+ * 不带 ownerId 的重载使用当前线程 ID，与同步方法的持有者一致。
+ * <p>
+ * 以 ownerId 加锁、解锁的同步方法由子类实现，异步方法默认基于同步方法实现，两者不会互相回退：
+ * 只实现同步方法的锁（公平锁、读写锁）调用异步方法时，等待在共用的阻塞线程池中进行，会占用一个线程；
+ * 以异步方法为主的实现（Redisson、RedLock）同时覆盖异步方法，同步方法通过 {@link #awaitLock} / {@link #awaitUnlock} 等待异步结果；
+ * 持有者与线程绑定、不支持 ownerId 的实现（{@link com.wangguangwu.distributedlockredis.lock.impl.TwoTierDistributedLockImpl}）
+ * 在同步方法中抛出 {@link UnsupportedOperationException}。
+ * <p>
+ * 需要在线程之间传递持有权时（虚拟线程、线程池任务、异步回调），使用 {@link #acquire} / {@link #acquireAsync}
+ * 获取 {@link LockHandle}：每个句柄分配一个与线程无关的 ownerId，可以在任意线程上通过句柄解锁。
+ * 不支持 ownerId 的实现在请求句柄时直接抛出 {@link UnsupportedOperationException}。
+ * <p>
+ * 每个实现在获取、释放、等待与失败时记录 {@link LockMetrics}，backend 标签为构造时传入的实现名称。
  *
  * @author wangguangwu
  */
@@ -12,8 +37,12 @@ public abstract class AbstractDistributedLock {
     // 锁的标识，由子类构造时设置
     protected final String lockKey;
 
-    public AbstractDistributedLock(String lockKey) {
+    // 锁所属分组的指标
+    protected final LockMetrics metrics;
+
+    public AbstractDistributedLock(String lockKey, String backend) {
         this.lockKey = lockKey;
+        this.metrics = LockMetrics.of(backend, lockKey);
     }
 
     /**
@@ -40,10 +69,245 @@ public abstract class AbstractDistributedLock {
     public abstract void unlock();
 
     /**
-     * 判断当前线程是否持有锁
+     * 判断当前线程是否持有锁。
+     * <p>
+     * 实现应只查询本地记录的持有状态与租期到期时间，不访问远端存储，可以在热路径上频繁调用；
+     * 锁在远端被删除或主从切换丢失时本地无法感知，需要确认时调用 {@link #isLockHeldRemotely()}
      *
      * @return true 表示是，否则 false
      */
     public abstract boolean isLockHeldByCurrentThread();
 
+    /**
+     * 向远端存储确认当前线程是否持有锁，见 {@link #isLockHeldRemotely(long)}
+     *
+     * @return true 表示远端记录的持有者为当前线程
+     */
+    public boolean isLockHeldRemotely() {
+        return isLockHeldRemotely(Thread.currentThread().getId());
+    }
+
+    /**
+     * 向远端存储确认指定持有者是否持有锁，每次调用都会产生网络往返，只应在需要确认时显式调用。
+     * 不支持远端查询的实现抛出 {@link UnsupportedOperationException}
+     *
+     * @param ownerId 加锁时使用的持有者 ID
+     * @return true 表示远端记录的持有者为 ownerId
+     */
+    public boolean isLockHeldRemotely(long ownerId) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " 不支持远端查询持有状态");
+    }
+
+    /**
+     * 当前线程本次持有锁的 fencing token，见 {@link #getFencingToken(long)}
+     *
+     * @return fencing token，未持有锁时返回 0
+     */
+    public long getFencingToken() {
+        return getFencingToken(Thread.currentThread().getId());
+    }
+
+    /**
+     * 指定持有者本次持有锁的 fencing token。
+     * <p>
+     * 同一个锁每次被新的持有者获取时 token 严格递增，重入不改变 token。
+     * 写入受保护的资源时带上 token，由存储端拒绝 token 小于已见最大值的写入，
+     * 即使持有者因 GC 停顿等原因在租期过期后才发出写请求，也无法覆盖后来者的数据。
+     * <p>
+     * token 必须与加锁在同一个原子操作内生成，否则两次持有可能拿到顺序颠倒的 token，
+     * 因此只有能把计数器写进加锁操作的实现支持：{@code JedisDistributedLockImpl}（加锁脚本内 INCR）
+     * 与 {@code LocalDistributedLockImpl}（进程内计数）。
+     * Redisson 的加锁脚本不可扩展，RedLock 的各节点之间没有全局顺序，事后再 INCR 得到的 token 与持有顺序无关，
+     * 这两种实现以及公平锁、读写锁、两级锁都不提供 token，调用时抛出 {@link UnsupportedOperationException}，
+     * 需要 fencing 的业务应选用 Jedis 实现
+     *
+     * @param ownerId 加锁时使用的持有者 ID
+     * @return fencing token，未持有锁时返回 0
+     */
+    public long getFencingToken(long ownerId) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " 不支持 fencing token");
+    }
+
+    /**
+     * 以指定持有者尝试在等待时间内获取锁，持有者与调用线程无关
+     *
+     * @param waitTime  最大等待时间
+     * @param leaseTime 锁的持有时间
+     * @param unit      时间单位
+     * @param ownerId   持有者 ID，解锁时需使用同一个 ID
+     * @return true 表示成功获取锁，否则 false
+     * @throws InterruptedException 如果线程在等待期间被中断
+     */
+    public abstract boolean tryLock(long waitTime, long leaseTime, TimeUnit unit, long ownerId) throws InterruptedException;
+
+    /**
+     * 释放指定持有者持有的锁，可以在任意线程调用
+     *
+     * @param ownerId 加锁时使用的持有者 ID
+     */
+    public abstract void unlock(long ownerId);
+
+    /**
+     * 在等待时间内获取锁，返回与线程无关的锁句柄
+     *
+     * @param waitTime  最大等待时间
+     * @param leaseTime 锁的持有时间
+     * @param unit      时间单位
+     * @return 锁句柄，超时未获取到锁时返回 null
+     * @throws InterruptedException          如果线程在等待期间被中断
+     * @throws UnsupportedOperationException 实现的持有者与线程绑定，不支持 ownerId 时
+     */
+    public LockHandle acquire(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+        long ownerId = LockHandle.nextOwnerId();
+        return tryLock(waitTime, leaseTime, unit, ownerId) ? new LockHandle(this, ownerId) : null;
+    }
+
+    /**
+     * 异步获取锁，返回与线程无关的锁句柄
+     *
+     * @param waitTime  最大等待时间
+     * @param leaseTime 锁的持有时间
+     * @param unit      时间单位
+     * @return 完成时为锁句柄，超时未获取到锁时为 null
+     * @throws UnsupportedOperationException 实现的持有者与线程绑定，不支持 ownerId 时
+     */
+    public CompletionStage<LockHandle> acquireAsync(long waitTime, long leaseTime, TimeUnit unit) {
+        long ownerId = LockHandle.nextOwnerId();
+        return tryLockAsync(waitTime, leaseTime, unit, ownerId)
+                .thenApply(acquired -> acquired ? new LockHandle(this, ownerId) : null);
+    }
+
+    /**
+     * 异步加锁，语义与 {@link #lock()} 相同，持有者为当前线程
+     *
+     * @return 完成时为 true 表示成功获取锁，否则 false
+     */
+    public CompletionStage<Boolean> lockAsync() {
+        return lockAsync(Thread.currentThread().getId());
+    }
+
+    /**
+     * 以指定持有者异步加锁，语义与 {@link #lock()} 相同
+     *
+     * @param ownerId 持有者 ID，解锁时需使用同一个 ID
+     * @return 完成时为 true 表示成功获取锁，否则 false
+     */
+    public CompletionStage<Boolean> lockAsync(long ownerId) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " 不支持异步加锁");
+    }
+
+    /**
+     * 异步尝试在指定等待时间内获取锁，持有者为当前线程
+     *
+     * @param waitTime  最大等待时间
+     * @param leaseTime 锁的持有时间
+     * @param unit      时间单位
+     * @return 完成时为 true 表示成功获取锁，超时为 false
+     */
+    public CompletionStage<Boolean> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit) {
+        return tryLockAsync(waitTime, leaseTime, unit, Thread.currentThread().getId());
+    }
+
+    /**
+     * 以指定持有者异步尝试在指定等待时间内获取锁。
+     * 默认在阻塞线程池中调用 {@link #tryLock(long, long, TimeUnit, long)}，等待期间占用该线程池的一个线程
+     *
+     * @param waitTime  最大等待时间
+     * @param leaseTime 锁的持有时间
+     * @param unit      时间单位
+     * @param ownerId   持有者 ID，解锁时需使用同一个 ID
+     * @return 完成时为 true 表示成功获取锁，超时为 false
+     */
+    public CompletionStage<Boolean> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit, long ownerId) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return tryLock(waitTime, leaseTime, unit, ownerId);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        }, BlockingExecutor.INSTANCE);
+    }
+
+    /**
+     * 异步释放当前线程持有的锁
+     *
+     * @return 释放完成
+     */
+    public CompletionStage<Void> unlockAsync() {
+        return unlockAsync(Thread.currentThread().getId());
+    }
+
+    /**
+     * 异步释放指定持有者持有的锁。默认在调用线程上执行 {@link #unlock(long)}，解锁只需一次往返，不切换线程
+     *
+     * @param ownerId 加锁时使用的持有者 ID
+     * @return 释放完成
+     */
+    public CompletionStage<Void> unlockAsync(long ownerId) {
+        try {
+            unlock(ownerId);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 同步等待异步加锁的结果，供以异步方法为主的实现实现 {@link #tryLock(long, long, TimeUnit, long)}。
+     * 线程被中断时如果锁随后获取成功会立即释放；加锁失败时抛出原始异常，运行时异常不再包装
+     *
+     * @param acquisition {@link #tryLockAsync(long, long, TimeUnit, long)} 的返回值
+     * @param ownerId     加锁使用的持有者 ID
+     * @return true 表示成功获取锁，否则 false
+     * @throws InterruptedException 如果线程在等待期间被中断
+     */
+    protected final boolean awaitLock(CompletionStage<Boolean> acquisition, long ownerId) throws InterruptedException {
+        CompletableFuture<Boolean> future = acquisition.toCompletableFuture();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.thenAccept(acquired -> {
+                if (acquired) {
+                    unlockAsync(ownerId);
+                }
+            });
+            throw e;
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    /**
+     * 同步等待异步解锁完成，供以异步方法为主的实现实现 {@link #unlock(long)}，失败时抛出原始异常
+     *
+     * @param release {@link #unlockAsync(long)} 的返回值
+     */
+    protected final void awaitUnlock(CompletionStage<Void> release) {
+        try {
+            release.toCompletableFuture().join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new CompletionException(cause);
+    }
+
+    /**
+     * 只实现了同步 ownerId 方法的锁执行异步等待的线程池，第一次使用时创建，线程为守护线程、空闲后回收
+     */
+    private static final class BlockingExecutor {
+
+        private static final ExecutorService INSTANCE =
+                Executors.newCachedThreadPool(new DaemonThreadFactory("distributed-lock-blocking"));
+    }
+
 }
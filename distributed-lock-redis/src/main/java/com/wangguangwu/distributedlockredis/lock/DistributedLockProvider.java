@@ -0,0 +1,20 @@
+package com.wangguangwu.distributedlockredis.lock;
+
+/**
+ * 按 key 提供锁实例，各锁工厂实现此接口。
+ * {@link com.wangguangwu.distributedlockredis.lock.annotation.DistributedLock} 按 bean 名称选择 provider，
+ * 切换锁的实现只需修改配置，不需要修改业务代码。
+ *
+ * @author wangguangwu
+ */
+public interface DistributedLockProvider {
+
+    /**
+     * 获取指定 key 的锁实例，同一 key 应返回同一个实例
+     *
+     * @param lockKey 锁的标识
+     * @return 锁实例
+     */
+    AbstractDistributedLock getLock(String lockKey);
+
+}
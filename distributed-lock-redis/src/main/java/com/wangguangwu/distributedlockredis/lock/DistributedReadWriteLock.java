@@ -0,0 +1,28 @@
+package com.wangguangwu.distributedlockredis.lock;
+
+/**
+ * 分布式读写锁，由一把读锁和一把写锁组成。
+ * <p>
+ * 读锁是共享的，多个持有者可以同时持有；写锁是独占的，持有期间其他持有者既不能读也不能写。
+ * 两把锁都是 {@link AbstractDistributedLock}，加锁、解锁、ownerId 与 {@link LockHandle} 的用法与普通锁相同。
+ * 同一持有者持有写锁时可以再获取读锁（降级），持有读锁时不能获取写锁（升级会与其他读者互相等待）。
+ *
+ * @author wangguangwu
+ */
+public interface DistributedReadWriteLock {
+
+    /**
+     * 共享的读锁
+     *
+     * @return 读锁
+     */
+    AbstractDistributedLock readLock();
+
+    /**
+     * 独占的写锁
+     *
+     * @return 写锁
+     */
+    AbstractDistributedLock writeLock();
+
+}
@@ -0,0 +1,49 @@
+package com.wangguangwu.distributedlockredis.lock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分布式信号量，最多允许固定数量的许可同时被持有。
+ * <p>
+ * 每次获取都会得到一个许可 ID，归还时凭许可 ID 归还，与获取、归还所在的线程无关，可以跨线程传递。
+ * 每个许可 ID 都有自己的租期，持有者崩溃后只有它的许可到期归还，其余持有者不受影响。
+ *
+ * @author wangguangwu
+ */
+public interface DistributedSemaphore {
+
+    /**
+     * 在等待时间内获取指定数量的许可
+     *
+     * @param permits   许可数，不能超过许可总数
+     * @param waitTime  最长等待时间
+     * @param leaseTime 租期，小于等于 0 时由看门狗续期，直到归还
+     * @param unit      时间单位
+     * @return 许可 ID，超时未获取到时返回 null
+     * @throws InterruptedException 等待期间线程被中断
+     */
+    String tryAcquire(int permits, long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * 归还许可 ID 对应的全部许可，可以在任意线程调用
+     *
+     * @param permitId 获取许可时返回的许可 ID
+     * @return true 表示归还成功，false 表示许可已到期或已归还
+     */
+    boolean release(String permitId);
+
+    /**
+     * 当前可用的许可数，租期已到期的许可计为可用
+     *
+     * @return 可用的许可数
+     */
+    int availablePermits();
+
+    /**
+     * 许可总数
+     *
+     * @return 许可总数
+     */
+    int getMaxPermits();
+
+}
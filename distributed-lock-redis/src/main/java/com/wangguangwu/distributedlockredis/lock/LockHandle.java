@@ -0,0 +1,107 @@
+package com.wangguangwu.distributedlockredis.lock;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 已获取的锁的句柄，持有者由句柄自身的 ownerId 标识，与加锁、解锁所在的线程无关。
+ * <p>
+ * 句柄可以跨线程传递：在一个虚拟线程或线程池任务中加锁，在另一个线程或异步回调中解锁，
+ * 仍然被视为同一持有者。每个句柄只能解锁一次，重复解锁会被忽略。
+ * 配合 try-with-resources 使用时，{@link #close()} 等同于 {@link #unlock()}。
+ *
+ * @author wangguangwu
+ */
+public final class LockHandle implements AutoCloseable {
+
+    /**
+     * 句柄 ownerId 的起始值，远大于线程 ID，避免与按线程 ID 标识的持有者冲突
+     */
+    private static final long OWNER_ID_BASE = 1L << 62;
+
+    private static final AtomicLong OWNER_ID_SEQUENCE = new AtomicLong();
+
+    private final AbstractDistributedLock lock;
+
+    private final long ownerId;
+
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    LockHandle(AbstractDistributedLock lock, long ownerId) {
+        this.lock = lock;
+        this.ownerId = ownerId;
+    }
+
+    /**
+     * 分配一个新的 ownerId，在当前 JVM 内唯一
+     *
+     * @return ownerId
+     */
+    static long nextOwnerId() {
+        return OWNER_ID_BASE + OWNER_ID_SEQUENCE.incrementAndGet();
+    }
+
+    /**
+     * 持有者 ID，可以传给 {@link AbstractDistributedLock} 中带 ownerId 的方法
+     *
+     * @return 持有者 ID
+     */
+    public long getOwnerId() {
+        return ownerId;
+    }
+
+    /**
+     * 锁的标识
+     *
+     * @return 锁的标识
+     */
+    public String getLockKey() {
+        return lock.lockKey;
+    }
+
+    /**
+     * 本次持有锁的 fencing token，写入受保护的资源时一并提交，见 {@link AbstractDistributedLock#getFencingToken(long)}
+     *
+     * @return fencing token，解锁后返回 0
+     */
+    public long getFencingToken() {
+        return lock.getFencingToken(ownerId);
+    }
+
+    /**
+     * 句柄是否已经解锁
+     *
+     * @return true 表示已解锁
+     */
+    public boolean isReleased() {
+        return released.get();
+    }
+
+    /**
+     * 释放锁，可以在任意线程调用
+     */
+    public void unlock() {
+        if (released.compareAndSet(false, true)) {
+            lock.unlock(ownerId);
+        }
+    }
+
+    /**
+     * 异步释放锁，可以在任意线程调用
+     *
+     * @return 释放完成
+     */
+    public CompletionStage<Void> unlockAsync() {
+        if (released.compareAndSet(false, true)) {
+            return lock.unlockAsync(ownerId);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void close() {
+        unlock();
+    }
+}
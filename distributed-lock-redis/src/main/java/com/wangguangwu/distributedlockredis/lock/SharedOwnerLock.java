@@ -0,0 +1,31 @@
+package com.wangguangwu.distributedlockredis.lock;
+
+/**
+ * 以锁实例（而不是线程）为持有者的远程加锁操作。
+ * <p>
+ * 同一个锁实例上，由任意线程加锁、由任意其他线程解锁都视为同一个持有者，
+ * 供本地队列在线程之间直接移交远程租约使用，见 {@link com.wangguangwu.distributedlockredis.lock.impl.TwoTierDistributedLockImpl}。
+ * 调用方负责保证同一时刻最多只有一次成功的 acquireShared 未被 releaseShared；
+ * 唯一的例外是本地判断租期已到期后直接再次加锁，此时 Redis 中可能仍残留上一次的持有（本地到期时间从发出请求前算起，早于 Redis），
+ * 实例持有者从不重入，实现必须重置这次残留的持有，而不是累加重入次数，否则一次 releaseShared 无法删除锁，其他进程只能等到 TTL 到期。
+ *
+ * @author wangguangwu
+ */
+public interface SharedOwnerLock {
+
+    /**
+     * 以实例持有者身份加锁
+     *
+     * @param waitMillis  最大等待时间（毫秒）
+     * @param leaseMillis 锁的租期（毫秒），小于等于 0 时启用看门狗自动续期
+     * @return true 表示成功获取锁，否则 false
+     * @throws InterruptedException 如果线程在等待期间被中断
+     */
+    boolean tryAcquireShared(long waitMillis, long leaseMillis) throws InterruptedException;
+
+    /**
+     * 以实例持有者身份释放锁，可以由任意线程调用
+     */
+    void releaseShared();
+
+}
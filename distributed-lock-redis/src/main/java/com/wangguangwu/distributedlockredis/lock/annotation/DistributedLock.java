@@ -0,0 +1,53 @@
+package com.wangguangwu.distributedlockredis.lock.annotation;
+
+import com.wangguangwu.distributedlockredis.constants.LockConstants;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在方法执行期间持有分布式锁，由 {@link com.wangguangwu.distributedlockredis.lock.aspect.DistributedLockAspect} 加锁，
+ * 方法返回或抛出异常后都会解锁：
+ * <pre>
+ * &#64;DistributedLock(key = "'order:' + #order.id", waitTime = 3, leaseTime = 10)
+ * public void pay(Order order) { ... }
+ * </pre>
+ * 持有者为调用线程，同一线程内嵌套调用相同 key 的方法时重入。在等待时间内未获取到锁时抛出 {@link LockNotAcquiredException}，方法不会执行。
+ *
+ * @author wangguangwu
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface DistributedLock {
+
+    /**
+     * 锁 key 的 SpEL 表达式，方法参数以 #参数名 引用（需要以 -parameters 编译），也可以用 #p0、#a0 按位置引用；
+     * 常量部分需要加单引号，如 {@code 'order:' + #order.id}。为空时以 类名.方法名 作为 key。
+     * 表达式只能读取参数的属性、调用参数的实例方法，不支持 T(...)、构造器与 bean 引用
+     */
+    String key() default "";
+
+    /**
+     * 最大等待时间，0 表示只尝试一次
+     */
+    long waitTime() default LockConstants.DEFAULT_WAIT_TIME_SEC;
+
+    /**
+     * 锁的租期，小于等于 0 时启用看门狗，一直持有到方法结束（实现是否支持看门狗见各锁实现）
+     */
+    long leaseTime() default LockConstants.DEFAULT_LEASE_TIME_SEC;
+
+    TimeUnit timeUnit() default TimeUnit.SECONDS;
+
+    /**
+     * 锁工厂的 bean 名称（如 jedisLockFactory、redLockFactory、localLockFactory），
+     * 为空时使用 distributed-lock.default-backend
+     */
+    String backend() default "";
+
+}
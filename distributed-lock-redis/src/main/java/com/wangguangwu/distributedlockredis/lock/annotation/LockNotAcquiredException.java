@@ -0,0 +1,25 @@
+package com.wangguangwu.distributedlockredis.lock.annotation;
+
+/**
+ * {@link DistributedLock} 标注的方法在等待时间内未获取到锁，方法未执行
+ *
+ * @author wangguangwu
+ */
+public class LockNotAcquiredException extends IllegalStateException {
+
+    private final String lockKey;
+
+    public LockNotAcquiredException(String lockKey) {
+        super("未获取到锁: " + lockKey);
+        this.lockKey = lockKey;
+    }
+
+    public LockNotAcquiredException(String lockKey, Throwable cause) {
+        super("获取锁被中断: " + lockKey, cause);
+        this.lockKey = lockKey;
+    }
+
+    public String getLockKey() {
+        return lockKey;
+    }
+}
@@ -0,0 +1,100 @@
+package com.wangguangwu.distributedlockredis.lock.aspect;
+
+import com.wangguangwu.distributedlockredis.lock.AbstractDistributedLock;
+import com.wangguangwu.distributedlockredis.lock.DistributedLockProvider;
+import com.wangguangwu.distributedlockredis.lock.annotation.DistributedLock;
+import com.wangguangwu.distributedlockredis.lock.annotation.LockNotAcquiredException;
+import com.wangguangwu.distributedlockredis.properties.DistributedLockProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 为 {@link DistributedLock} 标注的方法加锁：求出 key，从注解指定的锁工厂获取锁，加锁成功后执行方法，finally 中解锁。
+ * <p>
+ * 每个方法第一次调用时解析 key 表达式（见 {@link LockKeyExpression}）、查找锁工厂 bean，结果按方法缓存，
+ * 之后的调用只求值与加锁，不再解析表达式、不再查找 bean。
+ * 解锁失败时只记录日志，不覆盖方法的返回值或异常，锁在租期到期后自动释放。
+ *
+ * @author wangguangwu
+ */
+@Slf4j
+@Aspect
+@Component
+public class DistributedLockAspect {
+
+    private final ConcurrentHashMap<Method, LockDefinition> definitions = new ConcurrentHashMap<>();
+
+    private final BeanFactory beanFactory;
+
+    private final String defaultBackend;
+
+    public DistributedLockAspect(BeanFactory beanFactory, DistributedLockProperties distributedLockProperties) {
+        this.beanFactory = beanFactory;
+        this.defaultBackend = distributedLockProperties.getDefaultBackend();
+    }
+
+    @Around("@annotation(distributedLock)")
+    public Object around(ProceedingJoinPoint joinPoint, DistributedLock distributedLock) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        LockDefinition definition = definitions.get(method);
+        if (definition == null) {
+            definition = definitions.computeIfAbsent(method, m -> define(m, distributedLock));
+        }
+        String lockKey = definition.keyExpression.evaluate(joinPoint.getArgs());
+        AbstractDistributedLock lock = definition.provider.getLock(lockKey);
+        boolean acquired;
+        try {
+            acquired = lock.tryLock(distributedLock.waitTime(), distributedLock.leaseTime(), distributedLock.timeUnit());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LockNotAcquiredException(lockKey, e);
+        }
+        if (!acquired) {
+            throw new LockNotAcquiredException(lockKey);
+        }
+        try {
+            return joinPoint.proceed();
+        } finally {
+            try {
+                lock.unlock();
+            } catch (RuntimeException e) {
+                log.error("方法执行后解锁失败: {}, method={}", lockKey, method.getName(), e);
+            }
+        }
+    }
+
+    private LockDefinition define(Method method, DistributedLock distributedLock) {
+        String backend = distributedLock.backend().isEmpty() ? defaultBackend : distributedLock.backend();
+        DistributedLockProvider provider;
+        try {
+            provider = beanFactory.getBean(backend, DistributedLockProvider.class);
+        } catch (BeansException e) {
+            throw new IllegalStateException("未找到锁工厂 " + backend + "，方法 " + method, e);
+        }
+        return new LockDefinition(LockKeyExpression.parse(method, distributedLock.key()), provider);
+    }
+
+    /**
+     * 一个方法解析后的 key 表达式与锁工厂
+     */
+    private static final class LockDefinition {
+
+        private final LockKeyExpression keyExpression;
+
+        private final DistributedLockProvider provider;
+
+        private LockDefinition(LockKeyExpression keyExpression, DistributedLockProvider provider) {
+            this.keyExpression = keyExpression;
+            this.provider = provider;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.wangguangwu.distributedlockredis.lock.aspect;
+
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.BeanResolver;
+import org.springframework.expression.ConstructorResolver;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.MethodResolver;
+import org.springframework.expression.OperatorOverloader;
+import org.springframework.expression.PropertyAccessor;
+import org.springframework.expression.TypeComparator;
+import org.springframework.expression.TypeConverter;
+import org.springframework.expression.TypeLocator;
+import org.springframework.expression.TypedValue;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.SimpleEvaluationContext;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一个方法上的锁 key 表达式，在第一次调用时解析一次，之后每次调用只求值。
+ * <p>
+ * 表达式以 MIXED 模式编译：前若干次解释执行，之后编译为字节码，属性访问不再经过反射。
+ * 参数按名称与 p0、a0 别名预先建立下标表，求值时变量直接从参数数组中读取，不逐个 setVariable。
+ * key 为空时使用 类名.方法名，不求值。
+ * <p>
+ * 求值上下文只开放读取参数的属性与调用参数的实例方法（{@link SimpleEvaluationContext} 的只读数据绑定），
+ * 不支持类型引用 T(...)、构造器、bean 引用与赋值。只读配置全部方法共用一份，每次求值只创建一个持有参数数组的小对象。
+ *
+ * @author wangguangwu
+ */
+public final class LockKeyExpression {
+
+    private static final SpelExpressionParser PARSER = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, LockKeyExpression.class.getClassLoader()));
+
+    private static final ParameterNameDiscoverer PARAMETER_NAMES = new DefaultParameterNameDiscoverer();
+
+    /**
+     * 全部表达式共用的只读配置：属性访问、实例方法与类型转换，不保存变量，可以在多个线程中共用
+     */
+    private static final EvaluationContext READ_ONLY = SimpleEvaluationContext.forReadOnlyDataBinding()
+            .withInstanceMethods()
+            .build();
+
+    private final String source;
+
+    /**
+     * key 为空时的固定 key，此时 expression 为 null
+     */
+    private final String constant;
+
+    private final Expression expression;
+
+    /**
+     * 变量名到参数下标
+     */
+    private final Map<String, Integer> variables;
+
+    private LockKeyExpression(String source, String constant, Expression expression, Map<String, Integer> variables) {
+        this.source = source;
+        this.constant = constant;
+        this.expression = expression;
+        this.variables = variables;
+    }
+
+    /**
+     * 解析方法上的 key 表达式
+     *
+     * @param method 被标注的方法
+     * @param key    SpEL 表达式，为空时使用 类名.方法名
+     * @return 可以在多个线程中共用的表达式
+     */
+    public static LockKeyExpression parse(Method method, String key) {
+        if (key == null || key.isEmpty()) {
+            return new LockKeyExpression(key, method.getDeclaringClass().getName() + "." + method.getName(), null, Map.of());
+        }
+        Map<String, Integer> variables = new HashMap<>();
+        String[] names = PARAMETER_NAMES.getParameterNames(method);
+        for (int i = 0; i < method.getParameterCount(); i++) {
+            variables.put("p" + i, i);
+            variables.put("a" + i, i);
+            if (names != null) {
+                variables.put(names[i], i);
+            }
+        }
+        return new LockKeyExpression(key, null, PARSER.parseExpression(key), Map.copyOf(variables));
+    }
+
+    /**
+     * 以本次调用的参数求值
+     *
+     * @param args 方法参数
+     * @return 锁 key
+     */
+    public String evaluate(Object[] args) {
+        if (expression == null) {
+            return constant;
+        }
+        Object value = expression.getValue(new ArgumentsContext(variables, args));
+        if (value == null) {
+            throw new IllegalArgumentException("锁 key 表达式的结果为 null: " + source);
+        }
+        return value.toString();
+    }
+
+    @Override
+    public String toString() {
+        return expression == null ? constant : source;
+    }
+
+    /**
+     * 变量从参数数组中按下标读取的求值上下文，每次调用创建一个，其余配置取自 {@link #READ_ONLY}
+     */
+    private static final class ArgumentsContext implements EvaluationContext {
+
+        private final Map<String, Integer> variables;
+
+        private final Object[] args;
+
+        private ArgumentsContext(Map<String, Integer> variables, Object[] args) {
+            this.variables = variables;
+            this.args = args;
+        }
+
+        @Override
+        public Object lookupVariable(String name) {
+            Integer index = variables.get(name);
+            return index != null ? args[index] : null;
+        }
+
+        @Override
+        public void setVariable(String name, Object value) {
+            throw new UnsupportedOperationException("锁 key 表达式不支持给变量赋值: #" + name);
+        }
+
+        @Override
+        public TypedValue getRootObject() {
+            return TypedValue.NULL;
+        }
+
+        @Override
+        public List<PropertyAccessor> getPropertyAccessors() {
+            return READ_ONLY.getPropertyAccessors();
+        }
+
+        @Override
+        public List<ConstructorResolver> getConstructorResolvers() {
+            return READ_ONLY.getConstructorResolvers();
+        }
+
+        @Override
+        public List<MethodResolver> getMethodResolvers() {
+            return READ_ONLY.getMethodResolvers();
+        }
+
+        @Override
+        public BeanResolver getBeanResolver() {
+            return READ_ONLY.getBeanResolver();
+        }
+
+        @Override
+        public TypeLocator getTypeLocator() {
+            return READ_ONLY.getTypeLocator();
+        }
+
+        @Override
+        public TypeConverter getTypeConverter() {
+            return READ_ONLY.getTypeConverter();
+        }
+
+        @Override
+        public TypeComparator getTypeComparator() {
+            return READ_ONLY.getTypeComparator();
+        }
+
+        @Override
+        public OperatorOverloader getOperatorOverloader() {
+            return READ_ONLY.getOperatorOverloader();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.wangguangwu.distributedlockredis.lock.factory;
+
+import com.wangguangwu.distributedlockredis.lock.DistributedLockProvider;
+import com.wangguangwu.distributedlockredis.lock.impl.JedisDistributedLockImpl;
+import com.wangguangwu.distributedlockredis.lock.impl.JedisDistributedSemaphoreImpl;
+import com.wangguangwu.distributedlockredis.lock.impl.JedisFairLockImpl;
+import com.wangguangwu.distributedlockredis.lock.impl.JedisReadWriteLockImpl;
+import com.wangguangwu.distributedlockredis.lock.impl.TwoTierDistributedLockImpl;
+import com.wangguangwu.distributedlockredis.lock.support.BoundedLockCache;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockWatchdog;
+import com.wangguangwu.distributedlockredis.properties.JedisLockProperties;
+import com.wangguangwu.distributedlockredis.script.JedisScriptExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按 key 提供 Jedis 分布式锁实例的工厂。
+ * <p>
+ * 不同资源使用不同的 Redis key 加锁，互不阻塞，吞吐量随资源数量线性扩展，
+ * 而不是所有调用方都串行在同一个 "jedisLock" 上。
+ * <p>
+ * 锁实例在本地按 key 缓存，数量超过 {@link JedisLockProperties#getMaxCachedLocks()} 时
+ * 淘汰当前没有线程持有的实例，被持有的实例不会被淘汰。
+ * 调用方应使用同一个实例完成加锁和解锁，不要在两次调用之间重新从工厂获取。
+ * <p>
+ * 同一 key 被本进程大量线程争用时，可以使用 {@link #getTwoTierLock(String)}，
+ * 线程先在本地排队，远程租约在本地线程之间直接交接，见 {@link TwoTierDistributedLockImpl}。
+ * 以读为主的资源可以使用 {@link #getReadWriteLock(String)}，读者之间共享，写者独占。
+ * 需要限制并发数而不是完全互斥时，可以使用 {@link #getSemaphore(String, int)}。
+ * 大量等待者争用同一 key 且要求先来先得时，可以使用 {@link #getFairLock(String)}，解锁只唤醒队首的等待者。
+ *
+ * @author wangguangwu
+ */
+@Component
+public class JedisLockFactory implements DistributedLockProvider {
+
+    private final BoundedLockCache<JedisDistributedLockImpl> locks;
+
+    private final BoundedLockCache<TwoTierDistributedLockImpl> twoTierLocks;
+
+    private final BoundedLockCache<JedisReadWriteLockImpl> readWriteLocks;
+
+    private final BoundedLockCache<JedisDistributedSemaphoreImpl> semaphores;
+
+    private final BoundedLockCache<JedisFairLockImpl> fairLocks;
+
+    private final JedisScriptExecutor scriptExecutor;
+
+    private final JedisLockReleaseSubscriber releaseSubscriber;
+
+    private final JedisLockWatchdog watchdog;
+
+    private final JedisLockProperties jedisLockProperties;
+
+    public JedisLockFactory(JedisScriptExecutor scriptExecutor,
+                            JedisLockReleaseSubscriber releaseSubscriber,
+                            JedisLockWatchdog watchdog,
+                            JedisLockProperties jedisLockProperties) {
+        this.scriptExecutor = scriptExecutor;
+        this.releaseSubscriber = releaseSubscriber;
+        this.watchdog = watchdog;
+        this.jedisLockProperties = jedisLockProperties;
+        int maxCachedLocks = jedisLockProperties.getMaxCachedLocks();
+        this.locks = new BoundedLockCache<>(maxCachedLocks, lock -> !lock.isHeldLocally());
+        this.twoTierLocks = new BoundedLockCache<>(maxCachedLocks, lock -> !lock.isHeldLocally());
+        this.readWriteLocks = new BoundedLockCache<>(maxCachedLocks, lock -> !lock.isHeldLocally());
+        this.semaphores = new BoundedLockCache<>(maxCachedLocks, semaphore -> !semaphore.isHeldLocally());
+        this.fairLocks = new BoundedLockCache<>(maxCachedLocks, lock -> !lock.isHeldLocally());
+    }
+
+    /**
+     * 获取指定 key 的锁实例
+     *
+     * @param lockKey 锁的标识
+     * @return 锁实例
+     */
+    @Override
+    public JedisDistributedLockImpl getLock(String lockKey) {
+        return locks.get(lockKey, key -> new JedisDistributedLockImpl(key, scriptExecutor, releaseSubscriber, watchdog, jedisLockProperties));
+    }
+
+    /**
+     * 获取指定 key 的两级锁实例，每个实例独占一个 Jedis 锁实例作为远程锁
+     *
+     * @param lockKey 锁的标识
+     * @return 两级锁实例
+     */
+    public TwoTierDistributedLockImpl getTwoTierLock(String lockKey) {
+        return twoTierLocks.get(lockKey, key -> new TwoTierDistributedLockImpl(key,
+                new JedisDistributedLockImpl(key, scriptExecutor, releaseSubscriber, watchdog, jedisLockProperties),
+                jedisLockProperties.getLocalHandoffBudget()));
+    }
+
+    /**
+     * 获取指定 key 的读写锁实例，是否写者优先由 jedis.lock.writer-preference 决定
+     *
+     * @param lockKey 锁的标识，不要与普通锁使用同一个 key
+     * @return 读写锁实例
+     */
+    public JedisReadWriteLockImpl getReadWriteLock(String lockKey) {
+        return readWriteLocks.get(lockKey, key -> new JedisReadWriteLockImpl(key, scriptExecutor,
+                releaseSubscriber, watchdog, jedisLockProperties.isWriterPreference()));
+    }
+
+    /**
+     * 获取指定 key 的公平锁实例，等待者在队列中的超时时间由 jedis.lock.fair-waiter-timeout-millis 决定
+     *
+     * @param lockKey 锁的标识，不要与非公平锁使用同一个 key
+     * @return 公平锁实例
+     */
+    public JedisFairLockImpl getFairLock(String lockKey) {
+        return fairLocks.get(lockKey, key -> new JedisFairLockImpl(key, scriptExecutor, releaseSubscriber,
+                watchdog, jedisLockProperties.getFairWaiterTimeoutMillis()));
+    }
+
+    /**
+     * 获取指定 key 的信号量实例，同一 key 的许可总数必须一致
+     *
+     * @param semaphoreKey 信号量的标识，不要与锁使用同一个 key
+     * @param maxPermits   许可总数
+     * @return 信号量实例
+     */
+    public JedisDistributedSemaphoreImpl getSemaphore(String semaphoreKey, int maxPermits) {
+        JedisDistributedSemaphoreImpl semaphore = semaphores.get(semaphoreKey, key -> new JedisDistributedSemaphoreImpl(key,
+                maxPermits, scriptExecutor, releaseSubscriber, watchdog));
+        if (semaphore.getMaxPermits() != maxPermits) {
+            throw new IllegalArgumentException("信号量 " + semaphoreKey + " 的许可总数为 " + semaphore.getMaxPermits()
+                    + "，与本次指定的 " + maxPermits + " 不一致");
+        }
+        return semaphore;
+    }
+
+    /**
+     * 当前缓存的锁实例数量
+     *
+     * @return 锁实例数量
+     */
+    public int size() {
+        return locks.size() + twoTierLocks.size() + readWriteLocks.size() + semaphores.size() + fairLocks.size();
+    }
+}
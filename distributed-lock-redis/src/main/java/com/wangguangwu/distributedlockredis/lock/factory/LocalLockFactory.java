@@ -0,0 +1,50 @@
+package com.wangguangwu.distributedlockredis.lock.factory;
+
+import com.wangguangwu.distributedlockredis.lock.DistributedLockProvider;
+import com.wangguangwu.distributedlockredis.lock.impl.LocalDistributedLockImpl;
+import com.wangguangwu.distributedlockredis.lock.support.BoundedLockCache;
+import com.wangguangwu.distributedlockredis.lock.support.LocalLeaseTimer;
+import com.wangguangwu.distributedlockredis.properties.LocalLockProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按 key 提供进程内锁实例的工厂，所有实例共用一个 {@link LocalLeaseTimer}。
+ * <p>
+ * 锁实例在本地按 key 缓存，数量超过 {@link LocalLockProperties#getMaxCachedLocks()} 时淘汰当前没有持有者、没有等待者的实例。
+ * 状态保存在实例中，淘汰时通过 {@link LocalDistributedLockImpl#retire()} 把实例原子地标记为废弃，
+ * 调用方此前取出的实例此后把操作转交给本工厂中该 key 的新实例，同一 key 不会同时存在两个各自加锁的实例。
+ *
+ * @author wangguangwu
+ */
+@Component
+public class LocalLockFactory implements DistributedLockProvider {
+
+    private final BoundedLockCache<LocalDistributedLockImpl> locks;
+
+    private final LocalLeaseTimer leaseTimer;
+
+    public LocalLockFactory(LocalLeaseTimer leaseTimer, LocalLockProperties localLockProperties) {
+        this.leaseTimer = leaseTimer;
+        this.locks = new BoundedLockCache<>(localLockProperties.getMaxCachedLocks(), LocalDistributedLockImpl::retire);
+    }
+
+    /**
+     * 获取指定 key 的锁实例
+     *
+     * @param lockKey 锁的标识
+     * @return 锁实例
+     */
+    @Override
+    public LocalDistributedLockImpl getLock(String lockKey) {
+        return locks.get(lockKey, key -> new LocalDistributedLockImpl(key, leaseTimer, this::getLock));
+    }
+
+    /**
+     * 当前缓存的锁实例数量
+     *
+     * @return 锁实例数量
+     */
+    public int size() {
+        return locks.size();
+    }
+}
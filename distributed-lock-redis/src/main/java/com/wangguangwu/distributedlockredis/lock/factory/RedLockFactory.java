@@ -0,0 +1,66 @@
+package com.wangguangwu.distributedlockredis.lock.factory;
+
+import com.wangguangwu.distributedlockredis.lock.DistributedLockProvider;
+import com.wangguangwu.distributedlockredis.lock.impl.RedLockDistributedLockImpl;
+import com.wangguangwu.distributedlockredis.lock.support.BoundedLockCache;
+import com.wangguangwu.distributedlockredis.properties.RedissonRedLockProperties;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 按 key 提供 RedLock 实例的工厂，所有实例共用 redisson-red-lock.addresses 配置的各节点客户端。
+ * <p>
+ * 不同资源使用不同的 key 加锁，互不阻塞。锁实例在本地按 key 缓存，
+ * 数量超过 {@link RedissonRedLockProperties#getMaxCachedLocks()} 时淘汰当前没有持有者的实例。
+ * 调用方应使用同一个实例完成加锁和解锁，不要在两次调用之间重新从工厂获取。
+ *
+ * @author wangguangwu
+ */
+@Component
+public class RedLockFactory implements DistributedLockProvider {
+
+    private final BoundedLockCache<RedLockDistributedLockImpl> locks;
+
+    private final List<RedissonClient> clients;
+
+    private final long retryDelayMillis;
+
+    public RedLockFactory(@Qualifier("redissonClientsForRedLock") List<RedissonClient> clients,
+                          RedissonRedLockProperties redissonRedLockProperties) {
+        this.clients = clients;
+        this.retryDelayMillis = redissonRedLockProperties.getRetryDelayMillis();
+        this.locks = new BoundedLockCache<>(redissonRedLockProperties.getMaxCachedLocks(), lock -> !lock.isHeldLocally());
+    }
+
+    /**
+     * 获取指定 key 的 RedLock 实例
+     *
+     * @param lockKey 锁的标识
+     * @return 锁实例
+     */
+    @Override
+    public RedLockDistributedLockImpl getLock(String lockKey) {
+        return locks.get(lockKey, key -> new RedLockDistributedLockImpl(key, clients, retryDelayMillis));
+    }
+
+    /**
+     * 节点数量
+     *
+     * @return 参与 RedLock 的 Redis 节点数
+     */
+    public int getNodeCount() {
+        return clients.size();
+    }
+
+    /**
+     * 当前缓存的锁实例数量
+     *
+     * @return 锁实例数量
+     */
+    public int size() {
+        return locks.size();
+    }
+}
@@ -0,0 +1,209 @@
+package com.wangguangwu.distributedlockredis.lock.factory;
+
+import com.wangguangwu.distributedlockredis.lock.DistributedLockProvider;
+import com.wangguangwu.distributedlockredis.lock.impl.JedisDistributedLockImpl;
+import com.wangguangwu.distributedlockredis.lock.impl.JedisDistributedSemaphoreImpl;
+import com.wangguangwu.distributedlockredis.lock.impl.JedisFairLockImpl;
+import com.wangguangwu.distributedlockredis.lock.impl.JedisReadWriteLockImpl;
+import com.wangguangwu.distributedlockredis.lock.impl.TwoTierDistributedLockImpl;
+import com.wangguangwu.distributedlockredis.lock.support.ConsistentHashRing;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockWatchdog;
+import com.wangguangwu.distributedlockredis.properties.JedisLockProperties;
+import com.wangguangwu.distributedlockredis.script.JedisScriptExecutor;
+import com.wangguangwu.distributedlockredis.transport.RespConnection;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Protocol;
+
+import java.util.List;
+
+/**
+ * 把锁 key 按一致性哈希分布到多个独立 Redis 节点上的 Jedis 锁工厂。
+ * <p>
+ * 单个 Redis 只用一个核心执行命令，所有锁都打到同一个节点时吞吐量受限于这一个核心。
+ * 本工厂为每个节点创建一套独立的连接池、脚本执行器、释放订阅器与看门狗，并在其上创建一个 {@link JedisLockFactory}，
+ * 按 {@link ConsistentHashRing} 把每个 key 路由到固定的节点，各类锁的语义与单节点时完全相同。
+ * 同一 key 的锁、等待者的释放频道与看门狗续期都在同一个节点上完成，节点之间没有任何协调。
+ * <p>
+ * 可以在运行时通过 {@link #addNode(String)} / {@link #removeNode(String)} 增减节点，只有约 1/N 的 key 改变归属。
+ * 改变归属的 key 此前在旧节点上的锁仍然有效，新的加锁请求会路由到新节点，两者之间不互斥，
+ * 因此应在低峰期变更节点，或等待迁移 key 上已有的锁释放（最长为一个租期）后再放开流量。
+ * 被移除节点上的资源立即关闭，该节点上尚未释放的锁只能等待租期到期。
+ * <p>
+ * 调用方应使用同一个实例完成加锁和解锁，不要在两次调用之间重新从工厂获取。
+ *
+ * @author wangguangwu
+ */
+public class ShardedJedisLockFactory implements DistributedLockProvider {
+
+    private final ConsistentHashRing<Shard> ring;
+
+    private final JedisLockProperties jedisLockProperties;
+
+    public ShardedJedisLockFactory(List<String> nodes, int virtualNodes, JedisLockProperties jedisLockProperties) {
+        this.ring = new ConsistentHashRing<>(virtualNodes);
+        this.jedisLockProperties = jedisLockProperties;
+        for (String node : nodes) {
+            addNode(node);
+        }
+    }
+
+    /**
+     * 获取 key 所属节点上的锁实例，见 {@link JedisLockFactory#getLock(String)}
+     *
+     * @param lockKey 锁的标识
+     * @return 锁实例
+     */
+    @Override
+    public JedisDistributedLockImpl getLock(String lockKey) {
+        return ring.get(lockKey).factory.getLock(lockKey);
+    }
+
+    /**
+     * 获取 key 所属节点上的两级锁实例，见 {@link JedisLockFactory#getTwoTierLock(String)}
+     *
+     * @param lockKey 锁的标识
+     * @return 两级锁实例
+     */
+    public TwoTierDistributedLockImpl getTwoTierLock(String lockKey) {
+        return ring.get(lockKey).factory.getTwoTierLock(lockKey);
+    }
+
+    /**
+     * 获取 key 所属节点上的读写锁实例，见 {@link JedisLockFactory#getReadWriteLock(String)}
+     *
+     * @param lockKey 锁的标识
+     * @return 读写锁实例
+     */
+    public JedisReadWriteLockImpl getReadWriteLock(String lockKey) {
+        return ring.get(lockKey).factory.getReadWriteLock(lockKey);
+    }
+
+    /**
+     * 获取 key 所属节点上的公平锁实例，见 {@link JedisLockFactory#getFairLock(String)}
+     *
+     * @param lockKey 锁的标识
+     * @return 公平锁实例
+     */
+    public JedisFairLockImpl getFairLock(String lockKey) {
+        return ring.get(lockKey).factory.getFairLock(lockKey);
+    }
+
+    /**
+     * 获取 key 所属节点上的信号量实例，见 {@link JedisLockFactory#getSemaphore(String, int)}
+     *
+     * @param semaphoreKey 信号量的标识
+     * @param maxPermits   许可总数
+     * @return 信号量实例
+     */
+    public JedisDistributedSemaphoreImpl getSemaphore(String semaphoreKey, int maxPermits) {
+        return ring.get(semaphoreKey).factory.getSemaphore(semaphoreKey, maxPermits);
+    }
+
+    /**
+     * key 当前所属的节点
+     *
+     * @param lockKey 锁的标识
+     * @return 节点地址（host:port）
+     */
+    public String nodeOf(String lockKey) {
+        return ring.get(lockKey).address;
+    }
+
+    /**
+     * 当前全部节点
+     *
+     * @return 节点地址（host:port），按地址排序
+     */
+    public List<String> getNodes() {
+        return ring.names();
+    }
+
+    /**
+     * 加入节点，连接与订阅线程创建完成后才开始接收 key
+     *
+     * @param address 节点地址（host:port）
+     */
+    public synchronized void addNode(String address) {
+        Shard shard = new Shard(address, jedisLockProperties);
+        try {
+            ring.add(address, shard);
+        } catch (IllegalArgumentException e) {
+            shard.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 移除节点并关闭该节点的连接池、订阅器与看门狗
+     *
+     * @param address 节点地址（host:port）
+     * @return true 表示节点存在并已移除
+     */
+    public synchronized boolean removeNode(String address) {
+        Shard shard = ring.remove(address);
+        if (shard == null) {
+            return false;
+        }
+        shard.close();
+        return true;
+    }
+
+    /**
+     * 关闭全部节点的资源
+     */
+    public synchronized void shutdown() {
+        for (String address : ring.names()) {
+            removeNode(address);
+        }
+    }
+
+    /**
+     * 一个 Redis 节点上的全部资源
+     */
+    private static final class Shard {
+
+        private final String address;
+
+        private final JedisPool jedisPool;
+
+        /**
+         * NIO 传输层的连接，传输层为 JEDIS 时为 null
+         */
+        private final RespConnection respConnection;
+
+        private final JedisScriptExecutor scriptExecutor;
+
+        private final JedisLockReleaseSubscriber releaseSubscriber;
+
+        private final JedisLockWatchdog watchdog;
+
+        private final JedisLockFactory factory;
+
+        private Shard(String address, JedisLockProperties jedisLockProperties) {
+            HostAndPort hostAndPort = HostAndPort.from(address);
+            this.address = address;
+            this.jedisPool = new JedisPool(hostAndPort.getHost(), hostAndPort.getPort());
+            this.respConnection = jedisLockProperties.getTransport() == JedisLockProperties.Transport.NIO
+                    ? new RespConnection(hostAndPort, Protocol.DEFAULT_TIMEOUT) : null;
+            this.scriptExecutor = new JedisScriptExecutor(jedisPool, jedisLockProperties, respConnection);
+            this.scriptExecutor.preload();
+            this.releaseSubscriber = new JedisLockReleaseSubscriber(hostAndPort);
+            this.releaseSubscriber.start();
+            this.watchdog = new JedisLockWatchdog(scriptExecutor, jedisLockProperties);
+            this.watchdog.start();
+            this.factory = new JedisLockFactory(scriptExecutor, releaseSubscriber, watchdog, jedisLockProperties);
+        }
+
+        private void close() {
+            watchdog.shutdown();
+            releaseSubscriber.shutdown();
+            scriptExecutor.shutdown();
+            if (respConnection != null) {
+                respConnection.close();
+            }
+            jedisPool.close();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.wangguangwu.distributedlockredis.lock.factory;
+
+import com.wangguangwu.distributedlockredis.lock.DistributedLockProvider;
+import com.wangguangwu.distributedlockredis.lock.impl.RedissonDistributedLockImpl;
+import com.wangguangwu.distributedlockredis.lock.support.BoundedLockCache;
+import com.wangguangwu.distributedlockredis.lock.support.ConsistentHashRing;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+
+import java.util.List;
+
+/**
+ * 把锁 key 按一致性哈希分布到多个独立 Redis 节点上的 Redisson 锁工厂。
+ * <p>
+ * 每个节点一个 RedissonClient，按 {@link ConsistentHashRing} 把每个 key 路由到固定的节点，
+ * 在该节点上创建 {@link RedissonDistributedLockImpl}，锁的语义与单节点时完全相同，吞吐量随节点数扩展。
+ * <p>
+ * 锁实例在本地按 key 缓存，数量超过上限时淘汰当前没有持有者的实例。
+ * 通过 {@link #addNode(String)} / {@link #removeNode(String)} 增减节点后，只有约 1/N 的 key 改变归属：
+ * 缓存的实例仍被本地持有时继续返回该实例，本进程内的竞争者仍在旧节点上互斥，释放后再切换到新节点；
+ * 其他进程的新请求会直接路由到新节点，因此仍应在低峰期变更节点。
+ * 被移除节点的客户端立即关闭，该节点上尚未释放的锁只能等待租期到期。
+ * <p>
+ * 调用方应使用同一个实例完成加锁和解锁，不要在两次调用之间重新从工厂获取。
+ *
+ * @author wangguangwu
+ */
+public class ShardedRedissonLockFactory implements DistributedLockProvider {
+
+    private final ConsistentHashRing<Node> ring;
+
+    private final BoundedLockCache<CachedLock> locks;
+
+    public ShardedRedissonLockFactory(List<String> nodes, int virtualNodes, int maxCachedLocks) {
+        this.ring = new ConsistentHashRing<>(virtualNodes);
+        this.locks = new BoundedLockCache<>(maxCachedLocks, cached -> !cached.lock.isHeldLocally());
+        for (String node : nodes) {
+            addNode(node);
+        }
+    }
+
+    /**
+     * 获取指定 key 的锁实例，实例绑定 key 当前所属节点的客户端
+     *
+     * @param lockKey 锁的标识
+     * @return 锁实例
+     */
+    @Override
+    public RedissonDistributedLockImpl getLock(String lockKey) {
+        Node node = ring.get(lockKey);
+        return locks.get(lockKey, cached -> cached.node == node || cached.lock.isHeldLocally(),
+                key -> new CachedLock(node, new RedissonDistributedLockImpl(key, node.client))).lock;
+    }
+
+    /**
+     * key 当前所属的节点
+     *
+     * @param lockKey 锁的标识
+     * @return 节点地址（host:port）
+     */
+    public String nodeOf(String lockKey) {
+        return ring.get(lockKey).address;
+    }
+
+    /**
+     * 当前全部节点
+     *
+     * @return 节点地址（host:port），按地址排序
+     */
+    public List<String> getNodes() {
+        return ring.names();
+    }
+
+    /**
+     * 加入节点
+     *
+     * @param address 节点地址（host:port）
+     */
+    public synchronized void addNode(String address) {
+        Config config = new Config();
+        config.useSingleServer().setAddress("redis://" + address);
+        config.setUseScriptCache(true);
+        RedissonClient client = Redisson.create(config);
+        try {
+            ring.add(address, new Node(address, client));
+        } catch (IllegalArgumentException e) {
+            client.shutdown();
+            throw e;
+        }
+    }
+
+    /**
+     * 移除节点并关闭该节点的客户端
+     *
+     * @param address 节点地址（host:port）
+     * @return true 表示节点存在并已移除
+     */
+    public synchronized boolean removeNode(String address) {
+        Node node = ring.remove(address);
+        if (node == null) {
+            return false;
+        }
+        locks.removeIf(cached -> cached.node == node);
+        node.client.shutdown();
+        return true;
+    }
+
+    /**
+     * 关闭全部节点的客户端
+     */
+    public synchronized void shutdown() {
+        for (String address : ring.names()) {
+            removeNode(address);
+        }
+    }
+
+    /**
+     * 当前缓存的锁实例数量
+     *
+     * @return 锁实例数量
+     */
+    public int size() {
+        return locks.size();
+    }
+
+    /**
+     * 一个 Redis 节点及其客户端
+     */
+    private static final class Node {
+
+        private final String address;
+
+        private final RedissonClient client;
+
+        private Node(String address, RedissonClient client) {
+            this.address = address;
+            this.client = client;
+        }
+    }
+
+    /**
+     * 缓存的锁实例及创建时 key 所属的节点，节点变更后据此判断实例是否需要切换到新节点
+     */
+    private static final class CachedLock {
+
+        private final Node node;
+
+        private final RedissonDistributedLockImpl lock;
+
+        private CachedLock(Node node, RedissonDistributedLockImpl lock) {
+            this.node = node;
+            this.lock = lock;
+        }
+    }
+}
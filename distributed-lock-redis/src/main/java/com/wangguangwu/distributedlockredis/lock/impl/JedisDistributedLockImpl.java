@@ -2,103 +2,901 @@ package com.wangguangwu.distributedlockredis.lock.impl;
 
 import com.wangguangwu.distributedlockredis.constants.LockConstants;
 import com.wangguangwu.distributedlockredis.lock.AbstractDistributedLock;
+import com.wangguangwu.distributedlockredis.lock.SharedOwnerLock;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber.ReleaseSignal;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockWatchdog;
+import com.wangguangwu.distributedlockredis.properties.JedisLockProperties;
+import com.wangguangwu.distributedlockredis.script.JedisScriptExecutor;
+import com.wangguangwu.distributedlockredis.script.LockScripts;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisPool;
-import redis.clients.jedis.params.SetParams;
+import redis.clients.jedis.util.JedisClusterHashTag;
+import redis.clients.jedis.util.SafeEncoder;
 
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * 基于 Jedis 实现的分布式锁（使用 ConcurrentHashMap 存储每个线程的锁值）
+ * 基于 Jedis 实现的可重入分布式锁（使用 ConcurrentHashMap 记录每个线程的本地持有状态）
  * <p>
- * 本实现在加锁时生成唯一的锁值，并存储到一个全局的 ConcurrentHashMap 中，key 为当前线程 ID。
- * 解锁时使用 Lua 脚本验证只有持有锁的线程才能释放锁，并在释放后移除对应的锁值。
+ * 锁在 Redis 中以 hash 存储，field 为持有者标识（JVM 实例 ID + 线程 ID），value 为重入次数，
+ * 加锁、解锁均由 Lua 脚本原子完成，只有持有者才能减少重入次数，减到 0 时删除锁。
+ * 加锁、解锁脚本均定义在 {@link LockScripts} 中，通过 {@link JedisScriptExecutor} 以 EVALSHA 执行。
  * <p>
- * 此实现合并了解锁和安全解锁逻辑，确保解锁操作只能由加锁的线程成功执行。
+ * 每个线程在本地记录持有者标识、重入次数和租期到期时间。持锁线程再次加锁时直接在本地累加重入次数，
+ * 解锁时本地重入次数减到 0 才访问 Redis；{@link #isLockHeldByCurrentThread()} 也只查询本地记录，
+ * 嵌套加锁的路径不产生网络往返。关闭重入（jedis.lock.reentrant=false）时，持锁线程再次加锁直接返回失败。
+ * <p>
+ * tryLock 等待期间订阅锁的释放频道，解锁脚本删除 key 后会 PUBLISH 释放消息，等待者收到后立即重试；
+ * 锁因过期被动释放时没有消息，等待者最多等待加锁失败时返回的剩余 TTL 后重试。
+ * <p>
+ * lock() 使用固定租期 DEFAULT_LOCK_TIME_PX；tryLock 的 leaseTime 大于 0 时按指定租期加锁，
+ * 小于等于 0 时启用看门狗模式，由 {@link JedisLockWatchdog} 在解锁前持续续期。
+ * <p>
+ * 每次新的持有都会在加锁脚本内对 fencing 计数器（见 {@link #fencingKeyOf(String)}）执行 INCR，
+ * 得到严格递增的 fencing token，通过 {@link #getFencingToken()} 读取；重入不会产生新的 token。
+ * 持有者把 token 随写请求一起提交，由存储端拒绝小于已见最大值的写入，
+ * 租期过期后仍在运行的旧持有者因此无法覆盖新持有者的数据。
+ * <p>
+ * 异步方法与 {@link com.wangguangwu.distributedlockredis.lock.LockHandle} 以 ownerId 代替线程 ID 作为持有者，
+ * 本地记录同样按 ownerId 保存，加锁与解锁可以发生在不同的线程上；
+ * 异步等待通过释放频道的回调和超时完成，不占用线程。
+ * <p>
+ * 除按线程区分持有者外，还实现了 {@link SharedOwnerLock}，以锁实例为持有者加锁、解锁，
+ * 供 {@link TwoTierDistributedLockImpl} 在本地线程之间直接交接远程租约。
+ * <p>
+ * 加锁、解锁的常规路径上不拼接字符串、不重复编码：锁 key、频道、租期与持有者标识都预先编码并缓存，
+ * 持有者标识按线程缓存（见 {@link OwnerToken}），日志只在开启 debug 时输出。
+ * <p>
+ * 容器中注册的单例使用固定的锁标识 "jedisLock"；业务中需要按资源加锁时，
+ * 应通过 {@link com.wangguangwu.distributedlockredis.lock.factory.JedisLockFactory} 获取对应 key 的锁实例。
  *
  * @author wangguangwu
  */
+@Slf4j
 @Component
-public class JedisDistributedLockImpl extends AbstractDistributedLock {
+public class JedisDistributedLockImpl extends AbstractDistributedLock implements SharedOwnerLock {
+
+    /**
+     * 当前 JVM 的节点 ID，启动时生成一次，与线程 ID（或 ownerId、实例序号）一起组成持有者标识
+     */
+    private static final String INSTANCE_ID = UUID.randomUUID().toString();
+
+    /**
+     * 每个线程以自身线程 ID 为持有者时的标识，线程反复加锁时复用，不再拼接字符串与编码
+     */
+    private static final ThreadLocal<OwnerToken> THREAD_OWNERS =
+            ThreadLocal.withInitial(() -> new OwnerToken(Thread.currentThread().getId(), true));
+
+    /**
+     * 锁的默认租期，预先编码后作为脚本参数
+     */
+    private static final byte[] DEFAULT_LOCK_TIME_PX_BYTES = SafeEncoder.encode(String.valueOf(LockConstants.DEFAULT_LOCK_TIME_PX));
+
+    /**
+     * 锁没有设置过期时间等异常情况下的最长等待间隔，避免等待者错过消息后一直阻塞
+     */
+    private static final long MAX_WAIT_INTERVAL_MILLIS = 1000;
 
     /**
-     * 使用 ConcurrentHashMap 存储每个线程的锁值，key 为线程 ID
+     * 为每个锁实例分配实例级持有者标识的序号
      */
-    private static final ConcurrentHashMap<Long, String> LOCK_VALUES = new ConcurrentHashMap<>();
+    private static final AtomicLong SHARED_OWNER_SEQUENCE = new AtomicLong();
 
-    private final JedisPool jedisPool;
+    /**
+     * 使用 ConcurrentHashMap 记录每个持有者的本地持有状态，key 为线程 ID 或异步调用传入的 ownerId。
+     * 线程持有者释放锁后记录保留在 Map 中（重入次数为 0），下次加锁时复用，不再分配本地记录与 Map 节点；
+     * 异步调用的 ownerId 每次都不同，释放后移除
+     */
+    private final ConcurrentHashMap<Long, LocalHold> holds = new ConcurrentHashMap<>();
+
+    /**
+     * 当前持有锁的持有者数量，Map 中保留了已释放的记录，不能再以 Map 是否为空判断
+     */
+    private final AtomicInteger heldCount = new AtomicInteger();
+
+    private final JedisScriptExecutor scriptExecutor;
+
+    private final JedisLockReleaseSubscriber releaseSubscriber;
+
+    private final JedisLockWatchdog watchdog;
+
+    private final boolean reentrant;
+
+    private final String channel;
+
+    /**
+     * 预先编码的锁 key 与释放频道，避免每次执行脚本时重复编码
+     */
+    private final byte[] lockKeyBytes;
+
+    private final byte[] channelBytes;
+
+    private final byte[] fencingKeyBytes;
+
+    /**
+     * 实例级持有者标识，与线程无关，见 {@link SharedOwnerLock}。
+     * 每个锁实例各不相同，同一 JVM 内的两个实例之间仍然互斥
+     */
+    private final OwnerToken sharedOwner;
 
-    public JedisDistributedLockImpl(JedisPool jedisPool) {
-        super("jedisLock");
-        this.jedisPool = jedisPool;
+    /**
+     * 实例级持有者当前是否由看门狗续期，只在持有远程锁期间被修改
+     */
+    private volatile boolean sharedWatchdog;
+
+    /**
+     * 实例级持有者获取锁的时间（System.nanoTime），用于记录持有时间
+     */
+    private volatile long sharedAcquiredNanos;
+
+    /**
+     * 最近一次使用的租期及其编码，租期不变时（看门狗租期、业务固定的 leaseTime）不再重复编码
+     */
+    private volatile EncodedLease lastLease;
+
+    @Autowired
+    public JedisDistributedLockImpl(JedisScriptExecutor scriptExecutor,
+                                    JedisLockReleaseSubscriber releaseSubscriber,
+                                    JedisLockWatchdog watchdog,
+                                    JedisLockProperties jedisLockProperties) {
+        this("jedisLock", scriptExecutor, releaseSubscriber, watchdog, jedisLockProperties);
+    }
+
+    public JedisDistributedLockImpl(String lockKey,
+                                    JedisScriptExecutor scriptExecutor,
+                                    JedisLockReleaseSubscriber releaseSubscriber,
+                                    JedisLockWatchdog watchdog,
+                                    JedisLockProperties jedisLockProperties) {
+        super(lockKey, "jedis");
+        this.scriptExecutor = scriptExecutor;
+        this.releaseSubscriber = releaseSubscriber;
+        this.watchdog = watchdog;
+        this.reentrant = jedisLockProperties.isReentrant();
+        this.channel = JedisLockReleaseSubscriber.channelOf(lockKey);
+        this.lockKeyBytes = SafeEncoder.encode(lockKey);
+        this.channelBytes = SafeEncoder.encode(channel);
+        this.fencingKeyBytes = SafeEncoder.encode(fencingKeyOf(lockKey));
+        this.sharedOwner = new OwnerToken(-1, INSTANCE_ID + ":shared-" + SHARED_OWNER_SEQUENCE.incrementAndGet(), false);
     }
 
     @Override
     public boolean lock() {
-        try (Jedis jedis = jedisPool.getResource()) {
-            long threadId = Thread.currentThread().getId();
-            String localLockValue = UUID.randomUUID().toString();
-            // 保存锁值到 ConcurrentHashMap
-            LOCK_VALUES.put(threadId, localLockValue);
-            // 使用 SetParams 设置 NX 和 PX 参数，PX 单位是毫秒，锁超时时间由常量定义（例如 10秒）
-            SetParams setParams = new SetParams().nx().px(LockConstants.DEFAULT_LOCK_TIME_PX);
-            String result = jedis.set(lockKey, localLockValue, setParams);
-            if (LockConstants.LOCK_SUCCESS.equals(result)) {
-                System.out.println("[Jedis] 获取锁成功: " + lockKey + ", lockValue=" + localLockValue);
-                return true;
-            } else {
-                System.out.println("[Jedis] 获取锁失败: " + lockKey);
-                LOCK_VALUES.remove(threadId);
-                return false;
-            }
+        OwnerToken owner = THREAD_OWNERS.get();
+        Reentry reentry = tryReenter(owner);
+        if (reentry.isResolved()) {
+            return reentry == Reentry.REENTERED;
         }
+        long startNanos = System.nanoTime();
+        Object result;
+        try {
+            result = tryAcquire(owner, DEFAULT_LOCK_TIME_PX_BYTES, reentry.holdMode);
+        } catch (RuntimeException e) {
+            metrics.error();
+            throw e;
+        }
+        return onLockAttempt(owner, startNanos, result);
     }
 
     @Override
     public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
-        long waitTimeMillis = unit.toMillis(waitTime);
-        long end = System.currentTimeMillis() + waitTimeMillis;
-        while (System.currentTimeMillis() < end) {
-            if (lock()) {
-                // 注意：本实现中锁的超时时间固定为 DEFAULT_LOCK_TIME_PX，leaseTime 可作为业务提醒
-                return true;
-            }
-            TimeUnit.SECONDS.sleep(15);
+        return tryLock(waitTime, leaseTime, unit, Thread.currentThread().getId());
+    }
+
+    /**
+     * 以指定持有者阻塞式尝试加锁，持有者与调用线程无关，供 {@link com.wangguangwu.distributedlockredis.lock.LockHandle} 使用
+     */
+    @Override
+    public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit, long ownerId) throws InterruptedException {
+        OwnerToken owner = ownerTokenOf(ownerId);
+        Reentry reentry = tryReenter(owner);
+        if (reentry.isResolved()) {
+            return reentry == Reentry.REENTERED;
         }
-        return false;
+        // leaseTime 小于等于 0 时启用看门狗，初始租期为看门狗租期
+        boolean useWatchdog = leaseTime <= 0;
+        long leaseMillis = useWatchdog ? watchdog.getLeaseMillis() : unit.toMillis(leaseTime);
+        LocalHold hold;
+        try {
+            hold = acquire(owner, reentry.holdMode, leaseMillis, useWatchdog, unit.toMillis(waitTime));
+        } catch (RuntimeException e) {
+            metrics.error();
+            throw e;
+        }
+        if (hold == null) {
+            metrics.timedOut();
+            log.debug("tryLock 失败: {}", lockKey);
+            return false;
+        }
+        onLocked(hold);
+        return true;
     }
 
     @Override
     public void unlock() {
-        try (Jedis jedis = jedisPool.getResource()) {
-            long threadId = Thread.currentThread().getId();
-            String localLockValue = LOCK_VALUES.get(threadId);
-            if (localLockValue == null) {
-                System.out.println("[Jedis] 当前线程未持有锁: " + lockKey);
+        unlock(Thread.currentThread().getId());
+    }
+
+    @Override
+    public void unlock(long ownerId) {
+        LocalHold hold = releaseLocally(ownerTokenOf(ownerId));
+        if (hold != null) {
+            release(hold.owner);
+        }
+    }
+
+    /**
+     * 异步加锁一次，语义与 {@link #lock()} 相同
+     */
+    @Override
+    public CompletionStage<Boolean> lockAsync(long ownerId) {
+        OwnerToken owner = ownerTokenOf(ownerId);
+        Reentry reentry = tryReenter(owner);
+        if (reentry.isResolved()) {
+            return CompletableFuture.completedFuture(reentry == Reentry.REENTERED);
+        }
+        long startNanos = System.nanoTime();
+        CompletableFuture<Boolean> locked = new CompletableFuture<>();
+        tryAcquireAsync(owner, DEFAULT_LOCK_TIME_PX_BYTES, reentry.holdMode).whenComplete((response, error) -> {
+            if (error != null) {
+                metrics.error();
+                locked.completeExceptionally(error);
                 return;
             }
-            // 使用 Lua 脚本安全释放锁，只有当锁的值与当前线程保存的锁值一致时才会删除
-            String luaScript = "if redis.call('get', KEYS[1]) == ARGV[1] then " +
-                    "   return redis.call('del', KEYS[1]) " +
-                    "else " +
-                    "   return 0 " +
-                    "end";
-            Object result = jedis.eval(luaScript, 1, lockKey, localLockValue);
-            if (result != null && ((Long) result) == 1L) {
-                System.out.println("[Jedis] 释放锁成功: " + lockKey + ", lockValue=" + localLockValue);
-            } else {
-                System.out.println("[Jedis] 释放锁失败: " + lockKey + ", lockValue=" + localLockValue);
+            try {
+                if (onLockAttempt(owner, startNanos, response)) {
+                    completeLocked(locked, owner);
+                } else {
+                    locked.complete(false);
+                }
+            } catch (RuntimeException e) {
+                onCallbackFailure(locked, owner, response, e);
             }
-            // 移除当前线程对应的锁值
-            LOCK_VALUES.remove(threadId);
+        });
+        return locked;
+    }
+
+    /**
+     * 异步尝试加锁。加锁请求由 {@link JedisScriptExecutor} 异步发出（默认与其他线程的命令合并为 pipeline），
+     * 等待释放消息与 TTL 到期都以回调方式完成，等待期间不占用任何线程
+     */
+    @Override
+    public CompletionStage<Boolean> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit, long ownerId) {
+        OwnerToken owner = ownerTokenOf(ownerId);
+        Reentry reentry = tryReenter(owner);
+        if (reentry.isResolved()) {
+            return CompletableFuture.completedFuture(reentry == Reentry.REENTERED);
+        }
+        boolean useWatchdog = leaseTime <= 0;
+        long leaseMillis = useWatchdog ? watchdog.getLeaseMillis() : unit.toMillis(leaseTime);
+        AsyncAcquisition acquisition = new AsyncAcquisition(owner, reentry.holdMode, leaseMillis, useWatchdog,
+                System.currentTimeMillis() + unit.toMillis(waitTime));
+        acquisition.attempt();
+        return acquisition.result;
+    }
+
+    @Override
+    public CompletionStage<Void> unlockAsync(long ownerId) {
+        LocalHold hold = releaseLocally(ownerTokenOf(ownerId));
+        if (hold == null) {
+            return CompletableFuture.completedFuture(null);
         }
+        return scriptExecutor.evalshaAsync(LockScripts.UNLOCK, 1, lockKeyBytes, hold.owner.bytes, channelBytes)
+                .thenAccept(result -> onReleased(result, hold.owner));
     }
 
+    /**
+     * 以锁实例为持有者加锁，持有者标识与线程无关，供本地队列在线程之间移交远程租约
+     */
+    @Override
+    public boolean tryAcquireShared(long waitMillis, long leaseMillis) throws InterruptedException {
+        boolean useWatchdog = leaseMillis <= 0;
+        long lease = useWatchdog ? watchdog.getLeaseMillis() : leaseMillis;
+        // 实例持有者从不重入，Redis 中残留的上一次持有（本地已判断过期）重置为 1，不累加
+        LocalHold hold = acquire(sharedOwner, Reentry.REACQUIRE.holdMode, lease, useWatchdog, waitMillis);
+        if (hold == null) {
+            metrics.timedOut();
+            return false;
+        }
+        sharedAcquiredNanos = hold.acquiredNanos;
+        sharedWatchdog = useWatchdog;
+        if (useWatchdog) {
+            watchdog.watch(lockKey, lockKeyBytes, sharedOwner.value);
+        }
+        return true;
+    }
+
+    @Override
+    public void releaseShared() {
+        if (sharedWatchdog) {
+            watchdog.unwatch(lockKey, sharedOwner.value);
+            sharedWatchdog = false;
+        }
+        metrics.released(sharedAcquiredNanos);
+        release(sharedOwner);
+    }
+
+    /**
+     * 从本地记录读取持有者本次持有的 fencing token，不访问 Redis
+     *
+     * @param ownerId 持有者 ID
+     * @return fencing token，未持有锁时返回 0
+     */
+    @Override
+    public long getFencingToken(long ownerId) {
+        LocalHold hold = holds.get(ownerId);
+        return hold == null || hold.count == 0 ? 0 : hold.fencingToken;
+    }
+
+    /**
+     * 根据本地记录判断当前线程是否持有锁，不访问 Redis
+     *
+     * @return true 表示当前线程持有锁且租期未到期
+     */
     @Override
     public boolean isLockHeldByCurrentThread() {
-        throw new UnsupportedOperationException();
+        LocalHold hold = holds.get(THREAD_OWNERS.get().key);
+        return hold != null && hold.count > 0 && hold.isValid();
+    }
+
+    /**
+     * 执行 {@link LockScripts#HELD} 查询 Redis 中锁的持有者，产生一次网络往返
+     */
+    @Override
+    public boolean isLockHeldRemotely(long ownerId) {
+        Object result = scriptExecutor.evalsha(LockScripts.HELD, 1, lockKeyBytes, ownerTokenOf(ownerId).bytes);
+        return result != null && (Long) result == 1;
+    }
+
+    /**
+     * 本地是否仍有线程持有该锁实例，供 JedisLockFactory 判断句柄能否被淘汰
+     *
+     * @return true 表示仍有线程持有锁
+     */
+    public boolean isHeldLocally() {
+        return heldCount.get() > 0;
+    }
+
+    /**
+     * 在本地减少重入次数，减到 0 时移除本地记录并停止续期
+     *
+     * @param owner 持有者标识
+     * @return 需要访问 Redis 释放锁时返回本地记录，否则为 null
+     */
+    private LocalHold releaseLocally(OwnerToken owner) {
+        LocalHold hold = holds.get(owner.key);
+        if (hold == null || hold.count == 0) {
+            log.warn("未持有锁: {}, owner={}", lockKey, owner.value);
+            return null;
+        }
+        // 本地重入次数未减到 0 时不访问 Redis
+        if (--hold.count > 0) {
+            return null;
+        }
+        discard(hold);
+        metrics.released(hold.acquiredNanos);
+        // 先停止续期，再释放锁
+        if (hold.watchdog) {
+            watchdog.unwatch(lockKey, hold.owner.value);
+        }
+        return hold;
+    }
+
+    /**
+     * 当前线程已持有锁时在本地处理重入
+     *
+     * @param owner 持有者标识
+     * @return 已在本地得出加锁结果，或需要访问 Redis 时使用的加锁方式
+     */
+    private Reentry tryReenter(OwnerToken owner) {
+        LocalHold hold = holds.get(owner.key);
+        if (hold == null || hold.count == 0) {
+            return Reentry.ACQUIRE;
+        }
+        if (!hold.isValid()) {
+            // 租期已到期，本地记录作废，重新向 Redis 加锁；Redis 中可能仍留有这次持有，重入次数需要重置
+            hold.count = 0;
+            discard(hold);
+            return Reentry.REACQUIRE;
+        }
+        if (!reentrant) {
+            log.debug("当前线程已持有锁，不允许重入: {}", lockKey);
+            return Reentry.REJECTED;
+        }
+        hold.count++;
+        return Reentry.REENTERED;
+    }
+
+    /**
+     * 加锁成功后的本地持有记录：线程持有者复用上次释放后保留的记录，否则新建
+     *
+     * @param owner         持有者标识
+     * @param startNanos    发出加锁请求前的 System.nanoTime，租期从此时开始计算
+     * @param acquiredNanos 获取锁的时间（System.nanoTime）
+     * @param fencingToken  本次持有的 fencing token
+     * @param leaseMillis   租期（毫秒）
+     * @param useWatchdog   是否由看门狗续期
+     * @return 重入次数为 1 的本地持有记录
+     */
+    private LocalHold holdOf(OwnerToken owner, long startNanos, long acquiredNanos, long fencingToken, long leaseMillis,
+                             boolean useWatchdog) {
+        LocalHold hold = owner.threadOwned ? holds.get(owner.key) : null;
+        if (hold == null || hold.count != 0) {
+            hold = new LocalHold(owner);
+        }
+        hold.reset(startNanos, acquiredNanos, fencingToken, leaseMillis, useWatchdog);
+        return hold;
+    }
+
+    /**
+     * 记录持有者已持有锁，保留的记录已在 Map 中时不再写入
+     */
+    private void track(LocalHold hold) {
+        if (holds.get(hold.owner.key) != hold) {
+            holds.put(hold.owner.key, hold);
+        }
+        heldCount.incrementAndGet();
+    }
+
+    /**
+     * 重入次数减到 0 后作废本地记录：线程持有者保留记录供下次加锁复用，其他持有者移除
+     */
+    private void discard(LocalHold hold) {
+        if (!hold.owner.threadOwned) {
+            holds.remove(hold.owner.key);
+        }
+        heldCount.decrementAndGet();
+    }
+
+    /**
+     * 在等待时间内反复加锁，等待期间订阅锁的释放频道
+     *
+     * @param owner       持有者标识
+     * @param holdMode    加锁方式，见 {@link Reentry#holdMode}
+     * @param leaseMillis 租期（毫秒）
+     * @param useWatchdog 是否由看门狗续期
+     * @param waitMillis  最大等待时间（毫秒）
+     * @return 加锁成功时的本地持有记录，null 表示超时未获取到锁
+     * @throws InterruptedException 如果线程在等待期间被中断
+     */
+    private LocalHold acquire(OwnerToken owner, byte[] holdMode, long leaseMillis, boolean useWatchdog, long waitMillis)
+            throws InterruptedException {
+        byte[] leaseMillisBytes = encodeLease(leaseMillis);
+        long callNanos = System.nanoTime();
+        long startNanos = callNanos;
+        Object result = tryAcquire(owner, leaseMillisBytes, holdMode);
+        if (isGranted(result)) {
+            return holdOf(owner, startNanos, metrics.acquired(callNanos), fencingTokenOf(result), leaseMillis, useWatchdog);
+        }
+        metrics.contended();
+        long deadline = System.currentTimeMillis() + waitMillis;
+        if (System.currentTimeMillis() >= deadline) {
+            return null;
+        }
+
+        ReleaseSignal signal = releaseSubscriber.subscribe(channel);
+        try {
+            signal.awaitSubscribed(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+            while (true) {
+                startNanos = System.nanoTime();
+                result = tryAcquire(owner, leaseMillisBytes, holdMode);
+                if (isGranted(result)) {
+                    return holdOf(owner, startNanos, metrics.acquired(callNanos), fencingTokenOf(result), leaseMillis, useWatchdog);
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return null;
+                }
+                long interval = retryIntervalOf((Long) result);
+                signal.await(Math.min(interval, remaining), TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            releaseSubscriber.unsubscribe(channel, signal);
+        }
+    }
+
+    /**
+     * 使用 Lua 脚本安全释放锁，只有持有者才能释放锁
+     *
+     * @param owner 持有者标识
+     */
+    private void release(OwnerToken owner) {
+        onReleased(scriptExecutor.evalsha(LockScripts.UNLOCK, 1, lockKeyBytes, owner.bytes, channelBytes), owner);
+    }
+
+    private void onReleased(Object result, OwnerToken owner) {
+        if (result != null && ((Long) result) != 0L) {
+            log.debug("释放锁成功: {}, owner={}", lockKey, owner.value);
+        } else {
+            metrics.lost();
+            log.warn("释放锁失败，锁已过期或被他人持有: {}, owner={}", lockKey, owner.value);
+        }
+    }
+
+    /**
+     * 处理 lock() 单次加锁的结果，使用默认租期
+     */
+    private boolean onLockAttempt(OwnerToken owner, long startNanos, Object result) {
+        if (isGranted(result)) {
+            track(holdOf(owner, startNanos, metrics.acquired(startNanos), fencingTokenOf(result),
+                    LockConstants.DEFAULT_LOCK_TIME_PX, false));
+            log.debug("获取锁成功: {}, owner={}", lockKey, owner.value);
+            return true;
+        }
+        // lock() 只尝试一次，锁被他人持有即失败
+        metrics.contended();
+        metrics.timedOut();
+        log.debug("获取锁失败: {}", lockKey);
+        return false;
+    }
+
+    /**
+     * 异步加锁成功后完成 result。调用方已取消或超时放弃（orTimeout、completeOnTimeout）时 result 已完成，
+     * 锁已写入 Redis 与本地记录却不会再有人解锁，此时立即释放
+     */
+    private void completeLocked(CompletableFuture<Boolean> result, OwnerToken owner) {
+        if (!result.complete(true)) {
+            log.debug("调用方已放弃等待，释放刚获取的锁: {}, owner={}", lockKey, owner.value);
+            unlockAsync(owner.ownerId);
+        }
+    }
+
+    /**
+     * 异步加锁的回调中处理结果时抛出异常：以异常完成 result，避免调用方一直等待；
+     * Redis 已经加锁成功时释放这次持有
+     */
+    private void onCallbackFailure(CompletableFuture<Boolean> result, OwnerToken owner, Object response, RuntimeException e) {
+        metrics.error();
+        result.completeExceptionally(e);
+        if (!isGranted(response)) {
+            return;
+        }
+        LocalHold hold = holds.get(owner.key);
+        if (hold != null && hold.count > 0) {
+            unlockAsync(owner.ownerId);
+        } else {
+            scriptExecutor.evalshaAsync(LockScripts.UNLOCK, 1, lockKeyBytes, owner.bytes, channelBytes);
+        }
+    }
+
+    private void onLocked(LocalHold hold) {
+        track(hold);
+        if (hold.watchdog) {
+            watchdog.watch(lockKey, lockKeyBytes, hold.owner.value);
+        }
+        log.debug("tryLock 成功: {}{}", lockKey, hold.watchdog ? " (Watchdog)" : "");
+    }
+
+    /**
+     * 编码租期，与上一次相同时直接复用
+     */
+    private byte[] encodeLease(long leaseMillis) {
+        EncodedLease lease = lastLease;
+        if (lease == null || lease.millis != leaseMillis) {
+            lease = new EncodedLease(leaseMillis);
+            lastLease = lease;
+        }
+        return lease.bytes;
+    }
+
+    /**
+     * 当前线程的持有者标识，{@link JedisMultiKeyLock} 使用同一格式，两者加的锁可以互相重入
+     */
+    static String currentOwner() {
+        return THREAD_OWNERS.get().value;
+    }
+
+    static String ownerOf(long ownerId) {
+        return ownerTokenOf(ownerId).value;
+    }
+
+    /**
+     * 持有者标识，ownerId 为当前线程 ID 时返回线程缓存的实例，否则新建
+     */
+    static OwnerToken ownerTokenOf(long ownerId) {
+        OwnerToken owner = THREAD_OWNERS.get();
+        return owner.ownerId == ownerId ? owner : new OwnerToken(ownerId, false);
+    }
+
+    /**
+     * 锁的 fencing 计数器 key。计数器在锁释放后仍然保留，
+     * 连续 {@link LockScripts#FENCE_TTL_MILLIS} 没有新的持有时才过期删除，之后以服务器时间重新起算，token 不会回退。
+     * <p>
+     * Redis 集群下计数器必须与锁 key 位于同一 slot，见 {@link #relatedKeyOf(String, String)}
+     *
+     * @param lockKey 锁 key
+     * @return fencing 计数器 key
+     */
+    public static String fencingKeyOf(String lockKey) {
+        return relatedKeyOf(lockKey, "fence");
+    }
+
+    /**
+     * 与锁 key 位于同一 slot 的辅助 key：锁 key 自带 hash tag 时直接追加后缀，否则以整个锁 key 作为 hash tag
+     *
+     * @param lockKey 锁 key
+     * @param suffix  后缀
+     * @return 辅助 key
+     */
+    static String relatedKeyOf(String lockKey, String suffix) {
+        boolean tagged = !JedisClusterHashTag.getHashTag(lockKey).equals(lockKey);
+        return (tagged ? lockKey : "{" + lockKey + "}") + ":" + suffix;
+    }
+
+    /**
+     * 加锁脚本成功时返回 {fencing token}，失败时返回锁的剩余 TTL
+     */
+    private static boolean isGranted(Object result) {
+        return result instanceof List;
+    }
+
+    private static long fencingTokenOf(Object result) {
+        return (Long) ((List<?>) result).get(0);
+    }
+
+    /**
+     * 加锁失败后的最长等待时间：收到释放消息或锁的剩余 TTL 到期后重试；TTL 为 -2 说明 key 刚被删除，立即重试
+     */
+    private static long retryIntervalOf(long ttl) {
+        return ttl >= 0 ? ttl : (ttl == -2 ? 0 : MAX_WAIT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * 尝试加锁一次
+     *
+     * @param owner            持有者标识
+     * @param leaseMillisBytes 预先编码的租期（毫秒）
+     * @param holdMode         加锁方式，见 {@link Reentry#holdMode}
+     * @return 加锁脚本的返回值，见 {@link #isGranted(Object)}
+     */
+    private Object tryAcquire(OwnerToken owner, byte[] leaseMillisBytes, byte[] holdMode) {
+        return scriptExecutor.evalsha(LockScripts.LOCK, 2, lockKeyBytes, fencingKeyBytes, owner.bytes, leaseMillisBytes, holdMode);
+    }
+
+    /**
+     * 异步尝试加锁一次
+     *
+     * @return 加锁脚本的返回值，见 {@link #isGranted(Object)}
+     */
+    private CompletableFuture<Object> tryAcquireAsync(OwnerToken owner, byte[] leaseMillisBytes, byte[] holdMode) {
+        return scriptExecutor.evalshaAsync(LockScripts.LOCK, 2, lockKeyBytes, fencingKeyBytes, owner.bytes, leaseMillisBytes,
+                holdMode);
+    }
+
+    /**
+     * 一次异步 tryLock 的状态。每次重试都在上一次回调中发起，同一时刻只有一个回调访问这些字段
+     */
+    private final class AsyncAcquisition {
+
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private final OwnerToken owner;
+
+        private final byte[] holdMode;
+
+        private final long leaseMillis;
+
+        private final byte[] leaseMillisBytes;
+
+        private final boolean useWatchdog;
+
+        private final long deadline;
+
+        /**
+         * 发起异步加锁时的 System.nanoTime，用于记录加锁耗时
+         */
+        private final long callNanos = System.nanoTime();
+
+        private ReleaseSignal signal;
+
+        private AsyncAcquisition(OwnerToken owner, byte[] holdMode, long leaseMillis, boolean useWatchdog, long deadline) {
+            this.owner = owner;
+            this.holdMode = holdMode;
+            this.leaseMillis = leaseMillis;
+            this.leaseMillisBytes = encodeLease(leaseMillis);
+            this.useWatchdog = useWatchdog;
+            this.deadline = deadline;
+        }
+
+        private void attempt() {
+            if (result.isDone()) {
+                // 调用方已取消或超时放弃，不再重试
+                finish();
+                return;
+            }
+            long startNanos = System.nanoTime();
+            tryAcquireAsync(owner, leaseMillisBytes, holdMode).whenComplete((response, error) -> {
+                if (error != null) {
+                    finish();
+                    metrics.error();
+                    result.completeExceptionally(error);
+                    return;
+                }
+                try {
+                    onResponse(startNanos, response);
+                } catch (RuntimeException e) {
+                    finish();
+                    onCallbackFailure(result, owner, response, e);
+                }
+            });
+        }
+
+        /**
+         * 处理一次加锁的结果：成功时记录持有，失败时等待释放消息或 TTL 到期后重试
+         */
+        private void onResponse(long startNanos, Object response) {
+            if (isGranted(response)) {
+                finish();
+                onLocked(holdOf(owner, startNanos, metrics.acquired(callNanos), fencingTokenOf(response),
+                        leaseMillis, useWatchdog));
+                completeLocked(result, owner);
+                return;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                finish();
+                metrics.timedOut();
+                log.debug("tryLock 失败: {}", lockKey);
+                result.complete(false);
+                return;
+            }
+            if (signal == null) {
+                metrics.contended();
+                // 第一次失败时订阅释放频道，订阅生效后立即重试，避免错过订阅前的释放消息
+                signal = releaseSubscriber.subscribe(channel);
+                signal.whenSubscribed(remaining, TimeUnit.MILLISECONDS).thenRun(this::attempt);
+                return;
+            }
+            long interval = retryIntervalOf((Long) response);
+            signal.awaitAsync(Math.min(interval, remaining), TimeUnit.MILLISECONDS).thenRun(this::attempt);
+        }
+
+        private void finish() {
+            if (signal != null) {
+                releaseSubscriber.unsubscribe(channel, signal);
+                signal = null;
+            }
+        }
+    }
+
+    /**
+     * 本地重入检查的结果
+     */
+    private enum Reentry {
+
+        /**
+         * 已在本地累加重入次数，不访问 Redis
+         */
+        REENTERED(null),
+
+        /**
+         * 已持有锁且关闭了重入，直接失败
+         */
+        REJECTED(null),
+
+        /**
+         * 本地没有持有记录，向 Redis 加锁；Redis 中已有该持有者时（如 {@link JedisMultiKeyLock} 加的锁）重入次数加 1
+         */
+        ACQUIRE(SafeEncoder.encode("0")),
+
+        /**
+         * 本地持有记录已过期作废，向 Redis 加锁；Redis 中仍留有该持有者时重入次数重置为 1，
+         * 否则作废的那次持有会让一次解锁无法删除锁，锁只能等 TTL 到期
+         */
+        REACQUIRE(SafeEncoder.encode("1"));
+
+        /**
+         * 加锁脚本的 ARGV[3]，见 {@link LockScripts#LOCK}；本地已得出结果时为 null
+         */
+        private final byte[] holdMode;
+
+        Reentry(byte[] holdMode) {
+            this.holdMode = holdMode;
+        }
+
+        private boolean isResolved() {
+            return holdMode == null;
+        }
+    }
+
+    /**
+     * 持有者标识及其预先编码的字节，格式为 节点 ID + ":" + ownerId
+     */
+    static final class OwnerToken {
+
+        private final long ownerId;
+
+        /**
+         * 本地记录的 key，预先装箱，避免线程 ID 超出 Long 缓存范围时每次查找都装箱
+         */
+        private final Long key;
+
+        private final String value;
+
+        private final byte[] bytes;
+
+        /**
+         * 是否为线程以自身线程 ID 加锁时的标识，只有这类持有者的本地记录在释放后保留复用
+         */
+        private final boolean threadOwned;
+
+        private OwnerToken(long ownerId, boolean threadOwned) {
+            this(ownerId, INSTANCE_ID + ":" + ownerId, threadOwned);
+        }
+
+        private OwnerToken(long ownerId, String value, boolean threadOwned) {
+            this.ownerId = ownerId;
+            this.key = ownerId;
+            this.value = value;
+            this.bytes = SafeEncoder.encode(value);
+            this.threadOwned = threadOwned;
+        }
+    }
+
+    /**
+     * 租期（毫秒）及其编码
+     */
+    private static final class EncodedLease {
+
+        private final long millis;
+
+        private final byte[] bytes;
+
+        private EncodedLease(long millis) {
+            this.millis = millis;
+            this.bytes = SafeEncoder.encode(String.valueOf(millis));
+        }
+    }
+
+    /**
+     * 持有者在本地的持有状态，只会被持有者修改；跨线程传递持有权时由传递方式（线程池、CompletableFuture）保证可见性。
+     * 重入次数为 0 表示已释放，线程持有者的记录此时仍留在 Map 中，下次加锁时由 {@link #reset} 重新填写
+     */
+    private static final class LocalHold {
+
+        private final OwnerToken owner;
+
+        /**
+         * 租期到期时间（System.nanoTime），从发出加锁请求前开始计算，保证不晚于 Redis 中的实际到期时间
+         */
+        private long expireAtNanos;
+
+        private boolean watchdog;
+
+        private long fencingToken;
+
+        /**
+         * 获取锁的时间（System.nanoTime），用于记录持有时间
+         */
+        private long acquiredNanos;
+
+        private int count;
+
+        private LocalHold(OwnerToken owner) {
+            this.owner = owner;
+        }
+
+        private void reset(long startNanos, long acquiredNanos, long fencingToken, long leaseMillis, boolean watchdog) {
+            this.acquiredNanos = acquiredNanos;
+            this.fencingToken = fencingToken;
+            this.expireAtNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+            this.watchdog = watchdog;
+            this.count = 1;
+        }
+
+        /**
+         * 看门狗模式下租期由看门狗续期，视为一直有效
+         */
+        private boolean isValid() {
+            return watchdog || System.nanoTime() - expireAtNanos < 0;
+        }
     }
-}
\ No newline at end of file
+}
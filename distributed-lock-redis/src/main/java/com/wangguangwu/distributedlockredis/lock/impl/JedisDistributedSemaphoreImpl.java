@@ -0,0 +1,192 @@
+package com.wangguangwu.distributedlockredis.lock.impl;
+
+import com.wangguangwu.distributedlockredis.lock.DistributedSemaphore;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber.ReleaseSignal;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockWatchdog;
+import com.wangguangwu.distributedlockredis.script.JedisScriptExecutor;
+import com.wangguangwu.distributedlockredis.script.LockScripts;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于 Jedis 的分布式信号量。
+ * <p>
+ * 已发放的许可以许可 ID 为单位记录在 hash 中，每个许可 ID 的到期时间记录在 zset 中，
+ * 获取、归还以及到期许可的回收都在 {@link LockScripts} 的信号量脚本内原子完成，
+ * 无论争用多激烈，每次获取尝试和每次归还都只有一次 Redis 往返。
+ * <p>
+ * 获取失败的等待者订阅释放频道，每归还一个许可唤醒一个等待者；
+ * 没有收到消息时在最早的许可到期后重试，持有者崩溃后等待者不会一直阻塞。
+ * leaseTime 小于等于 0 时由 {@link JedisLockWatchdog} 以 {@link LockScripts#LEASED_FIELD_RENEW} 续期。
+ * 业务中应通过 {@link com.wangguangwu.distributedlockredis.lock.factory.JedisLockFactory#getSemaphore(String, int)} 获取实例。
+ *
+ * @author wangguangwu
+ */
+@Slf4j
+public class JedisDistributedSemaphoreImpl implements DistributedSemaphore {
+
+    /**
+     * 没有未到期许可等异常情况下的最长等待间隔，避免等待者错过消息后一直阻塞
+     */
+    private static final long MAX_WAIT_INTERVAL_MILLIS = 1000;
+
+    private static final AtomicLong PERMIT_SEQUENCE = new AtomicLong();
+
+    private final String semaphoreKey;
+
+    private final int maxPermits;
+
+    private final JedisScriptExecutor scriptExecutor;
+
+    private final JedisLockReleaseSubscriber releaseSubscriber;
+
+    private final JedisLockWatchdog watchdog;
+
+    private final String channel;
+
+    /**
+     * 预先编码的信号量 hash、许可租期 zset、释放频道与许可总数，两个 key 位于同一 slot
+     */
+    private final byte[] semaphoreKeyBytes;
+
+    private final byte[] leasesKeyBytes;
+
+    private final byte[] channelBytes;
+
+    private final byte[] maxPermitsBytes;
+
+    /**
+     * 由看门狗续期的许可 ID，归还时取消续期
+     */
+    private final Set<String> watchedPermits = ConcurrentHashMap.newKeySet();
+
+    public JedisDistributedSemaphoreImpl(String semaphoreKey,
+                                         int maxPermits,
+                                         JedisScriptExecutor scriptExecutor,
+                                         JedisLockReleaseSubscriber releaseSubscriber,
+                                         JedisLockWatchdog watchdog) {
+        if (maxPermits <= 0) {
+            throw new IllegalArgumentException("许可总数必须大于 0: " + maxPermits);
+        }
+        this.semaphoreKey = semaphoreKey;
+        this.maxPermits = maxPermits;
+        this.scriptExecutor = scriptExecutor;
+        this.releaseSubscriber = releaseSubscriber;
+        this.watchdog = watchdog;
+        this.channel = JedisLockReleaseSubscriber.channelOf(semaphoreKey);
+        this.semaphoreKeyBytes = SafeEncoder.encode(semaphoreKey);
+        this.leasesKeyBytes = SafeEncoder.encode(JedisDistributedLockImpl.relatedKeyOf(semaphoreKey, "leases"));
+        this.channelBytes = SafeEncoder.encode(channel);
+        this.maxPermitsBytes = SafeEncoder.encode(String.valueOf(maxPermits));
+    }
+
+    @Override
+    public String tryAcquire(int permits, long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+        if (permits <= 0 || permits > maxPermits) {
+            throw new IllegalArgumentException("许可数必须在 1 到 " + maxPermits + " 之间: " + permits);
+        }
+        // 许可 ID 由 JVM 实例 ID 与进程内序号组成，全局唯一
+        String permitId = JedisDistributedLockImpl.ownerOf(PERMIT_SEQUENCE.incrementAndGet());
+        // leaseTime 小于等于 0 时启用看门狗，初始租期为看门狗租期
+        boolean useWatchdog = leaseTime <= 0;
+        long leaseMillis = useWatchdog ? watchdog.getLeaseMillis() : unit.toMillis(leaseTime);
+        byte[][] args = {SafeEncoder.encode(permitId), SafeEncoder.encode(String.valueOf(permits)),
+                SafeEncoder.encode(String.valueOf(leaseMillis)), maxPermitsBytes};
+        if (!acquire(args, unit.toMillis(waitTime))) {
+            log.debug("获取信号量许可失败: {}, permits={}", semaphoreKey, permits);
+            return null;
+        }
+        if (useWatchdog) {
+            watchedPermits.add(permitId);
+            watchdog.watch(semaphoreKey, permitId, LockScripts.LEASED_FIELD_RENEW, semaphoreKeyBytes, leasesKeyBytes);
+        }
+        return permitId;
+    }
+
+    @Override
+    public boolean release(String permitId) {
+        if (watchedPermits.remove(permitId)) {
+            watchdog.unwatch(semaphoreKey, permitId);
+        }
+        Object result = scriptExecutor.evalsha(LockScripts.SEMAPHORE_RELEASE, 2,
+                semaphoreKeyBytes, leasesKeyBytes, SafeEncoder.encode(permitId), channelBytes);
+        if (result != null && (Long) result == 1) {
+            return true;
+        }
+        log.warn("归还信号量许可失败，许可已到期或已归还: {}, permitId={}", semaphoreKey, permitId);
+        return false;
+    }
+
+    @Override
+    public int availablePermits() {
+        Object result = scriptExecutor.evalsha(LockScripts.SEMAPHORE_AVAILABLE, 2,
+                semaphoreKeyBytes, leasesKeyBytes, maxPermitsBytes);
+        return ((Long) result).intValue();
+    }
+
+    @Override
+    public int getMaxPermits() {
+        return maxPermits;
+    }
+
+    /**
+     * 本地是否仍有由看门狗续期的许可，供 JedisLockFactory 判断实例能否被淘汰
+     *
+     * @return true 表示仍有许可未归还
+     */
+    public boolean isHeldLocally() {
+        return !watchedPermits.isEmpty();
+    }
+
+    /**
+     * 在等待时间内反复获取，等待期间订阅释放频道
+     *
+     * @return true 表示获取成功
+     */
+    private boolean acquire(byte[][] args, long waitMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        Long ttl = attempt(args);
+        if (ttl == null) {
+            return true;
+        }
+        if (System.currentTimeMillis() >= deadline) {
+            return false;
+        }
+
+        ReleaseSignal signal = releaseSubscriber.subscribe(channel);
+        try {
+            signal.awaitSubscribed(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+            while (true) {
+                ttl = attempt(args);
+                if (ttl == null) {
+                    return true;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                // 收到归还消息或最早的许可到期后重试；-2 表示没有未到期的许可，立即重试
+                long interval = ttl >= 0 ? ttl : (ttl == -2 ? 0 : MAX_WAIT_INTERVAL_MILLIS);
+                signal.await(Math.min(interval, remaining), TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            releaseSubscriber.unsubscribe(channel, signal);
+        }
+    }
+
+    /**
+     * 执行一次获取脚本
+     *
+     * @return null 表示获取成功，否则为建议的最长等待时间（毫秒）
+     */
+    private Long attempt(byte[][] args) {
+        return (Long) scriptExecutor.evalsha(LockScripts.SEMAPHORE_ACQUIRE, 2,
+                semaphoreKeyBytes, leasesKeyBytes, args[0], args[1], args[2], args[3]);
+    }
+}
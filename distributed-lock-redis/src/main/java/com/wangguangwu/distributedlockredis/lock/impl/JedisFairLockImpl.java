@@ -0,0 +1,346 @@
+package com.wangguangwu.distributedlockredis.lock.impl;
+
+import com.wangguangwu.distributedlockredis.constants.LockConstants;
+import com.wangguangwu.distributedlockredis.lock.AbstractDistributedLock;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber.ReleaseSignal;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockWatchdog;
+import com.wangguangwu.distributedlockredis.script.JedisScriptExecutor;
+import com.wangguangwu.distributedlockredis.script.LockScripts;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 Jedis 的公平分布式锁，等待者按先来后到的顺序获取锁。
+ * <p>
+ * 获取失败的等待者进入 Redis 中的等待队列（list 记录顺序，zset 记录每个等待者的超时时间），
+ * 锁空闲时只有队首等待者能够加锁，新来的加锁请求不能插队，等待者不会饿死：
+ * <ul>
+ *   <li>解锁时在等待者频道上发布队首的等待者标识，只唤醒队首一个等待者，不会引起所有等待者一起重试；
+ *       同一 JVM 的等待者共用一次订阅，频道已订阅时排队不需要额外的订阅命令</li>
+ *   <li>等待者每隔 1/3 超时时间（jedis.lock.fair-waiter-timeout-millis）刷新一次自己的超时时间，
+ *       主动放弃等待时立即出队；崩溃的等待者超时后由加锁、解锁脚本从队首惰性清理</li>
+ *   <li>不等待的加锁（{@link #lock()}、waitTime 为 0 的 tryLock）失败时不排队</li>
+ * </ul>
+ * <p>
+ * 锁 key 的格式与 {@link JedisDistributedLockImpl} 相同，重入次数记录在 Redis 中，
+ * leaseTime 小于等于 0 时由 {@link JedisLockWatchdog} 以 {@link LockScripts#RENEW} 续期。
+ * 持有者标识同样为 JVM 实例 ID + 线程 ID 或 ownerId，{@link #isLockHeldByCurrentThread()} 不访问 Redis。
+ * 业务中应通过 {@link com.wangguangwu.distributedlockredis.lock.factory.JedisLockFactory#getFairLock(String)} 获取实例。
+ *
+ * @author wangguangwu
+ */
+@Slf4j
+public class JedisFairLockImpl extends AbstractDistributedLock {
+
+    /**
+     * 锁没有设置过期时间等异常情况下的最长等待间隔，避免等待者错过消息后一直阻塞
+     */
+    private static final long MAX_WAIT_INTERVAL_MILLIS = 1000;
+
+    private static final byte[] DEFAULT_LOCK_TIME_PX_BYTES = SafeEncoder.encode(String.valueOf(LockConstants.DEFAULT_LOCK_TIME_PX));
+
+    /**
+     * 等待者超时时间为 0 表示加锁失败时不排队
+     */
+    private static final byte[] NO_QUEUE_BYTES = SafeEncoder.encode("0");
+
+    private final JedisScriptExecutor scriptExecutor;
+
+    private final JedisLockReleaseSubscriber releaseSubscriber;
+
+    private final JedisLockWatchdog watchdog;
+
+    /**
+     * 等待者刷新超时时间的间隔
+     */
+    private final long refreshIntervalMillis;
+
+    /**
+     * 等待者频道，消息内容为被通知的等待者标识
+     */
+    private final String waiterChannel;
+
+    /**
+     * 预先编码的锁 key、等待队列、等待者超时 zset、等待者频道与等待者超时时间，三个 key 位于同一 slot
+     */
+    private final byte[] lockKeyBytes;
+
+    private final byte[] queueKeyBytes;
+
+    private final byte[] timeoutsKeyBytes;
+
+    private final byte[] waiterChannelBytes;
+
+    private final byte[] waiterTimeoutBytes;
+
+    /**
+     * 使用 ConcurrentHashMap 记录每个持有者的本地持有状态，key 为线程 ID 或 ownerId
+     */
+    private final ConcurrentHashMap<Long, LocalHold> holds = new ConcurrentHashMap<>();
+
+    public JedisFairLockImpl(String lockKey,
+                             JedisScriptExecutor scriptExecutor,
+                             JedisLockReleaseSubscriber releaseSubscriber,
+                             JedisLockWatchdog watchdog,
+                             long waiterTimeoutMillis) {
+        super(lockKey, "jedis-fair");
+        this.scriptExecutor = scriptExecutor;
+        this.releaseSubscriber = releaseSubscriber;
+        this.watchdog = watchdog;
+        this.refreshIntervalMillis = Math.max(waiterTimeoutMillis / 3, 1);
+        this.waiterChannel = JedisLockReleaseSubscriber.channelOf(lockKey) + ":waiters";
+        this.lockKeyBytes = SafeEncoder.encode(lockKey);
+        this.queueKeyBytes = SafeEncoder.encode(JedisDistributedLockImpl.relatedKeyOf(lockKey, "queue"));
+        this.timeoutsKeyBytes = SafeEncoder.encode(JedisDistributedLockImpl.relatedKeyOf(lockKey, "timeouts"));
+        this.waiterChannelBytes = SafeEncoder.encode(waiterChannel);
+        this.waiterTimeoutBytes = SafeEncoder.encode(String.valueOf(waiterTimeoutMillis));
+    }
+
+    @Override
+    public boolean lock() {
+        long ownerId = Thread.currentThread().getId();
+        String owner = prepare(ownerId);
+        long startNanos = System.nanoTime();
+        Long ttl;
+        try {
+            ttl = attempt(SafeEncoder.encode(owner), DEFAULT_LOCK_TIME_PX_BYTES, NO_QUEUE_BYTES);
+        } catch (RuntimeException e) {
+            metrics.error();
+            throw e;
+        }
+        if (ttl != null) {
+            metrics.contended();
+            metrics.timedOut();
+            log.debug("获取公平锁失败: {}", lockKey);
+            return false;
+        }
+        onLocked(ownerId, owner, startNanos, startNanos, LockConstants.DEFAULT_LOCK_TIME_PX, false);
+        return true;
+    }
+
+    @Override
+    public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+        return tryLock(waitTime, leaseTime, unit, Thread.currentThread().getId());
+    }
+
+    @Override
+    public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit, long ownerId) throws InterruptedException {
+        long callNanos = System.nanoTime();
+        String owner = prepare(ownerId);
+        // leaseTime 小于等于 0 时启用看门狗，初始租期为看门狗租期
+        boolean useWatchdog = leaseTime <= 0;
+        long leaseMillis = useWatchdog ? watchdog.getLeaseMillis() : unit.toMillis(leaseTime);
+        Long startNanos;
+        try {
+            startNanos = acquire(owner, SafeEncoder.encode(String.valueOf(leaseMillis)), unit.toMillis(waitTime));
+        } catch (RuntimeException e) {
+            metrics.error();
+            throw e;
+        }
+        if (startNanos == null) {
+            metrics.timedOut();
+            log.debug("tryLock 获取公平锁失败: {}", lockKey);
+            return false;
+        }
+        onLocked(ownerId, owner, callNanos, startNanos, leaseMillis, useWatchdog);
+        return true;
+    }
+
+    @Override
+    public void unlock() {
+        unlock(Thread.currentThread().getId());
+    }
+
+    @Override
+    public void unlock(long ownerId) {
+        LocalHold hold = holds.get(ownerId);
+        if (hold == null) {
+            log.warn("未持有公平锁: {}, ownerId={}", lockKey, ownerId);
+            return;
+        }
+        Object result = scriptExecutor.evalsha(LockScripts.FAIR_UNLOCK, 3,
+                lockKeyBytes, queueKeyBytes, timeoutsKeyBytes, SafeEncoder.encode(hold.owner), waiterChannelBytes);
+        long code = result == null ? 0 : (Long) result;
+        if (code == 2) {
+            hold.count--;
+            return;
+        }
+        holds.remove(ownerId);
+        metrics.released(hold.acquiredNanos);
+        if (hold.watchdog) {
+            watchdog.unwatch(lockKey, hold.owner);
+        }
+        if (code == 1) {
+            log.debug("释放公平锁成功: {}, owner={}", lockKey, hold.owner);
+        } else {
+            metrics.lost();
+            log.warn("释放公平锁失败，锁已过期: {}, owner={}", lockKey, hold.owner);
+        }
+    }
+
+    /**
+     * 根据本地记录判断当前线程是否持有锁，不访问 Redis
+     *
+     * @return true 表示当前线程持有锁且租期未到期
+     */
+    @Override
+    public boolean isLockHeldByCurrentThread() {
+        LocalHold hold = holds.get(Thread.currentThread().getId());
+        return hold != null && hold.isValid();
+    }
+
+    /**
+     * 本地是否仍有持有者，供 JedisLockFactory 判断实例能否被淘汰
+     *
+     * @return true 表示仍有持有者
+     */
+    public boolean isHeldLocally() {
+        return !holds.isEmpty();
+    }
+
+    /**
+     * 租期已到期的本地记录作废，重入次数以 Redis 中的为准
+     */
+    private String prepare(long ownerId) {
+        LocalHold hold = holds.get(ownerId);
+        if (hold != null && !hold.isValid()) {
+            holds.remove(ownerId);
+        }
+        return JedisDistributedLockImpl.ownerOf(ownerId);
+    }
+
+    /**
+     * 在等待时间内排队加锁，等待期间只有轮到自己时才会被唤醒
+     *
+     * @return 成功的那次加锁请求发出前的 System.nanoTime，用于计算本地租期；null 表示超时未获取到锁
+     */
+    private Long acquire(String owner, byte[] leaseMillisBytes, long waitMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        byte[] ownerBytes = SafeEncoder.encode(owner);
+        long startNanos = System.nanoTime();
+        if (waitMillis <= 0) {
+            if (attempt(ownerBytes, leaseMillisBytes, NO_QUEUE_BYTES) == null) {
+                return startNanos;
+            }
+            metrics.contended();
+            return null;
+        }
+
+        // 本 JVM 已订阅等待者频道时在加锁前登记，不访问 Redis，入队后的通知不会错过
+        ReleaseSignal signal = releaseSubscriber.join(waiterChannel, owner);
+        try {
+            Long ttl = attempt(ownerBytes, leaseMillisBytes, waiterTimeoutBytes);
+            if (ttl == null) {
+                return startNanos;
+            }
+            metrics.contended();
+            if (signal == null) {
+                signal = releaseSubscriber.subscribe(waiterChannel, owner);
+                signal.awaitSubscribed(Math.max(deadline - System.currentTimeMillis(), 1), TimeUnit.MILLISECONDS);
+                // 订阅生效前的通知可能已经错过，先重试一次
+                startNanos = System.nanoTime();
+                ttl = attempt(ownerBytes, leaseMillisBytes, waiterTimeoutBytes);
+                if (ttl == null) {
+                    return startNanos;
+                }
+            }
+            while (true) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                // 每次重试同时刷新自己在队列中的超时时间，最长间隔为刷新间隔
+                long interval = Math.min(ttl >= 0 ? ttl : MAX_WAIT_INTERVAL_MILLIS, refreshIntervalMillis);
+                signal.await(Math.min(interval, remaining), TimeUnit.MILLISECONDS);
+                startNanos = System.nanoTime();
+                ttl = attempt(ownerBytes, leaseMillisBytes, waiterTimeoutBytes);
+                if (ttl == null) {
+                    return startNanos;
+                }
+            }
+        } finally {
+            if (signal != null) {
+                releaseSubscriber.unsubscribe(waiterChannel, owner, signal);
+            }
+        }
+        // 放弃等待：立即出队，轮到自己时已收到的通知转交给下一个等待者
+        scriptExecutor.evalsha(LockScripts.FAIR_LOCK_CANCEL, 3,
+                lockKeyBytes, queueKeyBytes, timeoutsKeyBytes, ownerBytes, waiterChannelBytes);
+        return null;
+    }
+
+    /**
+     * 执行一次加锁脚本
+     *
+     * @return null 表示加锁成功，否则为建议的最长等待时间（毫秒）
+     */
+    private Long attempt(byte[] ownerBytes, byte[] leaseMillisBytes, byte[] waiterTimeoutBytes) {
+        return (Long) scriptExecutor.evalsha(LockScripts.FAIR_LOCK, 3,
+                lockKeyBytes, queueKeyBytes, timeoutsKeyBytes, ownerBytes, leaseMillisBytes, waiterTimeoutBytes);
+    }
+
+    /**
+     * 记录加锁成功
+     *
+     * @param callNanos  调用加锁时的 System.nanoTime，用于记录加锁耗时
+     * @param startNanos 成功的那次加锁请求发出前的 System.nanoTime，用于计算本地租期
+     */
+    private void onLocked(long ownerId, String owner, long callNanos, long startNanos, long leaseMillis, boolean useWatchdog) {
+        LocalHold hold = holds.get(ownerId);
+        if (hold != null) {
+            // 重入：脚本已重置租期
+            hold.count++;
+            hold.renew(startNanos, leaseMillis);
+            return;
+        }
+        holds.put(ownerId, new LocalHold(owner, startNanos, metrics.acquired(callNanos), leaseMillis, useWatchdog));
+        if (useWatchdog) {
+            watchdog.watch(lockKey, lockKeyBytes, owner);
+        }
+        log.debug("获取公平锁成功: {}{}", lockKey, useWatchdog ? " (Watchdog)" : "");
+    }
+
+    /**
+     * 持有者在本地的持有状态，只会被持有者修改
+     */
+    private static final class LocalHold {
+
+        private final String owner;
+
+        private final boolean watchdog;
+
+        /**
+         * 获取锁的时间（System.nanoTime），用于记录持有时间
+         */
+        private final long acquiredNanos;
+
+        /**
+         * 租期到期时间（System.nanoTime），从发出加锁请求前开始计算，保证不晚于 Redis 中的实际到期时间
+         */
+        private long expireAtNanos;
+
+        private int count = 1;
+
+        private LocalHold(String owner, long startNanos, long acquiredNanos, long leaseMillis, boolean watchdog) {
+            this.owner = owner;
+            this.watchdog = watchdog;
+            this.acquiredNanos = acquiredNanos;
+            renew(startNanos, leaseMillis);
+        }
+
+        private void renew(long startNanos, long leaseMillis) {
+            this.expireAtNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+        }
+
+        /**
+         * 看门狗模式下租期由看门狗续期，视为一直有效
+         */
+        private boolean isValid() {
+            return watchdog || System.nanoTime() - expireAtNanos < 0;
+        }
+    }
+}
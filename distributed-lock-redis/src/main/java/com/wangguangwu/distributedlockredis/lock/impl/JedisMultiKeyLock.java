@@ -0,0 +1,306 @@
+package com.wangguangwu.distributedlockredis.lock.impl;
+
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber.ReleaseSignal;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockWatchdog;
+import com.wangguangwu.distributedlockredis.properties.JedisLockProperties;
+import com.wangguangwu.distributedlockredis.script.JedisScriptExecutor;
+import com.wangguangwu.distributedlockredis.script.LockScripts;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.util.JedisClusterCRC16;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 Jedis 的批量分布式锁，一次加锁多个资源。
+ * <p>
+ * 全部 key 由 {@link LockScripts#LOCK_ALL} 在一个脚本内加锁：要么全部成功，要么一个都不修改，
+ * 无论 key 有多少个，加锁都只需一次网络往返；等待期间不持有任何 key，不存在加锁顺序不一致导致的死锁。
+ * <p>
+ * 锁的存储格式、持有者标识与 {@link JedisDistributedLockImpl} 相同（JVM 实例 ID + 线程 ID），
+ * 同一线程通过两者加的锁可以互相重入，释放消息也发布到相同的频道，
+ * 新获取的 key 同样递增其 fencing 计数器，之后通过单 key 锁重入即可读取本次持有的 fencing token。
+ * leaseTime 小于等于 0 时启用看门狗，每个 key 都由 {@link JedisLockWatchdog} 续期。
+ * <p>
+ * Redis 集群下一个脚本只能访问同一 slot 的 key：开启 jedis.lock.cluster-mode 后按 slot 把 key 分组，
+ * 按 slot 升序逐组执行 {@link LockScripts#LOCK_ALL}，每组由 {@link JedisScriptExecutor} 经 JedisCluster
+ * 发往负责该 slot 的节点。某一组冲突时先释放已获取的组再等待，等待期间仍不持有任何 key；
+ * 所有调用方都按相同的 slot 顺序加锁，组与组之间也不会死锁。使用相同 hash tag（如 "{order:1}:item:2"）的 key
+ * 位于同一组，仍只需一次网络往返，每多一个 slot 多一次往返。
+ *
+ * @author wangguangwu
+ */
+@Slf4j
+@Component
+public class JedisMultiKeyLock {
+
+    /**
+     * 锁没有设置过期时间等异常情况下的最长等待间隔，避免等待者错过消息后一直阻塞
+     */
+    private static final long MAX_WAIT_INTERVAL_MILLIS = 1000;
+
+    private final JedisScriptExecutor scriptExecutor;
+
+    private final JedisLockReleaseSubscriber releaseSubscriber;
+
+    private final JedisLockWatchdog watchdog;
+
+    private final boolean clusterMode;
+
+    public JedisMultiKeyLock(JedisScriptExecutor scriptExecutor,
+                             JedisLockReleaseSubscriber releaseSubscriber,
+                             JedisLockWatchdog watchdog,
+                             JedisLockProperties jedisLockProperties) {
+        this.scriptExecutor = scriptExecutor;
+        this.releaseSubscriber = releaseSubscriber;
+        this.watchdog = watchdog;
+        this.clusterMode = jedisLockProperties.isClusterMode();
+    }
+
+    /**
+     * 尝试一次性获取全部 key 的锁，不等待
+     *
+     * @param keys      锁的标识，重复的 key 只加锁一次
+     * @param leaseTime 锁的租期，小于等于 0 时启用看门狗
+     * @param unit      时间单位
+     * @return true 表示全部 key 加锁成功，false 表示至少一个 key 被他人持有，此时不持有任何 key
+     */
+    public boolean lockAll(Collection<String> keys, long leaseTime, TimeUnit unit) {
+        try {
+            return tryLockAll(keys, 0, leaseTime, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 在指定等待时间内获取全部 key 的锁，等待期间订阅冲突 key 的释放频道
+     *
+     * @param keys      锁的标识，重复的 key 只加锁一次
+     * @param waitTime  最大等待时间
+     * @param leaseTime 锁的租期，小于等于 0 时启用看门狗
+     * @param unit      时间单位
+     * @return true 表示全部 key 加锁成功，false 表示超时，此时不持有任何 key
+     * @throws InterruptedException 如果线程在等待期间被中断
+     */
+    public boolean tryLockAll(Collection<String> keys, long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+        List<Batch> batches = plan(keys);
+        boolean useWatchdog = leaseTime <= 0;
+        long leaseMillis = useWatchdog ? watchdog.getLeaseMillis() : unit.toMillis(leaseTime);
+        byte[] leaseMillisBytes = SafeEncoder.encode(String.valueOf(leaseMillis));
+        String owner = JedisDistributedLockImpl.currentOwner();
+        byte[] ownerBytes = SafeEncoder.encode(owner);
+        long deadline = System.currentTimeMillis() + unit.toMillis(waitTime);
+
+        if (!acquireBatches(batches, owner, ownerBytes, leaseMillisBytes, deadline)) {
+            log.debug("批量加锁失败: {}", keys);
+            return false;
+        }
+        int keyCount = 0;
+        for (Batch batch : batches) {
+            if (useWatchdog) {
+                for (int i = 0; i < batch.keys.size(); i++) {
+                    watchdog.watch(batch.keys.get(i), batch.keyBytes[i], owner);
+                }
+            }
+            keyCount += batch.keys.size();
+        }
+        log.debug("批量加锁成功: {} 个 key, {} 个 slot, owner={}", keyCount, batches.size(), owner);
+        return true;
+    }
+
+    /**
+     * 释放当前线程持有的全部 key，不是持有者的 key 直接跳过
+     *
+     * @param keys 加锁时使用的 key
+     */
+    public void unlockAll(Collection<String> keys) {
+        List<Batch> batches = plan(keys);
+        String owner = JedisDistributedLockImpl.currentOwner();
+        byte[] ownerBytes = SafeEncoder.encode(owner);
+        int released = 0;
+        for (Batch batch : batches) {
+            released += releaseBatch(batch, owner, ownerBytes);
+        }
+        log.debug("批量释放锁: {} 个 key, owner={}", released, owner);
+    }
+
+    /**
+     * 对 key 去重、排序，集群模式下按 slot 分组，组按 slot 升序排列
+     */
+    private List<Batch> plan(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            throw new IllegalArgumentException("批量加锁的 key 不能为空");
+        }
+        TreeSet<String> sorted = new TreeSet<>(keys);
+        if (!clusterMode) {
+            return List.of(new Batch(new ArrayList<>(sorted)));
+        }
+        TreeMap<Integer, List<String>> slots = new TreeMap<>();
+        for (String key : sorted) {
+            slots.computeIfAbsent(JedisClusterCRC16.getSlot(key), slot -> new ArrayList<>()).add(key);
+        }
+        List<Batch> batches = new ArrayList<>(slots.size());
+        for (List<String> slotKeys : slots.values()) {
+            batches.add(new Batch(slotKeys));
+        }
+        return batches;
+    }
+
+    /**
+     * 在截止时间前反复尝试获取全部 key，等待期间订阅当前冲突 key 的释放频道
+     */
+    private boolean acquireBatches(List<Batch> batches, String owner, byte[] ownerBytes, byte[] leaseMillisBytes,
+                                   long deadline) throws InterruptedException {
+        Conflict conflict = tryLockBatches(batches, owner, ownerBytes, leaseMillisBytes);
+        if (conflict == null) {
+            return true;
+        }
+        if (System.currentTimeMillis() >= deadline) {
+            return false;
+        }
+
+        String channel = null;
+        ReleaseSignal signal = null;
+        try {
+            while (true) {
+                String conflictChannel = conflict.channel;
+                if (!conflictChannel.equals(channel)) {
+                    // 冲突的 key 发生变化，改为等待新冲突 key 的释放消息
+                    if (signal != null) {
+                        releaseSubscriber.unsubscribe(channel, signal);
+                    }
+                    channel = conflictChannel;
+                    signal = releaseSubscriber.subscribe(channel);
+                    signal.awaitSubscribed(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                    conflict = tryLockBatches(batches, owner, ownerBytes, leaseMillisBytes);
+                    if (conflict == null) {
+                        return true;
+                    }
+                    continue;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                // 收到释放消息或冲突 key 的剩余 TTL 到期后重试；TTL 为 -2 说明 key 刚被删除，立即重试
+                long ttl = conflict.ttl;
+                long interval = ttl >= 0 ? ttl : (ttl == -2 ? 0 : MAX_WAIT_INTERVAL_MILLIS);
+                signal.await(Math.min(interval, remaining), TimeUnit.MILLISECONDS);
+                conflict = tryLockBatches(batches, owner, ownerBytes, leaseMillisBytes);
+                if (conflict == null) {
+                    return true;
+                }
+            }
+        } finally {
+            if (signal != null) {
+                releaseSubscriber.unsubscribe(channel, signal);
+            }
+        }
+    }
+
+    /**
+     * 按顺序尝试获取每一组 key 一次，某一组冲突时逆序释放已获取的组
+     *
+     * @return null 表示全部加锁成功，否则为冲突 key 的释放频道与剩余 TTL
+     */
+    private Conflict tryLockBatches(List<Batch> batches, String owner, byte[] ownerBytes, byte[] leaseMillisBytes) {
+        for (int i = 0; i < batches.size(); i++) {
+            Batch batch = batches.get(i);
+            List<?> conflict = tryLockBatch(batch, ownerBytes, leaseMillisBytes);
+            if (conflict != null) {
+                for (int j = i - 1; j >= 0; j--) {
+                    releaseBatch(batches.get(j), owner, ownerBytes);
+                }
+                return new Conflict(batch.channels[((Long) conflict.get(0)).intValue() - 1], (Long) conflict.get(1));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 尝试获取一组 key 一次
+     *
+     * @return null 表示加锁成功，否则为 {冲突 key 的下标, 剩余 TTL}
+     */
+    private List<?> tryLockBatch(Batch batch, byte[] ownerBytes, byte[] leaseMillisBytes) {
+        int keyCount = batch.keyBytes.length;
+        byte[][] params = new byte[keyCount * 2 + 2][];
+        System.arraycopy(batch.keyBytes, 0, params, 0, keyCount);
+        System.arraycopy(batch.fencingKeyBytes, 0, params, keyCount, keyCount);
+        params[keyCount * 2] = ownerBytes;
+        params[keyCount * 2 + 1] = leaseMillisBytes;
+        return (List<?>) scriptExecutor.evalsha(LockScripts.LOCK_ALL, keyCount * 2, params);
+    }
+
+    /**
+     * 释放全部 key，并停止已彻底释放的 key 的续期
+     *
+     * @return 彻底释放的 key 数量
+     */
+    private int releaseBatch(Batch batch, String owner, byte[] ownerBytes) {
+        int keyCount = batch.keyBytes.length;
+        byte[][] params = new byte[keyCount * 2 + 1][];
+        System.arraycopy(batch.keyBytes, 0, params, 0, keyCount);
+        params[keyCount] = ownerBytes;
+        System.arraycopy(batch.channelBytes, 0, params, keyCount + 1, keyCount);
+        List<?> released = (List<?>) scriptExecutor.evalsha(LockScripts.UNLOCK_ALL, keyCount, params);
+        for (Object index : released) {
+            watchdog.unwatch(batch.keys.get(((Long) index).intValue() - 1), owner);
+        }
+        return released.size();
+    }
+
+    /**
+     * 一次加锁尝试中冲突的 key
+     */
+    private static final class Conflict {
+
+        private final String channel;
+
+        private final long ttl;
+
+        private Conflict(String channel, long ttl) {
+            this.channel = channel;
+            this.ttl = ttl;
+        }
+    }
+
+    /**
+     * 一次脚本调用处理的一组 key（集群模式下位于同一 slot），key、释放频道与 fencing 计数器 key 预先编码
+     */
+    private static final class Batch {
+
+        private final List<String> keys;
+
+        private final byte[][] keyBytes;
+
+        private final String[] channels;
+
+        private final byte[][] channelBytes;
+
+        private final byte[][] fencingKeyBytes;
+
+        private Batch(List<String> keys) {
+            this.keys = keys;
+            this.keyBytes = new byte[keys.size()][];
+            this.channels = new String[keys.size()];
+            this.channelBytes = new byte[keys.size()][];
+            this.fencingKeyBytes = new byte[keys.size()][];
+            for (int i = 0; i < keys.size(); i++) {
+                keyBytes[i] = SafeEncoder.encode(keys.get(i));
+                channels[i] = JedisLockReleaseSubscriber.channelOf(keys.get(i));
+                channelBytes[i] = SafeEncoder.encode(channels[i]);
+                fencingKeyBytes[i] = SafeEncoder.encode(JedisDistributedLockImpl.fencingKeyOf(keys.get(i)));
+            }
+        }
+    }
+}
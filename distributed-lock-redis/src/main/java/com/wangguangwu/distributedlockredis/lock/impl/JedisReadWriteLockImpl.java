@@ -0,0 +1,412 @@
+package com.wangguangwu.distributedlockredis.lock.impl;
+
+import com.wangguangwu.distributedlockredis.constants.LockConstants;
+import com.wangguangwu.distributedlockredis.lock.AbstractDistributedLock;
+import com.wangguangwu.distributedlockredis.lock.DistributedReadWriteLock;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber.ReleaseSignal;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockWatchdog;
+import com.wangguangwu.distributedlockredis.script.JedisScriptExecutor;
+import com.wangguangwu.distributedlockredis.script.LockScripts;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 Jedis 实现的分布式读写锁。
+ * <p>
+ * 锁在 Redis 中以 hash 存储，记录当前模式（读 / 写）和每个持有者的重入次数，
+ * 每个持有者的租期到期时间单独记录在 zset 中，加锁、解锁、重入、续期以及到期清理都在 {@link LockScripts} 的读写锁脚本内原子完成：
+ * <ul>
+ *   <li>读锁共享：没有写者持有时，任意多个持有者可以同时持有读锁</li>
+ *   <li>写锁独占：只有锁完全空闲时才能获取；写锁持有者可以再获取读锁（降级），读锁持有者不能升级</li>
+ *   <li>写者优先（jedis.lock.writer-preference）：写者加锁失败时在等待写者 zset 中登记，
+ *       登记期间新的读者被拒绝，已持有读锁的读者仍可重入，现有读者释放后写者即可获取锁</li>
+ *   <li>某个读者崩溃时只有它自己的租期到期，其余读者的续期不会让它的持有一直保留</li>
+ * </ul>
+ * <p>
+ * 读者与写者订阅不同的释放频道：锁完全释放时唤醒一个等待的写者，同时唤醒全部等待的读者，
+ * 写锁降级为读锁时只唤醒读者。leaseTime 小于等于 0 时由 {@link JedisLockWatchdog} 以 {@link LockScripts#LEASED_FIELD_RENEW} 续期。
+ * <p>
+ * 持有者标识与 {@link JedisDistributedLockImpl} 相同（JVM 实例 ID + 线程 ID 或 ownerId），
+ * 两把锁在本地各自记录持有状态，{@link AbstractDistributedLock#isLockHeldByCurrentThread()} 不访问 Redis。
+ * 业务中应通过 {@link com.wangguangwu.distributedlockredis.lock.factory.JedisLockFactory#getReadWriteLock(String)} 获取实例。
+ *
+ * @author wangguangwu
+ */
+@Slf4j
+public class JedisReadWriteLockImpl implements DistributedReadWriteLock {
+
+    /**
+     * 锁没有设置过期时间等异常情况下的最长等待间隔，避免等待者错过消息后一直阻塞
+     */
+    private static final long MAX_WAIT_INTERVAL_MILLIS = 1000;
+
+    private static final byte[] DEFAULT_LOCK_TIME_PX_BYTES = SafeEncoder.encode(String.valueOf(LockConstants.DEFAULT_LOCK_TIME_PX));
+
+    private static final byte[] WRITER_PREFERENCE_ON = SafeEncoder.encode("1");
+
+    private static final byte[] WRITER_PREFERENCE_OFF = SafeEncoder.encode("0");
+
+    private final String lockKey;
+
+    private final JedisScriptExecutor scriptExecutor;
+
+    private final JedisLockReleaseSubscriber releaseSubscriber;
+
+    private final JedisLockWatchdog watchdog;
+
+    private final boolean writerPreference;
+
+    /**
+     * 预先编码的锁 key、持有者租期 zset、等待写者 zset 与两个释放频道，三个 key 位于同一 slot
+     */
+    private final byte[] lockKeyBytes;
+
+    private final byte[] leasesKeyBytes;
+
+    private final byte[] waitingWritersKeyBytes;
+
+    private final byte[] readChannelBytes;
+
+    private final byte[] writeChannelBytes;
+
+    private final Mode readLock;
+
+    private final Mode writeLock;
+
+    public JedisReadWriteLockImpl(String lockKey,
+                                  JedisScriptExecutor scriptExecutor,
+                                  JedisLockReleaseSubscriber releaseSubscriber,
+                                  JedisLockWatchdog watchdog,
+                                  boolean writerPreference) {
+        this.lockKey = lockKey;
+        this.scriptExecutor = scriptExecutor;
+        this.releaseSubscriber = releaseSubscriber;
+        this.watchdog = watchdog;
+        this.writerPreference = writerPreference;
+        this.lockKeyBytes = SafeEncoder.encode(lockKey);
+        this.leasesKeyBytes = SafeEncoder.encode(JedisDistributedLockImpl.relatedKeyOf(lockKey, "leases"));
+        this.waitingWritersKeyBytes = SafeEncoder.encode(JedisDistributedLockImpl.relatedKeyOf(lockKey, "writers"));
+        String readChannel = JedisLockReleaseSubscriber.channelOf(lockKey) + ":read";
+        String writeChannel = JedisLockReleaseSubscriber.channelOf(lockKey) + ":write";
+        this.readChannelBytes = SafeEncoder.encode(readChannel);
+        this.writeChannelBytes = SafeEncoder.encode(writeChannel);
+        this.readLock = new ReadLock(readChannel);
+        this.writeLock = new WriteLock(writeChannel);
+    }
+
+    @Override
+    public AbstractDistributedLock readLock() {
+        return readLock;
+    }
+
+    @Override
+    public AbstractDistributedLock writeLock() {
+        return writeLock;
+    }
+
+    /**
+     * 本地是否仍有持有者持有读锁或写锁，供 JedisLockFactory 判断实例能否被淘汰
+     *
+     * @return true 表示仍有持有者
+     */
+    public boolean isHeldLocally() {
+        return !readLock.holds.isEmpty() || !writeLock.holds.isEmpty();
+    }
+
+    private static String readerField(long ownerId) {
+        return JedisDistributedLockImpl.ownerOf(ownerId) + ":r";
+    }
+
+    private static String writerField(long ownerId) {
+        return JedisDistributedLockImpl.ownerOf(ownerId) + ":w";
+    }
+
+    /**
+     * 读锁与写锁的公共部分：等待、本地持有记录、解锁与续期，区别只在加锁脚本
+     */
+    private abstract class Mode extends AbstractDistributedLock {
+
+        /**
+         * 使用 ConcurrentHashMap 记录每个持有者的本地持有状态，key 为线程 ID 或 ownerId
+         */
+        private final ConcurrentHashMap<Long, LocalHold> holds = new ConcurrentHashMap<>();
+
+        private final String channel;
+
+        private final String name;
+
+        private Mode(String channel, String name, String backend) {
+            super(JedisReadWriteLockImpl.this.lockKey, backend);
+            this.channel = channel;
+            this.name = name;
+        }
+
+        /**
+         * 持有者在 hash 中的 field
+         */
+        abstract String fieldOf(long ownerId);
+
+        /**
+         * 执行一次加锁脚本
+         *
+         * @param ownerId          持有者 ID
+         * @param fieldBytes       预先编码的持有者 field
+         * @param leaseMillisBytes 预先编码的租期（毫秒）
+         * @param remainingMillis  剩余等待时间（毫秒）
+         * @return null 表示加锁成功，否则为建议的最长等待时间（毫秒）
+         */
+        abstract Long attempt(long ownerId, byte[] fieldBytes, byte[] leaseMillisBytes, long remainingMillis);
+
+        @Override
+        public boolean lock() {
+            long ownerId = Thread.currentThread().getId();
+            String field = prepare(ownerId);
+            long startNanos = System.nanoTime();
+            Long ttl;
+            try {
+                ttl = attempt(ownerId, SafeEncoder.encode(field), DEFAULT_LOCK_TIME_PX_BYTES, 0);
+            } catch (RuntimeException e) {
+                metrics.error();
+                throw e;
+            }
+            if (ttl != null) {
+                metrics.contended();
+                metrics.timedOut();
+                log.debug("获取{}失败: {}", name, lockKey);
+                return false;
+            }
+            onLocked(ownerId, field, startNanos, startNanos, LockConstants.DEFAULT_LOCK_TIME_PX, false);
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+            return tryLock(waitTime, leaseTime, unit, Thread.currentThread().getId());
+        }
+
+        @Override
+        public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit, long ownerId) throws InterruptedException {
+            long callNanos = System.nanoTime();
+            String field = prepare(ownerId);
+            // leaseTime 小于等于 0 时启用看门狗，初始租期为看门狗租期
+            boolean useWatchdog = leaseTime <= 0;
+            long leaseMillis = useWatchdog ? watchdog.getLeaseMillis() : unit.toMillis(leaseTime);
+            Long startNanos;
+            try {
+                startNanos = acquire(ownerId, SafeEncoder.encode(field), SafeEncoder.encode(String.valueOf(leaseMillis)),
+                        unit.toMillis(waitTime));
+            } catch (RuntimeException e) {
+                metrics.error();
+                throw e;
+            }
+            if (startNanos == null) {
+                metrics.timedOut();
+                log.debug("tryLock {}失败: {}", name, lockKey);
+                return false;
+            }
+            onLocked(ownerId, field, callNanos, startNanos, leaseMillis, useWatchdog);
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            unlock(Thread.currentThread().getId());
+        }
+
+        @Override
+        public void unlock(long ownerId) {
+            LocalHold hold = holds.get(ownerId);
+            if (hold == null) {
+                log.warn("未持有{}: {}, ownerId={}", name, lockKey, ownerId);
+                return;
+            }
+            Object result = scriptExecutor.evalsha(LockScripts.READ_WRITE_UNLOCK, 2,
+                    lockKeyBytes, leasesKeyBytes, SafeEncoder.encode(hold.field), readChannelBytes, writeChannelBytes);
+            long code = result == null ? 0 : (Long) result;
+            if (code == 2) {
+                hold.count--;
+                return;
+            }
+            holds.remove(ownerId);
+            metrics.released(hold.acquiredNanos);
+            if (hold.watchdog) {
+                watchdog.unwatch(lockKey, hold.field);
+            }
+            if (code == 1) {
+                log.debug("释放{}成功: {}, field={}", name, lockKey, hold.field);
+            } else {
+                metrics.lost();
+                log.warn("释放{}失败，锁已过期: {}, field={}", name, lockKey, hold.field);
+            }
+        }
+
+        /**
+         * 根据本地记录判断当前线程是否持有锁，不访问 Redis
+         *
+         * @return true 表示当前线程持有锁且租期未到期
+         */
+        @Override
+        public boolean isLockHeldByCurrentThread() {
+            LocalHold hold = holds.get(Thread.currentThread().getId());
+            return hold != null && hold.isValid();
+        }
+
+        /**
+         * 租期已到期的本地记录作废，重入次数以 Redis 中的为准
+         */
+        private String prepare(long ownerId) {
+            LocalHold hold = holds.get(ownerId);
+            if (hold != null && !hold.isValid()) {
+                holds.remove(ownerId);
+            }
+            return fieldOf(ownerId);
+        }
+
+        /**
+         * 在等待时间内反复加锁，等待期间订阅释放频道
+         *
+         * @return 成功的那次加锁请求发出前的 System.nanoTime，用于计算本地租期；null 表示超时未获取到锁
+         */
+        private Long acquire(long ownerId, byte[] fieldBytes, byte[] leaseMillisBytes, long waitMillis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + waitMillis;
+            long startNanos = System.nanoTime();
+            Long ttl = attempt(ownerId, fieldBytes, leaseMillisBytes, waitMillis);
+            if (ttl == null) {
+                return startNanos;
+            }
+            metrics.contended();
+            if (System.currentTimeMillis() >= deadline) {
+                return null;
+            }
+
+            ReleaseSignal signal = releaseSubscriber.subscribe(channel);
+            try {
+                signal.awaitSubscribed(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                while (true) {
+                    startNanos = System.nanoTime();
+                    ttl = attempt(ownerId, fieldBytes, leaseMillisBytes, Math.max(deadline - System.currentTimeMillis(), 1));
+                    if (ttl == null) {
+                        return startNanos;
+                    }
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        return null;
+                    }
+                    // 收到释放消息或最早到期的持有者到期后重试；-2 表示没有持有者，立即重试
+                    long interval = ttl >= 0 ? ttl : (ttl == -2 ? 0 : MAX_WAIT_INTERVAL_MILLIS);
+                    signal.await(Math.min(interval, remaining), TimeUnit.MILLISECONDS);
+                }
+            } finally {
+                releaseSubscriber.unsubscribe(channel, signal);
+            }
+        }
+
+        /**
+         * 记录加锁成功
+         *
+         * @param callNanos  调用加锁时的 System.nanoTime，用于记录加锁耗时
+         * @param startNanos 成功的那次加锁请求发出前的 System.nanoTime，用于计算本地租期
+         */
+        private void onLocked(long ownerId, String field, long callNanos, long startNanos, long leaseMillis, boolean useWatchdog) {
+            LocalHold hold = holds.get(ownerId);
+            if (hold != null) {
+                // 重入：脚本已重置租期
+                hold.count++;
+                hold.renew(startNanos, leaseMillis);
+                return;
+            }
+            holds.put(ownerId, new LocalHold(field, startNanos, metrics.acquired(callNanos), leaseMillis, useWatchdog));
+            if (useWatchdog) {
+                watchdog.watch(lockKey, field, LockScripts.LEASED_FIELD_RENEW, lockKeyBytes, leasesKeyBytes);
+            }
+            log.debug("获取{}成功: {}{}", name, lockKey, useWatchdog ? " (Watchdog)" : "");
+        }
+    }
+
+    private final class ReadLock extends Mode {
+
+        private ReadLock(String channel) {
+            super(channel, "读锁", "jedis-read");
+        }
+
+        @Override
+        String fieldOf(long ownerId) {
+            return readerField(ownerId);
+        }
+
+        @Override
+        Long attempt(long ownerId, byte[] fieldBytes, byte[] leaseMillisBytes, long remainingMillis) {
+            return (Long) scriptExecutor.evalsha(LockScripts.READ_LOCK, 3,
+                    lockKeyBytes, leasesKeyBytes, waitingWritersKeyBytes,
+                    fieldBytes, leaseMillisBytes, SafeEncoder.encode(writerField(ownerId)),
+                    writerPreference ? WRITER_PREFERENCE_ON : WRITER_PREFERENCE_OFF);
+        }
+    }
+
+    private final class WriteLock extends Mode {
+
+        private WriteLock(String channel) {
+            super(channel, "写锁", "jedis-write");
+        }
+
+        @Override
+        String fieldOf(long ownerId) {
+            return writerField(ownerId);
+        }
+
+        /**
+         * 写者优先时以剩余等待时间作为等待登记的有效期，写者放弃等待后登记自然过期
+         */
+        @Override
+        Long attempt(long ownerId, byte[] fieldBytes, byte[] leaseMillisBytes, long remainingMillis) {
+            long registerMillis = writerPreference ? remainingMillis : 0;
+            return (Long) scriptExecutor.evalsha(LockScripts.WRITE_LOCK, 3,
+                    lockKeyBytes, leasesKeyBytes, waitingWritersKeyBytes,
+                    fieldBytes, leaseMillisBytes, SafeEncoder.encode(String.valueOf(registerMillis)));
+        }
+    }
+
+    /**
+     * 持有者在本地的持有状态，只会被持有者修改
+     */
+    private static final class LocalHold {
+
+        private final String field;
+
+        private final boolean watchdog;
+
+        /**
+         * 获取锁的时间（System.nanoTime），用于记录持有时间
+         */
+        private final long acquiredNanos;
+
+        /**
+         * 租期到期时间（System.nanoTime），从发出加锁请求前开始计算，保证不晚于 Redis 中的实际到期时间
+         */
+        private long expireAtNanos;
+
+        private int count = 1;
+
+        private LocalHold(String field, long startNanos, long acquiredNanos, long leaseMillis, boolean watchdog) {
+            this.field = field;
+            this.watchdog = watchdog;
+            this.acquiredNanos = acquiredNanos;
+            renew(startNanos, leaseMillis);
+        }
+
+        private void renew(long startNanos, long leaseMillis) {
+            this.expireAtNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+        }
+
+        /**
+         * 看门狗模式下租期由看门狗续期，视为一直有效
+         */
+        private boolean isValid() {
+            return watchdog || System.nanoTime() - expireAtNanos < 0;
+        }
+    }
+}
@@ -0,0 +1,603 @@
+package com.wangguangwu.distributedlockredis.lock.impl;
+
+import com.wangguangwu.distributedlockredis.constants.LockConstants;
+import com.wangguangwu.distributedlockredis.lock.AbstractDistributedLock;
+import com.wangguangwu.distributedlockredis.lock.support.LocalLeaseTimer;
+import io.netty.util.Timeout;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * 进程内的锁，语义与 Redis 锁一致，用于单节点部署与不依赖 Redis 的测试，业务代码切换实现时不需要改动：
+ * <ul>
+ *   <li>持有者为线程 ID 或 {@link com.wangguangwu.distributedlockredis.lock.LockHandle} 的 ownerId，可重入，可以在任意线程按 ownerId 解锁</li>
+ *   <li>leaseTime 大于 0 时租期到期后锁自动失效，下一个加锁者直接接管，原持有者解锁时记为 lost；
+ *   小于等于 0 时相当于看门狗模式，一直持有到解锁</li>
+ *   <li>lock() 只尝试一次，租期为 DEFAULT_LOCK_TIME_PX，与 Jedis 锁相同</li>
+ *   <li>每次新的持有分配严格递增的 fencing token，重入不改变 token</li>
+ * </ul>
+ * <p>
+ * 每个 key 的状态只有一个引用：当前持有（{@link Hold}），加锁、解锁各一次 CAS，不加锁、不访问共享的全局结构，
+ * 不同 key 之间没有任何争用。租期按 {@link LocalLeaseTimer} 的粗粒度时钟判断，热路径上不读取系统时间；
+ * 未绑定指标注册表时也不为指标读取 System.nanoTime。
+ * <p>
+ * 等待者在队列中排队，解锁只唤醒队首一个等待者，不会惊群；等待者放弃等待时把唤醒转交给下一个。
+ * 锁被占用且有固定租期时，由第一个等待者在时间轮上登记到期时间，到期后唤醒队首接管。
+ * 异步等待不占用线程，超时同样由时间轮触发，回调在公共线程池中执行，不在解锁线程上执行。
+ * <p>
+ * 状态只保存在当前 JVM，{@link #isLockHeldRemotely(long)} 与本地查询结果相同。
+ * <p>
+ * 状态保存在实例中，同一 key 同一时刻只能有一个存活的实例。工厂淘汰实例时调用 {@link #retire()}，
+ * 在没有持有者、没有等待者时以一次 CAS 把实例永久标记为废弃；调用方此前取出的实例仍可能被继续使用，
+ * 废弃的实例把全部操作转交给工厂中该 key 当前的实例，淘汰与"取出实例后加锁"之间因此不会出现两个各自加锁的实例。
+ * fencing token 以 JVM 内单调递增的 System.nanoTime 为起点，淘汰后重新创建的实例分配的 token 仍大于旧实例的全部 token。
+ * 业务中应通过 {@link com.wangguangwu.distributedlockredis.lock.factory.LocalLockFactory#getLock(String)} 按 key 获取实例。
+ *
+ * @author wangguangwu
+ */
+@Slf4j
+public class LocalDistributedLockImpl extends AbstractDistributedLock {
+
+    /**
+     * 看门狗模式的持有没有到期时间
+     */
+    private static final long NEVER = Long.MAX_VALUE;
+
+    /**
+     * 等待时间超过一年（如 lockAsync）时不设截止时间
+     */
+    private static final long FOREVER_NANOS = TimeUnit.DAYS.toNanos(365);
+
+    /**
+     * 已被工厂淘汰的实例的持有标记，见 {@link #retire()}
+     */
+    private static final Hold RETIRED = new Hold(0, 0);
+
+    /**
+     * fencing token 的时间起点，token 为相对它的纳秒数，保证为正
+     */
+    private static final long FENCING_ORIGIN_NANOS = System.nanoTime() - 1;
+
+    private static final VarHandle HOLD;
+
+    private static final VarHandle FENCING_SEQUENCE;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HOLD = lookup.findVarHandle(LocalDistributedLockImpl.class, "hold", Hold.class);
+            FENCING_SEQUENCE = lookup.findVarHandle(LocalDistributedLockImpl.class, "fencingSequence", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final LocalLeaseTimer leaseTimer;
+
+    /**
+     * 按 key 取得当前存活的实例，实例被淘汰后把操作转交给它；为 null 时实例不在工厂中，不会被淘汰
+     */
+    private final Function<String, LocalDistributedLockImpl> registry;
+
+    private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 当前持有，null 表示空闲，{@link #RETIRED} 表示实例已被淘汰；租期已过的持有仍保留在这里，直到被下一个加锁者替换
+     */
+    private volatile Hold hold;
+
+    /**
+     * 已分配的最大 fencing token，通过 FENCING_SEQUENCE 原子递增。
+     * 以创建实例时的 System.nanoTime 为初值：一次新的持有至少耗时 1 纳秒，旧实例分配的 token 不会超过它被淘汰时的时间，
+     * 同一 key 淘汰后重新创建的实例分配的 token 因此仍大于旧实例的全部 token
+     */
+    @SuppressWarnings("unused")
+    private volatile long fencingSequence = System.nanoTime() - FENCING_ORIGIN_NANOS;
+
+    public LocalDistributedLockImpl(String lockKey, LocalLeaseTimer leaseTimer) {
+        this(lockKey, leaseTimer, null);
+    }
+
+    /**
+     * @param registry 按 key 取得工厂中当前的实例，实例被淘汰后把操作转交给它
+     */
+    public LocalDistributedLockImpl(String lockKey, LocalLeaseTimer leaseTimer, Function<String, LocalDistributedLockImpl> registry) {
+        super(lockKey, "local");
+        this.leaseTimer = leaseTimer;
+        this.registry = registry;
+    }
+
+    @Override
+    public boolean lock() {
+        long ownerId = Thread.currentThread().getId();
+        if (tryAcquire(ownerId, LockConstants.DEFAULT_LOCK_TIME_PX, startNanos())) {
+            return true;
+        }
+        if (isRetired()) {
+            return successor().lock();
+        }
+        // lock() 只尝试一次，锁被他人持有即失败
+        metrics.contended();
+        metrics.timedOut();
+        log.debug("获取锁失败: {}", lockKey);
+        return false;
+    }
+
+    @Override
+    public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+        return tryLock(waitTime, leaseTime, unit, Thread.currentThread().getId());
+    }
+
+    /**
+     * 以指定持有者阻塞式尝试加锁，等待期间挂起当前线程，被唤醒后重试
+     */
+    @Override
+    public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit, long ownerId) throws InterruptedException {
+        long callNanos = startNanos();
+        long leaseMillis = leaseMillisOf(leaseTime, unit);
+        if (tryAcquire(ownerId, leaseMillis, callNanos)) {
+            return true;
+        }
+        return awaitLock(unit.toNanos(waitTime), leaseMillis, callNanos, ownerId);
+    }
+
+    private boolean tryLock(long waitNanos, long leaseMillis, long callNanos, long ownerId) throws InterruptedException {
+        return tryAcquire(ownerId, leaseMillis, callNanos) || awaitLock(waitNanos, leaseMillis, callNanos, ownerId);
+    }
+
+    /**
+     * 第一次尝试失败后：实例已被淘汰时转交给新实例，否则排队等待
+     */
+    private boolean awaitLock(long waitNanos, long leaseMillis, long callNanos, long ownerId) throws InterruptedException {
+        if (isRetired()) {
+            return successor().tryLock(waitNanos, leaseMillis, callNanos, ownerId);
+        }
+        metrics.contended();
+        if (waitNanos <= 0) {
+            metrics.timedOut();
+            return false;
+        }
+        long deadlineNanos = System.nanoTime() + Math.min(waitNanos, FOREVER_NANOS);
+        ThreadWaiter waiter = new ThreadWaiter(Thread.currentThread());
+        // 先入队再重试，解锁者要么看到入队的等待者，要么等待者看到已释放的锁，不会错过唤醒
+        waiters.add(waiter);
+        try {
+            while (true) {
+                if (tryAcquire(ownerId, leaseMillis, callNanos)) {
+                    return true;
+                }
+                if (isRetired()) {
+                    return successor().tryLock(deadlineNanos - System.nanoTime(), leaseMillis, callNanos, ownerId);
+                }
+                watchExpiry(hold);
+                long remainingNanos = deadlineNanos - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    metrics.timedOut();
+                    log.debug("tryLock 失败: {}", lockKey);
+                    return false;
+                }
+                LockSupport.parkNanos(this, remainingNanos);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            leave(waiter);
+        }
+    }
+
+    @Override
+    public void unlock() {
+        unlock(Thread.currentThread().getId());
+    }
+
+    /**
+     * 释放指定持有者的锁，重入时只减少重入次数；租期已过时锁已视为释放，记为 lost
+     */
+    @Override
+    public void unlock(long ownerId) {
+        Hold current = hold;
+        if (current == RETIRED) {
+            successor().unlock(ownerId);
+            return;
+        }
+        if (current == null || current.ownerId != ownerId) {
+            log.warn("当前持有者未持有锁，无法释放: {}, ownerId={}", lockKey, ownerId);
+            return;
+        }
+        if (!current.isValid(leaseTimer)) {
+            if (HOLD.compareAndSet(this, current, null)) {
+                signalNext();
+            }
+            metrics.lost();
+            log.warn("锁的租期已过，释放时已被视为释放: {}, ownerId={}", lockKey, ownerId);
+            return;
+        }
+        if (--current.count > 0) {
+            return;
+        }
+        if (HOLD.compareAndSet(this, current, null)) {
+            if (current.acquiredNanos != 0) {
+                metrics.released(current.acquiredNanos);
+            }
+            signalNext();
+        } else {
+            // 判断租期之后恰好到期并被他人接管
+            metrics.lost();
+        }
+    }
+
+    @Override
+    public boolean isLockHeldByCurrentThread() {
+        return isHeldBy(Thread.currentThread().getId());
+    }
+
+    /**
+     * 状态只保存在当前 JVM，与本地查询结果相同
+     */
+    @Override
+    public boolean isLockHeldRemotely(long ownerId) {
+        return isHeldBy(ownerId);
+    }
+
+    @Override
+    public long getFencingToken(long ownerId) {
+        Hold current = hold;
+        if (current == RETIRED) {
+            return successor().getFencingToken(ownerId);
+        }
+        return current != null && current.ownerId == ownerId && current.isValid(leaseTimer) ? current.fencingToken : 0;
+    }
+
+    /**
+     * 异步加锁一次，语义与 {@link #lock()} 相同
+     */
+    @Override
+    public CompletionStage<Boolean> lockAsync(long ownerId) {
+        if (tryAcquire(ownerId, LockConstants.DEFAULT_LOCK_TIME_PX, startNanos())) {
+            return CompletableFuture.completedFuture(true);
+        }
+        if (isRetired()) {
+            return successor().lockAsync(ownerId);
+        }
+        metrics.contended();
+        metrics.timedOut();
+        return CompletableFuture.completedFuture(false);
+    }
+
+    /**
+     * 异步尝试加锁，等待期间不占用线程
+     */
+    @Override
+    public CompletionStage<Boolean> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit, long ownerId) {
+        long callNanos = startNanos();
+        long leaseMillis = leaseMillisOf(leaseTime, unit);
+        if (tryAcquire(ownerId, leaseMillis, callNanos)) {
+            return CompletableFuture.completedFuture(true);
+        }
+        return awaitLockAsync(unit.toNanos(waitTime), leaseMillis, callNanos, ownerId);
+    }
+
+    private CompletableFuture<Boolean> tryLockAsync(long waitNanos, long leaseMillis, long callNanos, long ownerId) {
+        if (tryAcquire(ownerId, leaseMillis, callNanos)) {
+            return CompletableFuture.completedFuture(true);
+        }
+        return awaitLockAsync(waitNanos, leaseMillis, callNanos, ownerId);
+    }
+
+    /**
+     * 第一次尝试失败后：实例已被淘汰时转交给新实例，否则登记异步等待者
+     */
+    private CompletableFuture<Boolean> awaitLockAsync(long waitNanos, long leaseMillis, long callNanos, long ownerId) {
+        if (isRetired()) {
+            return successor().tryLockAsync(waitNanos, leaseMillis, callNanos, ownerId);
+        }
+        metrics.contended();
+        if (waitNanos <= 0) {
+            metrics.timedOut();
+            return CompletableFuture.completedFuture(false);
+        }
+        AsyncWaiter waiter = new AsyncWaiter(ownerId, leaseMillis, callNanos,
+                System.nanoTime() + Math.min(waitNanos, FOREVER_NANOS));
+        waiters.add(waiter);
+        if (waitNanos < FOREVER_NANOS) {
+            waiter.timeout = leaseTimer.schedule(waiter::expire, waitNanos, TimeUnit.NANOSECONDS);
+        }
+        waiter.attempt();
+        return waiter.result;
+    }
+
+    @Override
+    public CompletionStage<Void> unlockAsync(long ownerId) {
+        unlock(ownerId);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * 是否被持有或有等待者
+     *
+     * @return true 表示仍在使用
+     */
+    public boolean isHeldLocally() {
+        return !isRetired() && (!isFree() || !waiters.isEmpty());
+    }
+
+    /**
+     * 没有持有者、没有等待者时把实例永久标记为废弃，供 LocalLockFactory 淘汰实例时在该 key 的映射锁内调用。
+     * <p>
+     * 标记与加锁争用同一个 CAS：加锁者先成功则标记失败，实例继续保留；标记先成功则加锁者看到废弃标记，
+     * 转而在工厂中该 key 的新实例上加锁。标记成功后唤醒全部等待者，标记前一刻才入队的等待者同样转交给新实例
+     *
+     * @return true 表示已废弃，可以从工厂中移除
+     */
+    public boolean retire() {
+        Hold current = hold;
+        if (registry == null || current == RETIRED || (current != null && current.isValid(leaseTimer)) || !waiters.isEmpty()) {
+            return false;
+        }
+        if (!HOLD.compareAndSet(this, current, RETIRED)) {
+            return false;
+        }
+        for (Waiter waiter : waiters) {
+            waiter.signal();
+        }
+        return true;
+    }
+
+    /**
+     * 尝试一次加锁：空闲或租期已过时以 CAS 替换为新的持有，当前持有者再次加锁时增加重入次数
+     *
+     * @param leaseMillis 租期（毫秒），0 表示一直持有到解锁
+     * @param callNanos   调用加锁时的 System.nanoTime，未记录指标时为 0
+     * @return true 表示获取成功
+     */
+    private boolean tryAcquire(long ownerId, long leaseMillis, long callNanos) {
+        Hold current = hold;
+        if (current != null && current.isValid(leaseTimer)) {
+            if (current.ownerId != ownerId) {
+                return false;
+            }
+            current.count++;
+            return true;
+        }
+        if (current == RETIRED) {
+            return false;
+        }
+        Hold next = new Hold(ownerId, leaseMillis > 0 ? leaseTimer.expireAt(leaseMillis) : NEVER);
+        if (!HOLD.compareAndSet(this, current, next)) {
+            return false;
+        }
+        next.fencingToken = (long) FENCING_SEQUENCE.getAndAdd(this, 1L) + 1;
+        next.acquiredNanos = callNanos == 0 ? 0 : metrics.acquired(callNanos);
+        return true;
+    }
+
+    private boolean isHeldBy(long ownerId) {
+        Hold current = hold;
+        if (current == RETIRED) {
+            return successor().isHeldBy(ownerId);
+        }
+        return current != null && current.ownerId == ownerId && current.isValid(leaseTimer);
+    }
+
+    private boolean isRetired() {
+        return hold == RETIRED;
+    }
+
+    /**
+     * 工厂中该 key 当前的实例。淘汰在映射锁内完成，移除前的极短时间内可能仍取到自己，此时重试
+     */
+    private LocalDistributedLockImpl successor() {
+        LocalDistributedLockImpl next;
+        while ((next = registry.apply(lockKey)) == this) {
+            Thread.onSpinWait();
+        }
+        return next;
+    }
+
+    private boolean isFree() {
+        Hold current = hold;
+        return current == null || !current.isValid(leaseTimer);
+    }
+
+    /**
+     * 唤醒队首的等待者
+     */
+    private void signalNext() {
+        Waiter head = waiters.peek();
+        if (head != null) {
+            head.signal();
+        }
+    }
+
+    /**
+     * 等待者离开队列；锁此时空闲说明自己可能刚被唤醒却不再等待，把唤醒转交给下一个
+     */
+    private void leave(Waiter waiter) {
+        waiters.remove(waiter);
+        if (isFree()) {
+            signalNext();
+        }
+    }
+
+    /**
+     * 锁有固定租期且有人等待时，在时间轮上登记到期时间，每个持有只登记一次。
+     * 粗粒度时钟可能滞后，到期时仍显示有效则再等一个刻度
+     */
+    private void watchExpiry(Hold current) {
+        if (current == null || current.expireAtMillis == NEVER || current.expiryWatched) {
+            return;
+        }
+        current.expiryWatched = true;
+        long delayMillis = current.expireAtMillis - leaseTimer.currentMillis();
+        leaseTimer.schedule(() -> onExpiry(current), Math.max(delayMillis, leaseTimer.getTickMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    private void onExpiry(Hold expired) {
+        if (hold != expired) {
+            return;
+        }
+        if (expired.isValid(leaseTimer)) {
+            expired.expiryWatched = false;
+            watchExpiry(expired);
+            return;
+        }
+        signalNext();
+    }
+
+    private long startNanos() {
+        return metrics.isRecording() ? System.nanoTime() : 0;
+    }
+
+    private static long leaseMillisOf(long leaseTime, TimeUnit unit) {
+        return leaseTime > 0 ? Math.max(unit.toMillis(leaseTime), 1) : 0;
+    }
+
+    /**
+     * 一次持有，持有者与到期时间不变；重入次数、token 与获取时间只会被持有者修改
+     */
+    private static final class Hold {
+
+        private final long ownerId;
+
+        /**
+         * 以 {@link LocalLeaseTimer#currentMillis()} 计的到期时间，看门狗模式为 NEVER
+         */
+        private final long expireAtMillis;
+
+        private int count = 1;
+
+        private long fencingToken;
+
+        /**
+         * 获取锁的时间（System.nanoTime），用于记录持有时间，未记录指标时为 0
+         */
+        private long acquiredNanos;
+
+        /**
+         * 是否已在时间轮上登记到期时间，重复登记只会多一次唤醒，因此不需要原子操作
+         */
+        private volatile boolean expiryWatched;
+
+        private Hold(long ownerId, long expireAtMillis) {
+            this.ownerId = ownerId;
+            this.expireAtMillis = expireAtMillis;
+        }
+
+        private boolean isValid(LocalLeaseTimer leaseTimer) {
+            return expireAtMillis == NEVER || leaseTimer.currentMillis() < expireAtMillis;
+        }
+    }
+
+    private interface Waiter {
+
+        /**
+         * 锁可能已经可以获取，唤醒等待者重试
+         */
+        void signal();
+    }
+
+    private static final class ThreadWaiter implements Waiter {
+
+        private final Thread thread;
+
+        private ThreadWaiter(Thread thread) {
+            this.thread = thread;
+        }
+
+        @Override
+        public void signal() {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * 异步等待者，重试在公共线程池中执行，结果只完成一次
+     */
+    private final class AsyncWaiter implements Waiter {
+
+        private final long ownerId;
+
+        private final long leaseMillis;
+
+        private final long callNanos;
+
+        private final long deadlineNanos;
+
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private volatile Timeout timeout;
+
+        private boolean done;
+
+        private AsyncWaiter(long ownerId, long leaseMillis, long callNanos, long deadlineNanos) {
+            this.ownerId = ownerId;
+            this.leaseMillis = leaseMillis;
+            this.callNanos = callNanos;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        @Override
+        public void signal() {
+            ForkJoinPool.commonPool().execute(this::attempt);
+        }
+
+        private void attempt() {
+            boolean retired = false;
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                if (!tryAcquire(ownerId, leaseMillis, callNanos)) {
+                    if (!isRetired()) {
+                        watchExpiry(hold);
+                        return;
+                    }
+                    retired = true;
+                }
+                done = true;
+            }
+            Timeout current = timeout;
+            if (current != null) {
+                current.cancel();
+            }
+            waiters.remove(this);
+            if (retired) {
+                // 实例已被淘汰，剩余的等待转交给新实例
+                successor().tryLockAsync(deadlineNanos - System.nanoTime(), leaseMillis, callNanos, ownerId)
+                        .whenComplete((acquired, e) -> {
+                            if (e != null) {
+                                result.completeExceptionally(e);
+                            } else {
+                                result.complete(acquired);
+                            }
+                        });
+                return;
+            }
+            result.complete(true);
+        }
+
+        private void expire() {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+            }
+            leave(this);
+            metrics.timedOut();
+            log.debug("tryLockAsync 失败: {}", lockKey);
+            // 不在时间轮线程上执行调用方的回调
+            result.completeAsync(() -> false);
+        }
+    }
+}
@@ -1,62 +1,99 @@
 package com.wangguangwu.distributedlockredis.lock.impl;
 
 import com.wangguangwu.distributedlockredis.lock.AbstractDistributedLock;
-import org.redisson.RedissonMultiLock;
+import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RLock;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
-import org.springframework.stereotype.Component;
+import org.redisson.api.RedissonClient;
 
-import java.lang.reflect.Field;
-import java.util.Objects;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 /**
- * 基于 RedissonMultiLock 实现 RedLock 算法的分布式锁。
+ * 基于多个独立 Redis 节点、按 RedLock 算法实现的分布式锁。
  * <p>
- * 此实现依赖于 RedissonRedLockConfig 中配置的 5 个 Redis 实例，
- * 组合成一个 RedissonMultiLock。当所有子锁均成功获取时，整体锁获取成功。
- * <br>
- * 自动续锁说明：调用 lock() 方法时不指定租期，Redisson 内部会启用 Watchdog 自动续锁机制，
- * 保证锁只要未被显式释放就持续有效；而 tryLock(waitTime, leaseTime, unit) 方法则指定固定租期，
- * 不会启用自动续锁。
- * </p>
+ * 每次加锁同时向全部节点发起加锁请求（每个节点一把同名的 RLock），
+ * 过半数（N/2 + 1）节点加锁成功即视为成功，不等待最慢的节点，一两个节点变慢或宕机不影响加锁，
+ * 加锁耗时取决于中位数节点而不是最慢的节点：
+ * <ul>
+ *   <li>锁的有效期 = 租期 - 加锁耗时 - 时钟漂移（租期的 1% + 2ms），有效期小于等于 0 时视为加锁失败</li>
+ *   <li>未达到多数或有效期不足时释放已加锁的节点，随机退避后重试，避免多个竞争者同时重试导致谁都拿不到多数</li>
+ *   <li>多数达成后才返回的节点加锁同样记入本次持有，解锁时一并释放</li>
+ * </ul>
+ * <p>
+ * leaseTime 小于等于 0 时启用 Redisson 的 Watchdog，由各节点的 RLock 分别自动续期。
+ * 重入在本地完成，不访问 Redis；持有状态记录在本地，{@link #isLockHeldByCurrentThread()} 与解锁前的校验不访问 Redis，
+ * 需要确认多数节点上的锁是否仍然存在时调用 {@link #isLockHeldRemotely(long)}。
+ * 业务中应通过 {@link com.wangguangwu.distributedlockredis.lock.factory.RedLockFactory#getLock(String)} 按 key 获取实例。
  *
  * @author wangguangwu
  */
-@Component
-@ConditionalOnBean(name = "redissonMultiLock")
+@Slf4j
 public class RedLockDistributedLockImpl extends AbstractDistributedLock {
 
-    private final RedissonMultiLock redissonMultiLock;
+    /**
+     * 时钟漂移按租期的 1% 加 2ms 估算
+     */
+    private static final double CLOCK_DRIFT_FACTOR = 0.01;
+
+    private static final long CLOCK_DRIFT_MILLIS = 2;
+
+    /**
+     * 每个节点上同名的锁
+     */
+    private final List<RLock> nodeLocks;
+
+    private final int quorum;
+
+    /**
+     * Watchdog 模式下各节点的租期
+     */
+    private final long watchdogLeaseMillis;
+
+    /**
+     * 加锁失败后重试前的最长随机退避时间
+     */
+    private final long retryDelayMillis;
+
+    /**
+     * 使用 ConcurrentHashMap 记录每个持有者的本地持有状态，key 为线程 ID 或 ownerId
+     */
+    private final ConcurrentHashMap<Long, LocalHold> holds = new ConcurrentHashMap<>();
 
-    public RedLockDistributedLockImpl(RedissonMultiLock redissonMultiLock) {
-        // 注意：此处锁标识需与配置保持一致
-        super("RedLock");
-        // redissonMultiLock 已在配置中组合了多个单节点锁，统一使用锁名 "RedLock"
-        this.redissonMultiLock = redissonMultiLock;
+    public RedLockDistributedLockImpl(String lockKey, List<RedissonClient> clients, long retryDelayMillis) {
+        super(lockKey, "redlock");
+        List<RLock> locks = new ArrayList<>(clients.size());
+        for (RedissonClient client : clients) {
+            locks.add(client.getLock(lockKey));
+        }
+        this.nodeLocks = locks;
+        this.quorum = clients.size() / 2 + 1;
+        this.watchdogLeaseMillis = clients.get(0).getConfig().getLockWatchdogTimeout();
+        this.retryDelayMillis = Math.max(retryDelayMillis, 1);
     }
 
     /**
-     * 阻塞式加锁，启用 Watchdog 自动续锁机制（不指定租期）。
+     * 阻塞式加锁，直到获取成功，启用 Watchdog 自动续锁机制（不指定租期）。
      *
-     * @return true 表示成功获取锁，否则 false
+     * @return true 表示成功获取锁，线程被中断时返回 false
      */
     @Override
     public boolean lock() {
         try {
-            // 使用 lock() 方法不传租期，Redisson 内部会默认设置初始租期（通常为30秒），并自动续期
-            redissonMultiLock.lock();
-            System.out.println("[RedLock] 获取锁成功: " + lockKey);
-            return true;
-        } catch (Exception e) {
-            System.err.println("[RedLock] 获取锁异常: " + e.getMessage());
+            return tryLock(Long.MAX_VALUE, -1, TimeUnit.MILLISECONDS, Thread.currentThread().getId());
+        } catch (InterruptedException e) {
+            log.warn("获取锁被中断: {}", lockKey);
             Thread.currentThread().interrupt();
             return false;
         }
     }
 
     /**
-     * 尝试在指定等待时间内获取锁，并设置固定租期（此时不启用自动续锁）。
+     * 尝试在指定等待时间内获取锁，leaseTime 大于 0 时使用固定租期（此时不启用自动续锁）。
      *
      * @param waitTime  最大等待时间
      * @param leaseTime 锁的租期
@@ -66,66 +103,316 @@ public class RedLockDistributedLockImpl extends AbstractDistributedLock {
      */
     @Override
     public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
-        boolean acquired = redissonMultiLock.tryLock(waitTime, leaseTime, unit);
+        boolean acquired = tryLock(waitTime, leaseTime, unit, Thread.currentThread().getId());
         if (acquired) {
-            System.out.println("[RedLock] tryLock 成功: " + lockKey);
+            log.debug("tryLock 成功: {}", lockKey);
         } else {
-            System.out.println("[RedLock] tryLock 失败: " + lockKey);
+            log.debug("tryLock 失败: {}", lockKey);
         }
         return acquired;
     }
 
+    /**
+     * 以指定持有者加锁，等待 {@link #tryLockAsync(long, long, TimeUnit, long)} 的结果
+     */
+    @Override
+    public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit, long ownerId) throws InterruptedException {
+        return awaitLock(tryLockAsync(waitTime, leaseTime, unit, ownerId), ownerId);
+    }
+
     /**
      * 释放锁。只有当前线程持有锁时才能释放。
      */
     @Override
     public void unlock() {
-        if (isLockHeldByCurrentThread()) {
-            redissonMultiLock.unlock();
-            System.out.println("[RedLock] 释放锁成功: " + lockKey);
-        } else {
-            System.out.println("[RedLock] 当前线程未持有锁，无法释放: " + lockKey);
+        unlock(Thread.currentThread().getId());
+    }
+
+    /**
+     * 释放指定持有者的锁，重入时只减少本地重入次数
+     */
+    @Override
+    public void unlock(long ownerId) {
+        if (holds.get(ownerId) == null) {
+            log.warn("当前持有者未持有锁，无法释放: {}, ownerId={}", lockKey, ownerId);
+            return;
         }
+        awaitUnlock(unlockAsync(ownerId));
+        log.debug("释放锁成功: {}", lockKey);
     }
 
     /**
-     * 判断当前线程是否持有锁。
+     * 根据本地记录判断当前线程是否持有锁，不访问 Redis
      *
-     * @return true 表示当前线程持有锁，否则 false
+     * @return true 表示当前线程持有锁且有效期未过
      */
     @Override
     public boolean isLockHeldByCurrentThread() {
-        // 获取内部所有的锁，RedissonMultiLock 提供 getLocks() 方法
-        for (RLock lock : Objects.requireNonNull(getUnderlyingLocks())) {
-            if (!lock.isHeldByCurrentThread()) {
+        LocalHold hold = holds.get(Thread.currentThread().getId());
+        return hold != null && hold.isValid();
+    }
+
+    /**
+     * 逐个节点查询持有者是否仍持有锁，多数节点确认即返回 true，剩余节点不足以达到多数时提前返回 false。
+     * 无法访问的节点视为未持有
+     */
+    @Override
+    public boolean isLockHeldRemotely(long ownerId) {
+        int held = 0;
+        int remaining = nodeLocks.size();
+        for (RLock nodeLock : nodeLocks) {
+            remaining--;
+            try {
+                if (nodeLock.isHeldByThread(ownerId)) {
+                    held++;
+                }
+            } catch (Exception e) {
+                log.warn("查询节点持有状态异常: {}", e.getMessage());
+            }
+            if (held >= quorum) {
+                return true;
+            }
+            if (held + remaining < quorum) {
                 return false;
             }
         }
-        return true;
+        return false;
+    }
+
+    /**
+     * 异步加锁，直到获取成功，启用 Watchdog 自动续锁
+     */
+    @Override
+    public CompletionStage<Boolean> lockAsync(long ownerId) {
+        return tryLockAsync(Long.MAX_VALUE, -1, TimeUnit.MILLISECONDS, ownerId);
+    }
+
+    /**
+     * 异步尝试加锁，每轮并行向全部节点加锁，退避等待期间不占用线程
+     */
+    @Override
+    public CompletionStage<Boolean> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit, long ownerId) {
+        long callNanos = System.nanoTime();
+        LocalHold hold = holds.get(ownerId);
+        if (hold != null) {
+            if (hold.isValid()) {
+                hold.count++;
+                return CompletableFuture.completedFuture(true);
+            }
+            // 有效期已过的本地记录作废
+            holds.remove(ownerId);
+            hold.attempt.release();
+        }
+        boolean useWatchdog = leaseTime <= 0;
+        long leaseMillis = useWatchdog ? watchdogLeaseMillis : unit.toMillis(leaseTime);
+        long waitNanos = unit.toNanos(waitTime);
+        // 等待时间过长（如 lock()）时不设截止时间
+        Long deadlineNanos = waitNanos >= TimeUnit.DAYS.toNanos(365) ? null : System.nanoTime() + waitNanos;
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        acquireRound(ownerId, leaseMillis, useWatchdog, deadlineNanos, callNanos, true, result);
+        return result;
     }
 
     /**
-     * 使用反射获取 RedissonMultiLock 内部的基础锁数组。
+     * 异步释放锁，并行释放全部已加锁的节点
+     */
+    @Override
+    public CompletionStage<Void> unlockAsync(long ownerId) {
+        LocalHold hold = holds.get(ownerId);
+        if (hold == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (--hold.count > 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        holds.remove(ownerId);
+        metrics.released(hold.acquiredNanos);
+        return hold.attempt.release();
+    }
+
+    /**
+     * 多数节点所需的数量
      *
-     * @return 基础锁数组，如果获取失败则返回 null
+     * @return N/2 + 1
      */
-    @SuppressWarnings("unchecked")
-    private RLock[] getUnderlyingLocks() {
-        try {
-            Field locksField = redissonMultiLock.getClass().getDeclaredField("locks");
-            locksField.setAccessible(true);
-            Object locksObj = locksField.get(redissonMultiLock);
-            if (locksObj instanceof RLock[]) {
-                return (RLock[]) locksObj;
-            } else if (locksObj instanceof java.util.List) {
-                java.util.List<RLock> locksList = (java.util.List<RLock>) locksObj;
-                return locksList.toArray(new RLock[0]);
-            } else {
-                return null;
+    public int getQuorum() {
+        return quorum;
+    }
+
+    /**
+     * 本地是否仍有持有者，供 RedLockFactory 判断实例能否被淘汰
+     *
+     * @return true 表示仍有持有者
+     */
+    public boolean isHeldLocally() {
+        return !holds.isEmpty();
+    }
+
+    /**
+     * 执行一轮加锁，失败且未到截止时间时随机退避后进行下一轮
+     *
+     * @param callNanos  调用加锁时的 System.nanoTime，用于记录加锁耗时
+     * @param firstRound 是否为第一轮，第一轮失败说明锁正被他人持有
+     */
+    private void acquireRound(long ownerId, long leaseMillis, boolean useWatchdog, Long deadlineNanos, long callNanos,
+                              boolean firstRound, CompletableFuture<Boolean> result) {
+        long startNanos = System.nanoTime();
+        Attempt attempt = new Attempt(ownerId);
+        for (RLock nodeLock : nodeLocks) {
+            nodeLock.tryLockAsync(0, useWatchdog ? -1 : leaseMillis, TimeUnit.MILLISECONDS, ownerId)
+                    .whenComplete((acquired, e) -> attempt.onNodeResult(nodeLock, e == null && Boolean.TRUE.equals(acquired)));
+        }
+        attempt.decided.thenAccept(reachedQuorum -> {
+            LocalHold hold = null;
+            try {
+                if (reachedQuorum) {
+                    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                    long drift = (long) (leaseMillis * CLOCK_DRIFT_FACTOR) + CLOCK_DRIFT_MILLIS;
+                    long validityMillis = leaseMillis - elapsedMillis - drift;
+                    if (validityMillis > 0) {
+                        hold = new LocalHold(attempt, startNanos + TimeUnit.MILLISECONDS.toNanos(leaseMillis - drift),
+                                metrics.acquired(callNanos), useWatchdog);
+                        holds.put(ownerId, hold);
+                        if (!result.complete(true)) {
+                            // 调用方已取消或超时放弃（orTimeout、completeOnTimeout），不会再有人解锁，立即释放
+                            log.debug("调用方已放弃等待，释放刚获取的锁: {}, ownerId={}", lockKey, ownerId);
+                            unlockAsync(ownerId);
+                        }
+                        return;
+                    }
+                    log.warn("加锁耗时超过租期，有效期不足: {}, elapsed={}ms", lockKey, elapsedMillis);
+                }
+                attempt.release();
+                if (firstRound) {
+                    metrics.contended();
+                }
+            } catch (RuntimeException e) {
+                // 以异常完成，避免调用方一直等待；已记录的持有一并释放
+                if (hold != null) {
+                    holds.remove(ownerId, hold);
+                }
+                attempt.release();
+                metrics.error();
+                result.completeExceptionally(e);
+                return;
+            }
+            if (result.isDone()) {
+                // 调用方已取消或超时放弃，不再重试
+                return;
             }
-        } catch (NoSuchFieldException | IllegalAccessException e) {
-            System.err.println("[RedLock] 获取内部锁失败: " + e.getMessage());
-            return null;
+            long remainingMillis = deadlineNanos == null ? Long.MAX_VALUE
+                    : TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+            if (remainingMillis <= 0) {
+                metrics.timedOut();
+                result.complete(false);
+                return;
+            }
+            long delay = Math.min(ThreadLocalRandom.current().nextLong(retryDelayMillis / 2, retryDelayMillis + 1), remainingMillis);
+            CompletableFuture.runAsync(() -> acquireRound(ownerId, leaseMillis, useWatchdog, deadlineNanos, callNanos, false, result),
+                    CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS));
+        });
+    }
+
+    /**
+     * 一轮加锁：收集各节点的加锁结果，达到多数或确定无法达到多数时完成 decided。
+     * 释放后返回的节点加锁立即解锁，不会遗留在节点上
+     */
+    private final class Attempt {
+
+        private final long ownerId;
+
+        private final List<RLock> acquiredNodes = new ArrayList<>();
+
+        private final CompletableFuture<Boolean> decided = new CompletableFuture<>();
+
+        private int failures;
+
+        private boolean released;
+
+        private Attempt(long ownerId) {
+            this.ownerId = ownerId;
+        }
+
+        private void onNodeResult(RLock nodeLock, boolean acquired) {
+            boolean reachedQuorum;
+            boolean failed;
+            synchronized (this) {
+                if (acquired && released) {
+                    unlockNode(nodeLock);
+                    return;
+                }
+                if (acquired) {
+                    acquiredNodes.add(nodeLock);
+                } else {
+                    failures++;
+                }
+                reachedQuorum = acquiredNodes.size() >= quorum;
+                failed = failures > nodeLocks.size() - quorum;
+            }
+            // 在锁外完成，回调中可能调用 release
+            if (reachedQuorum) {
+                decided.complete(true);
+            } else if (failed) {
+                decided.complete(false);
+            }
+        }
+
+        private CompletableFuture<Void> release() {
+            List<RLock> nodes;
+            synchronized (this) {
+                released = true;
+                nodes = new ArrayList<>(acquiredNodes);
+                acquiredNodes.clear();
+            }
+            CompletableFuture<?>[] unlocks = new CompletableFuture<?>[nodes.size()];
+            for (int i = 0; i < nodes.size(); i++) {
+                unlocks[i] = unlockNode(nodes.get(i));
+            }
+            return CompletableFuture.allOf(unlocks);
+        }
+
+        /**
+         * 节点上的锁可能已经过期，解锁失败时忽略
+         */
+        private CompletableFuture<Void> unlockNode(RLock nodeLock) {
+            return nodeLock.unlockAsync(ownerId).toCompletableFuture()
+                    .exceptionally(e -> null);
+        }
+    }
+
+    /**
+     * 持有者在本地的持有状态，count 只会被持有者修改
+     */
+    private static final class LocalHold {
+
+        private final Attempt attempt;
+
+        private final boolean watchdog;
+
+        /**
+         * 有效期截止时间（System.nanoTime），从发出加锁请求前开始计算并扣除时钟漂移
+         */
+        private final long validUntilNanos;
+
+        /**
+         * 获取锁的时间（System.nanoTime），用于记录持有时间
+         */
+        private final long acquiredNanos;
+
+        private int count = 1;
+
+        private LocalHold(Attempt attempt, long validUntilNanos, long acquiredNanos, boolean watchdog) {
+            this.attempt = attempt;
+            this.validUntilNanos = validUntilNanos;
+            this.acquiredNanos = acquiredNanos;
+            this.watchdog = watchdog;
+        }
+
+        /**
+         * 看门狗模式下租期由各节点的 Watchdog 续期，视为一直有效
+         */
+        private boolean isValid() {
+            return watchdog || System.nanoTime() - validUntilNanos < 0;
         }
     }
-}
\ No newline at end of file
+}
@@ -1,12 +1,20 @@
 package com.wangguangwu.distributedlockredis.lock.impl;
 
 import com.wangguangwu.distributedlockredis.lock.AbstractDistributedLock;
+import com.wangguangwu.distributedlockredis.lock.SharedOwnerLock;
+import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 基于 Redisson 单实例实现的分布式锁，使用 RLock 实现自动续期（Watchdog）机制。
@@ -15,17 +23,62 @@ import java.util.concurrent.TimeUnit;
  * 只要当前线程未调用 unlock()，锁的租期会自动延长。
  * 对于 tryLock(long, long, TimeUnit) 方法，传入租期后将禁用自动续期。
  * </p>
+ * <p>
+ * 实例级持有者（{@link SharedOwnerLock}）借助 RLock 带 threadId 的异步接口实现，
+ * 使用一个不会与真实线程 ID 冲突的负数作为 threadId。
+ * </p>
+ * <p>
+ * 加锁成功后在本地记录持有者、重入次数与租期到期时间，{@link #isLockHeldByCurrentThread()} 与解锁前的持有者校验
+ * 只查询本地记录，不访问 Redis；需要确认锁在 Redis 中是否仍然存在时调用 {@link #isLockHeldRemotely(long)}。
+ * </p>
+ * <p>
+ * RLock 在构造时创建一次并在全部操作中复用，不在每次加锁、解锁时重新 getLock。
+ * </p>
+ * <p>
+ * 等待发生在 Redisson 内部，无法区分第一次尝试是否失败，因此不记录 {@code distributed.lock.contended}。
+ * </p>
  *
  * @author wangguangwu
  */
+@Slf4j
 @Component
-public class RedissonDistributedLockImpl extends AbstractDistributedLock {
+public class RedissonDistributedLockImpl extends AbstractDistributedLock implements SharedOwnerLock {
+
+    /**
+     * 为每个锁实例分配实例级持有者的 threadId，取负数避免与真实线程 ID 冲突
+     */
+    private static final AtomicLong SHARED_OWNER_SEQUENCE = new AtomicLong();
+
+    /**
+     * 锁 key 对应的 RLock，RLock 本身不保存持有者状态，可以在多个线程之间共用
+     */
+    private final RLock lock;
+
+    private final long sharedThreadId = -SHARED_OWNER_SEQUENCE.incrementAndGet();
+
+    /**
+     * 实例级持有者获取锁的时间（System.nanoTime），用于记录持有时间
+     */
+    private volatile long sharedAcquiredNanos;
+
+    /**
+     * 实例级持有者是否有一次加锁尚未 releaseShared，再次加锁时据此判断 Redis 中是否可能残留上一次的持有
+     */
+    private volatile boolean sharedHeld;
 
-    private final RedissonClient redissonClient;
+    /**
+     * 持有者 ID（线程 ID 或 ownerId）到本地持有状态的映射
+     */
+    private final ConcurrentHashMap<Long, LocalHold> holds = new ConcurrentHashMap<>();
 
+    @Autowired
     public RedissonDistributedLockImpl(@Qualifier("redissonSingleClient") RedissonClient redissonClient) {
-        super("redissonLock");
-        this.redissonClient = redissonClient;
+        this("redissonLock", redissonClient);
+    }
+
+    public RedissonDistributedLockImpl(String lockKey, RedissonClient redissonClient) {
+        super(lockKey, "redisson");
+        this.lock = redissonClient.getLock(lockKey);
     }
 
     /**
@@ -36,14 +89,16 @@ public class RedissonDistributedLockImpl extends AbstractDistributedLock {
      */
     @Override
     public boolean lock() {
-        RLock lock = redissonClient.getLock(lockKey);
+        long startNanos = System.nanoTime();
         try {
             // 不设置租期，启用 Watchdog 自动续锁
             lock.lock();
-            System.out.println("[Redisson] (Watchdog) 获取锁成功: " + lockKey);
+            onLocked(Thread.currentThread().getId(), startNanos, -1);
+            log.debug("(Watchdog) 获取锁成功: {}", lockKey);
             return true;
         } catch (Exception e) {
-            System.err.println("[Redisson] 加锁异常: " + e.getMessage());
+            metrics.error();
+            log.error("加锁异常: {}", lockKey, e);
             return false;
         }
     }
@@ -59,38 +114,267 @@ public class RedissonDistributedLockImpl extends AbstractDistributedLock {
      */
     @Override
     public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
-        RLock lock = redissonClient.getLock(lockKey);
-        boolean acquired = lock.tryLock(waitTime, leaseTime, unit);
+        long startNanos = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = lock.tryLock(waitTime, leaseTime, unit);
+        } catch (RuntimeException e) {
+            metrics.error();
+            throw e;
+        }
         if (acquired) {
-            System.out.println("[Redisson] tryLock 成功: " + lockKey);
+            onLocked(Thread.currentThread().getId(), startNanos, unit.toMillis(leaseTime));
+            log.debug("tryLock 成功: {}", lockKey);
         } else {
-            System.out.println("[Redisson] tryLock 失败: " + lockKey);
+            metrics.timedOut();
+            log.debug("tryLock 失败: {}", lockKey);
         }
         return acquired;
     }
 
     /**
-     * 释放锁。Redisson 内部保证只有持锁线程才能释放锁。
+     * 以指定持有者加锁，等待 {@link #tryLockAsync(long, long, TimeUnit, long)} 的结果，异常时记录指标后抛出
+     */
+    @Override
+    public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit, long ownerId) throws InterruptedException {
+        try {
+            return awaitLock(tryLockAsync(waitTime, leaseTime, unit, ownerId), ownerId);
+        } catch (RuntimeException e) {
+            metrics.error();
+            throw e;
+        }
+    }
+
+    /**
+     * 释放锁。持有者校验只查询本地记录，当前线程未持有锁时不访问 Redis，
+     * Redisson 内部仍会校验持有者，锁已在 Redis 中丢失时只清理本地记录。
      */
     @Override
     public void unlock() {
-        RLock lock = redissonClient.getLock(lockKey);
-        if (lock.isHeldByCurrentThread()) {
+        long threadId = Thread.currentThread().getId();
+        if (!isHeldLocally(threadId)) {
+            log.warn("当前线程未持有锁，无法释放: {}", lockKey);
+            return;
+        }
+        try {
             lock.unlock();
-            System.out.println("[Redisson] 释放锁成功: " + lockKey);
-        } else {
-            System.out.println("[Redisson] 当前线程未持有锁，无法释放: " + lockKey);
+            log.debug("释放锁成功: {}", lockKey);
+        } catch (IllegalMonitorStateException e) {
+            metrics.lost();
+            log.warn("锁已不在 Redis 中，释放失败: {}", lockKey);
+        } finally {
+            onUnlocked(threadId);
         }
     }
 
     /**
-     * 判断当前线程是否持有锁
+     * 释放指定持有者的锁，等待 {@link #unlockAsync(long)} 完成，持有者未持有锁时抛出 IllegalMonitorStateException
+     */
+    @Override
+    public void unlock(long ownerId) {
+        awaitUnlock(unlockAsync(ownerId));
+    }
+
+    /**
+     * 根据本地记录判断当前线程是否持有锁，不访问 Redis
      *
-     * @return true 表示当前线程持有锁，否则返回 false
+     * @return true 表示当前线程持有锁且租期未到期
      */
     @Override
     public boolean isLockHeldByCurrentThread() {
-        RLock lock = redissonClient.getLock(lockKey);
-        return lock.isHeldByCurrentThread();
+        return isHeldLocally(Thread.currentThread().getId());
+    }
+
+    /**
+     * 向 Redis 查询锁的 hash 中是否存在该持有者，产生一次网络往返
+     */
+    @Override
+    public boolean isLockHeldRemotely(long ownerId) {
+        return lock.isHeldByThread(ownerId);
+    }
+
+    /**
+     * 异步加锁，使用 RLock.lockAsync，启用 Watchdog 自动续锁
+     */
+    @Override
+    public CompletionStage<Boolean> lockAsync(long ownerId) {
+        long startNanos = System.nanoTime();
+        return lock.lockAsync(ownerId)
+                .thenApply(ignored -> {
+                    onLocked(ownerId, startNanos, -1);
+                    log.debug("(Watchdog) 异步获取锁成功: {}", lockKey);
+                    return true;
+                });
+    }
+
+    /**
+     * 异步尝试加锁，使用 RLock.tryLockAsync，等待期间由 Redisson 订阅解锁消息，不占用线程
+     */
+    @Override
+    public CompletionStage<Boolean> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit, long ownerId) {
+        long startNanos = System.nanoTime();
+        return lock.tryLockAsync(waitTime, leaseTime, unit, ownerId)
+                .thenApply(acquired -> {
+                    if (acquired) {
+                        onLocked(ownerId, startNanos, unit.toMillis(leaseTime));
+                    } else {
+                        metrics.timedOut();
+                    }
+                    return acquired;
+                });
+    }
+
+    /**
+     * 异步释放锁，本地没有该持有者的记录时不访问 Redis，直接返回异常完成的 CompletionStage
+     */
+    @Override
+    public CompletionStage<Void> unlockAsync(long ownerId) {
+        if (!isHeldLocally(ownerId)) {
+            return CompletableFuture.failedFuture(new IllegalMonitorStateException(
+                    "持有者未持有锁，无法释放: " + lockKey + ", ownerId=" + ownerId));
+        }
+        return lock.unlockAsync(ownerId)
+                .whenComplete((ignored, e) -> onUnlocked(ownerId));
+    }
+
+    /**
+     * 以锁实例为持有者加锁，leaseMillis 小于等于 0 时由 Redisson 的 Watchdog 续期
+     */
+    @Override
+    public boolean tryAcquireShared(long waitMillis, long leaseMillis) throws InterruptedException {
+        if (sharedHeld) {
+            releaseStaleShared();
+        }
+        long startNanos = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = lock.tryLockAsync(waitMillis, leaseMillis <= 0 ? -1 : leaseMillis, TimeUnit.MILLISECONDS, sharedThreadId)
+                    .toCompletableFuture().get();
+        } catch (ExecutionException e) {
+            metrics.error();
+            log.error("加锁异常: {}", lockKey, e.getCause());
+            return false;
+        }
+        if (acquired) {
+            sharedAcquiredNanos = metrics.acquired(startNanos);
+            sharedHeld = true;
+        } else {
+            metrics.timedOut();
+        }
+        return acquired;
+    }
+
+    @Override
+    public void releaseShared() {
+        sharedHeld = false;
+        metrics.released(sharedAcquiredNanos);
+        try {
+            lock.unlockAsync(sharedThreadId).toCompletableFuture().join();
+        } catch (Exception e) {
+            log.error("释放锁异常: {}", lockKey, e);
+        }
+    }
+
+    /**
+     * 上一次加锁未释放就再次加锁：调用方已在本地判断租期过期，但 Redis 中可能仍残留这次持有。
+     * Redisson 对同一 threadId 加锁会累加重入次数，先释放残留的持有；已经过期时 Redisson 抛出异常，忽略即可
+     */
+    private void releaseStaleShared() {
+        sharedHeld = false;
+        try {
+            lock.unlockAsync(sharedThreadId).toCompletableFuture().join();
+        } catch (Exception e) {
+            log.debug("残留的实例持有已过期: {}", lockKey);
+        }
+    }
+
+    /**
+     * 本地是否仍有持有者，供 ShardedRedissonLockFactory 判断实例能否被淘汰
+     *
+     * @return true 表示仍有持有者
+     */
+    public boolean isHeldLocally() {
+        return !holds.isEmpty();
+    }
+
+    /**
+     * 本地是否记录该持有者持有锁且租期未到期，租期已到期的记录顺便清理
+     */
+    private boolean isHeldLocally(long ownerId) {
+        LocalHold hold = holds.get(ownerId);
+        if (hold == null) {
+            return false;
+        }
+        if (hold.isValid()) {
+            return true;
+        }
+        holds.remove(ownerId, hold);
+        return false;
+    }
+
+    /**
+     * 加锁成功后记录本地持有状态，重入时 Redisson 会重置租期，本地同步更新到期时间
+     *
+     * @param startNanos  发出加锁请求前的时间，保证本地到期时间不晚于 Redis 中的实际到期时间，同时作为加锁耗时的起点
+     * @param leaseMillis 租期，小于等于 0 表示由 Watchdog 续期
+     */
+    private void onLocked(long ownerId, long startNanos, long leaseMillis) {
+        LocalHold hold = holds.get(ownerId);
+        if (hold == null || !hold.isValid()) {
+            holds.put(ownerId, new LocalHold(startNanos, metrics.acquired(startNanos), leaseMillis));
+        } else {
+            hold.reenter(startNanos, leaseMillis);
+        }
+    }
+
+    /**
+     * 解锁后递减本地重入次数，减到 0 时移除记录
+     */
+    private void onUnlocked(long ownerId) {
+        LocalHold hold = holds.get(ownerId);
+        if (hold != null && --hold.count <= 0) {
+            holds.remove(ownerId, hold);
+            metrics.released(hold.acquiredNanos);
+        }
+    }
+
+    /**
+     * 持有者在本地的持有状态，只会被持有者修改；跨线程传递持有权时由传递方式（线程池、CompletableFuture）保证可见性
+     */
+    private static final class LocalHold {
+
+        /**
+         * 租期到期时间（System.nanoTime），Watchdog 模式下不使用
+         */
+        private long expireAtNanos;
+
+        /**
+         * 获取锁的时间（System.nanoTime），用于记录持有时间
+         */
+        private final long acquiredNanos;
+
+        private boolean watchdog;
+
+        private int count = 1;
+
+        private LocalHold(long startNanos, long acquiredNanos, long leaseMillis) {
+            this.acquiredNanos = acquiredNanos;
+            this.watchdog = leaseMillis <= 0;
+            this.expireAtNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(leaseMillis, 0));
+        }
+
+        private void reenter(long startNanos, long leaseMillis) {
+            count++;
+            // 一旦启用 Watchdog，重入持续到最外层解锁前都由 Watchdog 续期
+            watchdog = watchdog || leaseMillis <= 0;
+            expireAtNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(leaseMillis, 0));
+        }
+
+        /**
+         * Watchdog 模式下租期由 Watchdog 续期，视为一直有效
+         */
+        private boolean isValid() {
+            return watchdog || System.nanoTime() - expireAtNanos < 0;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,274 @@
+package com.wangguangwu.distributedlockredis.lock.impl;
+
+import com.wangguangwu.distributedlockredis.lock.AbstractDistributedLock;
+import com.wangguangwu.distributedlockredis.lock.SharedOwnerLock;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 两级分布式锁：本地公平锁在前，远程锁在后。
+ * <p>
+ * 同一 JVM 内的线程先在本地公平锁上按 FIFO 排队，只有排在队首的线程访问 Redis，
+ * 高并发下每个进程只有一个线程参与远程竞争，不再由所有线程一起轮询或订阅同一个 key。
+ * 远程锁以锁实例为持有者（{@link SharedOwnerLock}），解锁时如果本地还有等待者，
+ * 远程租约保持不动，本地锁直接交给队首线程，整个交接不产生网络往返。
+ * <p>
+ * 连续本地交接的次数受 handoffBudget 限制，用完后即使本地仍有等待者也会释放远程锁，
+ * 让其他 JVM 的等待者有机会获取，避免单个进程长期独占。
+ * 固定租期下只有剩余租期不少于一半时才交接，否则释放后由下一个线程重新加锁，避免交出即将过期的租约。
+ * 交接得到锁的线程沿用远程锁当前的租期，tryLock 传入的 leaseTime 只在真正访问 Redis 时生效。
+ * <p>
+ * 本地排队依赖 {@link ReentrantLock}，持有者即加锁线程，不支持以 ownerId 加锁、解锁，
+ * 也就不支持 {@link com.wangguangwu.distributedlockredis.lock.LockHandle} 与异步方法，调用时直接抛出 {@link UnsupportedOperationException}。
+ *
+ * @author wangguangwu
+ */
+@Slf4j
+public class TwoTierDistributedLockImpl extends AbstractDistributedLock {
+
+    /**
+     * lock() 向远程加锁时单次等待的时间，等待失败后继续重试直到成功
+     */
+    private static final long LOCK_RETRY_MILLIS = 1000;
+
+    /**
+     * 本地公平锁，排队顺序即远程租约的交接顺序
+     */
+    private final ReentrantLock localLock = new ReentrantLock(true);
+
+    private final SharedOwnerLock remote;
+
+    private final int handoffBudget;
+
+    /**
+     * 以下字段只在持有本地锁时修改；remoteHeld 额外供工厂无锁判断能否淘汰
+     */
+    private volatile boolean remoteHeld;
+
+    private long remoteLeaseNanos;
+
+    private long remoteExpireAtNanos;
+
+    private boolean remoteWatchdog;
+
+    private int handoffs;
+
+    /**
+     * 当前持有者获取锁的时间（System.nanoTime），用于记录持有时间
+     */
+    private long acquiredNanos;
+
+    /**
+     * @param lockKey       锁的标识
+     * @param remote        远程锁，锁实例需由当前对象独占使用
+     * @param handoffBudget 远程锁持有期间最多连续本地交接的次数，0 表示不交接
+     */
+    public TwoTierDistributedLockImpl(String lockKey, SharedOwnerLock remote, int handoffBudget) {
+        super(lockKey, "two-tier");
+        this.remote = remote;
+        this.handoffBudget = handoffBudget;
+    }
+
+    /**
+     * 在本地排队直到轮到当前线程，再以看门狗模式获取远程锁
+     *
+     * @return true 表示成功获取锁，线程被中断时返回 false
+     */
+    @Override
+    public boolean lock() {
+        long callNanos = System.nanoTime();
+        recordContention();
+        localLock.lock();
+        if (localLock.getHoldCount() > 1) {
+            return true;
+        }
+        try {
+            while (!acquireRemote(LOCK_RETRY_MILLIS, 0)) {
+                // 远程锁仍被其他进程持有，继续等待
+            }
+            acquiredNanos = metrics.acquired(callNanos);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            localLock.unlock();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+        long callNanos = System.nanoTime();
+        long deadline = callNanos + unit.toNanos(waitTime);
+        recordContention();
+        if (!localLock.tryLock(waitTime, unit)) {
+            releaseIfIdle();
+            metrics.timedOut();
+            log.debug("本地排队超时: {}", lockKey);
+            return false;
+        }
+        if (localLock.getHoldCount() > 1) {
+            return true;
+        }
+        boolean acquired = false;
+        try {
+            long remainingMillis = Math.max(TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()), 0);
+            acquired = acquireRemote(remainingMillis, leaseTime <= 0 ? 0 : unit.toMillis(leaseTime));
+        } finally {
+            if (!acquired) {
+                localLock.unlock();
+            }
+        }
+        if (acquired) {
+            acquiredNanos = metrics.acquired(callNanos);
+        } else {
+            metrics.timedOut();
+            log.debug("获取远程锁失败: {}", lockKey);
+        }
+        return acquired;
+    }
+
+    @Override
+    public void unlock() {
+        if (!localLock.isHeldByCurrentThread()) {
+            log.warn("当前线程未持有锁: {}", lockKey);
+            return;
+        }
+        if (localLock.getHoldCount() > 1) {
+            localLock.unlock();
+            return;
+        }
+        metrics.released(acquiredNanos);
+        if (remoteHeld && handoffs < handoffBudget && localLock.hasQueuedThreads() && canHandOff()) {
+            // 远程租约保持不动，公平锁把本地锁交给等待最久的线程
+            handoffs++;
+            localLock.unlock();
+            // 等待者可能恰好超时离开，此时没有线程接手，需要回收远程锁
+            if (!localLock.hasQueuedThreads()) {
+                releaseIfIdle();
+            }
+            return;
+        }
+        try {
+            releaseRemote();
+        } finally {
+            localLock.unlock();
+        }
+    }
+
+    /**
+     * 持有者与线程绑定，不支持 ownerId
+     */
+    @Override
+    public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit, long ownerId) {
+        throw unsupportedOwnerId();
+    }
+
+    /**
+     * 持有者与线程绑定，不支持 ownerId
+     */
+    @Override
+    public void unlock(long ownerId) {
+        throw unsupportedOwnerId();
+    }
+
+    /**
+     * 持有者与线程绑定，不支持 ownerId
+     */
+    @Override
+    public CompletionStage<Boolean> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit, long ownerId) {
+        throw unsupportedOwnerId();
+    }
+
+    /**
+     * 根据本地记录判断当前线程是否持有锁，不访问 Redis
+     *
+     * @return true 表示当前线程持有本地锁且远程租约未到期
+     */
+    @Override
+    public boolean isLockHeldByCurrentThread() {
+        return localLock.isHeldByCurrentThread() && remoteHeld && isRemoteValid();
+    }
+
+    /**
+     * 本地是否仍有线程持有、等待该锁，或仍持有远程租约，供工厂判断句柄能否被淘汰
+     *
+     * @return true 表示锁实例仍在使用中
+     */
+    public boolean isHeldLocally() {
+        return remoteHeld || localLock.isLocked() || localLock.hasQueuedThreads();
+    }
+
+    /**
+     * 持有本地锁时调用。远程租约由上一个线程交接而来且仍然有效时直接复用，否则访问 Redis 加锁
+     */
+    private boolean acquireRemote(long waitMillis, long leaseMillis) throws InterruptedException {
+        if (remoteHeld) {
+            if (isRemoteValid()) {
+                return true;
+            }
+            // 交接期间租约已在本地过期，直接作废后重新加锁；Redis 中可能仍残留这次持有，由远程锁在加锁时重置，见 SharedOwnerLock
+            remoteHeld = false;
+        }
+        long startNanos = System.nanoTime();
+        if (!remote.tryAcquireShared(waitMillis, leaseMillis)) {
+            return false;
+        }
+        remoteWatchdog = leaseMillis <= 0;
+        remoteLeaseNanos = TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+        remoteExpireAtNanos = startNanos + remoteLeaseNanos;
+        handoffs = 0;
+        remoteHeld = true;
+        return true;
+    }
+
+    /**
+     * 持有本地锁时调用，释放远程锁
+     */
+    private void releaseRemote() {
+        if (remoteHeld) {
+            remoteHeld = false;
+            remote.releaseShared();
+        }
+    }
+
+    /**
+     * 本地锁空闲但远程租约仍被保留时释放远程锁
+     */
+    private void releaseIfIdle() {
+        if (!remoteHeld || !localLock.tryLock()) {
+            return;
+        }
+        try {
+            releaseRemote();
+        } finally {
+            localLock.unlock();
+        }
+    }
+
+    /**
+     * 本地锁已被其他线程持有时记录一次竞争，只读取锁状态，不影响公平排队
+     */
+    private void recordContention() {
+        if (localLock.isLocked() && !localLock.isHeldByCurrentThread()) {
+            metrics.contended();
+        }
+    }
+
+    private UnsupportedOperationException unsupportedOwnerId() {
+        return new UnsupportedOperationException("两级锁的持有者与线程绑定，不支持 ownerId 与 LockHandle: " + lockKey);
+    }
+
+    private boolean isRemoteValid() {
+        return remoteWatchdog || System.nanoTime() - remoteExpireAtNanos < 0;
+    }
+
+    /**
+     * 固定租期下剩余租期不少于一半时才交接
+     */
+    private boolean canHandOff() {
+        return remoteWatchdog || remoteExpireAtNanos - System.nanoTime() >= remoteLeaseNanos / 2;
+    }
+}
@@ -0,0 +1,118 @@
+package com.wangguangwu.distributedlockredis.lock.support;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 锁工厂共用的按 key 缓存，数量有上限，超过上限时淘汰不再使用的实例。
+ * <p>
+ * 命中缓存时只有一次 Map 查找；未命中时通过 computeIfAbsent 创建，同一 key 并发获取只会创建一个实例。
+ * 新建实例后缓存数量超过上限时执行一次淘汰，淘汰到上限的 3/4 为止，避免每次新建实例都触发淘汰；
+ * 同一时刻只有一个线程执行淘汰，其他线程直接跳过。
+ * <p>
+ * 是否可以淘汰由 evictor 决定，通常是实例当前没有持有者；它在该 key 的映射锁内调用，
+ * 调用期间同一 key 的 {@link #get} 未命中时会等待。状态只保存在实例中的锁可以借此在 evictor 内原子地把实例标记为废弃，
+ * 避免淘汰与"取出实例后加锁"之间的竞态，见 LocalDistributedLockImpl#retire()。
+ *
+ * @param <T> 缓存的实例类型
+ * @author wangguangwu
+ */
+public class BoundedLockCache<T> {
+
+    private final ConcurrentHashMap<String, T> cache = new ConcurrentHashMap<>();
+
+    /**
+     * 保证同一时刻只有一个线程执行淘汰，其他线程直接跳过
+     */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final int maxSize;
+
+    private final Predicate<T> evictor;
+
+    /**
+     * @param maxSize 缓存实例数量的上限
+     * @param evictor 判断实例能否淘汰，返回 true 时从缓存中移除
+     */
+    public BoundedLockCache(int maxSize, Predicate<T> evictor) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("缓存上限必须大于 0: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.evictor = evictor;
+    }
+
+    /**
+     * 获取 key 对应的实例，不存在时创建
+     *
+     * @param key     锁的标识
+     * @param factory 创建实例
+     * @return 缓存的实例
+     */
+    public T get(String key, Function<String, ? extends T> factory) {
+        T value = cache.get(key);
+        if (value != null) {
+            return value;
+        }
+        value = cache.computeIfAbsent(key, factory);
+        evictIfFull();
+        return value;
+    }
+
+    /**
+     * 获取 key 对应的实例，缓存的实例不能复用时替换为新建的实例
+     *
+     * @param key      锁的标识
+     * @param reusable 判断缓存的实例能否继续使用
+     * @param factory  创建实例
+     * @return 缓存的实例
+     */
+    public T get(String key, Predicate<T> reusable, Function<String, ? extends T> factory) {
+        T value = cache.get(key);
+        if (value != null && reusable.test(value)) {
+            return value;
+        }
+        value = cache.compute(key, (k, current) -> current != null && reusable.test(current) ? current : factory.apply(k));
+        evictIfFull();
+        return value;
+    }
+
+    /**
+     * 移除满足条件的实例，不经过 evictor
+     *
+     * @param filter 移除条件
+     */
+    public void removeIf(Predicate<T> filter) {
+        cache.values().removeIf(filter);
+    }
+
+    /**
+     * 当前缓存的实例数量
+     *
+     * @return 实例数量
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * 缓存数量超过上限时淘汰实例，直到数量回落到上限的 3/4
+     */
+    private void evictIfFull() {
+        if (cache.size() <= maxSize || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            int target = maxSize / 4 * 3;
+            Iterator<String> iterator = cache.keySet().iterator();
+            while (cache.size() > target && iterator.hasNext()) {
+                cache.computeIfPresent(iterator.next(), (key, value) -> evictor.test(value) ? null : value);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+}
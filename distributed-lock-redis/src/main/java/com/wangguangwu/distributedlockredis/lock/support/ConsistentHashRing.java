@@ -0,0 +1,129 @@
+package com.wangguangwu.distributedlockredis.lock.support;
+
+import redis.clients.jedis.util.Hashing;
+import redis.clients.jedis.util.JedisClusterHashTag;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 带虚拟节点的一致性哈希环，把锁 key 分配到多个独立的 Redis 节点上。
+ * <p>
+ * 每个节点在环上放置 virtualNodes 个虚拟节点（"节点名#序号" 的 MurmurHash），key 顺时针找到的第一个虚拟节点即为所属节点。
+ * 增加一个节点时只有落在新虚拟节点前方区间内的 key（约 1/N）迁移到新节点，其余 key 的归属不变；
+ * 移除一个节点时只有该节点上的 key 迁移，分散到剩余节点上。
+ * <p>
+ * 路由按 hash tag 计算：key 中含有 {...} 时只对花括号内的部分取哈希，
+ * 与 {@link com.wangguangwu.distributedlockredis.lock.impl.JedisDistributedLockImpl#relatedKeyOf(String, String)}
+ * 生成的辅助 key 以及使用相同 hash tag 的一组 key 总是落在同一个节点上。
+ * <p>
+ * 查询不加锁：节点变更时整体重建环再替换引用，查询线程读到的总是某个完整版本的环。
+ * 虚拟节点的哈希值冲突时按节点名排序后先放置者优先，结果与节点的加入顺序无关。
+ *
+ * @param <T> 节点类型
+ * @author wangguangwu
+ */
+public class ConsistentHashRing<T> {
+
+    private final int virtualNodes;
+
+    /**
+     * 节点名 -> 节点，按节点名排序，只在持有 this 锁时修改
+     */
+    private final TreeMap<String, T> nodes = new TreeMap<>();
+
+    /**
+     * 虚拟节点的哈希值 -> 节点，每次变更后整体替换
+     */
+    private volatile TreeMap<Long, T> ring = new TreeMap<>();
+
+    public ConsistentHashRing(int virtualNodes) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("虚拟节点数必须大于 0: " + virtualNodes);
+        }
+        this.virtualNodes = virtualNodes;
+    }
+
+    /**
+     * 加入节点，同名节点已存在时抛出 {@link IllegalArgumentException}
+     *
+     * @param name 节点名，决定虚拟节点在环上的位置
+     * @param node 节点
+     */
+    public synchronized void add(String name, T node) {
+        if (nodes.containsKey(name)) {
+            throw new IllegalArgumentException("节点已存在: " + name);
+        }
+        nodes.put(name, node);
+        rebuild();
+    }
+
+    /**
+     * 移除节点
+     *
+     * @param name 节点名
+     * @return 被移除的节点，不存在时返回 null
+     */
+    public synchronized T remove(String name) {
+        T node = nodes.remove(name);
+        if (node != null) {
+            rebuild();
+        }
+        return node;
+    }
+
+    /**
+     * 查询 key 所属的节点
+     *
+     * @param key 锁 key
+     * @return 节点
+     * @throws IllegalStateException 环上没有节点时
+     */
+    public T get(String key) {
+        TreeMap<Long, T> current = ring;
+        if (current.isEmpty()) {
+            throw new IllegalStateException("一致性哈希环上没有节点");
+        }
+        Map.Entry<Long, T> entry = current.ceilingEntry(hash(JedisClusterHashTag.getHashTag(key)));
+        return entry != null ? entry.getValue() : current.firstEntry().getValue();
+    }
+
+    /**
+     * 当前全部节点名，按节点名排序
+     *
+     * @return 节点名
+     */
+    public synchronized List<String> names() {
+        return Collections.unmodifiableList(new ArrayList<>(nodes.keySet()));
+    }
+
+    /**
+     * 当前全部节点，按节点名排序
+     *
+     * @return 节点
+     */
+    public synchronized List<T> nodes() {
+        return Collections.unmodifiableList(new ArrayList<>(nodes.values()));
+    }
+
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    private void rebuild() {
+        TreeMap<Long, T> rebuilt = new TreeMap<>();
+        for (Map.Entry<String, T> entry : nodes.entrySet()) {
+            for (int i = 0; i < virtualNodes; i++) {
+                rebuilt.putIfAbsent(hash(entry.getKey() + "#" + i), entry.getValue());
+            }
+        }
+        ring = rebuilt;
+    }
+
+    private static long hash(String value) {
+        return Hashing.MURMUR_HASH.hash(value);
+    }
+}
@@ -0,0 +1,27 @@
+package com.wangguangwu.distributedlockredis.lock.support;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 创建守护线程的 ThreadFactory，线程名为 "前缀-序号"，供锁内部的线程池与时间轮使用，JVM 退出时不必等待这些线程
+ *
+ * @author wangguangwu
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+    private final String prefix;
+
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    public DaemonThreadFactory(String prefix) {
+        this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, prefix + "-" + sequence.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,430 @@
+package com.wangguangwu.distributedlockredis.lock.support;
+
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 监听 Jedis 分布式锁释放消息的订阅器，每个 JVM、每个 Redis 节点共用一个订阅连接。
+ * <p>
+ * 等待锁的线程按 key 订阅释放频道（引用计数，第一个等待者订阅、最后一个等待者退订），
+ * 解锁的 Lua 脚本在删除 key 后向该频道 PUBLISH，收到消息后唤醒一个本地等待者重新抢锁，
+ * 交接延迟约为一次网络往返，而不是固定的轮询间隔。
+ * <p>
+ * 消息内容为 {@link #WAKE_ALL_MESSAGE} 时唤醒该频道的全部本地等待者，供读写锁在写锁释放后让所有读者同时加锁。
+ * <p>
+ * 定向频道（{@link #subscribe(String, String)}）上的消息内容为等待者标识，只唤醒该等待者，供公平锁只通知队首；
+ * 同一频道的全部定向等待者共用一次订阅，频道已订阅时新的等待者通过 {@link #join(String, String)} 登记，不访问 Redis。
+ * <p>
+ * 订阅连接断开期间收不到消息，等待者仍会在锁的剩余 TTL 到期后重试，不会无限等待。
+ * 等待既可以阻塞线程（{@link ReleaseSignal#await}），也可以注册回调（{@link ReleaseSignal#awaitAsync}）。
+ *
+ * @author wangguangwu
+ */
+@Slf4j
+public class JedisLockReleaseSubscriber {
+
+    /**
+     * 释放频道的前缀
+     */
+    private static final String CHANNEL_PREFIX = "jedis_lock__channel:";
+
+    /**
+     * 订阅线程启动时订阅的固定频道，保证连接上始终至少有一个订阅，订阅循环不会退出
+     */
+    private static final String LISTENER_CHANNEL = CHANNEL_PREFIX + "__listener__";
+
+    /**
+     * 唤醒全部本地等待者的消息内容，其他内容的消息只唤醒一个等待者
+     */
+    public static final String WAKE_ALL_MESSAGE = "*";
+
+    /**
+     * 订阅连接断开后的重连间隔
+     */
+    private static final long RECONNECT_INTERVAL_MILLIS = 1000;
+
+    private final ConcurrentHashMap<String, ReleaseSignal> signals = new ConcurrentHashMap<>();
+
+    /**
+     * 定向频道的等待者，频道 -> 等待者标识 -> 该等待者独占的信号
+     */
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, ReleaseSignal>> targetedSignals = new ConcurrentHashMap<>();
+
+    private final HostAndPort hostAndPort;
+
+    private final PubSub pubSub = new PubSub();
+
+    private volatile boolean running;
+
+    private volatile Jedis connection;
+
+    private Thread listenerThread;
+
+    public JedisLockReleaseSubscriber(HostAndPort hostAndPort) {
+        this.hostAndPort = hostAndPort;
+    }
+
+    /**
+     * 获取锁 key 对应的释放频道。
+     * <p>
+     * PUBLISH 在集群中广播到所有节点，频道本身不按 slot 路由；解锁脚本都以 ARGV 传入频道，频道名不需要 hash tag。
+     *
+     * @param lockKey 锁的标识
+     * @return 频道名称
+     */
+    public static String channelOf(String lockKey) {
+        return CHANNEL_PREFIX + lockKey;
+    }
+
+    /**
+     * 启动订阅线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        listenerThread = new Thread(this::listen, "jedis-lock-release-subscriber");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    /**
+     * 停止订阅线程并关闭订阅连接
+     */
+    public synchronized void shutdown() {
+        running = false;
+        Jedis current = connection;
+        if (current != null) {
+            current.close();
+        }
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    /**
+     * 订阅锁的释放频道，返回的信号在收到释放消息时被唤醒。
+     * 必须与 {@link #unsubscribe(String, ReleaseSignal)} 成对调用。
+     *
+     * @param channel 释放频道
+     * @return 释放信号
+     */
+    public synchronized ReleaseSignal subscribe(String channel) {
+        ReleaseSignal signal = signals.get(channel);
+        if (signal != null) {
+            signal.references.incrementAndGet();
+            return signal;
+        }
+        // 先登记再发送 SUBSCRIBE，保证订阅确认回调能找到对应的信号
+        signal = new ReleaseSignal();
+        signals.put(channel, signal);
+        sendCommand(() -> pubSub.subscribe(channel));
+        return signal;
+    }
+
+    /**
+     * 退订锁的释放频道，最后一个等待者退出时才真正发送 UNSUBSCRIBE
+     *
+     * @param channel 释放频道
+     * @param signal  subscribe 返回的释放信号
+     */
+    public synchronized void unsubscribe(String channel, ReleaseSignal signal) {
+        if (signals.get(channel) != signal || signal.references.decrementAndGet() > 0) {
+            return;
+        }
+        signals.remove(channel);
+        sendCommand(() -> pubSub.unsubscribe(channel));
+    }
+
+    /**
+     * 订阅定向频道，返回的信号只在收到内容为 target 的消息时被唤醒。
+     * 必须与 {@link #unsubscribe(String, String, ReleaseSignal)} 成对调用，同一频道不要与 {@link #subscribe(String)} 混用。
+     *
+     * @param channel 定向频道
+     * @param target  等待者标识，同一频道上同一时刻只能有一个同名等待者
+     * @return 该等待者独占的信号
+     */
+    public synchronized ReleaseSignal subscribe(String channel, String target) {
+        ReleaseSignal channelSignal = subscribe(channel);
+        ReleaseSignal signal = new ReleaseSignal();
+        channelSignal.subscribed.thenRun(() -> signal.subscribed.complete(null));
+        targetedSignals.computeIfAbsent(channel, key -> new ConcurrentHashMap<>()).put(target, signal);
+        return signal;
+    }
+
+    /**
+     * 定向频道在本 JVM 已订阅生效时直接登记等待者，不访问 Redis。
+     * 在加锁请求之前登记，加锁失败后轮到自己时发布的消息就不会错过
+     *
+     * @param channel 定向频道
+     * @param target  等待者标识
+     * @return 该等待者独占的信号；频道尚未订阅时返回 null，需要改用 {@link #subscribe(String, String)}
+     */
+    public ReleaseSignal join(String channel, String target) {
+        ReleaseSignal channelSignal = signals.get(channel);
+        if (channelSignal == null || !channelSignal.subscribed.isDone()) {
+            return null;
+        }
+        synchronized (this) {
+            if (signals.get(channel) != channelSignal) {
+                return null;
+            }
+            return subscribe(channel, target);
+        }
+    }
+
+    /**
+     * 退订定向频道，最后一个等待者退出时才真正发送 UNSUBSCRIBE
+     *
+     * @param channel 定向频道
+     * @param target  等待者标识
+     * @param signal  subscribe 或 join 返回的信号
+     */
+    public synchronized void unsubscribe(String channel, String target, ReleaseSignal signal) {
+        ConcurrentHashMap<String, ReleaseSignal> targets = targetedSignals.get(channel);
+        if (targets == null || !targets.remove(target, signal)) {
+            return;
+        }
+        if (targets.isEmpty()) {
+            targetedSignals.remove(channel);
+        }
+        unsubscribe(channel, signals.get(channel));
+    }
+
+    private void listen() {
+        while (running) {
+            try (Jedis jedis = new Jedis(hostAndPort)) {
+                connection = jedis;
+                // 阻塞直到连接断开或 shutdown
+                jedis.subscribe(pubSub, LISTENER_CHANNEL);
+            } catch (Exception e) {
+                if (running) {
+                    log.warn("锁释放订阅连接异常，稍后重连: {}", e.getMessage());
+                }
+            } finally {
+                connection = null;
+            }
+            if (!running) {
+                return;
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(RECONNECT_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * JedisPubSub 的写操作不是线程安全的，调用方需持有当前对象的锁。
+     * 连接未就绪或已断开时忽略，重连后会统一补订阅。
+     */
+    private void sendCommand(Runnable command) {
+        if (!pubSub.isSubscribed()) {
+            return;
+        }
+        try {
+            command.run();
+        } catch (Exception e) {
+            log.warn("发送锁释放订阅命令失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 重连成功后补订阅当前仍有等待者的频道
+     */
+    private synchronized void resubscribeAll() {
+        String[] channels = signals.keySet().toArray(new String[0]);
+        if (channels.length > 0) {
+            pubSub.subscribe(channels);
+        }
+    }
+
+    private class PubSub extends JedisPubSub {
+
+        @Override
+        public void onSubscribe(String channel, int subscribedChannels) {
+            if (LISTENER_CHANNEL.equals(channel)) {
+                resubscribeAll();
+                return;
+            }
+            ReleaseSignal signal = signals.get(channel);
+            if (signal != null) {
+                signal.subscribed.complete(null);
+            }
+        }
+
+        @Override
+        public void onMessage(String channel, String message) {
+            ConcurrentHashMap<String, ReleaseSignal> targets = targetedSignals.get(channel);
+            if (targets != null) {
+                // 定向消息只唤醒目标等待者，目标不在本 JVM 时忽略
+                ReleaseSignal target = targets.get(message);
+                if (target != null) {
+                    target.wakeUp();
+                }
+                return;
+            }
+            ReleaseSignal signal = signals.get(channel);
+            if (signal == null) {
+                return;
+            }
+            if (WAKE_ALL_MESSAGE.equals(message)) {
+                signal.wakeUpAll();
+            } else {
+                signal.wakeUp();
+            }
+        }
+    }
+
+    /**
+     * 单个频道在本 JVM 内的等待信号，由该频道的所有本地等待者共享
+     */
+    public static class ReleaseSignal {
+
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private final CompletableFuture<Void> subscribed = new CompletableFuture<>();
+
+        private final Semaphore semaphore = new Semaphore(0);
+
+        /**
+         * 正在 {@link #await} 中阻塞的线程数，供 {@link #wakeUpAll()} 决定释放多少许可
+         */
+        private final AtomicInteger blockedWaiters = new AtomicInteger();
+
+        /**
+         * 异步等待者，释放消息优先唤醒异步等待者，没有时才释放信号量
+         */
+        private final ConcurrentLinkedQueue<CompletableFuture<Boolean>> asyncWaiters = new ConcurrentLinkedQueue<>();
+
+        /**
+         * 等待订阅生效，避免在 SUBSCRIBE 生效前错过释放消息
+         *
+         * @param timeout 最长等待时间
+         * @param unit    时间单位
+         * @throws InterruptedException 如果线程在等待期间被中断
+         */
+        public void awaitSubscribed(long timeout, TimeUnit unit) throws InterruptedException {
+            try {
+                subscribed.get(timeout, unit);
+            } catch (TimeoutException | ExecutionException e) {
+                // 订阅未及时生效时退化为按 TTL 等待
+            }
+        }
+
+        /**
+         * 订阅生效或超时后完成，不阻塞调用线程
+         *
+         * @param timeout 最长等待时间
+         * @param unit    时间单位
+         * @return 订阅生效或超时
+         */
+        public CompletionStage<Void> whenSubscribed(long timeout, TimeUnit unit) {
+            return subscribed.copy().completeOnTimeout(null, timeout, unit);
+        }
+
+        /**
+         * 异步等待释放消息，不阻塞调用线程
+         *
+         * @param timeout 最长等待时间
+         * @param unit    时间单位
+         * @return 完成时为 true 表示收到释放消息，false 表示超时
+         */
+        public CompletionStage<Boolean> awaitAsync(long timeout, TimeUnit unit) {
+            trimPermits(blockedWaiters.get() + 1);
+            if (semaphore.tryAcquire()) {
+                return CompletableFuture.completedFuture(true);
+            }
+            CompletableFuture<Boolean> waiter = new CompletableFuture<>();
+            asyncWaiters.add(waiter);
+            // 登记后再检查一次，避免登记前到达的消息只释放了信号量而没有唤醒任何等待者
+            if (semaphore.tryAcquire() && !waiter.complete(true)) {
+                // 已被 wakeUp 唤醒，把多拿的许可还回去
+                semaphore.release();
+            }
+            waiter.completeOnTimeout(false, timeout, unit);
+            waiter.thenAccept(woken -> {
+                if (!woken) {
+                    asyncWaiters.remove(waiter);
+                }
+            });
+            return waiter;
+        }
+
+        /**
+         * 等待释放消息
+         *
+         * @param timeout 最长等待时间
+         * @param unit    时间单位
+         * @return true 表示收到释放消息，false 表示超时
+         * @throws InterruptedException 如果线程在等待期间被中断
+         */
+        public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+            int blocked = blockedWaiters.incrementAndGet();
+            try {
+                trimPermits(blocked);
+                return semaphore.tryAcquire(timeout, unit);
+            } finally {
+                blockedWaiters.decrementAndGet();
+            }
+        }
+
+        /**
+         * 丢弃超出 limit 的许可。
+         * 没有线程阻塞时到达的释放消息会留下许可，这些许可早于等待者最近一次加锁尝试，已经过期；
+         * 不丢弃的话，之后的等待者会被立即唤醒、重试失败、再被唤醒，直到许可耗尽
+         */
+        private void trimPermits(int limit) {
+            int surplus = semaphore.availablePermits() - limit;
+            if (surplus > 0) {
+                semaphore.tryAcquire(surplus);
+            }
+        }
+
+        /**
+         * 每条释放消息只唤醒一个本地等待者，避免本地惊群。
+         * 许可最多比阻塞中的线程多一个，留给刚加锁失败、还没来得及进入等待的线程
+         */
+        private void wakeUp() {
+            CompletableFuture<Boolean> waiter;
+            while ((waiter = asyncWaiters.poll()) != null) {
+                // 跳过已超时的异步等待者
+                if (waiter.complete(true)) {
+                    return;
+                }
+            }
+            if (semaphore.availablePermits() <= blockedWaiters.get()) {
+                semaphore.release();
+            }
+        }
+
+        /**
+         * 唤醒全部本地等待者。多释放一个许可，留给刚加锁失败、还没来得及进入等待的线程
+         */
+        private void wakeUpAll() {
+            CompletableFuture<Boolean> waiter;
+            while ((waiter = asyncWaiters.poll()) != null) {
+                waiter.complete(true);
+            }
+            int missing = blockedWaiters.get() + 1 - semaphore.availablePermits();
+            if (missing > 0) {
+                semaphore.release(missing);
+            }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.wangguangwu.distributedlockredis.lock.support;
+
+import com.wangguangwu.distributedlockredis.metrics.LockMetrics;
+import com.wangguangwu.distributedlockredis.properties.JedisLockProperties;
+import com.wangguangwu.distributedlockredis.script.JedisScriptExecutor;
+import com.wangguangwu.distributedlockredis.script.LockScripts;
+import com.wangguangwu.distributedlockredis.script.RedisLuaScript;
+import io.netty.util.HashedWheelTimer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jedis 分布式锁的看门狗，每个 JVM 共用一个时间轮定时器为所有看门狗模式的锁续期。
+ * <p>
+ * 每隔 1/3 租期触发一次，把当前登记的全部锁按批拼成 RENEW 脚本，放在同一个 pipeline 中发送，
+ * 一次网络往返完成全部续期，而不是每把锁各自一个定时任务、各自一次往返。
+ * 脚本内先校验持有者再 PEXPIRE，锁已过期或被他人持有时不会误续期，并从登记表中移除。
+ * <p>
+ * 锁的 key 与持有者标识在登记时已编码为字节数组，续期时不再重复编码，数万把锁同时持有时开销仍然很低。
+ * <p>
+ * 存储格式不同的锁（如读写锁）登记时指定自己的续期脚本与 key，续期时按脚本分组，每种脚本各一个 pipeline。
+ * <p>
+ * 每次续期后记录实际完成时间比计划晚了多久（{@link LockMetrics#RENEWAL_LAG}），
+ * 时间轮的触发延迟、线程调度与续期的网络往返都计算在内。
+ *
+ * @author wangguangwu
+ */
+@Slf4j
+@Component
+public class JedisLockWatchdog {
+
+    /**
+     * 单次 RENEW 脚本处理的锁数量，避免单个脚本执行时间过长阻塞 Redis
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * (锁 key, 持有者标识) -> 预先编码的续期参数
+     */
+    private final ConcurrentHashMap<LeaseId, Lease> leases = new ConcurrentHashMap<>();
+
+    private final HashedWheelTimer timer = new HashedWheelTimer(
+            new DaemonThreadFactory("jedis-lock-watchdog"), 100, TimeUnit.MILLISECONDS);
+
+    private final JedisScriptExecutor scriptExecutor;
+
+    private final long leaseMillis;
+
+    private final byte[] leaseMillisBytes;
+
+    private volatile boolean running;
+
+    public JedisLockWatchdog(JedisScriptExecutor scriptExecutor, JedisLockProperties jedisLockProperties) {
+        this.scriptExecutor = scriptExecutor;
+        this.leaseMillis = jedisLockProperties.getWatchdogTimeoutMillis();
+        this.leaseMillisBytes = SafeEncoder.encode(String.valueOf(leaseMillis));
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        scheduleNext();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        timer.stop();
+    }
+
+    /**
+     * 看门狗模式下锁的租期
+     *
+     * @return 租期（毫秒）
+     */
+    public long getLeaseMillis() {
+        return leaseMillis;
+    }
+
+    /**
+     * 登记一把需要自动续期的锁
+     *
+     * @param lockKey      锁 key
+     * @param lockKeyBytes 预先编码的锁 key
+     * @param owner        持有者标识
+     */
+    public void watch(String lockKey, byte[] lockKeyBytes, String owner) {
+        watch(lockKey, owner, LockScripts.RENEW, lockKeyBytes);
+    }
+
+    /**
+     * 登记一把使用指定续期脚本的锁。续期脚本的约定与 {@link LockScripts#RENEW} 相同：
+     * ARGV[1] 为租期，ARGV[i + 1] 为第 i 把锁的持有者标识，每把锁的 key 按登记顺序依次排列在 KEYS 中，
+     * 返回续期失败的锁的下标（从 1 开始）
+     *
+     * @param lockKey     锁 key
+     * @param owner       持有者标识
+     * @param renewScript 续期脚本
+     * @param keys        预先编码的、续期脚本需要的全部 key
+     */
+    public void watch(String lockKey, String owner, RedisLuaScript renewScript, byte[]... keys) {
+        LeaseId id = new LeaseId(lockKey, owner);
+        leases.put(id, new Lease(id, renewScript, keys, SafeEncoder.encode(owner)));
+    }
+
+    /**
+     * 取消续期，解锁前调用
+     *
+     * @param lockKey 锁 key
+     * @param owner   持有者标识
+     */
+    public void unwatch(String lockKey, String owner) {
+        leases.remove(new LeaseId(lockKey, owner));
+    }
+
+    /**
+     * 当前登记的锁数量
+     *
+     * @return 锁数量
+     */
+    public int size() {
+        return leases.size();
+    }
+
+    private void scheduleNext() {
+        if (!running) {
+            return;
+        }
+        long delayMillis = Math.max(leaseMillis / 3, 1);
+        long dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        timer.newTimeout(timeout -> {
+            try {
+                if (!leases.isEmpty()) {
+                    int lost = renewAll();
+                    LockMetrics.recordRenewal("jedis", System.nanoTime() - dueNanos, lost);
+                }
+            } catch (Exception e) {
+                // 本次续期失败时等待下一次，1/3 租期的间隔保证还有两次重试机会
+                log.warn("看门狗续期失败: {}", e.getMessage());
+            } finally {
+                scheduleNext();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 为全部登记的锁续期，每种续期脚本一次 pipeline
+     *
+     * @return 续期时发现已丢失的锁数量
+     */
+    int renewAll() {
+        if (leases.isEmpty()) {
+            return 0;
+        }
+        Map<RedisLuaScript, List<Lease>> groups = new LinkedHashMap<>();
+        for (Lease lease : leases.values()) {
+            groups.computeIfAbsent(lease.script, script -> new ArrayList<>()).add(lease);
+        }
+        int lost = 0;
+        for (Map.Entry<RedisLuaScript, List<Lease>> group : groups.entrySet()) {
+            lost += renew(group.getKey(), group.getValue());
+        }
+        return lost;
+    }
+
+    private int renew(RedisLuaScript script, List<Lease> snapshot) {
+        List<List<byte[]>> keysList = new ArrayList<>();
+        List<List<byte[]>> argsList = new ArrayList<>();
+        for (int from = 0; from < snapshot.size(); from += BATCH_SIZE) {
+            int to = Math.min(from + BATCH_SIZE, snapshot.size());
+            List<byte[]> keys = new ArrayList<>(to - from);
+            List<byte[]> args = new ArrayList<>(to - from + 1);
+            args.add(leaseMillisBytes);
+            for (Lease lease : snapshot.subList(from, to)) {
+                for (byte[] key : lease.keys) {
+                    keys.add(key);
+                }
+                args.add(lease.owner);
+            }
+            keysList.add(keys);
+            argsList.add(args);
+        }
+
+        List<Object> results = scriptExecutor.evalshaPipelined(script, keysList, argsList);
+        int lostCount = 0;
+        for (int batch = 0; batch < results.size(); batch++) {
+            List<?> lost = (List<?>) results.get(batch);
+            for (Object index : lost) {
+                Lease lease = snapshot.get(batch * BATCH_SIZE + ((Long) index).intValue() - 1);
+                // 只移除这一次快照中的登记，避免误删期间重新登记的锁
+                if (leases.remove(lease.id, lease)) {
+                    lostCount++;
+                    log.warn("看门狗续期失败，锁已丢失: {}", lease.id.lockKey);
+                }
+            }
+        }
+        return lostCount;
+    }
+
+    /**
+     * 登记表的 key
+     */
+    private static final class LeaseId {
+
+        private final String lockKey;
+
+        private final String owner;
+
+        private LeaseId(String lockKey, String owner) {
+            this.lockKey = lockKey;
+            this.owner = owner;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof LeaseId)) {
+                return false;
+            }
+            LeaseId other = (LeaseId) o;
+            return lockKey.equals(other.lockKey) && owner.equals(other.owner);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * lockKey.hashCode() + owner.hashCode();
+        }
+    }
+
+    /**
+     * 一把锁的续期参数，key 与持有者标识在登记时已编码
+     */
+    private static final class Lease {
+
+        private final LeaseId id;
+
+        private final RedisLuaScript script;
+
+        private final byte[][] keys;
+
+        private final byte[] owner;
+
+        private Lease(LeaseId id, RedisLuaScript script, byte[][] keys, byte[] owner) {
+            this.id = id;
+            this.script = script;
+            this.keys = keys;
+            this.owner = owner;
+        }
+    }
+}
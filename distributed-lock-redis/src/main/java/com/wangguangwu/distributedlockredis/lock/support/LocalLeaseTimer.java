@@ -0,0 +1,110 @@
+package com.wangguangwu.distributedlockredis.lock.support;
+
+import com.wangguangwu.distributedlockredis.properties.LocalLockProperties;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内锁的租期时间轮，每个 JVM 共用一个。
+ * <p>
+ * 时间轮每个刻度更新一次粗粒度时钟 {@link #currentMillis()}，加锁、解锁判断租期时只读这一个 volatile 字段，
+ * 不调用 System.nanoTime；租期因此按刻度对齐，到期时间不早于指定的租期，最多晚一到两个刻度。
+ * <p>
+ * 租期到期本身不需要任何定时任务，由下一个加锁者比较时钟后直接接管；
+ * 只有锁被占用且有人等待时才登记定时任务（租期到期时唤醒等待者、异步等待超时），无竞争的加锁、解锁不访问时间轮。
+ * 任务在时间轮线程上执行，只应做唤醒之类的轻量操作。
+ *
+ * @author wangguangwu
+ */
+@Slf4j
+@Component
+public class LocalLeaseTimer {
+
+    private final long tickMillis;
+
+    private final HashedWheelTimer timer;
+
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * 自 startNanos 起经过的毫秒数，每个刻度更新一次，只会增大
+     */
+    private volatile long currentMillis;
+
+    private volatile boolean running;
+
+    public LocalLeaseTimer(LocalLockProperties localLockProperties) {
+        this.tickMillis = Math.max(localLockProperties.getTickMillis(), 1);
+        this.timer = new HashedWheelTimer(new DaemonThreadFactory("local-lock-lease"), tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        timer.start();
+        advance(null);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        timer.stop();
+    }
+
+    /**
+     * 粗粒度时钟，不大于实际经过的时间，两者之差不超过一到两个刻度
+     *
+     * @return 自时间轮创建起经过的毫秒数
+     */
+    public long currentMillis() {
+        return currentMillis;
+    }
+
+    /**
+     * 租期的到期时间，多加一个刻度抵消时钟的滞后，保证不会提前到期
+     *
+     * @param leaseMillis 租期（毫秒）
+     * @return 以 {@link #currentMillis()} 计的到期时间
+     */
+    public long expireAt(long leaseMillis) {
+        return currentMillis + leaseMillis + tickMillis;
+    }
+
+    /**
+     * 刻度（毫秒）
+     */
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * 延迟执行任务，任务在时间轮线程上执行
+     *
+     * @param task  任务
+     * @param delay 延迟
+     * @param unit  时间单位
+     * @return 可以取消的定时任务
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        return timer.newTimeout(timeout -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("进程内锁的定时任务执行异常", e);
+            }
+        }, Math.max(delay, 0), unit);
+    }
+
+    private void advance(Timeout timeout) {
+        currentMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        if (running) {
+            timer.newTimeout(this::advance, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.wangguangwu.distributedlockredis.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分布式锁的 Micrometer 指标，按 backend（锁的实现）与 group（锁 key 分组）打标签：
+ * <ul>
+ *   <li>{@value #ACQUIRE}：从调用加锁到成功获取锁的耗时，包括排队等待的时间，重入不记录</li>
+ *   <li>{@value #HELD}：从获取锁到释放锁的持有时间</li>
+ *   <li>{@value #CONTENDED}：第一次尝试时锁已被他人持有、需要等待的次数</li>
+ *   <li>{@value #FAILURES}：失败次数，reason 为 timeout（等待超时）、error（加锁异常）、
+ *   lost（释放时发现锁已过期或被他人持有）</li>
+ *   <li>{@value #RENEWAL_LAG}：看门狗实际完成续期的时间比计划晚了多久，接近 2/3 租期时锁有过期的风险</li>
+ *   <li>{@value #RENEWAL_LOST}：看门狗续期时发现锁已丢失的次数</li>
+ * </ul>
+ * 锁实例在构造时通过 {@link #of(String, String)} 取得所属分组的指标，同一分组的锁共用同一组 Meter，
+ * 加锁、解锁时只有一次 volatile 读与 Meter 自身的记录开销，不查找、不分配。
+ * <p>
+ * 锁实例不经过 Spring 创建（工厂、测试中直接 new），因此指标由 {@link LockMetricsBinder} 在注册表就绪后统一绑定，
+ * 绑定之前创建的锁在绑定后同样开始记录，未绑定注册表时所有记录都是空操作。
+ * <p>
+ * 分组取锁 key 第一个冒号之前的部分并去掉 hash tag 的花括号，如 {@code order:1001} 与 {@code {order}:1001}
+ * 都属于 {@code order}；分组数量超过 {@value #MAX_GROUPS} 后新的分组统一归入 {@value #OTHER_GROUP}，避免标签基数失控。
+ *
+ * @author wangguangwu
+ */
+public final class LockMetrics {
+
+    public static final String ACQUIRE = "distributed.lock.acquire";
+
+    public static final String HELD = "distributed.lock.held";
+
+    public static final String CONTENDED = "distributed.lock.contended";
+
+    public static final String FAILURES = "distributed.lock.failures";
+
+    public static final String RENEWAL_LAG = "distributed.lock.renewal.lag";
+
+    public static final String RENEWAL_LOST = "distributed.lock.renewal.lost";
+
+    /**
+     * 每个 backend 最多的分组数量
+     */
+    static final int MAX_GROUPS = 256;
+
+    static final String OTHER_GROUP = "other";
+
+    /**
+     * backend + 分组 -> 指标
+     */
+    private static final ConcurrentHashMap<String, LockMetrics> INSTANCES = new ConcurrentHashMap<>();
+
+    /**
+     * 每个 backend 已有的分组数量
+     */
+    private static final ConcurrentHashMap<String, Integer> GROUP_COUNTS = new ConcurrentHashMap<>();
+
+    /**
+     * backend -> 看门狗续期的 Meter，每个续期周期都会记录，缓存后不再每次经过 Builder 查找注册表
+     */
+    private static final ConcurrentHashMap<String, RenewalMeters> RENEWALS = new ConcurrentHashMap<>();
+
+    private static volatile MeterRegistry registry;
+
+    private final String backend;
+
+    private final String group;
+
+    /**
+     * 绑定注册表后创建的 Meter，未绑定时为 null
+     */
+    private volatile Meters meters;
+
+    private LockMetrics(String backend, String group) {
+        this.backend = backend;
+        this.group = group;
+    }
+
+    /**
+     * 锁所属分组的指标
+     *
+     * @param backend 锁的实现，如 jedis、redisson、redlock
+     * @param lockKey 锁 key
+     * @return 指标，同一 backend 与分组返回同一个实例
+     */
+    public static LockMetrics of(String backend, String lockKey) {
+        String group = groupOf(lockKey);
+        LockMetrics metrics = INSTANCES.get(backend + '|' + group);
+        return metrics != null ? metrics : create(backend, group);
+    }
+
+    /**
+     * 绑定注册表，已创建的指标与之后创建的指标都注册到该注册表。多次绑定时以最后一次为准
+     *
+     * @param meterRegistry 注册表
+     */
+    public static synchronized void bindTo(MeterRegistry meterRegistry) {
+        registry = meterRegistry;
+        for (LockMetrics metrics : INSTANCES.values()) {
+            metrics.meters = new Meters(meterRegistry, metrics.backend, metrics.group);
+        }
+    }
+
+    /**
+     * 是否已绑定注册表
+     */
+    static boolean isBound() {
+        return registry != null;
+    }
+
+    /**
+     * 记录一次看门狗续期，每个续期周期调用一次
+     *
+     * @param backend  看门狗服务的锁的实现
+     * @param lagNanos 实际完成续期的时间比计划晚了多久（纳秒）
+     * @param lost     本次续期发现已丢失的锁数量
+     */
+    public static void recordRenewal(String backend, long lagNanos, int lost) {
+        MeterRegistry meterRegistry = registry;
+        if (meterRegistry == null) {
+            return;
+        }
+        RenewalMeters renewal = RENEWALS.get(backend);
+        // 重新绑定注册表后缓存的 Meter 属于旧的注册表，需要重建
+        if (renewal == null || renewal.registry != meterRegistry) {
+            renewal = new RenewalMeters(meterRegistry, backend);
+            RENEWALS.put(backend, renewal);
+        }
+        renewal.lag.record(Math.max(lagNanos, 0), TimeUnit.NANOSECONDS);
+        if (lost > 0) {
+            renewal.lost.increment(lost);
+        }
+    }
+
+    /**
+     * 锁 key 所属的分组：第一个冒号之前的部分，去掉 hash tag 的花括号
+     *
+     * @param lockKey 锁 key
+     * @return 分组
+     */
+    static String groupOf(String lockKey) {
+        int end = lockKey.indexOf(':');
+        String group = end < 0 ? lockKey : lockKey.substring(0, end);
+        if (group.length() > 2 && group.charAt(0) == '{' && group.charAt(group.length() - 1) == '}') {
+            group = group.substring(1, group.length() - 1);
+        }
+        return group;
+    }
+
+    private static synchronized LockMetrics create(String backend, String group) {
+        LockMetrics metrics = INSTANCES.get(backend + '|' + group);
+        if (metrics != null) {
+            return metrics;
+        }
+        if (GROUP_COUNTS.getOrDefault(backend, 0) >= MAX_GROUPS) {
+            group = OTHER_GROUP;
+            metrics = INSTANCES.get(backend + '|' + group);
+            if (metrics != null) {
+                return metrics;
+            }
+        }
+        metrics = new LockMetrics(backend, group);
+        if (registry != null) {
+            metrics.meters = new Meters(registry, backend, group);
+        }
+        INSTANCES.put(backend + '|' + group, metrics);
+        GROUP_COUNTS.merge(backend, 1, Integer::sum);
+        return metrics;
+    }
+
+    /**
+     * 是否在记录，未绑定注册表时为 false。加锁本身只需几十纳秒的实现据此跳过读取 System.nanoTime
+     *
+     * @return true 表示已绑定注册表
+     */
+    public boolean isRecording() {
+        return meters != null;
+    }
+
+    /**
+     * 加锁成功，记录从 startNanos 开始的加锁耗时
+     *
+     * @param startNanos 调用加锁时的 System.nanoTime
+     * @return 当前 System.nanoTime，作为持有时间的起点
+     */
+    public long acquired(long startNanos) {
+        long now = System.nanoTime();
+        Meters current = meters;
+        if (current != null) {
+            current.acquire.record(now - startNanos, TimeUnit.NANOSECONDS);
+        }
+        return now;
+    }
+
+    /**
+     * 释放锁，记录从 acquiredNanos 开始的持有时间
+     *
+     * @param acquiredNanos {@link #acquired(long)} 的返回值
+     */
+    public void released(long acquiredNanos) {
+        Meters current = meters;
+        if (current != null) {
+            current.held.record(System.nanoTime() - acquiredNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 第一次尝试时锁已被他人持有，开始等待
+     */
+    public void contended() {
+        Meters current = meters;
+        if (current != null) {
+            current.contended.increment();
+        }
+    }
+
+    /**
+     * 在等待时间内未获取到锁
+     */
+    public void timedOut() {
+        Meters current = meters;
+        if (current != null) {
+            current.timeouts.increment();
+        }
+    }
+
+    /**
+     * 加锁过程中发生异常
+     */
+    public void error() {
+        Meters current = meters;
+        if (current != null) {
+            current.errors.increment();
+        }
+    }
+
+    /**
+     * 释放时发现锁已过期或被他人持有
+     */
+    public void lost() {
+        Meters current = meters;
+        if (current != null) {
+            current.lost.increment();
+        }
+    }
+
+    public String getBackend() {
+        return backend;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    /**
+     * 一个 backend 的看门狗在某个注册表上的续期 Meter
+     */
+    private static final class RenewalMeters {
+
+        private final MeterRegistry registry;
+
+        private final Timer lag;
+
+        private final Counter lost;
+
+        private RenewalMeters(MeterRegistry registry, String backend) {
+            this.registry = registry;
+            this.lag = Timer.builder(RENEWAL_LAG)
+                    .description("看门狗实际完成续期比计划晚的时间")
+                    .tag("backend", backend)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(registry);
+            this.lost = Counter.builder(RENEWAL_LOST)
+                    .description("看门狗续期时发现锁已丢失的次数")
+                    .tag("backend", backend)
+                    .register(registry);
+        }
+    }
+
+    /**
+     * 一个分组在某个注册表上的全部 Meter
+     */
+    private static final class Meters {
+
+        private final Timer acquire;
+
+        private final Timer held;
+
+        private final Counter contended;
+
+        private final Counter timeouts;
+
+        private final Counter errors;
+
+        private final Counter lost;
+
+        private Meters(MeterRegistry registry, String backend, String group) {
+            this.acquire = Timer.builder(ACQUIRE)
+                    .description("从调用加锁到成功获取锁的耗时")
+                    .tags("backend", backend, "group", group)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(100_000))
+                    .maximumExpectedValue(Duration.ofSeconds(60))
+                    .register(registry);
+            this.held = Timer.builder(HELD)
+                    .description("从获取锁到释放锁的持有时间")
+                    .tags("backend", backend, "group", group)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(100_000))
+                    .maximumExpectedValue(Duration.ofMinutes(10))
+                    .register(registry);
+            this.contended = Counter.builder(CONTENDED)
+                    .description("第一次尝试时锁已被他人持有的次数")
+                    .tags("backend", backend, "group", group)
+                    .register(registry);
+            this.timeouts = failures(registry, backend, group, "timeout");
+            this.errors = failures(registry, backend, group, "error");
+            this.lost = failures(registry, backend, group, "lost");
+        }
+
+        private static Counter failures(MeterRegistry registry, String backend, String group, String reason) {
+            return Counter.builder(FAILURES)
+                    .description("加锁超时、加锁异常与释放时锁已丢失的次数")
+                    .tags("backend", backend, "group", group, "reason", reason)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.wangguangwu.distributedlockredis.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+/**
+ * 注册表就绪后由 Spring Boot 回调，把 {@link LockMetrics} 绑定到 Actuator 使用的注册表
+ *
+ * @author wangguangwu
+ */
+@Component
+public class LockMetricsBinder implements MeterBinder {
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        LockMetrics.bindTo(registry);
+    }
+}
@@ -0,0 +1,22 @@
+package com.wangguangwu.distributedlockredis.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@link com.wangguangwu.distributedlockredis.lock.annotation.DistributedLock} 注解相关配置
+ *
+ * @author wangguangwu
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "distributed-lock")
+public class DistributedLockProperties {
+
+    /**
+     * 注解未指定 backend 时使用的锁工厂 bean 名称，如 jedisLockFactory、redLockFactory、localLockFactory
+     */
+    private String defaultBackend = "jedisLockFactory";
+
+}
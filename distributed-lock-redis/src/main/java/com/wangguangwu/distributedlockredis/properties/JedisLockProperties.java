@@ -0,0 +1,94 @@
+package com.wangguangwu.distributedlockredis.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Jedis 分布式锁相关配置
+ *
+ * @author wangguangwu
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "jedis.lock")
+public class JedisLockProperties {
+
+    /**
+     * JedisLockFactory 本地缓存的锁句柄上限，超出后淘汰未被持有的句柄
+     */
+    private int maxCachedLocks = 10000;
+
+    /**
+     * 看门狗模式（tryLock 的 leaseTime 小于等于 0）下锁的租期，看门狗每隔 1/3 租期统一续期一次
+     */
+    private long watchdogTimeoutMillis = 30000;
+
+    /**
+     * 是否允许持锁线程重入，重入在本地完成，不访问 Redis
+     */
+    private boolean reentrant = true;
+
+    /**
+     * 两级锁（JedisLockFactory#getTwoTierLock）持有远程锁期间最多连续本地交接的次数，
+     * 用完后释放远程锁，让其他 JVM 有机会获取；0 表示不交接
+     */
+    private int localHandoffBudget = 16;
+
+    /**
+     * Redis 是否以集群模式部署。开启后 JedisMultiKeyLock 按 slot 把 key 分组，
+     * 按 slot 升序逐组加锁，每组的脚本经由 JedisCluster 发往负责该 slot 的节点
+     */
+    private boolean clusterMode = false;
+
+    /**
+     * 集群模式下用于发现拓扑的节点（host:port），JedisCluster 从中获取 slot 分布，不必列出全部节点
+     */
+    private List<String> clusterNodes = new ArrayList<>();
+
+    /**
+     * 读写锁是否写者优先：开启后有写者在等待时拒绝新的读者（已持有读锁的读者仍可重入），避免持续的读请求让写者饿死；
+     * 关闭时只要没有写者持有锁，读者就能加锁，读吞吐量更高
+     */
+    private boolean writerPreference = true;
+
+    /**
+     * 公平锁（JedisLockFactory#getFairLock）等待者在队列中的超时时间，等待者每隔 1/3 超时时间刷新一次；
+     * 等待者崩溃后最多占用队首这么久，随后被加锁或解锁脚本清理
+     */
+    private long fairWaiterTimeoutMillis = 5000;
+
+    /**
+     * 是否开启自动 pipeline：各线程的加锁、解锁与续期命令由 JedisPipelineDispatcher 合并为 pipeline 发送，
+     * 高并发下连接数与 Redis 的系统调用次数不再随命令数增长；关闭时每条命令各自借用连接、各自一次往返。
+     * 默认关闭：低并发时合并不到批次，命令多经过一次线程切换，延迟反而高于直接借用连接，确认并发足够高后再开启
+     */
+    private boolean autoPipelining = false;
+
+    /**
+     * 自动 pipeline 使用的连接数（分发线程数），同一时刻最多这么多批命令在途
+     */
+    private int pipelineConnections = 2;
+
+    /**
+     * 自动 pipeline 单批最多合并的命令数
+     */
+    private int pipelineMaxBatchSize = 256;
+
+    /**
+     * 执行锁脚本使用的传输层：JEDIS 使用连接池（及自动 pipeline），
+     * NIO 使用 RespConnection 在每个节点一条非阻塞连接上多路复用全部命令，开启后自动 pipeline 配置不再生效。
+     * NIO 的同步调用在连接空闲时由调用线程自己读取回复，单线程延迟不高于连接池、分配约为其 1/4（见 RespConnectionBenchmark）；
+     * 默认使用 JEDIS，NIO 为可选的传输层
+     */
+    private Transport transport = Transport.JEDIS;
+
+    public enum Transport {
+        JEDIS,
+        NIO
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.wangguangwu.distributedlockredis.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 进程内锁（LocalLockFactory）相关配置
+ *
+ * @author wangguangwu
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "local-lock")
+public class LocalLockProperties {
+
+    /**
+     * 租期时间轮的刻度（毫秒），租期到期的精度与之相同
+     */
+    private long tickMillis = 10;
+
+    /**
+     * LocalLockFactory 本地缓存的锁实例上限，超出后淘汰未被持有的实例
+     */
+    private int maxCachedLocks = 10000;
+
+}
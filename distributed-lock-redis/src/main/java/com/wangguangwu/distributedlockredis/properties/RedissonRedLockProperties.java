@@ -18,4 +18,14 @@ public class RedissonRedLockProperties {
     private String mode;
     private List<String> addresses;
 
+    /**
+     * 未获取到多数节点时，重试前的最长随机退避时间（毫秒）
+     */
+    private long retryDelayMillis = 50;
+
+    /**
+     * RedLockFactory 本地缓存的锁实例上限，超出后淘汰未被持有的实例
+     */
+    private int maxCachedLocks = 10000;
+
 }
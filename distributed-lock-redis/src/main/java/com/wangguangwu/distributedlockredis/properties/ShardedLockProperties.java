@@ -0,0 +1,35 @@
+package com.wangguangwu.distributedlockredis.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分片锁相关配置，锁 key 按一致性哈希分布在多个独立的 Redis 节点上
+ *
+ * @author wangguangwu
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sharded-lock")
+public class ShardedLockProperties {
+
+    /**
+     * 参与分片的 Redis 节点，格式为 host:port；为空时不创建分片锁工厂
+     */
+    private List<String> nodes = new ArrayList<>();
+
+    /**
+     * 每个节点在哈希环上的虚拟节点数，越多 key 分布越均匀
+     */
+    private int virtualNodes = 160;
+
+    /**
+     * ShardedRedissonLockFactory 本地缓存的锁实例上限，超出后淘汰未被持有的实例
+     */
+    private int maxCachedLocks = 10000;
+
+}
@@ -0,0 +1,223 @@
+package com.wangguangwu.distributedlockredis.script;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 跨线程自动合并脚本命令的分发器。
+ * <p>
+ * 各线程提交的 EVALSHA 命令进入同一个队列，由少量分发线程取出后放在同一个 pipeline 中发送，
+ * 一次网络往返、一次系统调用完成一批命令，再逐个完成各命令的 future。每个分发线程同一时刻只占用一个连接，
+ * 连接数等于分发线程数，不会随调用线程数增长。
+ * <p>
+ * 批次大小随负载自动调整，不需要等待凑批：分发线程空闲时，新命令立即单独发送，不增加延迟；
+ * 负载升高后，上一批在途期间到达的命令在下一次一起发送，批次自然变大，单次往返摊薄到更多命令上。
+ * 每批最多 maxBatchSize 条命令，避免单个 pipeline 过大。
+ * <p>
+ * 返回的 future 在分发线程上完成，回调中不应执行耗时操作。
+ * 调用方可通过 {@link #isDispatcherThread()} 判断当前是否位于分发线程，在分发线程上同步等待自己提交的命令会死锁。
+ * 某条命令返回 NOSCRIPT 时说明它未被执行，重新加载脚本后只重发这些命令；
+ * 连接异常时无法确定哪些命令已执行，整批 future 以异常完成。
+ *
+ * @author wangguangwu
+ */
+public class JedisPipelineDispatcher {
+
+    private final JedisPool jedisPool;
+
+    private final int maxBatchSize;
+
+    private final LinkedBlockingQueue<Command> queue = new LinkedBlockingQueue<>();
+
+    private final List<Thread> threads = new ArrayList<>();
+
+    /**
+     * 已发送的批次数与命令数，两者之比即平均批次大小
+     */
+    private final AtomicLong batchCount = new AtomicLong();
+
+    private final AtomicLong commandCount = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    public JedisPipelineDispatcher(JedisPool jedisPool, int connections, int maxBatchSize) {
+        if (connections <= 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("连接数与批次上限必须大于 0: " + connections + ", " + maxBatchSize);
+        }
+        this.jedisPool = jedisPool;
+        this.maxBatchSize = maxBatchSize;
+        for (int i = 0; i < connections; i++) {
+            Thread thread = new Thread(this::dispatch, "jedis-pipeline-dispatcher-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * 提交一条脚本命令
+     *
+     * @param script   脚本
+     * @param keyCount key 的数量
+     * @param params   预先编码的 key 与参数，key 在前
+     * @return 完成时为脚本返回值
+     */
+    public CompletableFuture<Object> submit(RedisLuaScript script, int keyCount, byte[]... params) {
+        Command command = new Command(script, keyCount, params);
+        if (!running) {
+            command.future.completeExceptionally(new RejectedExecutionException("分发器已关闭"));
+            return command.future;
+        }
+        queue.add(command);
+        // 与 shutdown 并发时，命令可能在 shutdown 清空队列之后才入队，没有线程会再取出它；
+        // 能从队列中移除说明命令仍未被取走，由提交方以异常完成，否则已由 shutdown 或分发线程处理
+        if (!running && queue.remove(command)) {
+            command.future.completeExceptionally(new RejectedExecutionException("分发器已关闭"));
+        }
+        return command.future;
+    }
+
+    /**
+     * 当前线程是否为分发线程
+     *
+     * @return true 表示是
+     */
+    public boolean isDispatcherThread() {
+        return threads.contains(Thread.currentThread());
+    }
+
+    /**
+     * 已发送的批次数
+     *
+     * @return 批次数
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * 已发送的命令数
+     *
+     * @return 命令数
+     */
+    public long getCommandCount() {
+        return commandCount.get();
+    }
+
+    /**
+     * 停止分发线程，队列中尚未发送的命令以异常完成；分发线程已取出的批次照常发送并完成
+     */
+    public void shutdown() {
+        running = false;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        Command command;
+        while ((command = queue.poll()) != null) {
+            command.future.completeExceptionally(new RejectedExecutionException("分发器已关闭"));
+        }
+    }
+
+    private void dispatch() {
+        List<Command> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            // 等待上一批期间积压的命令全部并入本批
+            queue.drainTo(batch, maxBatchSize - 1);
+            batchCount.incrementAndGet();
+            commandCount.addAndGet(batch.size());
+            execute(batch);
+            batch.clear();
+        }
+    }
+
+    private void execute(List<Command> batch) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            List<Command> pending = batch;
+            // 最多重试一次：NOSCRIPT 的命令重新加载脚本后重发
+            for (int attempt = 0; attempt < 2 && !pending.isEmpty(); attempt++) {
+                pending = pipelined(jedis, pending, attempt == 0);
+            }
+        } catch (RuntimeException e) {
+            for (Command command : batch) {
+                command.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * 发送一批命令并完成各自的 future
+     *
+     * @param retryNoScript true 表示返回 NOSCRIPT 的命令留待重发，否则直接以异常完成
+     * @return 需要重发的命令
+     */
+    private List<Command> pipelined(Jedis jedis, List<Command> commands, boolean retryNoScript) {
+        List<Response<Object>> responses = new ArrayList<>(commands.size());
+        Pipeline pipeline = jedis.pipelined();
+        for (Command command : commands) {
+            responses.add(pipeline.evalsha(command.script.getSha1Bytes(), command.keyCount, command.params));
+        }
+        pipeline.sync();
+
+        List<Command> retries = new ArrayList<>();
+        for (int i = 0; i < commands.size(); i++) {
+            Command command = commands.get(i);
+            try {
+                command.future.complete(responses.get(i).get());
+            } catch (JedisNoScriptException e) {
+                if (retryNoScript) {
+                    retries.add(command);
+                } else {
+                    command.future.completeExceptionally(e);
+                }
+            } catch (RuntimeException e) {
+                command.future.completeExceptionally(e);
+            }
+        }
+        Set<RedisLuaScript> missingScripts = new LinkedHashSet<>();
+        for (Command command : retries) {
+            missingScripts.add(command.script);
+        }
+        for (RedisLuaScript script : missingScripts) {
+            jedis.scriptLoad(SafeEncoder.encode(script.getSource()));
+        }
+        return retries;
+    }
+
+    /**
+     * 一条待发送的脚本命令
+     */
+    private static final class Command {
+
+        private final RedisLuaScript script;
+
+        private final int keyCount;
+
+        private final byte[][] params;
+
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        private Command(RedisLuaScript script, int keyCount, byte[][] params) {
+            this.script = script;
+            this.keyCount = keyCount;
+            this.params = params;
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package com.wangguangwu.distributedlockredis.script;
+
+import com.wangguangwu.distributedlockredis.lock.support.DaemonThreadFactory;
+import com.wangguangwu.distributedlockredis.properties.JedisLockProperties;
+import com.wangguangwu.distributedlockredis.transport.RespConnection;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * 通过 EVALSHA 执行 Lua 脚本。
+ * <p>
+ * 启动时对 {@link LockScripts} 中的脚本执行一次 SCRIPT LOAD，之后只发送 40 字节的 SHA1；
+ * Redis 重启、主从切换等原因导致脚本缓存丢失时会返回 NOSCRIPT，此时重新加载脚本后重试一次。
+ * <p>
+ * 开启自动 pipeline（jedis.lock.auto-pipelining，默认关闭）时，从连接池执行的脚本统一交给 {@link JedisPipelineDispatcher}：
+ * 各线程的加锁、解锁与看门狗续期命令在少量连接上合并为 pipeline 发送，同步调用等待自己那条命令的结果，
+ * 异步调用（{@link #evalshaAsync}）返回的 future 在分发线程上完成。
+ * 关闭时同步调用各自从连接池借用连接，异步执行由一个与连接池大小相同的线程池发出请求，
+ * 线程只在一次网络往返期间被占用。两种方式下加锁等待等耗时部分都由调用方以回调方式处理。
+ * <p>
+ * 传输层为 NIO（jedis.lock.transport=nio）时，脚本改由 {@link RespConnection} 在一条非阻塞连接上多路复用执行，
+ * 不再经过连接池与自动 pipeline，编码与回复解析都更轻量；同步调用经 {@link RespConnection#evalshaSync} 在连接空闲时
+ * 自己读取回复，不经过 I/O 线程。SCRIPT LOAD 同样通过该连接完成，只有在 I/O 线程上（异步回调中）的同步调用仍借用连接池中的连接。
+ * <p>
+ * 集群模式（jedis.lock.cluster-mode=true）下全部脚本改由 {@link JedisCluster} 执行，按脚本 key 所在的 slot
+ * 发往负责该 slot 的节点，传输层与自动 pipeline 配置不再生效；各节点的脚本缓存在首次 NOSCRIPT 时通过 EVAL 建立。
+ *
+ * @author wangguangwu
+ */
+@Slf4j
+@Component
+public class JedisScriptExecutor {
+
+    private final JedisPool jedisPool;
+
+    /**
+     * 自动 pipeline 的分发器，关闭自动 pipeline 时为 null
+     */
+    private final JedisPipelineDispatcher dispatcher;
+
+    /**
+     * 关闭自动 pipeline 时异步执行脚本的线程池，线程数与连接池上限一致，多出的线程只会等待连接
+     */
+    private final ExecutorService asyncExecutor;
+
+    /**
+     * NIO 传输层的连接，传输层为 JEDIS 时为 null
+     */
+    private final RespConnection respConnection;
+
+    /**
+     * 集群模式下按 slot 路由脚本的客户端，非集群模式为 null
+     */
+    private final JedisCluster jedisCluster;
+
+    @Autowired
+    public JedisScriptExecutor(JedisPool jedisPool, JedisLockProperties jedisLockProperties,
+                               ObjectProvider<RespConnection> respConnection, ObjectProvider<JedisCluster> jedisCluster) {
+        this(jedisPool, jedisLockProperties, respConnection.getIfAvailable(), jedisCluster.getIfAvailable());
+    }
+
+    public JedisScriptExecutor(JedisPool jedisPool, JedisLockProperties jedisLockProperties) {
+        this(jedisPool, jedisLockProperties, (RespConnection) null);
+    }
+
+    /**
+     * @param respConnection NIO 传输层的连接，为 null 时使用连接池；连接的生命周期由调用方管理
+     */
+    public JedisScriptExecutor(JedisPool jedisPool, JedisLockProperties jedisLockProperties, RespConnection respConnection) {
+        this(jedisPool, jedisLockProperties, respConnection, null);
+    }
+
+    /**
+     * @param respConnection NIO 传输层的连接，为 null 时使用连接池；连接的生命周期由调用方管理
+     * @param jedisCluster   集群客户端，不为 null 时全部脚本经由它按 slot 路由，忽略 respConnection 与自动 pipeline；
+     *                       客户端的生命周期由调用方管理
+     */
+    public JedisScriptExecutor(JedisPool jedisPool, JedisLockProperties jedisLockProperties, RespConnection respConnection,
+                               JedisCluster jedisCluster) {
+        this.jedisPool = jedisPool;
+        this.jedisCluster = jedisCluster;
+        this.respConnection = jedisCluster == null ? respConnection : null;
+        if (this.respConnection != null) {
+            this.dispatcher = null;
+            this.asyncExecutor = null;
+        } else if (jedisCluster == null && jedisLockProperties.isAutoPipelining()) {
+            this.dispatcher = new JedisPipelineDispatcher(jedisPool, jedisLockProperties.getPipelineConnections(),
+                    jedisLockProperties.getPipelineMaxBatchSize());
+            this.asyncExecutor = null;
+        } else {
+            this.dispatcher = null;
+            this.asyncExecutor = Executors.newFixedThreadPool(Math.max(jedisPool.getMaxTotal(), 1),
+                    new DaemonThreadFactory("jedis-script-async"));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        } else if (asyncExecutor != null) {
+            asyncExecutor.shutdown();
+        }
+    }
+
+    /**
+     * 自动 pipeline 的分发器
+     *
+     * @return 分发器，关闭自动 pipeline 时为 null
+     */
+    public JedisPipelineDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * NIO 传输层的连接
+     *
+     * @return 连接，传输层为 JEDIS 时为 null
+     */
+    public RespConnection getRespConnection() {
+        return respConnection;
+    }
+
+    /**
+     * 集群模式下按 slot 路由脚本的客户端
+     *
+     * @return 客户端，非集群模式时为 null
+     */
+    public JedisCluster getJedisCluster() {
+        return jedisCluster;
+    }
+
+    /**
+     * 预加载全部锁脚本。Redis 暂不可用时不影响启动，首次执行时会按 NOSCRIPT 流程加载。
+     */
+    @PostConstruct
+    public void preload() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            for (RedisLuaScript script : LockScripts.all()) {
+                load(jedis, script);
+            }
+        } catch (Exception e) {
+            log.warn("预加载 Lua 脚本失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 执行脚本：集群模式下发往 key 所在 slot 的节点，NIO 传输层时在多路复用连接上执行，
+     * 开启自动 pipeline 时与其他线程的命令合并发送，否则从连接池借用连接执行。
+     * 在 I/O 线程或分发线程上（异步回调中）同步调用时直接借用连接执行，避免这些线程等待自己
+     *
+     * @param script   脚本
+     * @param keyCount key 的数量
+     * @param params   预先编码的 key 与参数，key 在前
+     * @return 脚本返回值
+     */
+    public Object evalsha(RedisLuaScript script, int keyCount, byte[]... params) {
+        if (jedisCluster != null) {
+            return evalsha(jedisCluster, script, keyCount, params);
+        }
+        if (respConnection != null && !respConnection.isIoThread()) {
+            try {
+                return respConnection.evalshaSync(script.getSha1Bytes(), keyCount, params);
+            } catch (JedisNoScriptException e) {
+                load(script);
+                return respConnection.evalshaSync(script.getSha1Bytes(), keyCount, params);
+            }
+        }
+        if (dispatcher != null && !dispatcher.isDispatcherThread()) {
+            return join(dispatcher.submit(script, keyCount, params));
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            return evalsha(jedis, script, keyCount, params);
+        }
+    }
+
+    /**
+     * 异步执行脚本，NIO 传输层时直接发出请求，开启自动 pipeline 时交给分发器，否则（包括集群模式）在异步线程池中发出请求，
+     * 返回的 future 在 I/O 线程、分发线程或发出请求的线程上完成
+     *
+     * @param script   脚本
+     * @param keyCount key 的数量
+     * @param params   预先编码的 key 与参数，key 在前
+     * @return 脚本返回值
+     */
+    public CompletableFuture<Object> evalshaAsync(RedisLuaScript script, int keyCount, byte[]... params) {
+        if (respConnection != null) {
+            return respConnection.evalsha(script.getSha1Bytes(), keyCount, params)
+                    .exceptionallyCompose(e -> unwrap(e) instanceof JedisNoScriptException
+                            ? loadAsync(script).thenCompose(loaded -> respConnection.evalsha(script.getSha1Bytes(), keyCount, params))
+                            : CompletableFuture.failedFuture(unwrap(e)));
+        }
+        if (dispatcher != null) {
+            return dispatcher.submit(script, keyCount, params);
+        }
+        return CompletableFuture.supplyAsync(() -> evalsha(script, keyCount, params), asyncExecutor);
+    }
+
+    /**
+     * 使用指定连接执行脚本
+     *
+     * @param jedis    连接
+     * @param script   脚本
+     * @param keyCount key 的数量
+     * @param params   预先编码的 key 与参数，key 在前
+     * @return 脚本返回值
+     */
+    public Object evalsha(Jedis jedis, RedisLuaScript script, int keyCount, byte[]... params) {
+        try {
+            return jedis.evalsha(script.getSha1Bytes(), keyCount, params);
+        } catch (JedisNoScriptException e) {
+            load(jedis, script);
+            return jedis.evalsha(script.getSha1Bytes(), keyCount, params);
+        }
+    }
+
+    /**
+     * 在一个 pipeline 中多次执行同一个脚本，一次网络往返返回全部结果。
+     * 任一结果为 NOSCRIPT 时重新加载脚本并整体重试一次，脚本需保证重复执行是安全的。
+     *
+     * @param script   脚本
+     * @param keysList 每次执行的 key
+     * @param argsList 每次执行的参数，与 keysList 一一对应
+     * @return 每次执行的返回值
+     */
+    public List<Object> evalshaPipelined(RedisLuaScript script, List<List<byte[]>> keysList, List<List<byte[]>> argsList) {
+        if (jedisCluster != null) {
+            // 各条命令的 key 可能位于不同节点，逐条发往各自的节点
+            return joinAll(submitAll(keysList, argsList,
+                    (keyCount, params) -> completed(() -> evalsha(jedisCluster, script, keyCount, params))));
+        }
+        if (respConnection != null && !respConnection.isIoThread()) {
+            // 连续提交的命令在同一条连接上一次写出
+            try {
+                return joinAll(submitAll(keysList, argsList,
+                        (keyCount, params) -> respConnection.evalsha(script.getSha1Bytes(), keyCount, params)));
+            } catch (JedisNoScriptException e) {
+                load(script);
+                return joinAll(submitAll(keysList, argsList,
+                        (keyCount, params) -> respConnection.evalsha(script.getSha1Bytes(), keyCount, params)));
+            }
+        }
+        if (dispatcher != null && !dispatcher.isDispatcherThread()) {
+            // 交给分发器，与其他线程的命令合并发送
+            return joinAll(submitAll(keysList, argsList, (keyCount, params) -> dispatcher.submit(script, keyCount, params)));
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            try {
+                return pipelined(jedis, script, keysList, argsList);
+            } catch (JedisNoScriptException e) {
+                load(jedis, script);
+                return pipelined(jedis, script, keysList, argsList);
+            }
+        }
+    }
+
+    /**
+     * 在 Redis 集群上执行脚本，由 JedisCluster 按 key 所在的 slot 发往对应节点，全部 key 必须位于同一 slot。
+     * 该节点没有缓存脚本时返回 NOSCRIPT，此时改用 EVAL 发送原文执行一次，EVAL 同时会把脚本缓存到该节点
+     */
+    private static Object evalsha(JedisCluster cluster, RedisLuaScript script, int keyCount, byte[]... params) {
+        try {
+            return cluster.evalsha(script.getSha1Bytes(), keyCount, params);
+        } catch (JedisNoScriptException e) {
+            return cluster.eval(SafeEncoder.encode(script.getSource()), keyCount, params);
+        }
+    }
+
+    private List<Object> pipelined(Jedis jedis, RedisLuaScript script, List<List<byte[]>> keysList, List<List<byte[]>> argsList) {
+        List<Response<Object>> responses = new ArrayList<>(keysList.size());
+        Pipeline pipeline = jedis.pipelined();
+        for (int i = 0; i < keysList.size(); i++) {
+            responses.add(pipeline.evalsha(script.getSha1Bytes(), keysList.get(i), argsList.get(i)));
+        }
+        pipeline.sync();
+        List<Object> results = new ArrayList<>(responses.size());
+        for (Response<Object> response : responses) {
+            results.add(response.get());
+        }
+        return results;
+    }
+
+    /**
+     * 逐条提交批量执行的命令
+     */
+    private static List<CompletableFuture<Object>> submitAll(List<List<byte[]>> keysList, List<List<byte[]>> argsList,
+                                                             BiFunction<Integer, byte[][], CompletableFuture<Object>> submitter) {
+        List<CompletableFuture<Object>> futures = new ArrayList<>(keysList.size());
+        for (int i = 0; i < keysList.size(); i++) {
+            List<byte[]> keys = keysList.get(i);
+            List<byte[]> args = argsList.get(i);
+            byte[][] params = new byte[keys.size() + args.size()][];
+            for (int k = 0; k < keys.size(); k++) {
+                params[k] = keys.get(k);
+            }
+            for (int a = 0; a < args.size(); a++) {
+                params[keys.size() + a] = args.get(a);
+            }
+            futures.add(submitter.apply(keys.size(), params));
+        }
+        return futures;
+    }
+
+    /**
+     * 等待全部命令完成后再返回，任一命令失败时抛出其中第一个异常
+     */
+    private static List<Object> joinAll(List<CompletableFuture<Object>> futures) {
+        List<Object> results = new ArrayList<>(futures.size());
+        RuntimeException failure = null;
+        for (CompletableFuture<Object> future : futures) {
+            try {
+                results.add(join(future));
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * 等待分发器或 NIO 连接返回结果，异常时抛出原始的 Jedis 异常
+     */
+    private static Object join(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 同步执行命令，结果或异常包装为已完成的 future，供 {@link #joinAll} 统一收集
+     */
+    private static CompletableFuture<Object> completed(Supplier<Object> command) {
+        try {
+            return CompletableFuture.completedFuture(command.get());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * 通过 NIO 连接加载脚本
+     */
+    private void load(RedisLuaScript script) {
+        join(loadAsync(script));
+    }
+
+    private CompletableFuture<Object> loadAsync(RedisLuaScript script) {
+        return respConnection.scriptLoad(SafeEncoder.encode(script.getSource())).thenApply(sha1 -> {
+            if (!script.getSha1().equals(SafeEncoder.encode((byte[]) sha1))) {
+                throw new IllegalStateException("脚本 SHA1 与 Redis 返回不一致: " + script);
+            }
+            return sha1;
+        });
+    }
+
+    private void load(Jedis jedis, RedisLuaScript script) {
+        byte[] sha1 = jedis.scriptLoad(SafeEncoder.encode(script.getSource()));
+        if (!script.getSha1().equals(SafeEncoder.encode(sha1))) {
+            throw new IllegalStateException("脚本 SHA1 与 Redis 返回不一致: " + script);
+        }
+    }
+}
@@ -0,0 +1,492 @@
+package com.wangguangwu.distributedlockredis.script;
+
+import java.util.List;
+
+/**
+ * 分布式锁使用的全部 Lua 脚本，应用启动时由 {@link JedisScriptExecutor} 统一预加载。
+ *
+ * @author wangguangwu
+ */
+public final class LockScripts {
+
+    private LockScripts() {
+    }
+
+    /**
+     * fencing 计数器的空闲过期时间（毫秒）：每次新的持有都会把计数器的过期时间重置为 7 天，
+     * 锁 7 天没有新的持有时计数器随之删除，不会无限堆积
+     */
+    public static final long FENCE_TTL_MILLIS = 7L * 24 * 60 * 60 * 1000;
+
+    /**
+     * 取下一个 fencing token 的 Lua 函数：计数器不存在（从未使用或已空闲过期）时先以 Redis 服务器的当前时间（微秒）作为初值，
+     * 再 INCR 并重置空闲过期时间。单个 key 每微秒不可能产生一次新的持有，计数器过期后重新开始的 token 仍大于过期前的全部 token，
+     * 存储端记录的已见最大值不会挡住后来的持有者
+     */
+    private static final String NEXT_FENCE =
+            "local function nextFence(key) " +
+                    "   if redis.call('exists', key) == 0 then " +
+                    "       local t = redis.call('time') " +
+                    "       redis.call('set', key, t[1] .. string.format('%06d', tonumber(t[2]))) " +
+                    "   end " +
+                    "   local token = redis.call('incr', key) " +
+                    "   redis.call('pexpire', key, " + FENCE_TTL_MILLIS + ") " +
+                    "   return token " +
+                    "end ";
+
+    /**
+     * 加锁：锁以 hash 存储，field 为持有者标识，value 为重入次数。
+     * 锁不存在时对 fencing 计数器 INCR、重入次数置为 1、重置租期，返回 {新的 fencing token}；
+     * 已被同一持有者持有时重入次数加 1（ARGV[3] 为 1 时重置为 1）、重置租期，返回 {本次持有的 fencing token}（计数器当前值）；
+     * 否则返回锁的剩余 TTL（毫秒），供等待者决定最长等待时间。
+     * 计数器与锁 key 在同一个脚本内修改，每次新的持有都会得到严格递增的 token。
+     * 调用方本地的持有记录已过期作废、Redis 中却仍留有该持有者时传入 ARGV[3] = 1，作废的持有不再计入重入次数
+     * <p>
+     * KEYS[1] 锁 key；KEYS[2] fencing 计数器 key；ARGV[1] 持有者标识；ARGV[2] 租期（毫秒）；ARGV[3] 可选，1 表示重置重入次数
+     */
+    public static final RedisLuaScript LOCK = new RedisLuaScript("lock",
+            NEXT_FENCE +
+                    "if redis.call('exists', KEYS[1]) == 0 then " +
+                    "   local token = nextFence(KEYS[2]) " +
+                    "   redis.call('hincrby', KEYS[1], ARGV[1], 1) " +
+                    "   redis.call('pexpire', KEYS[1], ARGV[2]) " +
+                    "   return {token} " +
+                    "end " +
+                    "if redis.call('hexists', KEYS[1], ARGV[1]) == 1 then " +
+                    "   if ARGV[3] == '1' then " +
+                    "       redis.call('hset', KEYS[1], ARGV[1], 1) " +
+                    "   else " +
+                    "       redis.call('hincrby', KEYS[1], ARGV[1], 1) " +
+                    "   end " +
+                    "   redis.call('pexpire', KEYS[1], ARGV[2]) " +
+                    "   return {tonumber(redis.call('get', KEYS[2]) or 0)} " +
+                    "end " +
+                    "return redis.call('pttl', KEYS[1])");
+
+    /**
+     * 解锁：只有持有者才能把重入次数减 1，减到 0 时删除锁并向释放频道发布消息唤醒等待者。
+     * 返回 0 表示不是持有者，1 表示锁已释放，2 表示仍有重入未释放
+     * <p>
+     * KEYS[1] 锁 key；ARGV[1] 持有者标识；ARGV[2] 释放频道
+     */
+    public static final RedisLuaScript UNLOCK = new RedisLuaScript("unlock",
+            "if redis.call('hexists', KEYS[1], ARGV[1]) == 0 then " +
+                    "   return 0 " +
+                    "end " +
+                    "if redis.call('hincrby', KEYS[1], ARGV[1], -1) > 0 then " +
+                    "   return 2 " +
+                    "end " +
+                    "redis.call('del', KEYS[1]) " +
+                    "redis.call('publish', ARGV[2], ARGV[1]) " +
+                    "return 1");
+
+    /**
+     * 批量续期：逐个校验持有者后 PEXPIRE，返回校验失败（锁已丢失）的下标，下标从 1 开始
+     * <p>
+     * KEYS[i] 锁 key；ARGV[1] 租期（毫秒）；ARGV[i + 1] 第 i 把锁的持有者标识
+     */
+    public static final RedisLuaScript RENEW = new RedisLuaScript("renew",
+            "local lost = {} " +
+                    "for i = 1, #KEYS do " +
+                    "   if redis.call('hexists', KEYS[i], ARGV[i + 1]) == 1 then " +
+                    "       redis.call('pexpire', KEYS[i], ARGV[1]) " +
+                    "   else " +
+                    "       table.insert(lost, i) " +
+                    "   end " +
+                    "end " +
+                    "return lost");
+
+    /**
+     * 查询持有者是否仍持有锁：锁的 hash 中存在该持有者字段返回 1，否则返回 0，只在显式要求远端确认时使用
+     * <p>
+     * KEYS[1] 锁 key；ARGV[1] 持有者标识
+     */
+    public static final RedisLuaScript HELD = new RedisLuaScript("held",
+            "return redis.call('hexists', KEYS[1], ARGV[1])");
+
+    /**
+     * 批量加锁：全部 key 都未被锁或已被同一持有者持有时，逐个把重入次数加 1 并重置租期，
+     * 新获取的 key 同时对其 fencing 计数器 INCR，返回 nil；
+     * 否则不修改任何 key，返回 {第一个冲突 key 的下标（从 1 开始）, 该 key 的剩余 TTL（毫秒）}
+     * <p>
+     * KEYS[i] 锁 key；KEYS[n + i] 第 i 把锁的 fencing 计数器 key（n 为锁 key 数量）；ARGV[1] 持有者标识；ARGV[2] 租期（毫秒）
+     */
+    public static final RedisLuaScript LOCK_ALL = new RedisLuaScript("lockAll",
+            NEXT_FENCE +
+                    "local n = #KEYS / 2 " +
+                    "for i = 1, n do " +
+                    "   if redis.call('exists', KEYS[i]) == 1 and redis.call('hexists', KEYS[i], ARGV[1]) == 0 then " +
+                    "       return {i, redis.call('pttl', KEYS[i])} " +
+                    "   end " +
+                    "end " +
+                    "for i = 1, n do " +
+                    "   if redis.call('hincrby', KEYS[i], ARGV[1], 1) == 1 then " +
+                    "       nextFence(KEYS[n + i]) " +
+                    "   end " +
+                    "   redis.call('pexpire', KEYS[i], ARGV[2]) " +
+                    "end " +
+                    "return nil");
+
+    /**
+     * 批量解锁：逐个把持有者的重入次数减 1，减到 0 时删除锁并向对应的释放频道发布消息。
+     * 返回被彻底释放的 key 的下标，下标从 1 开始；不是持有者的 key 直接跳过
+     * <p>
+     * KEYS[i] 锁 key；ARGV[1] 持有者标识；ARGV[i + 1] 第 i 把锁的释放频道
+     */
+    public static final RedisLuaScript UNLOCK_ALL = new RedisLuaScript("unlockAll",
+            "local released = {} " +
+                    "for i = 1, #KEYS do " +
+                    "   if redis.call('hexists', KEYS[i], ARGV[1]) == 1 " +
+                    "           and redis.call('hincrby', KEYS[i], ARGV[1], -1) <= 0 then " +
+                    "       redis.call('del', KEYS[i]) " +
+                    "       redis.call('publish', ARGV[i + 1], ARGV[1]) " +
+                    "       table.insert(released, i) " +
+                    "   end " +
+                    "end " +
+                    "return released");
+
+    /**
+     * 读写锁脚本的公共前缀：取 Redis 服务器时间，并清理租期已到期的持有者。
+     * <p>
+     * 读写锁以 hash 存储：field "mode" 为 "read" 或 "write"，读锁持有者的 field 为 "持有者标识:r"，
+     * 写锁持有者为 "持有者标识:w"，value 为重入次数；每个持有者的租期到期时间（毫秒）记录在 zset 中，
+     * 不同读者的租期互不影响，某个读者进程崩溃后只有它自己的持有会到期，不会被其他读者的续期一直延长。
+     * 写锁持有者到期后若仍有读者（写锁降级），mode 改为 "read"；全部持有者到期时删除锁
+     */
+    private static final String READ_WRITE_PREFIX =
+            "local t = redis.call('time') " +
+                    "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) " +
+                    "local expired = redis.call('zrangebyscore', KEYS[2], '-inf', now) " +
+                    "if #expired > 0 then " +
+                    "   for i = 1, #expired do " +
+                    "       redis.call('hdel', KEYS[1], expired[i]) " +
+                    "       if string.sub(expired[i], -2) == ':w' then " +
+                    "           redis.call('hset', KEYS[1], 'mode', 'read') " +
+                    "       end " +
+                    "   end " +
+                    "   redis.call('zremrangebyscore', KEYS[2], '-inf', now) " +
+                    "   if redis.call('zcard', KEYS[2]) == 0 then " +
+                    "       redis.call('del', KEYS[1]) " +
+                    "   end " +
+                    "end ";
+
+    /**
+     * 读写锁脚本加锁成功时记录持有者的租期，锁 key 与租期 zset 的 TTL 取所有持有者中最晚的到期时间
+     */
+    private static final String READ_WRITE_GRANT =
+            "redis.call('hincrby', KEYS[1], ARGV[1], 1) " +
+                    "redis.call('zadd', KEYS[2], now + tonumber(ARGV[2]), ARGV[1]) " +
+                    "if redis.call('pttl', KEYS[1]) < tonumber(ARGV[2]) then " +
+                    "   redis.call('pexpire', KEYS[1], ARGV[2]) " +
+                    "   redis.call('pexpire', KEYS[2], ARGV[2]) " +
+                    "end " +
+                    "return nil ";
+
+    /**
+     * 读写锁脚本加锁失败时返回建议的最长等待时间：最早到期的持有者的剩余租期，
+     * 没有持有者时为最早到期的等待写者登记；都没有时返回 -2，等待者立即重试
+     */
+    private static final String READ_WRITE_RETRY =
+            "local first = redis.call('zrange', KEYS[2], 0, 0, 'withscores') " +
+                    "if #first == 0 then " +
+                    "   first = redis.call('zrangebyscore', KEYS[3], '(' .. now, '+inf', 'withscores', 'limit', 0, 1) " +
+                    "end " +
+                    "if #first == 0 then " +
+                    "   return -2 " +
+                    "end " +
+                    "return tonumber(first[2]) - now";
+
+    /**
+     * 读锁：写锁未被持有时可以获取；开启写者优先（ARGV[4] 为 "1"）且有未过期的等待写者时，
+     * 只允许已持有读锁的持有者重入；写锁持有者自己可以再获取读锁（降级）。
+     * 成功返回 nil，失败返回建议的最长等待时间（毫秒）
+     * <p>
+     * KEYS[1] 锁 key；KEYS[2] 持有者租期 zset；KEYS[3] 等待写者 zset；
+     * ARGV[1] 读者 field；ARGV[2] 租期（毫秒）；ARGV[3] 同一持有者的写者 field；ARGV[4] 是否写者优先
+     */
+    public static final RedisLuaScript READ_LOCK = new RedisLuaScript("readLock",
+            READ_WRITE_PREFIX +
+                    "local mode = redis.call('hget', KEYS[1], 'mode') " +
+                    "local granted " +
+                    "if mode == 'write' then " +
+                    "   granted = redis.call('hexists', KEYS[1], ARGV[3]) == 1 " +
+                    "else " +
+                    "   granted = ARGV[4] == '0' or redis.call('hexists', KEYS[1], ARGV[1]) == 1 " +
+                    "           or redis.call('zcount', KEYS[3], '(' .. now, '+inf') == 0 " +
+                    "end " +
+                    "if granted then " +
+                    "   if not mode then " +
+                    "       redis.call('hset', KEYS[1], 'mode', 'read') " +
+                    "   end " +
+                    READ_WRITE_GRANT +
+                    "end " +
+                    READ_WRITE_RETRY);
+
+    /**
+     * 写锁：锁未被持有或已被同一写者持有（重入）时获取；读者之间的升级不被允许。
+     * 获取失败且 ARGV[3] 大于 0 时把写者登记到等待写者 zset，登记在 ARGV[3] 毫秒后过期，
+     * 写者优先模式下期间新的读者会被拒绝；获取成功时移除登记。
+     * 成功返回 nil，失败返回建议的最长等待时间（毫秒）
+     * <p>
+     * KEYS[1] 锁 key；KEYS[2] 持有者租期 zset；KEYS[3] 等待写者 zset；
+     * ARGV[1] 写者 field；ARGV[2] 租期（毫秒）；ARGV[3] 等待登记的有效期（毫秒），0 表示不登记
+     */
+    public static final RedisLuaScript WRITE_LOCK = new RedisLuaScript("writeLock",
+            READ_WRITE_PREFIX +
+                    "local mode = redis.call('hget', KEYS[1], 'mode') " +
+                    "if not mode or (mode == 'write' and redis.call('hexists', KEYS[1], ARGV[1]) == 1) then " +
+                    "   redis.call('hset', KEYS[1], 'mode', 'write') " +
+                    "   redis.call('zrem', KEYS[3], ARGV[1]) " +
+                    READ_WRITE_GRANT +
+                    "end " +
+                    "if tonumber(ARGV[3]) > 0 then " +
+                    "   redis.call('zadd', KEYS[3], now + tonumber(ARGV[3]), ARGV[1]) " +
+                    "   if redis.call('pttl', KEYS[3]) < tonumber(ARGV[3]) then " +
+                    "       redis.call('pexpire', KEYS[3], ARGV[3]) " +
+                    "   end " +
+                    "end " +
+                    READ_WRITE_RETRY);
+
+    /**
+     * 读写锁解锁：只有持有者才能把重入次数减 1，减到 0 时移除持有者。
+     * 全部持有者都已释放时删除锁，向写者频道发布消息唤醒一个等待的写者，并向读者频道发布 "*" 唤醒全部等待的读者；
+     * 写锁释放后仍有读者（降级）时 mode 改为 "read"，只唤醒读者。
+     * 返回 0 表示不是持有者，1 表示该持有者已彻底释放，2 表示仍有重入未释放
+     * <p>
+     * KEYS[1] 锁 key；KEYS[2] 持有者租期 zset；ARGV[1] 持有者 field；ARGV[2] 读者释放频道；ARGV[3] 写者释放频道
+     */
+    public static final RedisLuaScript READ_WRITE_UNLOCK = new RedisLuaScript("readWriteUnlock",
+            READ_WRITE_PREFIX +
+                    "if redis.call('hexists', KEYS[1], ARGV[1]) == 0 then " +
+                    "   return 0 " +
+                    "end " +
+                    "if redis.call('hincrby', KEYS[1], ARGV[1], -1) > 0 then " +
+                    "   return 2 " +
+                    "end " +
+                    "redis.call('hdel', KEYS[1], ARGV[1]) " +
+                    "redis.call('zrem', KEYS[2], ARGV[1]) " +
+                    "if redis.call('zcard', KEYS[2]) == 0 then " +
+                    "   redis.call('del', KEYS[1]) " +
+                    "   redis.call('publish', ARGV[3], ARGV[1]) " +
+                    "   redis.call('publish', ARGV[2], '*') " +
+                    "elseif string.sub(ARGV[1], -2) == ':w' then " +
+                    "   redis.call('hset', KEYS[1], 'mode', 'read') " +
+                    "   redis.call('publish', ARGV[2], '*') " +
+                    "end " +
+                    "return 1");
+
+    /**
+     * 按持有者记录租期的存储格式（hash 记录持有者，zset 记录每个持有者的到期时间，如读写锁与信号量）的批量续期：
+     * 逐个校验持有者后把它在 zset 中的到期时间延后一个租期，必要时延长 hash 与 zset 的 TTL。
+     * 返回校验失败（锁已丢失）的下标，下标从 1 开始
+     * <p>
+     * KEYS[2i - 1] 第 i 把锁的 hash；KEYS[2i] 第 i 把锁的持有者租期 zset；ARGV[1] 租期（毫秒）；ARGV[i + 1] 第 i 把锁的持有者 field
+     */
+    public static final RedisLuaScript LEASED_FIELD_RENEW = new RedisLuaScript("leasedFieldRenew",
+            "local t = redis.call('time') " +
+                    "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) " +
+                    "local lease = tonumber(ARGV[1]) " +
+                    "local lost = {} " +
+                    "for i = 1, #ARGV - 1 do " +
+                    "   local lock = KEYS[2 * i - 1] " +
+                    "   local leases = KEYS[2 * i] " +
+                    "   if redis.call('hexists', lock, ARGV[i + 1]) == 1 then " +
+                    "       redis.call('zadd', leases, now + lease, ARGV[i + 1]) " +
+                    "       if redis.call('pttl', lock) < lease then " +
+                    "           redis.call('pexpire', lock, lease) " +
+                    "           redis.call('pexpire', leases, lease) " +
+                    "       end " +
+                    "   else " +
+                    "       table.insert(lost, i) " +
+                    "   end " +
+                    "end " +
+                    "return lost");
+
+    /**
+     * 信号量脚本的公共前缀：取 Redis 服务器时间，清理租期已到期的许可并归还其数量。
+     * <p>
+     * 信号量以 hash 存储：field 为许可 ID，value 为该 ID 持有的许可数，field "used" 为已发放的许可总数；
+     * 每个许可 ID 的到期时间（毫秒）记录在 zset 中，持有者崩溃后许可按租期自动归还
+     */
+    private static final String SEMAPHORE_PREFIX =
+            "local t = redis.call('time') " +
+                    "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) " +
+                    "local expired = redis.call('zrangebyscore', KEYS[2], '-inf', now) " +
+                    "if #expired > 0 then " +
+                    "   local freed = 0 " +
+                    "   for i = 1, #expired do " +
+                    "       freed = freed + tonumber(redis.call('hget', KEYS[1], expired[i]) or 0) " +
+                    "       redis.call('hdel', KEYS[1], expired[i]) " +
+                    "   end " +
+                    "   redis.call('zremrangebyscore', KEYS[2], '-inf', now) " +
+                    "   redis.call('hincrby', KEYS[1], 'used', -freed) " +
+                    "end ";
+
+    /**
+     * 获取许可：清理到期许可后剩余数量足够时，以许可 ID 记录本次获取的数量与到期时间，返回 nil；
+     * 否则返回最早到期的许可的剩余租期（毫秒），没有未到期的许可时返回 -2
+     * <p>
+     * KEYS[1] 信号量 hash；KEYS[2] 许可租期 zset；ARGV[1] 许可 ID；ARGV[2] 许可数；ARGV[3] 租期（毫秒）；ARGV[4] 许可总数
+     */
+    public static final RedisLuaScript SEMAPHORE_ACQUIRE = new RedisLuaScript("semaphoreAcquire",
+            SEMAPHORE_PREFIX +
+                    "local permits = tonumber(ARGV[2]) " +
+                    "if tonumber(redis.call('hget', KEYS[1], 'used') or 0) + permits <= tonumber(ARGV[4]) then " +
+                    "   redis.call('hset', KEYS[1], ARGV[1], permits) " +
+                    "   redis.call('hincrby', KEYS[1], 'used', permits) " +
+                    "   redis.call('zadd', KEYS[2], now + tonumber(ARGV[3]), ARGV[1]) " +
+                    "   if redis.call('pttl', KEYS[1]) < tonumber(ARGV[3]) then " +
+                    "       redis.call('pexpire', KEYS[1], ARGV[3]) " +
+                    "       redis.call('pexpire', KEYS[2], ARGV[3]) " +
+                    "   end " +
+                    "   return nil " +
+                    "end " +
+                    "local first = redis.call('zrange', KEYS[2], 0, 0, 'withscores') " +
+                    "if #first == 0 then " +
+                    "   return -2 " +
+                    "end " +
+                    "return tonumber(first[2]) - now");
+
+    /**
+     * 归还许可：删除许可 ID 并归还其数量，每归还一个许可向释放频道发布一条消息，唤醒相同数量的等待者。
+     * 全部许可归还后删除信号量。返回 0 表示许可 ID 不存在（已到期或已归还），1 表示归还成功
+     * <p>
+     * KEYS[1] 信号量 hash；KEYS[2] 许可租期 zset；ARGV[1] 许可 ID；ARGV[2] 释放频道
+     */
+    public static final RedisLuaScript SEMAPHORE_RELEASE = new RedisLuaScript("semaphoreRelease",
+            "local permits = redis.call('hget', KEYS[1], ARGV[1]) " +
+                    "if not permits then " +
+                    "   return 0 " +
+                    "end " +
+                    "redis.call('hdel', KEYS[1], ARGV[1]) " +
+                    "redis.call('zrem', KEYS[2], ARGV[1]) " +
+                    "if redis.call('zcard', KEYS[2]) == 0 then " +
+                    "   redis.call('del', KEYS[1]) " +
+                    "else " +
+                    "   redis.call('hincrby', KEYS[1], 'used', -tonumber(permits)) " +
+                    "end " +
+                    "for i = 1, tonumber(permits) do " +
+                    "   redis.call('publish', ARGV[2], ARGV[1]) " +
+                    "end " +
+                    "return 1");
+
+    /**
+     * 清理到期许可后返回剩余可用的许可数
+     * <p>
+     * KEYS[1] 信号量 hash；KEYS[2] 许可租期 zset；ARGV[1] 许可总数
+     */
+    public static final RedisLuaScript SEMAPHORE_AVAILABLE = new RedisLuaScript("semaphoreAvailable",
+            SEMAPHORE_PREFIX +
+                    "return tonumber(ARGV[1]) - tonumber(redis.call('hget', KEYS[1], 'used') or 0)");
+
+    /**
+     * 公平锁脚本的公共前缀：取 Redis 服务器时间，从队首开始移除超时未刷新的等待者（已放弃或已崩溃）。
+     * <p>
+     * 等待队列由 list 记录先后顺序，zset 记录每个等待者的超时时间（毫秒）；
+     * 只清理队首，排在中间的过期等待者到达队首时再清理，每次调用的开销与放弃的等待者数量相关，与队列长度无关
+     */
+    private static final String FAIR_LOCK_PREFIX =
+            "local t = redis.call('time') " +
+                    "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) " +
+                    "local head = redis.call('lindex', KEYS[2], 0) " +
+                    "while head do " +
+                    "   local timeout = redis.call('zscore', KEYS[3], head) " +
+                    "   if timeout and tonumber(timeout) > now then " +
+                    "       break " +
+                    "   end " +
+                    "   redis.call('lpop', KEYS[2]) " +
+                    "   redis.call('zrem', KEYS[3], head) " +
+                    "   head = redis.call('lindex', KEYS[2], 0) " +
+                    "end ";
+
+    /**
+     * 通知队首等待者：向等待者频道发布队首的等待者标识，订阅端只唤醒该等待者
+     */
+    private static final String FAIR_LOCK_NOTIFY_HEAD =
+            "if head then " +
+                    "   redis.call('publish', ARGV[2], head) " +
+                    "end ";
+
+    /**
+     * 公平锁加锁：锁未被持有且队列为空或当前持有者位于队首时获取锁（出队），已持有时重入，返回 nil；
+     * 否则加入队尾（已在队列中则保持位置）并刷新自己的超时时间，ARGV[3] 为 0 时不排队（不等待的加锁），
+     * 返回建议的最长等待时间（毫秒）：锁被持有时为锁的剩余 TTL，锁空闲但轮到其他等待者时为队首等待者的剩余超时时间
+     * <p>
+     * 锁 key 与普通锁的格式相同（hash，field 为持有者、value 为重入次数），可以由看门狗以 {@link #RENEW} 续期。
+     * KEYS[1] 锁 key；KEYS[2] 等待队列 list；KEYS[3] 等待者超时 zset；
+     * ARGV[1] 持有者标识；ARGV[2] 租期（毫秒）；ARGV[3] 等待者超时时间（毫秒）
+     */
+    public static final RedisLuaScript FAIR_LOCK = new RedisLuaScript("fairLock",
+            FAIR_LOCK_PREFIX +
+                    "if redis.call('hexists', KEYS[1], ARGV[1]) == 1 then " +
+                    "   redis.call('hincrby', KEYS[1], ARGV[1], 1) " +
+                    "   redis.call('pexpire', KEYS[1], ARGV[2]) " +
+                    "   return nil " +
+                    "end " +
+                    "if redis.call('exists', KEYS[1]) == 0 and (not head or head == ARGV[1]) then " +
+                    "   if head then " +
+                    "       redis.call('lpop', KEYS[2]) " +
+                    "       redis.call('zrem', KEYS[3], head) " +
+                    "   end " +
+                    "   redis.call('hincrby', KEYS[1], ARGV[1], 1) " +
+                    "   redis.call('pexpire', KEYS[1], ARGV[2]) " +
+                    "   return nil " +
+                    "end " +
+                    "if tonumber(ARGV[3]) > 0 then " +
+                    "   if not redis.call('zscore', KEYS[3], ARGV[1]) then " +
+                    "       redis.call('rpush', KEYS[2], ARGV[1]) " +
+                    "   end " +
+                    "   redis.call('zadd', KEYS[3], now + tonumber(ARGV[3]), ARGV[1]) " +
+                    "   redis.call('pexpire', KEYS[2], ARGV[3]) " +
+                    "   redis.call('pexpire', KEYS[3], ARGV[3]) " +
+                    "end " +
+                    "local ttl = redis.call('pttl', KEYS[1]) " +
+                    "if ttl ~= -2 then " +
+                    "   return ttl " +
+                    "end " +
+                    "return tonumber(redis.call('zscore', KEYS[3], head)) - now");
+
+    /**
+     * 公平锁解锁：只有持有者才能把重入次数减 1，减到 0 时删除锁，清理队首超时的等待者后只通知新的队首。
+     * 返回 0 表示不是持有者，1 表示锁已释放，2 表示仍有重入未释放
+     * <p>
+     * KEYS[1] 锁 key；KEYS[2] 等待队列 list；KEYS[3] 等待者超时 zset；ARGV[1] 持有者标识；ARGV[2] 等待者频道
+     */
+    public static final RedisLuaScript FAIR_UNLOCK = new RedisLuaScript("fairUnlock",
+            "if redis.call('hexists', KEYS[1], ARGV[1]) == 0 then " +
+                    "   return 0 " +
+                    "end " +
+                    "if redis.call('hincrby', KEYS[1], ARGV[1], -1) > 0 then " +
+                    "   return 2 " +
+                    "end " +
+                    "redis.call('del', KEYS[1]) " +
+                    FAIR_LOCK_PREFIX +
+                    FAIR_LOCK_NOTIFY_HEAD +
+                    "return 1");
+
+    /**
+     * 公平锁放弃等待：把等待者移出队列；它原本位于队首且锁空闲时（已被通知却不再加锁），通知新的队首
+     * <p>
+     * KEYS[1] 锁 key；KEYS[2] 等待队列 list；KEYS[3] 等待者超时 zset；ARGV[1] 等待者标识；ARGV[2] 等待者频道
+     */
+    public static final RedisLuaScript FAIR_LOCK_CANCEL = new RedisLuaScript("fairLockCancel",
+            "local wasHead = redis.call('lindex', KEYS[2], 0) == ARGV[1] " +
+                    "redis.call('lrem', KEYS[2], 0, ARGV[1]) " +
+                    "redis.call('zrem', KEYS[3], ARGV[1]) " +
+                    "if wasHead and redis.call('exists', KEYS[1]) == 0 then " +
+                    FAIR_LOCK_PREFIX +
+                    FAIR_LOCK_NOTIFY_HEAD +
+                    "end " +
+                    "return nil");
+
+    /**
+     * 需要预加载的脚本
+     *
+     * @return 全部脚本
+     */
+    public static List<RedisLuaScript> all() {
+        return List.of(LOCK, UNLOCK, RENEW, HELD, LOCK_ALL, UNLOCK_ALL, READ_LOCK, WRITE_LOCK, READ_WRITE_UNLOCK, LEASED_FIELD_RENEW,
+                SEMAPHORE_ACQUIRE, SEMAPHORE_RELEASE, SEMAPHORE_AVAILABLE,
+                FAIR_LOCK, FAIR_UNLOCK, FAIR_LOCK_CANCEL);
+    }
+}
@@ -0,0 +1,57 @@
+package com.wangguangwu.distributedlockredis.script;
+
+import lombok.Getter;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Lua 脚本定义，构造时在本地计算 SHA1 并预先编码为字节数组，
+ * 执行时直接 EVALSHA，不必每次把脚本原文发送给 Redis。
+ *
+ * @author wangguangwu
+ */
+@Getter
+public final class RedisLuaScript {
+
+    /**
+     * 脚本名称，仅用于日志
+     */
+    private final String name;
+
+    /**
+     * 脚本原文，SCRIPT LOAD 时使用
+     */
+    private final String source;
+
+    /**
+     * 脚本的 SHA1 摘要（十六进制小写），与 SCRIPT LOAD 的返回值一致
+     */
+    private final String sha1;
+
+    private final byte[] sha1Bytes;
+
+    public RedisLuaScript(String name, String source) {
+        this.name = name;
+        this.source = source;
+        this.sha1 = sha1Hex(source);
+        this.sha1Bytes = SafeEncoder.encode(sha1);
+    }
+
+    private static String sha1Hex(String source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return HexFormat.of().formatHex(digest.digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("当前 JVM 不支持 SHA-1", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + "(" + sha1 + ")";
+    }
+}
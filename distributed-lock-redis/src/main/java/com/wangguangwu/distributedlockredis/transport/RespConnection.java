@@ -0,0 +1,830 @@
+package com.wangguangwu.distributedlockredis.transport;
+
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 只支持锁所需命令（EVALSHA、SCRIPT LOAD、SET NX PX、PEXPIRE、PUBLISH）的轻量 RESP 连接。
+ * <p>
+ * 每个 Redis 节点一条非阻塞 {@link SocketChannel}，任意线程提交的命令在这一条连接上多路复用，回复按 RESP 的先进先出顺序与在途请求一一对应：
+ * 连接空闲（没有在途与积压的请求）时，提交线程直接把命令编码进直接内存的写缓冲区并写出，省去唤醒 I/O 线程的一次切换；
+ * 否则只把请求放入无锁队列，由 I/O 线程在读取回复的间隙把积压的请求一次编码、一次 write 发出。
+ * 回复通常由 I/O 线程读取；同步调用（{@link #evalshaSync}）直接写出命令时连接上只有它一个在途请求，
+ * 调用线程在短时间内自旋、自己读取回复，期间取消连接对 OP_READ 的关注，I/O 线程不会被回复唤醒，
+ * 省去 I/O 线程读取后再唤醒调用线程的两次切换；自旋期间读到的其他回复也在调用线程上完成。
+ * 高并发时命令自然合并为 pipeline，空闲时每条命令立即单独发送。
+ * <p>
+ * 命令名、脚本 SHA1 与 key 都由调用方预先编码为字节数组，编码时直接写入缓冲区，长度数字逐位写出，不产生中间对象；
+ * 读缓冲区同样位于直接内存，简单字符串与整数回复在缓冲区上原地解析，解析过程不分配对象
+ * （整数回复完成 future 时装箱，-128 ~ 127 以外的值会分配一个 Long；"+OK" 返回共享的常量）。
+ * 批量字符串与数组回复按 Jedis 的约定返回 byte[] 与 List，nil 返回 null，便于替换 Jedis 的 EVALSHA 调用。
+ * <p>
+ * 订阅连接进入订阅模式后不能再执行普通命令，无法与其他命令复用，因此 SUBSCRIBE 仍由
+ * {@link com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber} 的独立连接完成，这里只提供 PUBLISH。
+ * <p>
+ * 返回的 future 在 I/O 线程（或自己读取回复的同步调用线程）上完成，回调中不应执行耗时操作，也不能同步等待本连接上的其他命令，
+ * 调用方可通过 {@link #isIoThread()} 判断。错误回复以 {@link JedisDataException} 完成（NOSCRIPT 为 {@link JedisNoScriptException}）；
+ * 连接断开或回复超时时无法确定在途命令是否已执行，全部以 {@link JedisConnectionException} 完成，之后的命令触发重连。
+ *
+ * @author wangguangwu
+ */
+public class RespConnection implements AutoCloseable {
+
+    private static final byte[] EVALSHA = encode("EVALSHA");
+
+    private static final byte[] SCRIPT = encode("SCRIPT");
+
+    private static final byte[] LOAD = encode("LOAD");
+
+    private static final byte[] SET = encode("SET");
+
+    private static final byte[] NX = encode("NX");
+
+    private static final byte[] PX = encode("PX");
+
+    private static final byte[] PEXPIRE = encode("PEXPIRE");
+
+    private static final byte[] PUBLISH = encode("PUBLISH");
+
+    private static final byte[][] NO_PARAMS = new byte[0][];
+
+    /**
+     * 预先编码的 key 数量，EVALSHA 的 numkeys 不需要每次转换
+     */
+    private static final byte[][] NUMBERS = new byte[32][];
+
+    /**
+     * "+OK" 回复返回的共享常量，调用方不应修改
+     */
+    private static final byte[] OK = encode("OK");
+
+    /**
+     * 回复尚未完整到达时解析方法的返回值
+     */
+    private static final Object INCOMPLETE = new Object();
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * I/O 线程两次检查回复超时之间的最长间隔
+     */
+    private static final long SELECT_TIMEOUT_MILLIS = 100;
+
+    /**
+     * 同步调用方自己读取回复的最长自旋时间，覆盖本机与同机房 Redis 的一次往返；超过后交还 I/O 线程读取
+     */
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    static {
+        for (int i = 0; i < NUMBERS.length; i++) {
+            NUMBERS[i] = encode(String.valueOf(i));
+        }
+    }
+
+    private final HostAndPort address;
+
+    private final int timeoutMillis;
+
+    private final long timeoutNanos;
+
+    private final Selector selector;
+
+    private final Thread ioThread;
+
+    private final ConcurrentLinkedQueue<Request> submitted = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 已有线程唤醒过 selector 且 I/O 线程尚未处理时为 true，多个提交者只触发一次唤醒
+     */
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+
+    /**
+     * 已发送等待回复的请求，在持有写锁时按写出顺序加入，由 I/O 线程按回复顺序取出
+     */
+    private final ConcurrentLinkedQueue<Request> inFlight = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 保护写缓冲区与连接的建立、关闭，保证请求加入 inFlight 的顺序与写出顺序一致
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * 保护读缓冲区与在途请求的取出，I/O 线程与自己读取回复的同步调用方互斥
+     */
+    private final ReentrantLock readLock = new ReentrantLock();
+
+    /**
+     * 同步调用方读取回复时发现的连接异常，交给 I/O 线程断开连接并让在途请求以异常完成
+     */
+    private volatile JedisConnectionException readFailure;
+
+    /**
+     * 正由提交线程自己读取回复的同步请求，不为 null 时连接不关注 OP_READ；在持有写锁时读写
+     */
+    private Request callerRead;
+
+    /**
+     * 已发送的命令数与 write 系统调用次数，两者之比即平均每次写出的命令数
+     */
+    private final AtomicLong commandCount = new AtomicLong();
+
+    private final AtomicLong writeCount = new AtomicLong();
+
+    private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private volatile SocketChannel channel;
+
+    private volatile SelectionKey selectionKey;
+
+    private volatile boolean running = true;
+
+    public RespConnection(HostAndPort address, int timeoutMillis) {
+        this.address = address;
+        this.timeoutMillis = timeoutMillis;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new JedisConnectionException("创建 Selector 失败", e);
+        }
+        this.ioThread = new Thread(this::run, "resp-io-" + address);
+        this.ioThread.setDaemon(true);
+        this.ioThread.start();
+    }
+
+    /**
+     * 执行已加载的脚本
+     *
+     * @param sha1     预先编码的脚本 SHA1
+     * @param keyCount key 的数量
+     * @param params   预先编码的 key 与参数，key 在前
+     * @return 完成时为脚本返回值
+     */
+    public CompletableFuture<Object> evalsha(byte[] sha1, int keyCount, byte[]... params) {
+        byte[] numKeys = keyCount >= 0 && keyCount < NUMBERS.length ? NUMBERS[keyCount] : encode(String.valueOf(keyCount));
+        return submit(new Request(EVALSHA, sha1, numKeys, params));
+    }
+
+    /**
+     * 同步执行已加载的脚本。连接空闲时调用线程直接写出命令并自旋读取回复，超过 {@link #SPIN_NANOS} 仍未到达时
+     * 交还 I/O 线程读取，调用线程改为等待；连接繁忙时与 {@link #evalsha} 相同，只是等待结果。不能在 I/O 线程上调用
+     *
+     * @param sha1     预先编码的脚本 SHA1
+     * @param keyCount key 的数量
+     * @param params   预先编码的 key 与参数，key 在前
+     * @return 脚本返回值
+     * @throws JedisDataException       脚本执行出错时（NOSCRIPT 为 {@link JedisNoScriptException}）
+     * @throws JedisConnectionException 连接断开或回复超时时
+     */
+    public Object evalshaSync(byte[] sha1, int keyCount, byte[]... params) {
+        if (isIoThread()) {
+            throw new IllegalStateException("不能在 I/O 线程上同步等待本连接的回复");
+        }
+        byte[] numKeys = keyCount >= 0 && keyCount < NUMBERS.length ? NUMBERS[keyCount] : encode(String.valueOf(keyCount));
+        Request request = new Request(EVALSHA, sha1, numKeys, params);
+        request.sync = true;
+        submit(request);
+        if (request.callerReads) {
+            readOwnReply(request);
+        }
+        try {
+            return request.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 加载脚本
+     *
+     * @param source 脚本原文
+     * @return 完成时为脚本 SHA1（byte[]）
+     */
+    public CompletableFuture<Object> scriptLoad(byte[] source) {
+        return submit(new Request(SCRIPT, LOAD, source, NO_PARAMS));
+    }
+
+    /**
+     * SET key value NX PX millis
+     *
+     * @param key      预先编码的 key
+     * @param value    预先编码的值
+     * @param pxMillis 预先编码的过期时间（毫秒）
+     * @return 完成时设置成功为 "OK"（byte[]），key 已存在为 null
+     */
+    public CompletableFuture<Object> setNxPx(byte[] key, byte[] value, byte[] pxMillis) {
+        return submit(new Request(SET, key, value, new byte[][]{NX, PX, pxMillis}));
+    }
+
+    /**
+     * PEXPIRE key millis
+     *
+     * @param key    预先编码的 key
+     * @param millis 预先编码的过期时间（毫秒）
+     * @return 完成时 key 存在为 1L，否则为 0L
+     */
+    public CompletableFuture<Object> pexpire(byte[] key, byte[] millis) {
+        return submit(new Request(PEXPIRE, key, millis, NO_PARAMS));
+    }
+
+    /**
+     * PUBLISH channel message
+     *
+     * @param channel 预先编码的频道
+     * @param message 预先编码的消息
+     * @return 完成时为收到消息的订阅者数量（Long）
+     */
+    public CompletableFuture<Object> publish(byte[] channel, byte[] message) {
+        return submit(new Request(PUBLISH, channel, message, NO_PARAMS));
+    }
+
+    /**
+     * 当前线程是否为 I/O 线程
+     *
+     * @return true 表示是
+     */
+    public boolean isIoThread() {
+        return Thread.currentThread() == ioThread;
+    }
+
+    /**
+     * 已发送的命令数
+     *
+     * @return 命令数
+     */
+    public long getCommandCount() {
+        return commandCount.get();
+    }
+
+    /**
+     * 发送命令时 write 系统调用的次数
+     *
+     * @return 系统调用次数
+     */
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+
+    /**
+     * 节点地址
+     *
+     * @return 地址
+     */
+    public HostAndPort getAddress() {
+        return address;
+    }
+
+    /**
+     * 关闭连接与 I/O 线程，尚未完成的命令以异常完成
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            ioThread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failSubmitted(new JedisConnectionException("连接已关闭: " + address));
+    }
+
+    private CompletableFuture<Object> submit(Request request) {
+        if (!running) {
+            request.completeExceptionally(new JedisConnectionException("连接已关闭: " + address));
+            return request;
+        }
+        if (tryWriteDirectly(request)) {
+            return request;
+        }
+        submitted.add(request);
+        if (wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+        // close 与 add 并发时 I/O 线程可能已退出，补充一次清理
+        if (!running) {
+            failSubmitted(new JedisConnectionException("连接已关闭: " + address));
+        }
+        return request;
+    }
+
+    /**
+     * 连接空闲时在提交线程上直接写出命令。已有请求在途时不直接写出，让后续请求在队列中积压、合并为一次写出；
+     * 同步请求直接写出时由提交线程自己读取回复。写出失败时交给 I/O 线程断开连接并统一处理
+     *
+     * @return false 表示连接繁忙或尚未建立，需要放入队列
+     */
+    private boolean tryWriteDirectly(Request request) {
+        if (channel == null || !inFlight.isEmpty() || !writeLock.tryLock()) {
+            return false;
+        }
+        try {
+            if (channel == null || !inFlight.isEmpty() || !submitted.isEmpty() || writeBuffer.position() != 0) {
+                return false;
+            }
+            ensureWritable(request.encodedSize());
+            writeRequest(request);
+            request.sentAtNanos = System.nanoTime();
+            inFlight.add(request);
+            commandCount.incrementAndGet();
+            if (request.sync) {
+                request.callerReads = true;
+                callerRead = request;
+            }
+            // 未能一次写完时关注 OP_WRITE，由 I/O 线程继续写出
+            flush();
+        } catch (IOException e) {
+            readFailure = new JedisConnectionException(address + " 连接异常: " + e.getMessage(), e);
+            selector.wakeup();
+        } finally {
+            writeLock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * 在 {@link #SPIN_NANOS} 内自旋读取回复，I/O 线程正在读取时只等待；结束后把剩余的在途请求交还 I/O 线程
+     */
+    private void readOwnReply(Request request) {
+        long start = System.nanoTime();
+        while (!request.isDone() && System.nanoTime() - start < SPIN_NANOS) {
+            // 回复至少一次往返后才会到达，先让出 CPU 再读取，单核机器上 Redis 与 I/O 线程也能及时运行
+            Thread.yield();
+            if (readLock.tryLock()) {
+                try {
+                    SocketChannel socketChannel = channel;
+                    if (socketChannel == null || readFailure != null) {
+                        break;
+                    }
+                    readReplies(socketChannel);
+                } catch (IOException | JedisConnectionException e) {
+                    readFailure = e instanceof JedisConnectionException ? (JedisConnectionException) e
+                            : new JedisConnectionException(address + " 连接异常: " + e.getMessage(), e);
+                    selector.wakeup();
+                    break;
+                } finally {
+                    readLock.unlock();
+                }
+            }
+        }
+        writeLock.lock();
+        try {
+            if (callerRead == request) {
+                callerRead = null;
+                if (selectionKey != null && !inFlight.isEmpty()) {
+                    updateInterest();
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                selector.select(SELECT_TIMEOUT_MILLIS);
+                // 先复位再取队列：复位之后提交的请求会重新唤醒，不会被遗漏
+                wakeupPending.set(false);
+                if (channel == null) {
+                    if (submitted.isEmpty()) {
+                        continue;
+                    }
+                    if (!connect()) {
+                        continue;
+                    }
+                }
+                JedisConnectionException failure = readFailure;
+                if (failure != null) {
+                    throw failure;
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (key.isValid() && key.isReadable()) {
+                        read();
+                    }
+                }
+                selector.selectedKeys().clear();
+                writeLock.lock();
+                try {
+                    encodeSubmitted();
+                    flush();
+                } finally {
+                    writeLock.unlock();
+                }
+                checkTimeout();
+            } catch (IOException | JedisConnectionException e) {
+                disconnect(e instanceof JedisConnectionException ? (JedisConnectionException) e
+                        : new JedisConnectionException(address + " 连接异常: " + e.getMessage(), e));
+            } catch (ClosedSelectorException e) {
+                break;
+            }
+        }
+        disconnect(new JedisConnectionException("连接已关闭: " + address));
+        failSubmitted(new JedisConnectionException("连接已关闭: " + address));
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+            // 关闭时忽略
+        }
+    }
+
+    /**
+     * 建立连接，失败时已提交的命令以异常完成
+     *
+     * @return true 表示连接成功
+     */
+    private boolean connect() throws IOException {
+        SocketChannel socketChannel = SocketChannel.open();
+        try {
+            socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            socketChannel.socket().connect(new InetSocketAddress(address.getHost(), address.getPort()), timeoutMillis);
+            socketChannel.configureBlocking(false);
+            selectionKey = socketChannel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            socketChannel.close();
+            failSubmitted(new JedisConnectionException("无法连接 " + address + ": " + e.getMessage(), e));
+            return false;
+        }
+        // 先设置 selectionKey 再发布 channel，提交线程看到 channel 时 selectionKey 已可用
+        channel = socketChannel;
+        return true;
+    }
+
+    /**
+     * 关闭连接并让在途请求以异常完成，只在 I/O 线程上调用
+     */
+    private void disconnect(JedisConnectionException cause) {
+        writeLock.lock();
+        try {
+            if (channel != null) {
+                selectionKey.cancel();
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // 关闭时忽略
+                }
+                channel = null;
+                selectionKey = null;
+            }
+            callerRead = null;
+            writeBuffer.clear();
+        } finally {
+            writeLock.unlock();
+        }
+        readLock.lock();
+        try {
+            readBuffer.clear();
+            readFailure = null;
+            Request request;
+            while ((request = inFlight.poll()) != null) {
+                request.completeExceptionally(cause);
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private void failSubmitted(JedisConnectionException cause) {
+        Request request;
+        while ((request = submitted.poll()) != null) {
+            request.completeExceptionally(cause);
+        }
+    }
+
+    // ---------------- 编码 ----------------
+
+    private void encodeSubmitted() throws IOException {
+        Request request;
+        long now = System.nanoTime();
+        while ((request = submitted.poll()) != null) {
+            // 有命令经 I/O 线程发出时，由 I/O 线程负责读取回复
+            callerRead = null;
+            ensureWritable(request.encodedSize());
+            writeRequest(request);
+            request.sentAtNanos = now;
+            inFlight.add(request);
+            commandCount.incrementAndGet();
+        }
+    }
+
+    private void writeRequest(Request request) {
+        ByteBuffer buffer = writeBuffer;
+        buffer.put((byte) '*');
+        putDecimal(buffer, 3 + request.params.length);
+        putCrlf(buffer);
+        putBulk(buffer, request.command);
+        putBulk(buffer, request.arg1);
+        putBulk(buffer, request.arg2);
+        for (byte[] param : request.params) {
+            putBulk(buffer, param);
+        }
+    }
+
+    private static void putBulk(ByteBuffer buffer, byte[] value) {
+        buffer.put((byte) '$');
+        putDecimal(buffer, value.length);
+        putCrlf(buffer);
+        buffer.put(value);
+        putCrlf(buffer);
+    }
+
+    private static void putCrlf(ByteBuffer buffer) {
+        buffer.put((byte) '\r');
+        buffer.put((byte) '\n');
+    }
+
+    /**
+     * 逐位写出非负整数的十进制表示，不经过 String
+     */
+    private static void putDecimal(ByteBuffer buffer, int value) {
+        int digits = decimalLength(value);
+        int end = buffer.position() + digits;
+        for (int i = end - 1; i >= buffer.position(); i--) {
+            buffer.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buffer.position(end);
+    }
+
+    private static int decimalLength(int value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * 保证写缓冲区能放下指定字节数：先尝试把已有数据写出，仍放不下时扩容
+     */
+    private void ensureWritable(int size) throws IOException {
+        if (writeBuffer.remaining() >= size) {
+            return;
+        }
+        flush();
+        if (writeBuffer.remaining() >= size) {
+            return;
+        }
+        ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(writeBuffer.capacity() * 2, writeBuffer.position() + size));
+        writeBuffer.flip();
+        larger.put(writeBuffer);
+        writeBuffer = larger;
+    }
+
+    /**
+     * 把写缓冲区中的数据写入连接，socket 缓冲区满时关注 OP_WRITE，可写后由 I/O 线程的下一轮循环继续写出
+     *
+     * @return true 表示仍有数据未写出
+     */
+    private boolean flush() throws IOException {
+        if (writeBuffer.position() == 0) {
+            return false;
+        }
+        writeBuffer.flip();
+        channel.write(writeBuffer);
+        writeCount.incrementAndGet();
+        writeBuffer.compact();
+        updateInterest();
+        return writeBuffer.position() != 0;
+    }
+
+    /**
+     * 按当前状态更新连接关注的事件：有同步调用方自己读取回复时不关注 OP_READ，写缓冲区有剩余数据时关注 OP_WRITE。
+     * 在 I/O 线程以外新增关注的事件时唤醒 selector，让变更立即生效；调用方需持有写锁
+     */
+    private void updateInterest() {
+        int interest = (callerRead == null ? SelectionKey.OP_READ : 0)
+                | (writeBuffer.position() == 0 ? 0 : SelectionKey.OP_WRITE);
+        int current = selectionKey.interestOps();
+        if (current != interest) {
+            selectionKey.interestOps(interest);
+            if ((interest & ~current) != 0 && !isIoThread()) {
+                selector.wakeup();
+            }
+        }
+    }
+
+    private void checkTimeout() {
+        Request oldest = inFlight.peek();
+        if (oldest != null && System.nanoTime() - oldest.sentAtNanos > timeoutNanos) {
+            throw new JedisConnectionException(address + " 等待回复超时（" + timeoutMillis + "ms）");
+        }
+    }
+
+    // ---------------- 解析 ----------------
+
+    /**
+     * I/O 线程读取回复；同步调用方正在读取时跳过，剩余数据到达后 selector 会再次报告可读
+     */
+    private void read() throws IOException {
+        if (!readLock.tryLock()) {
+            return;
+        }
+        try {
+            readReplies(channel);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * 读取已到达的数据并完成对应的请求，调用方需持有 readLock
+     */
+    private void readReplies(SocketChannel socketChannel) throws IOException {
+        if (socketChannel.read(readBuffer) < 0) {
+            throw new EOFException("连接被关闭");
+        }
+        readBuffer.flip();
+        while (readBuffer.hasRemaining()) {
+            int start = readBuffer.position();
+            Object reply = parse();
+            if (reply == INCOMPLETE) {
+                readBuffer.position(start);
+                break;
+            }
+            Request request = inFlight.poll();
+            if (request == null) {
+                throw new JedisConnectionException("收到没有对应请求的回复");
+            }
+            if (reply instanceof JedisDataException) {
+                request.completeExceptionally((JedisDataException) reply);
+            } else {
+                request.complete(reply);
+            }
+        }
+        readBuffer.compact();
+        if (!readBuffer.hasRemaining()) {
+            // 单个回复超过缓冲区容量
+            ByteBuffer larger = ByteBuffer.allocateDirect(readBuffer.capacity() * 2);
+            readBuffer.flip();
+            larger.put(readBuffer);
+            readBuffer = larger;
+        }
+    }
+
+    /**
+     * 从读缓冲区当前位置解析一个回复，数据不完整时返回 {@link #INCOMPLETE}，调用方负责回退位置
+     */
+    private Object parse() {
+        ByteBuffer buffer = readBuffer;
+        if (!buffer.hasRemaining()) {
+            return INCOMPLETE;
+        }
+        int lineStart = buffer.position() + 1;
+        int lineEnd = lineEnd(buffer, lineStart);
+        if (lineEnd < 0) {
+            return INCOMPLETE;
+        }
+        byte type = buffer.get(buffer.position());
+        buffer.position(lineEnd + 2);
+        switch (type) {
+            case ':':
+                return parseLong(buffer, lineStart, lineEnd);
+            case '+':
+                if (lineEnd - lineStart == 2 && buffer.get(lineStart) == 'O' && buffer.get(lineStart + 1) == 'K') {
+                    return OK;
+                }
+                return copy(buffer, lineStart, lineEnd);
+            case '$':
+                return parseBulk(buffer, (int) parseLong(buffer, lineStart, lineEnd));
+            case '*':
+                return parseArray((int) parseLong(buffer, lineStart, lineEnd));
+            case '-':
+                String message = new String(copy(buffer, lineStart, lineEnd), StandardCharsets.UTF_8);
+                return message.startsWith("NOSCRIPT") ? new JedisNoScriptException(message) : new JedisDataException(message);
+            default:
+                throw new JedisConnectionException("无法识别的回复类型: " + (char) type);
+        }
+    }
+
+    private static Object parseBulk(ByteBuffer buffer, int length) {
+        if (length < 0) {
+            return null;
+        }
+        if (buffer.remaining() < length + 2) {
+            return INCOMPLETE;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        buffer.position(buffer.position() + 2);
+        return value;
+    }
+
+    private Object parseArray(int size) {
+        if (size < 0) {
+            return null;
+        }
+        List<Object> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Object value = parse();
+            if (value == INCOMPLETE) {
+                return INCOMPLETE;
+            }
+            values.add(value);
+        }
+        return values;
+    }
+
+    /**
+     * 查找从 from 开始的第一个 \r\n，返回 \r 的位置，尚未到达时返回 -1
+     */
+    private static int lineEnd(ByteBuffer buffer, int from) {
+        for (int i = from; i < buffer.limit() - 1; i++) {
+            if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long parseLong(ByteBuffer buffer, int from, int to) {
+        boolean negative = buffer.get(from) == '-';
+        long value = 0;
+        for (int i = negative ? from + 1 : from; i < to; i++) {
+            value = value * 10 + (buffer.get(i) - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private static byte[] copy(ByteBuffer buffer, int from, int to) {
+        byte[] value = new byte[to - from];
+        buffer.get(from, value);
+        return value;
+    }
+
+    private static byte[] encode(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 一条待发送的命令，本身即为结果 future，每条命令只分配这一个对象
+     */
+    private static final class Request extends CompletableFuture<Object> {
+
+        private final byte[] command;
+
+        private final byte[] arg1;
+
+        private final byte[] arg2;
+
+        private final byte[][] params;
+
+        private long sentAtNanos;
+
+        /**
+         * 是否为同步请求，直接写出时提交线程自己读取回复
+         */
+        private boolean sync;
+
+        /**
+         * 同步请求直接写出后由提交线程自己读取回复
+         */
+        private boolean callerReads;
+
+        private Request(byte[] command, byte[] arg1, byte[] arg2, byte[][] params) {
+            this.command = command;
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+            this.params = params;
+        }
+
+        /**
+         * 编码后的字节数上限，数组头与每个参数的长度前缀按最长 10 位数字估算
+         */
+        private int encodedSize() {
+            int size = 16 + 3 * 16 + command.length + arg1.length + arg2.length;
+            for (byte[] param : params) {
+                size += 16 + param.length;
+            }
+            return size;
+        }
+    }
+}
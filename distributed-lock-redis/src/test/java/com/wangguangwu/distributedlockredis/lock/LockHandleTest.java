@@ -0,0 +1,158 @@
+package com.wangguangwu.distributedlockredis.lock;
+
+import com.wangguangwu.distributedlockredis.lock.factory.JedisLockFactory;
+import com.wangguangwu.distributedlockredis.lock.impl.RedissonDistributedLockImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 测试与线程无关的锁句柄：
+ * <ul>
+ *   <li>在一个线程加锁、在另一个线程解锁</li>
+ *   <li>Redisson 的句柄同样可以跨线程解锁</li>
+ *   <li>大量任务争用 1000 个 key，每次都在其他线程解锁（JDK 21 上使用 10 万个虚拟线程）</li>
+ * </ul>
+ */
+@SpringBootTest
+@DisplayName("测试锁句柄")
+public class LockHandleTest {
+
+    private static final int KEY_COUNT = 1000;
+
+    @Autowired
+    private JedisLockFactory jedisLockFactory;
+
+    @Autowired
+    private RedissonDistributedLockImpl redissonDistributedLock;
+
+    @Autowired
+    private JedisPool jedisPool;
+
+    @Test
+    @DisplayName("在一个线程加锁，在另一个线程解锁")
+    void testReleaseOnAnotherThread() throws Exception {
+        AbstractDistributedLock lock = jedisLockFactory.getLock("handle:cross-thread");
+        LockHandle handle = CompletableFuture.supplyAsync(() -> {
+            try {
+                return lock.acquire(1, 10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }).get();
+        assertNotNull(handle, "应成功获取锁");
+        assertNull(lock.acquire(0, 10, TimeUnit.SECONDS), "句柄未解锁前其他持有者不能加锁");
+
+        Thread releaser = new Thread(handle::unlock);
+        releaser.start();
+        releaser.join();
+        assertTrue(handle.isReleased(), "句柄应标记为已解锁");
+        try (Jedis jedis = jedisPool.getResource()) {
+            assertFalse(jedis.exists("handle:cross-thread"), "在其他线程解锁后 Redis 中不应再有锁");
+        }
+
+        try (LockHandle again = lock.acquire(1, 10, TimeUnit.SECONDS)) {
+            assertNotNull(again, "解锁后应能再次获取锁");
+        }
+        // 重复解锁被忽略
+        handle.unlock();
+    }
+
+    @Test
+    @DisplayName("Redisson 的锁句柄可以在其他线程解锁")
+    void testRedissonReleaseOnAnotherThread() throws Exception {
+        LockHandle handle = redissonDistributedLock.acquireAsync(1, 10, TimeUnit.SECONDS).toCompletableFuture().get();
+        assertNotNull(handle, "应成功获取锁");
+        assertFalse(redissonDistributedLock.tryLock(0, 10, TimeUnit.SECONDS), "句柄未解锁前当前线程不能加锁");
+        CompletableFuture.runAsync(handle::unlock).get();
+        assertTrue(redissonDistributedLock.tryLock(0, 10, TimeUnit.SECONDS), "句柄在其他线程解锁后应能加锁");
+        redissonDistributedLock.unlock();
+    }
+
+    @Test
+    @DisplayName("1 万个任务争用 1000 个 key，在其他线程解锁")
+    void testPlatformThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        // 解锁任务使用独立的线程池，避免加锁任务占满线程后等待排在后面的解锁任务
+        ExecutorService releaseExecutor = Executors.newFixedThreadPool(8);
+        try {
+            runContention(executor, releaseExecutor, 10_000, "handle:platform:");
+        } finally {
+            executor.shutdown();
+            releaseExecutor.shutdown();
+        }
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    @DisplayName("10 万个虚拟线程争用 1000 个 key，在其他虚拟线程解锁")
+    void testVirtualThreads() throws Exception {
+        // 编译目标低于 21，通过反射创建虚拟线程执行器
+        ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        try {
+            runContention(executor, executor, 100_000, "handle:virtual:");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 每个任务获取一个 key 的锁，校验互斥后交给另一个任务解锁
+     */
+    private void runContention(ExecutorService executor, ExecutorService releaseExecutor, int taskCount, String keyPrefix)
+            throws Exception {
+        AtomicBoolean[] inUse = new AtomicBoolean[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            inUse[i] = new AtomicBoolean();
+        }
+        AtomicInteger violations = new AtomicInteger();
+        AtomicInteger success = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>(taskCount);
+        long start = System.nanoTime();
+        for (int i = 0; i < taskCount; i++) {
+            int key = i % KEY_COUNT;
+            futures.add(executor.submit(() -> {
+                AbstractDistributedLock lock = jedisLockFactory.getLock(keyPrefix + key);
+                LockHandle handle = lock.acquire(60, 10, TimeUnit.SECONDS);
+                if (handle == null) {
+                    return null;
+                }
+                if (!inUse[key].compareAndSet(false, true)) {
+                    violations.incrementAndGet();
+                }
+                success.incrementAndGet();
+                // 持有权交给另一个任务释放
+                releaseExecutor.submit(() -> {
+                    inUse[key].set(false);
+                    handle.unlock();
+                }).get();
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("[LockHandle] %d 个任务 / %d 个 key: %.0f ops/s%n",
+                taskCount, KEY_COUNT, taskCount * 1_000_000_000.0 / elapsed);
+        assertEquals(taskCount, success.get(), "每个任务都应在等待时间内获取锁");
+        assertEquals(0, violations.get(), "同一个 key 同一时刻只能有一个持有者");
+    }
+}
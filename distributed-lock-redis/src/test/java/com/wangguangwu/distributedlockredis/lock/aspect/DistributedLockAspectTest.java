@@ -0,0 +1,238 @@
+package com.wangguangwu.distributedlockredis.lock.aspect;
+
+import com.wangguangwu.distributedlockredis.lock.annotation.DistributedLock;
+import com.wangguangwu.distributedlockredis.lock.annotation.LockNotAcquiredException;
+import com.wangguangwu.distributedlockredis.lock.factory.LocalLockFactory;
+import com.wangguangwu.distributedlockredis.lock.support.LocalLeaseTimer;
+import com.wangguangwu.distributedlockredis.properties.DistributedLockProperties;
+import com.wangguangwu.distributedlockredis.properties.LocalLockProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.expression.spel.SpelEvaluationException;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 测试 {@link DistributedLock} 切面，以进程内锁作为锁工厂，不依赖 Redis 与 Spring 容器：
+ * <ul>
+ *   <li>key 表达式按参数名、参数位置求值，key 为空时使用 类名.方法名</li>
+ *   <li>多线程调用同一 key 的方法时互斥，方法抛出异常后锁被释放</li>
+ *   <li>等待超时抛出 LockNotAcquiredException，方法不执行</li>
+ *   <li>同一线程嵌套调用相同 key 的方法时重入，锁工厂不存在时报错</li>
+ * </ul>
+ */
+@DisplayName("测试 @DistributedLock 切面")
+public class DistributedLockAspectTest {
+
+    private LocalLeaseTimer leaseTimer;
+
+    private LocalLockFactory localLockFactory;
+
+    private OrderService orderService;
+
+    @BeforeEach
+    void setUp() {
+        LocalLockProperties localLockProperties = new LocalLockProperties();
+        leaseTimer = new LocalLeaseTimer(localLockProperties);
+        leaseTimer.start();
+        localLockFactory = new LocalLockFactory(leaseTimer, localLockProperties);
+
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("localLockFactory", localLockFactory);
+        DistributedLockProperties distributedLockProperties = new DistributedLockProperties();
+        distributedLockProperties.setDefaultBackend("localLockFactory");
+
+        OrderService target = new OrderService();
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.addAspect(new DistributedLockAspect(beanFactory, distributedLockProperties));
+        orderService = proxyFactory.getProxy();
+        target.self = orderService;
+    }
+
+    @AfterEach
+    void tearDown() {
+        leaseTimer.shutdown();
+    }
+
+    @Test
+    @DisplayName("key 表达式：按参数名与参数位置求值，key 为空时使用 类名.方法名")
+    void testLockKey() {
+        Order order = new Order("1001");
+        assertEquals("order:1001", orderService.pay(order, () -> assertHeld("order:1001")));
+        assertEquals("refund:1001", orderService.refund(order, () -> assertHeld("refund:1001")));
+        String defaultKey = OrderService.class.getName() + ".settle";
+        orderService.settle(() -> assertHeld(defaultKey));
+        assertFalse(localLockFactory.getLock("order:1001").isHeldLocally(), "方法返回后应解锁");
+    }
+
+    @Test
+    @DisplayName("key 表达式：编译前后结果一致，可以调用参数的实例方法，不能引用类型")
+    void testLockKeyReadOnly() throws NoSuchMethodException {
+        Method pay = OrderService.class.getMethod("pay", Order.class, Runnable.class);
+        LockKeyExpression expression = LockKeyExpression.parse(pay, "'order:' + #order.getId().trim()");
+        Object[] args = {new Order(" 1001 "), null};
+        // 超过编译阈值，覆盖解释执行与编译后执行两种路径
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("order:1001", expression.evaluate(args));
+        }
+        LockKeyExpression typeReference = LockKeyExpression.parse(pay, "T(java.lang.System).getProperty('user.home')");
+        assertThrows(SpelEvaluationException.class, () -> typeReference.evaluate(args), "不应允许类型引用");
+    }
+
+    @Test
+    @DisplayName("多线程调用同一 key 的方法：临界区内的非原子累加不丢失更新")
+    void testMutualExclusion() throws Exception {
+        Order order = new Order("1002");
+        int[] counter = new int[1];
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 1_000; j++) {
+                        orderService.pay(order, () -> counter[0]++);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(8_000, counter[0], "临界区内的非原子累加不应丢失更新");
+    }
+
+    @Test
+    @DisplayName("方法抛出异常：异常原样抛出，锁被释放")
+    void testUnlockOnException() {
+        Order order = new Order("1003");
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> orderService.pay(order, () -> {
+                    throw new IllegalStateException("余额不足");
+                }));
+        assertEquals("余额不足", e.getMessage());
+        assertFalse(localLockFactory.getLock("order:1003").isHeldLocally(), "方法抛出异常后应解锁");
+    }
+
+    @Test
+    @DisplayName("锁被其他线程持有：等待超时后抛出 LockNotAcquiredException，方法不执行")
+    void testNotAcquired() throws Exception {
+        Order order = new Order("1004");
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> holder = executor.submit(() -> orderService.pay(order, () -> {
+                locked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+            boolean[] executed = new boolean[1];
+            LockNotAcquiredException e = assertThrows(LockNotAcquiredException.class,
+                    () -> orderService.tryPay(order, () -> executed[0] = true));
+            assertEquals("order:1004", e.getLockKey());
+            assertFalse(executed[0], "未获取到锁时方法不应执行");
+
+            release.countDown();
+            holder.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals("order:1004", orderService.tryPay(order, () -> {
+        }), "持有者释放后应能获取到锁");
+    }
+
+    @Test
+    @DisplayName("同一线程嵌套调用相同 key 的方法：重入，外层返回后解锁")
+    void testReentrant() {
+        Order order = new Order("1005");
+        orderService.payTwice(order);
+        assertFalse(localLockFactory.getLock("order:1005").isHeldLocally(), "外层方法返回后应解锁");
+    }
+
+    @Test
+    @DisplayName("锁工厂不存在：调用时报错")
+    void testUnknownBackend() {
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> orderService.unknownBackend());
+        assertTrue(e.getMessage().contains("missingLockFactory"));
+    }
+
+    private void assertHeld(String lockKey) {
+        assertTrue(localLockFactory.getLock(lockKey).isLockHeldByCurrentThread(), "方法执行期间应持有锁 " + lockKey);
+    }
+
+    public static class Order {
+
+        private final String id;
+
+        public Order(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+
+    public static class OrderService {
+
+        /**
+         * 代理对象，嵌套调用需要经过代理才会被切面拦截
+         */
+        OrderService self;
+
+        @DistributedLock(key = "'order:' + #order.id", waitTime = 5)
+        public String pay(Order order, Runnable body) {
+            body.run();
+            return "order:" + order.getId();
+        }
+
+        @DistributedLock(key = "'order:' + #p0.id", waitTime = 0)
+        public String tryPay(Order order, Runnable body) {
+            body.run();
+            return "order:" + order.getId();
+        }
+
+        @DistributedLock(key = "'refund:' + #a0.id")
+        public String refund(Order order, Runnable body) {
+            body.run();
+            return "refund:" + order.getId();
+        }
+
+        @DistributedLock
+        public void settle(Runnable body) {
+            body.run();
+        }
+
+        @DistributedLock(key = "'order:' + #order.id", waitTime = 0)
+        public void payTwice(Order order) {
+            self.pay(order, () -> {
+            });
+            self.pay(order, () -> {
+            });
+        }
+
+        @DistributedLock(backend = "missingLockFactory")
+        public void unknownBackend() {
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.wangguangwu.distributedlockredis.lock.factory;
+
+import com.wangguangwu.distributedlockredis.lock.impl.JedisDistributedLockImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 测试按 key 获取 Jedis 分布式锁的工厂：
+ * <ul>
+ *   <li>同一个 key 返回同一个锁实例，不同 key 之间互不影响</li>
+ *   <li>缓存数量超过上限时只淘汰未被持有的锁实例</li>
+ *   <li>多线程访问大量不同 key 时，吞吐量随线程数近似线性增长</li>
+ * </ul>
+ */
+@SpringBootTest(properties = "jedis.lock.max-cached-locks=100")
+@DisplayName("测试 Jedis 分布式锁工厂")
+public class JedisLockFactoryTest {
+
+    private static final int KEY_COUNT = 2000;
+
+    /**
+     * 模拟业务处理的持锁时间
+     */
+    private static final long HOLD_MILLIS = 1;
+
+    @Autowired
+    private JedisLockFactory jedisLockFactory;
+
+    @Test
+    @DisplayName("同一个 key 返回同一个实例，不同 key 可同时加锁")
+    void testLockPerKey() {
+        JedisDistributedLockImpl lockA = jedisLockFactory.getLock("factory:order:1");
+        JedisDistributedLockImpl lockB = jedisLockFactory.getLock("factory:order:2");
+        assertSame(lockA, jedisLockFactory.getLock("factory:order:1"), "同一个 key 应返回同一个锁实例");
+
+        assertTrue(lockA.lock(), "应成功获取 key1 的锁");
+        assertTrue(lockB.lock(), "key1 被持有时，key2 仍应能加锁");
+        lockA.unlock();
+        lockB.unlock();
+    }
+
+    @Test
+    @DisplayName("超过缓存上限时只淘汰未被持有的锁实例")
+    void testEvictIdleLocks() {
+        JedisDistributedLockImpl heldLock = jedisLockFactory.getLock("factory:held");
+        assertTrue(heldLock.lock(), "应成功获取锁");
+        try {
+            for (int i = 0; i < 500; i++) {
+                jedisLockFactory.getLock("factory:idle:" + i);
+            }
+            assertTrue(jedisLockFactory.size() <= 100, "缓存的锁实例数量应不超过上限");
+            assertSame(heldLock, jedisLockFactory.getLock("factory:held"), "被持有的锁实例不应被淘汰");
+        } finally {
+            heldLock.unlock();
+        }
+    }
+
+    @Test
+    @DisplayName("多线程访问大量不同 key：吞吐量随线程数增长")
+    void testThroughputScalesWithDistinctKeys() throws InterruptedException {
+        // 预热连接池与 JIT
+        runDistinctKeys(4, "factory:warmup:");
+
+        List<Double> throughputs = new ArrayList<>();
+        for (int threadCount : new int[]{1, 2, 4, 8}) {
+            double throughput = runDistinctKeys(threadCount, "factory:scale:" + threadCount + ":");
+            throughputs.add(throughput);
+            System.out.printf("[JedisLockFactory] %d 线程, %d 个 key: %.0f ops/s%n", threadCount, KEY_COUNT, throughput);
+        }
+        // 不同 key 的临界区可以并行执行，8 线程的吞吐量应接近单线程的 8 倍
+        assertTrue(throughputs.get(3) > throughputs.get(0) * 4, "不同 key 之间不应串行，吞吐量应随线程数增长");
+    }
+
+    /**
+     * 多个线程各自负责一段 key，依次加锁、模拟业务处理、解锁
+     *
+     * @return 每秒完成的加锁解锁次数
+     */
+    private double runDistinctKeys(int threadCount, String keyPrefix) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch doneLatch = new CountDownLatch(threadCount);
+        AtomicInteger successCount = new AtomicInteger(0);
+        int keysPerThread = KEY_COUNT / threadCount;
+
+        for (int t = 0; t < threadCount; t++) {
+            int offset = t * keysPerThread;
+            executor.submit(() -> {
+                try {
+                    startLatch.await();
+                    for (int i = offset; i < offset + keysPerThread; i++) {
+                        JedisDistributedLockImpl lock = jedisLockFactory.getLock(keyPrefix + i);
+                        if (lock.lock()) {
+                            successCount.incrementAndGet();
+                            TimeUnit.MILLISECONDS.sleep(HOLD_MILLIS);
+                            lock.unlock();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    doneLatch.countDown();
+                }
+            });
+        }
+        long start = System.nanoTime();
+        startLatch.countDown();
+        doneLatch.await();
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        assertEquals(KEY_COUNT, successCount.get(), "不同 key 之间不存在竞争，每次加锁都应成功");
+        return successCount.get() * 1_000_000_000.0 / elapsed;
+    }
+}
@@ -0,0 +1,301 @@
+package com.wangguangwu.distributedlockredis.lock.factory;
+
+import com.wangguangwu.distributedlockredis.lock.AbstractDistributedLock;
+import com.wangguangwu.distributedlockredis.lock.impl.RedissonDistributedLockImpl;
+import com.wangguangwu.distributedlockredis.lock.support.ConsistentHashRing;
+import com.wangguangwu.distributedlockredis.properties.JedisLockProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 测试按一致性哈希分片的锁工厂：
+ * <ul>
+ *   <li>key 均匀分布在各节点上，锁实际写入 key 所属的节点，使用相同 hash tag 的 key 落在同一节点</li>
+ *   <li>增加节点只迁移约 1/N 的 key 且只迁往新节点，移除节点只迁移该节点上的 key</li>
+ *   <li>Redisson 分片工厂在节点变更后，仍被持有的实例继续使用旧节点，释放后切换到新节点</li>
+ *   <li>启动多个本地 redis-server 进程，对比 1、2、4 个分片时的加锁吞吐量</li>
+ * </ul>
+ */
+@SpringBootTest(properties = {
+        "sharded-lock.nodes[0]=127.0.0.1:6379",
+        "sharded-lock.nodes[1]=127.0.0.1:6380",
+        "sharded-lock.nodes[2]=127.0.0.1:6381"})
+@DisplayName("测试一致性哈希分片锁")
+public class ShardedLockFactoryTest {
+
+    /**
+     * 吞吐量测试启动的 redis-server 端口，与其他测试使用的节点分开
+     */
+    private static final int[] SCALING_PORTS = {6391, 6392, 6393, 6394};
+
+    private static final int SCALING_THREADS = 32;
+
+    private static final long SCALING_MILLIS = 1500;
+
+    @Autowired
+    private ShardedJedisLockFactory shardedJedisLockFactory;
+
+    @Autowired
+    private ShardedRedissonLockFactory shardedRedissonLockFactory;
+
+    @Autowired
+    private JedisLockProperties jedisLockProperties;
+
+    @Test
+    @DisplayName("路由：key 均匀分布在各节点上，锁实际写入所属节点，相同 hash tag 的 key 落在同一节点")
+    void testRouting() throws InterruptedException {
+        List<String> nodes = shardedJedisLockFactory.getNodes();
+        assertEquals(3, nodes.size(), "应按配置创建 3 个节点");
+        Map<String, Integer> counts = new HashMap<>();
+        int keyCount = 30000;
+        for (int i = 0; i < keyCount; i++) {
+            String key = "sharded:route:" + i;
+            String node = shardedJedisLockFactory.nodeOf(key);
+            assertEquals(node, shardedRedissonLockFactory.nodeOf(key), "Jedis 与 Redisson 对同一 key 的路由应一致");
+            counts.merge(node, 1, Integer::sum);
+        }
+        System.out.println("[Sharded] 3 个节点上的 key 分布: " + counts);
+        for (String node : nodes) {
+            double share = counts.getOrDefault(node, 0) / (double) keyCount;
+            assertTrue(share > 0.25 && share < 0.42, "每个节点分到的 key 应接近 1/3，实际 " + node + " " + share);
+        }
+
+        for (int i = 0; i < 20; i++) {
+            String key = "sharded:placement:" + i;
+            int port = HostAndPort.from(shardedJedisLockFactory.nodeOf(key)).getPort();
+            AbstractDistributedLock jedisLock = shardedJedisLockFactory.getLock(key);
+            assertTrue(jedisLock.tryLock(0, 10, TimeUnit.SECONDS), "应成功获取锁");
+            assertEquals(nodes.size() - 1, countNodesWithout(key, nodes), "锁只应写入 key 所属的节点");
+            assertTrue(existsOn(key, port), "锁应写入 key 所属的节点");
+            jedisLock.unlock();
+
+            String redissonKey = key + ":redisson";
+            port = HostAndPort.from(shardedRedissonLockFactory.nodeOf(redissonKey)).getPort();
+            RedissonDistributedLockImpl redissonLock = shardedRedissonLockFactory.getLock(redissonKey);
+            assertTrue(redissonLock.tryLock(0, 10, TimeUnit.SECONDS), "应成功获取锁");
+            assertTrue(existsOn(redissonKey, port), "锁应写入 key 所属的节点");
+            redissonLock.unlock();
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(shardedJedisLockFactory.nodeOf("{order:" + i + "}:pay"), shardedJedisLockFactory.nodeOf("{order:" + i + "}:ship"),
+                    "使用相同 hash tag 的 key 应落在同一节点");
+        }
+    }
+
+    @Test
+    @DisplayName("扩缩容：增加节点只迁移约 1/N 的 key 且只迁往新节点，移除节点只迁移该节点上的 key")
+    void testMinimalRebalance() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(160);
+        for (int i = 1; i <= 4; i++) {
+            ring.add("node-" + i, "node-" + i);
+        }
+        int keyCount = 100000;
+        String[] before = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            before[i] = ring.get("rebalance:" + i);
+        }
+
+        ring.add("node-5", "node-5");
+        int moved = 0;
+        for (int i = 0; i < keyCount; i++) {
+            String after = ring.get("rebalance:" + i);
+            if (!after.equals(before[i])) {
+                moved++;
+                assertEquals("node-5", after, "增加节点时 key 只应迁往新节点");
+            }
+        }
+        double movedShare = moved / (double) keyCount;
+        System.out.printf("[Sharded] 4 -> 5 个节点, 迁移 %.1f%% 的 key%n", movedShare * 100);
+        assertTrue(movedShare > 0.12 && movedShare < 0.28, "增加第 5 个节点应迁移约 1/5 的 key，实际 " + movedShare);
+
+        ring.remove("node-5");
+        ring.remove("node-2");
+        for (int i = 0; i < keyCount; i++) {
+            if (!"node-2".equals(before[i])) {
+                assertEquals(before[i], ring.get("rebalance:" + i), "移除节点时其他节点上的 key 不应迁移");
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("节点变更：仍被持有的 Redisson 锁实例继续使用旧节点，释放后切换到新节点")
+    void testRedissonRebalance() throws InterruptedException {
+        ShardedRedissonLockFactory factory = new ShardedRedissonLockFactory(List.of("127.0.0.1:6382"), 160, 100);
+        try {
+            ConsistentHashRing<String> probe = new ConsistentHashRing<>(160);
+            probe.add("127.0.0.1:6382", "old");
+            probe.add("127.0.0.1:6383", "new");
+            String key = null;
+            for (int i = 0; key == null; i++) {
+                if ("new".equals(probe.get("sharded:moved:" + i))) {
+                    key = "sharded:moved:" + i;
+                }
+            }
+
+            RedissonDistributedLockImpl held = factory.getLock(key);
+            assertTrue(held.tryLock(0, 10, TimeUnit.SECONDS), "应成功获取锁");
+            factory.addNode("127.0.0.1:6383");
+            assertEquals("127.0.0.1:6383", factory.nodeOf(key), "增加节点后 key 应归属新节点");
+            assertSame(held, factory.getLock(key), "仍被持有的实例应继续返回，本进程内的竞争者在旧节点上互斥");
+
+            held.unlock();
+            RedissonDistributedLockImpl moved = factory.getLock(key);
+            assertNotSame(held, moved, "释放后应切换到新节点上的实例");
+            assertTrue(moved.tryLock(0, 10, TimeUnit.SECONDS), "应在新节点上成功获取锁");
+            assertTrue(existsOn(key, 6383), "锁应写入新节点");
+            moved.unlock();
+        } finally {
+            factory.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("吞吐量：启动多个本地 redis-server，对比 1、2、4 个分片时的加锁吞吐量")
+    void testThroughputScaling() throws Exception {
+        assumeTrue(redisServerAvailable(), "未找到 redis-server，跳过分片吞吐量测试");
+        List<Process> servers = new ArrayList<>();
+        try {
+            for (int port : SCALING_PORTS) {
+                servers.add(startRedisServer(port));
+            }
+            int[] shardCounts = {1, 2, 4};
+            long[] jedisOps = new long[shardCounts.length];
+            long[] redissonOps = new long[shardCounts.length];
+            for (int i = 0; i < shardCounts.length; i++) {
+                List<String> nodes = new ArrayList<>();
+                for (int s = 0; s < shardCounts[i]; s++) {
+                    nodes.add("127.0.0.1:" + SCALING_PORTS[s]);
+                }
+                ShardedJedisLockFactory jedisFactory = new ShardedJedisLockFactory(nodes, 160, jedisLockProperties);
+                try {
+                    jedisOps[i] = measureThroughput(jedisFactory::getLock);
+                } finally {
+                    jedisFactory.shutdown();
+                }
+                ShardedRedissonLockFactory redissonFactory = new ShardedRedissonLockFactory(nodes, 160, 10000);
+                try {
+                    redissonOps[i] = measureThroughput(redissonFactory::getLock);
+                } finally {
+                    redissonFactory.shutdown();
+                }
+                System.out.printf("[Sharded] %d 个分片: Jedis %d ops/s, Redisson %d ops/s%n",
+                        shardCounts[i], jedisOps[i], redissonOps[i]);
+            }
+
+            int cpus = Runtime.getRuntime().availableProcessors();
+            for (int i = 0; i < shardCounts.length; i++) {
+                assertTrue(jedisOps[i] > 0 && redissonOps[i] > 0, "每种分片数下都应成功加锁");
+            }
+            // Redis 进程与测试线程共用 CPU，核数不足时多个分片无法并行执行，只输出结果不断言扩展倍数
+            if (cpus > SCALING_PORTS.length) {
+                assertTrue(jedisOps[2] > jedisOps[0] * 1.5, "4 个分片的 Jedis 吞吐量应明显高于 1 个分片");
+                assertTrue(redissonOps[2] > redissonOps[0] * 1.5, "4 个分片的 Redisson 吞吐量应明显高于 1 个分片");
+            } else {
+                System.out.printf("[Sharded] 仅有 %d 个 CPU，Redis 进程之间争用 CPU，不断言扩展倍数%n", cpus);
+            }
+        } finally {
+            for (Process server : servers) {
+                server.destroy();
+                server.waitFor(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /**
+     * 多个线程在固定时间内对随机 key 反复加锁、解锁，返回每秒完成的次数
+     */
+    private static long measureThroughput(Function<String, ? extends AbstractDistributedLock> locks) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(SCALING_THREADS);
+        CountDownLatch doneLatch = new CountDownLatch(SCALING_THREADS);
+        AtomicLong completed = new AtomicLong();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SCALING_MILLIS);
+        for (int t = 0; t < SCALING_THREADS; t++) {
+            executor.submit(() -> {
+                try {
+                    while (System.nanoTime() < deadline) {
+                        AbstractDistributedLock lock = locks.apply("sharded:bench:" + ThreadLocalRandom.current().nextInt(10000));
+                        if (lock.tryLock(1, 10, TimeUnit.SECONDS)) {
+                            lock.unlock();
+                            completed.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    doneLatch.countDown();
+                }
+            });
+        }
+        doneLatch.await();
+        executor.shutdown();
+        return completed.get() * 1000 / SCALING_MILLIS;
+    }
+
+    private static boolean redisServerAvailable() {
+        try {
+            Process process = new ProcessBuilder("redis-server", "--version").redirectErrorStream(true).start();
+            return process.waitFor(5, TimeUnit.SECONDS) && process.exitValue() == 0;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 启动一个不落盘的 redis-server 进程，等待其可以接受连接
+     */
+    private static Process startRedisServer(int port) throws Exception {
+        Process process = new ProcessBuilder("redis-server", "--port", String.valueOf(port),
+                "--save", "", "--appendonly", "no")
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            try (Jedis jedis = new Jedis("127.0.0.1", port)) {
+                if ("PONG".equals(jedis.ping())) {
+                    return process;
+                }
+            } catch (Exception e) {
+                TimeUnit.MILLISECONDS.sleep(50);
+            }
+        }
+        process.destroy();
+        throw new IllegalStateException("redis-server 启动超时: " + port);
+    }
+
+    private static int countNodesWithout(String key, List<String> nodes) {
+        int count = 0;
+        for (String node : nodes) {
+            if (!existsOn(key, HostAndPort.from(node).getPort())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean existsOn(String key, int port) {
+        try (Jedis jedis = new Jedis("127.0.0.1", port)) {
+            return jedis.exists(key);
+        }
+    }
+}
@@ -1,17 +1,42 @@
 package com.wangguangwu.distributedlockredis.lock.impl;
 
+import com.wangguangwu.distributedlockredis.lock.LockHandle;
+import com.wangguangwu.distributedlockredis.lock.factory.JedisLockFactory;
+import com.wangguangwu.distributedlockredis.script.LockScripts;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.util.JedisClusterCRC16;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -19,14 +44,35 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
  * - 单线程下测试加锁与解锁功能
  * - 单线程下测试锁的超时自动释放（锁设置 10 秒超时，等待 12 秒后应自动释放）
  * - 多线程下测试，在同一时刻仅有一个线程能成功获取锁
+ * - 同一线程重入加锁在本地完成，全部解锁后才释放 Redis 中的锁；本地记录过期后重新加锁不累加 Redis 中的重入次数
+ * - tryLock 指定的租期生效，到期后锁自动释放
+ * - 两个线程竞争同一把锁时，释放后等待线程获取锁的交接延迟
+ * - 异步加锁以 ownerId 标识持有者，可以在其他线程解锁；调用方放弃等待后锁不遗留；与同步接口的吞吐量对比
+ * - 每次新的持有得到严格递增的 fencing token，重入不改变 token，租期过期的旧持有者 token 更小
+ * - 热路径分配率：重入不分配内存，加锁解锁复用本地记录，分配量与直接执行脚本基本相同
  */
 @SpringBootTest
 @DisplayName("测试使用 Jedis 实现分布式锁")
 public class JedisDistributedLockImplTest {
 
+    /**
+     * 加锁解锁相对直接执行脚本允许多出的分配量。线程持有者的本地记录释放后保留复用，锁本身不再分配，
+     * 这里只为两次测量之间 I/O 线程分配量的波动留出余量
+     */
+    private static final double OVERHEAD_BYTES = 64;
+
     @Autowired
     private JedisDistributedLockImpl jedisDistributedLockImpl;
 
+    @Autowired
+    private JedisPool jedisPool;
+
+    @Autowired
+    private JedisLockFactory jedisLockFactory;
+
+    @Autowired
+    private JedisMultiKeyLock jedisMultiKeyLock;
+
     @Test
     @DisplayName("单线程测试：加锁与解锁")
     void testSingleThreadLockUnlock() {
@@ -103,4 +149,390 @@ public class JedisDistributedLockImplTest {
         // 最后，主线程释放锁
         jedisDistributedLockImpl.unlock();
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("重入测试：同一线程可重复加锁，重入不访问 Redis")
+    void testReentrantLock() throws InterruptedException {
+        assertTrue(jedisDistributedLockImpl.lock(), "应成功获取锁");
+        assertTrue(jedisDistributedLockImpl.lock(), "持锁线程应能重入");
+        assertTrue(jedisDistributedLockImpl.tryLock(1, 10, TimeUnit.SECONDS), "持锁线程 tryLock 应能重入");
+        assertTrue(jedisDistributedLockImpl.isLockHeldByCurrentThread(), "当前线程应持有锁");
+        try (Jedis jedis = jedisPool.getResource()) {
+            // 重入在本地完成，Redis 中的重入次数仍为 1
+            assertEquals(List.of("1"), jedis.hvals("jedisLock"), "重入不应访问 Redis");
+        }
+
+        jedisDistributedLockImpl.unlock();
+        jedisDistributedLockImpl.unlock();
+        assertTrue(jedisDistributedLockImpl.isLockHeldByCurrentThread(), "重入未全部释放前仍应持有锁");
+        AtomicInteger acquiredByOther = new AtomicInteger(0);
+        Thread other = new Thread(() -> {
+            if (jedisDistributedLockImpl.lock()) {
+                acquiredByOther.incrementAndGet();
+                jedisDistributedLockImpl.unlock();
+            }
+        });
+        other.start();
+        other.join();
+        assertEquals(0, acquiredByOther.get(), "重入未全部释放前其他线程不能获取锁");
+
+        jedisDistributedLockImpl.unlock();
+        assertFalse(jedisDistributedLockImpl.isLockHeldByCurrentThread(), "全部释放后当前线程不再持有锁");
+        try (Jedis jedis = jedisPool.getResource()) {
+            assertFalse(jedis.exists("jedisLock"), "全部释放后 Redis 中的锁应被删除");
+        }
+    }
+
+    @Test
+    @DisplayName("重入测试：本地记录过期而 Redis 中仍持有时重新加锁，一次解锁即删除锁")
+    void testReacquireAfterLocalExpiry() throws InterruptedException {
+        assertTrue(jedisDistributedLockImpl.tryLock(1, 200, TimeUnit.MILLISECONDS), "应成功获取锁");
+        try (Jedis jedis = jedisPool.getResource()) {
+            // 模拟本地租期已到、Redis 中的锁仍在（时钟误差、其他途径续期）
+            jedis.pexpire("jedisLock", 10_000);
+        }
+        TimeUnit.MILLISECONDS.sleep(300);
+        assertFalse(jedisDistributedLockImpl.isLockHeldByCurrentThread(), "本地记录应已过期");
+
+        assertTrue(jedisDistributedLockImpl.tryLock(1, 10, TimeUnit.SECONDS), "Redis 中仍是自己持有，应能重新加锁");
+        try (Jedis jedis = jedisPool.getResource()) {
+            assertEquals(List.of("1"), jedis.hvals("jedisLock"), "作废的持有不应计入重入次数");
+        }
+        jedisDistributedLockImpl.unlock();
+        try (Jedis jedis = jedisPool.getResource()) {
+            assertFalse(jedis.exists("jedisLock"), "一次解锁后 Redis 中的锁应被删除");
+        }
+    }
+
+    @Test
+    @DisplayName("租期测试：tryLock 指定的租期到期后锁自动释放")
+    void testTryLockLeaseTime() throws InterruptedException {
+        assertTrue(jedisDistributedLockImpl.tryLock(1, 1, TimeUnit.SECONDS), "应成功获取锁");
+        assertTrue(jedisDistributedLockImpl.isLockHeldRemotely(), "远端查询应与本地记录一致");
+        AtomicInteger acquired = new AtomicInteger(0);
+        Thread other = new Thread(() -> {
+            try {
+                // 等待时间超过租期，锁到期后应能获取
+                if (jedisDistributedLockImpl.tryLock(3, 1, TimeUnit.SECONDS)) {
+                    acquired.incrementAndGet();
+                    jedisDistributedLockImpl.unlock();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        long start = System.currentTimeMillis();
+        other.start();
+        other.join();
+        long elapsed = System.currentTimeMillis() - start;
+        assertEquals(1, acquired.get(), "租期到期后其他线程应获取到锁");
+        assertTrue(elapsed < 2000, "租期为 1 秒，等待时间不应明显超过租期");
+        assertFalse(jedisDistributedLockImpl.isLockHeldByCurrentThread(), "租期到期后本地记录应失效");
+        assertFalse(jedisDistributedLockImpl.isLockHeldRemotely(), "租期到期后 Redis 中的锁已被其他线程获取并释放");
+        jedisDistributedLockImpl.unlock();
+    }
+
+    @Test
+    @DisplayName("交接延迟测试：锁释放后等待线程应在一次网络往返量级内获取锁")
+    void testHandoffLatency() throws InterruptedException {
+        int rounds = 50;
+        long[] latencies = new long[rounds];
+        for (int i = 0; i < rounds; i++) {
+            assertTrue(jedisDistributedLockImpl.lock(), "持锁线程应成功获取锁");
+            AtomicLong acquiredAt = new AtomicLong();
+            CountDownLatch waiting = new CountDownLatch(1);
+            Thread waiter = new Thread(() -> {
+                try {
+                    waiting.countDown();
+                    if (jedisDistributedLockImpl.tryLock(5, 10, TimeUnit.SECONDS)) {
+                        acquiredAt.set(System.nanoTime());
+                        jedisDistributedLockImpl.unlock();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            waiter.start();
+            waiting.await();
+            // 保证等待线程已经进入等待状态
+            TimeUnit.MILLISECONDS.sleep(20);
+            long releasedAt = System.nanoTime();
+            jedisDistributedLockImpl.unlock();
+            waiter.join();
+            assertTrue(acquiredAt.get() > 0, "等待线程应在等待时间内获取锁");
+            latencies[i] = acquiredAt.get() - releasedAt;
+        }
+        Arrays.sort(latencies);
+        long p50 = TimeUnit.NANOSECONDS.toMicros(latencies[rounds / 2]);
+        long p99 = TimeUnit.NANOSECONDS.toMicros(latencies[rounds * 99 / 100]);
+        System.out.println("[Jedis] 锁交接延迟 p50=" + p50 + "us, p99=" + p99 + "us");
+        // 之前按 15 秒轮询，交接延迟至少为秒级
+        assertTrue(p99 < TimeUnit.MILLISECONDS.toMicros(200), "释放消息应立即唤醒等待线程");
+    }
+
+    @Test
+    @DisplayName("异步测试：以 ownerId 加锁，在其他线程解锁，等待者在释放后获取锁")
+    void testAsyncLockUnlock() throws Exception {
+        long ownerA = 1L << 40;
+        long ownerB = ownerA + 1;
+        assertTrue(jedisDistributedLockImpl.tryLockAsync(0, 10, TimeUnit.SECONDS, ownerA).toCompletableFuture().get(),
+                "应成功异步获取锁");
+        assertFalse(jedisDistributedLockImpl.lockAsync(ownerB).toCompletableFuture().get(), "锁被持有时其他持有者应加锁失败");
+
+        CompletableFuture<Boolean> waiter = jedisDistributedLockImpl.tryLockAsync(5, 10, TimeUnit.SECONDS, ownerB).toCompletableFuture();
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertFalse(waiter.isDone(), "锁释放前等待者不应完成");
+
+        // 在另一个线程中以相同 ownerId 解锁
+        CompletableFuture.runAsync(() -> jedisDistributedLockImpl.unlockAsync(ownerA).toCompletableFuture().join()).get();
+        assertTrue(waiter.get(1, TimeUnit.SECONDS), "锁释放后等待者应立即获取锁");
+        jedisDistributedLockImpl.unlockAsync(ownerB).toCompletableFuture().get();
+        try (Jedis jedis = jedisPool.getResource()) {
+            assertFalse(jedis.exists("jedisLock"), "解锁后 Redis 中不应再有锁");
+        }
+    }
+
+    @Test
+    @DisplayName("异步取消：调用方放弃等待后不再重试，放弃后才获取到的锁立即释放，不遗留在 Redis 中")
+    void testAsyncAbandoned() throws Exception {
+        String key = "jedis:async:abandoned";
+        JedisDistributedLockImpl lock = jedisLockFactory.getLock(key);
+        long ownerA = (1L << 40) + 10;
+        long ownerB = ownerA + 1;
+        assertTrue(lock.tryLockAsync(0, 10, TimeUnit.SECONDS, ownerA).toCompletableFuture().get(), "应成功异步获取锁");
+
+        // 等待者的加锁请求与解锁、取消并发，两种结果都不能遗留锁：取消在前则不再重试，加锁在前则立即释放
+        CompletableFuture<Boolean> waiter = lock.tryLockAsync(5, 10, TimeUnit.SECONDS, ownerB).toCompletableFuture()
+                .orTimeout(100, TimeUnit.MILLISECONDS);
+        TimeUnit.MILLISECONDS.sleep(80);
+        CompletableFuture<Void> unlocked = lock.unlockAsync(ownerA).toCompletableFuture();
+        assertThrows(ExecutionException.class, () -> waiter.get(), "调用方超时放弃后应以超时异常完成");
+        unlocked.get();
+
+        try (Jedis jedis = jedisPool.getResource()) {
+            long deadline = System.currentTimeMillis() + 1000;
+            while ((jedis.exists(key) || lock.isHeldLocally()) && System.currentTimeMillis() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertFalse(jedis.exists(key), "放弃等待的调用方不会解锁，锁不应遗留在 Redis 中");
+        }
+        assertFalse(lock.isHeldLocally(), "放弃等待的持有者不应留在本地记录中");
+    }
+
+    @Test
+    @DisplayName("fencing token 测试：每次新的持有 token 递增，重入不变，过期的旧持有者 token 更小")
+    void testFencingToken() throws Exception {
+        String key = "fencing:jedis";
+        JedisDistributedLockImpl lock = jedisLockFactory.getLock(key);
+        assertTrue(lock.tryLock(0, 200, TimeUnit.MILLISECONDS), "应成功获取锁");
+        long first = lock.getFencingToken();
+        assertTrue(first > 0, "加锁成功后应得到 fencing token");
+        assertTrue(lock.tryLock(0, 200, TimeUnit.MILLISECONDS), "持锁线程应能重入");
+        assertEquals(first, lock.getFencingToken(), "重入不应产生新的 token");
+
+        // 模拟持锁线程停顿到租期过期，其他持有者获取锁
+        TimeUnit.MILLISECONDS.sleep(300);
+        LockHandle handle = CompletableFuture.supplyAsync(() -> {
+            try {
+                return lock.acquire(1, 10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }).get();
+        assertNotNull(handle, "租期过期后其他持有者应获取到锁");
+        long second = handle.getFencingToken();
+        assertTrue(second > first, "新的持有者应得到更大的 token");
+        assertEquals(first, lock.getFencingToken(), "旧持有者的 token 不变，写入时会被存储端拒绝");
+        lock.unlock();
+        lock.unlock();
+        handle.unlock();
+        assertEquals(0, handle.getFencingToken(), "解锁后不再持有 token");
+
+        // 批量加锁同样递增计数器，通过单 key 锁重入读取本次持有的 token
+        assertTrue(jedisMultiKeyLock.lockAll(List.of(key), 10, TimeUnit.SECONDS), "应成功批量加锁");
+        assertTrue(lock.lock(), "持有批量锁的线程应能通过单 key 锁重入");
+        assertTrue(lock.getFencingToken() > second, "批量加锁也应得到新的 token");
+        lock.unlock();
+        jedisMultiKeyLock.unlockAll(List.of(key));
+
+        for (String lockKey : List.of(key, "{fencing:order}:1")) {
+            assertEquals(JedisClusterCRC16.getSlot(lockKey),
+                    JedisClusterCRC16.getSlot(JedisDistributedLockImpl.fencingKeyOf(lockKey)),
+                    "fencing 计数器应与锁 key 位于同一 slot");
+        }
+    }
+
+    @Test
+    @DisplayName("fencing 计数器测试：计数器设置空闲过期时间，过期后重新起算的 token 仍大于过期前的 token")
+    void testFencingCounterExpiry() {
+        String key = "fencing:expiry";
+        String fenceKey = JedisDistributedLockImpl.fencingKeyOf(key);
+        JedisDistributedLockImpl lock = jedisLockFactory.getLock(key);
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.set(fenceKey, "41");
+            assertTrue(lock.lock(), "应成功获取锁");
+            assertEquals(42, lock.getFencingToken(), "已有计数器时应在其基础上递增");
+            lock.unlock();
+            long ttl = jedis.pttl(fenceKey);
+            assertTrue(ttl > 0 && ttl <= LockScripts.FENCE_TTL_MILLIS, "新的持有应重置计数器的过期时间");
+
+            // 模拟计数器空闲过期
+            jedis.del(fenceKey);
+            assertTrue(lock.lock(), "应成功获取锁");
+            assertTrue(lock.getFencingToken() > 42, "计数器过期后重新起算的 token 不应回退");
+            lock.unlock();
+        }
+    }
+
+    @Test
+    @DisplayName("吞吐量对比：少量线程上的异步加锁与线程池中的同步加锁")
+    void testAsyncThroughput() throws Exception {
+        int keyCount = 20;
+        int requests = 1000;
+        int threads = 8;
+        long holdMillis = 10;
+        // 预热
+        runBlocking("async:warmup:", keyCount, 200, threads, holdMillis);
+        runAsync("async:warmup:", keyCount, 200, holdMillis);
+
+        double blocking = runBlocking("async:blocking:", keyCount, requests, threads, holdMillis);
+        double async = runAsync("async:async:", keyCount, requests, holdMillis);
+        System.out.printf("[Jedis] %d 个请求 / %d 个 key, 持锁 %dms: 同步 %d 线程 %.0f ops/s, 异步 %.0f ops/s%n",
+                requests, keyCount, holdMillis, threads, blocking, async);
+        // 同步接口最多只有 threads 个请求同时持锁或等待，异步接口的并发只受 key 数量限制
+        assertTrue(async > blocking * 1.5, "异步加锁等待期间不占用线程，吞吐量应明显高于同步加锁");
+    }
+
+    @Test
+    @DisplayName("JMH：重入不分配内存，加锁解锁的分配量接近直接执行脚本")
+    void testHotPathAllocation() throws Exception {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(JedisLockHotPathBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                // 在当前 JVM 内运行，避免依赖 surefire 的类路径启动子进程
+                .forks(0)
+                .warmupIterations(2)
+                .warmupTime(TimeValue.milliseconds(500))
+                .measurementIterations(3)
+                .measurementTime(TimeValue.milliseconds(500))
+                .build()).run();
+
+        Map<String, Double> allocations = new HashMap<>();
+        for (RunResult result : results) {
+            String name = result.getParams().getBenchmark().replaceAll(".*\\.", "")
+                    + ":" + result.getParams().getParam("transport");
+            double latency = result.getPrimaryResult().getScore();
+            double allocation = result.getSecondaryResults().get("gc.alloc.rate.norm").getScore();
+            allocations.put(name, allocation);
+            System.out.printf("[HotPath] %-26s %8.3f us/op %10.1f B/op%n", name, latency, allocation);
+        }
+        for (String transport : new String[]{"jedis-pipeline", "nio"}) {
+            double reentrant = allocations.get("reentrant:" + transport);
+            double overhead = allocations.get("lockUnlock:" + transport) - allocations.get("scripts:" + transport);
+            assertTrue(reentrant < 1, "重入只访问本地记录，不应分配内存: " + reentrant + " B/op");
+            assertTrue(overhead < OVERHEAD_BYTES, "锁相对直接执行脚本多分配 " + overhead + " B/op");
+        }
+    }
+
+    /**
+     * 固定数量的线程依次执行请求：同步加锁、模拟业务处理、解锁
+     *
+     * @return 每秒完成的请求数
+     */
+    private double runBlocking(String keyPrefix, int keyCount, int requests, int threads, long holdMillis)
+            throws InterruptedException {
+        List<JedisDistributedLockImpl> locks = locks(keyPrefix, keyCount);
+        AtomicBoolean[] inUse = inUse(keyCount);
+        AtomicInteger success = new AtomicInteger();
+        AtomicInteger violations = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(requests);
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            int key = i % keyCount;
+            executor.submit(() -> {
+                try {
+                    JedisDistributedLockImpl lock = locks.get(key);
+                    if (lock.tryLock(30, 10, TimeUnit.SECONDS)) {
+                        enter(inUse[key], violations);
+                        TimeUnit.MILLISECONDS.sleep(holdMillis);
+                        inUse[key].set(false);
+                        lock.unlock();
+                        success.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        assertEquals(requests, success.get(), "每个请求都应在等待时间内获取锁");
+        assertEquals(0, violations.get(), "同一个 key 同一时刻只能有一个持有者");
+        return requests * 1_000_000_000.0 / elapsed;
+    }
+
+    /**
+     * 一次性发起全部异步请求：异步加锁、延迟模拟业务处理、异步解锁，每个请求使用独立的 ownerId
+     *
+     * @return 每秒完成的请求数
+     */
+    private double runAsync(String keyPrefix, int keyCount, int requests, long holdMillis) {
+        List<JedisDistributedLockImpl> locks = locks(keyPrefix, keyCount);
+        AtomicBoolean[] inUse = inUse(keyCount);
+        AtomicInteger success = new AtomicInteger();
+        AtomicInteger violations = new AtomicInteger();
+        // 单核机器上公共线程池会退化为每个任务一个线程，使用独立的线程执行延迟回调
+        ExecutorService holdExecutor = Executors.newFixedThreadPool(2);
+        Executor hold = CompletableFuture.delayedExecutor(holdMillis, TimeUnit.MILLISECONDS, holdExecutor);
+        long ownerBase = 1L << 41;
+        List<CompletableFuture<Void>> futures = new ArrayList<>(requests);
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            int key = i % keyCount;
+            long ownerId = ownerBase + i;
+            JedisDistributedLockImpl lock = locks.get(key);
+            futures.add(lock.tryLockAsync(30, 10, TimeUnit.SECONDS, ownerId)
+                    .thenCompose(acquired -> {
+                        if (!acquired) {
+                            return CompletableFuture.completedFuture(null);
+                        }
+                        enter(inUse[key], violations);
+                        return CompletableFuture.runAsync(() -> inUse[key].set(false), hold)
+                                .thenCompose(ignored -> lock.unlockAsync(ownerId))
+                                .thenRun(success::incrementAndGet);
+                    }).toCompletableFuture());
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        long elapsed = System.nanoTime() - start;
+        holdExecutor.shutdown();
+        assertEquals(requests, success.get(), "每个请求都应在等待时间内获取锁");
+        assertEquals(0, violations.get(), "同一个 key 同一时刻只能有一个持有者");
+        return requests * 1_000_000_000.0 / elapsed;
+    }
+
+    private List<JedisDistributedLockImpl> locks(String keyPrefix, int keyCount) {
+        List<JedisDistributedLockImpl> locks = new ArrayList<>(keyCount);
+        for (int i = 0; i < keyCount; i++) {
+            locks.add(jedisLockFactory.getLock(keyPrefix + i));
+        }
+        return locks;
+    }
+
+    private static AtomicBoolean[] inUse(int keyCount) {
+        AtomicBoolean[] inUse = new AtomicBoolean[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            inUse[i] = new AtomicBoolean();
+        }
+        return inUse;
+    }
+
+    private static void enter(AtomicBoolean inUse, AtomicInteger violations) {
+        if (!inUse.compareAndSet(false, true)) {
+            violations.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.wangguangwu.distributedlockredis.lock.impl;
+
+import com.wangguangwu.distributedlockredis.lock.factory.JedisLockFactory;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockWatchdog;
+import com.wangguangwu.distributedlockredis.properties.JedisLockProperties;
+import com.wangguangwu.distributedlockredis.script.JedisScriptExecutor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 测试 Jedis 分布式信号量：
+ * <ul>
+ *   <li>许可计数、多许可获取与重复归还</li>
+ *   <li>许可按租期到期归还</li>
+ *   <li>归还许可后立即唤醒等待者</li>
+ *   <li>看门狗为许可续期</li>
+ *   <li>高并发下并发数不超过许可总数，每次获取尝试与归还只有一次 Redis 往返</li>
+ * </ul>
+ */
+@SpringBootTest
+@DisplayName("测试 Jedis 分布式信号量")
+public class JedisDistributedSemaphoreImplTest {
+
+    @Autowired
+    private JedisLockFactory jedisLockFactory;
+
+    @Autowired
+    private JedisScriptExecutor scriptExecutor;
+
+    @Autowired
+    private JedisLockReleaseSubscriber releaseSubscriber;
+
+    @Autowired
+    private JedisPool jedisPool;
+
+    @Test
+    @DisplayName("许可计数：获取多个许可、许可不足时失败、重复归还被忽略")
+    void testPermitCounting() throws InterruptedException {
+        JedisDistributedSemaphoreImpl semaphore = jedisLockFactory.getSemaphore("semaphore:basic", 3);
+        assertEquals(3, semaphore.availablePermits(), "初始时全部许可可用");
+
+        String first = semaphore.tryAcquire(2, 0, 10, TimeUnit.SECONDS);
+        assertNotNull(first, "应成功获取 2 个许可");
+        assertEquals(1, semaphore.availablePermits(), "应剩余 1 个许可");
+        assertNull(semaphore.tryAcquire(2, 0, 10, TimeUnit.SECONDS), "剩余许可不足时应获取失败");
+        String second = semaphore.tryAcquire(1, 0, 10, TimeUnit.SECONDS);
+        assertNotNull(second, "应成功获取最后 1 个许可");
+        assertEquals(0, semaphore.availablePermits(), "许可应全部发放");
+
+        assertTrue(semaphore.release(first), "应成功归还许可");
+        assertFalse(semaphore.release(first), "重复归还应被忽略");
+        assertEquals(2, semaphore.availablePermits(), "归还后许可应恢复");
+        assertTrue(semaphore.release(second), "应成功归还许可");
+        assertEquals(3, semaphore.availablePermits(), "全部归还后许可应全部可用");
+
+        assertThrows(IllegalArgumentException.class, () -> semaphore.tryAcquire(4, 0, 10, TimeUnit.SECONDS),
+                "许可数超过总数时应直接报错");
+        assertThrows(IllegalArgumentException.class, () -> jedisLockFactory.getSemaphore("semaphore:basic", 5),
+                "同一 key 的许可总数不一致时应报错");
+    }
+
+    @Test
+    @DisplayName("持有者未归还时许可按租期到期，等待者随后获取")
+    void testLeaseExpiry() throws InterruptedException {
+        JedisDistributedSemaphoreImpl semaphore = jedisLockFactory.getSemaphore("semaphore:expiry", 2);
+        // 模拟崩溃的持有者：获取后不再归还
+        assertNotNull(semaphore.tryAcquire(1, 0, 300, TimeUnit.MILLISECONDS), "应成功获取许可");
+        String alive = semaphore.tryAcquire(1, 0, 10, TimeUnit.SECONDS);
+        assertNotNull(alive, "应成功获取许可");
+        assertEquals(0, semaphore.availablePermits(), "许可应全部发放");
+
+        long start = System.currentTimeMillis();
+        String next = semaphore.tryAcquire(1, 5, 10, TimeUnit.SECONDS);
+        long waited = System.currentTimeMillis() - start;
+        assertNotNull(next, "崩溃持有者的许可到期后应获取成功");
+        assertTrue(waited < 2000, "应在许可到期后不久获取成功，实际等待 " + waited + "ms");
+        assertEquals(0, semaphore.availablePermits(), "未到期的许可不受影响");
+
+        semaphore.release(alive);
+        semaphore.release(next);
+    }
+
+    @Test
+    @DisplayName("归还许可后立即唤醒等待者，而不是等到租期到期")
+    void testWakeUpOnRelease() throws Exception {
+        JedisDistributedSemaphoreImpl semaphore = jedisLockFactory.getSemaphore("semaphore:wakeup", 1);
+        String held = semaphore.tryAcquire(1, 0, 30, TimeUnit.SECONDS);
+        assertNotNull(held, "应成功获取许可");
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch waiting = new CountDownLatch(1);
+            CompletableFuture<Long> acquiredAt = CompletableFuture.supplyAsync(() -> {
+                waiting.countDown();
+                try {
+                    String permitId = semaphore.tryAcquire(1, 10, 10, TimeUnit.SECONDS);
+                    long at = System.nanoTime();
+                    assertNotNull(permitId, "等待者应获取许可");
+                    semaphore.release(permitId);
+                    return at;
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }, executor);
+            waiting.await();
+            TimeUnit.MILLISECONDS.sleep(300);
+            long releasedAt = System.nanoTime();
+            semaphore.release(held);
+
+            long latencyMillis = TimeUnit.NANOSECONDS.toMillis(acquiredAt.get(10, TimeUnit.SECONDS) - releasedAt);
+            System.out.printf("[Semaphore] 归还到等待者获取: %dms%n", latencyMillis);
+            assertTrue(latencyMillis < 500, "等待者应被归还消息唤醒，实际延迟 " + latencyMillis + "ms");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("看门狗模式：持有时间超过租期后许可仍然有效")
+    void testWatchdogRenewal() throws InterruptedException {
+        JedisLockProperties properties = new JedisLockProperties();
+        properties.setWatchdogTimeoutMillis(600);
+        JedisLockWatchdog fastWatchdog = new JedisLockWatchdog(scriptExecutor, properties);
+        fastWatchdog.start();
+        try {
+            JedisDistributedSemaphoreImpl semaphore = new JedisDistributedSemaphoreImpl("semaphore:watchdog", 1,
+                    scriptExecutor, releaseSubscriber, fastWatchdog);
+            String permitId = semaphore.tryAcquire(1, 0, -1, TimeUnit.MILLISECONDS);
+            assertNotNull(permitId, "应成功获取许可");
+            TimeUnit.MILLISECONDS.sleep(1500);
+            assertEquals(0, semaphore.availablePermits(), "看门狗应持续续期，许可不应到期");
+            assertTrue(semaphore.release(permitId), "应成功归还许可");
+            assertEquals(0, fastWatchdog.size(), "归还后应停止续期");
+            assertEquals(1, semaphore.availablePermits(), "归还后许可应可用");
+        } finally {
+            fastWatchdog.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("20 个线程争用 4 个许可：并发数不超过许可总数，每次获取尝试只有一次往返")
+    void testContention() throws InterruptedException {
+        int permits = 4;
+        int threadCount = 20;
+        int iterations = 10;
+        JedisDistributedSemaphoreImpl semaphore = jedisLockFactory.getSemaphore("semaphore:contention", permits);
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        AtomicInteger acquired = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch doneLatch = new CountDownLatch(threadCount);
+        long before;
+        try (Jedis jedis = jedisPool.getResource()) {
+            before = evalshaCalls(jedis);
+            long start = System.nanoTime();
+            for (int t = 0; t < threadCount; t++) {
+                executor.submit(() -> {
+                    try {
+                        startLatch.await();
+                        for (int i = 0; i < iterations; i++) {
+                            String permitId = semaphore.tryAcquire(1, 30, 10, TimeUnit.SECONDS);
+                            if (permitId == null) {
+                                continue;
+                            }
+                            try {
+                                maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                                acquired.incrementAndGet();
+                                TimeUnit.MILLISECONDS.sleep(5);
+                                concurrent.decrementAndGet();
+                            } finally {
+                                semaphore.release(permitId);
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        doneLatch.countDown();
+                    }
+                });
+            }
+            startLatch.countDown();
+            doneLatch.await();
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            executor.shutdown();
+
+            int total = threadCount * iterations;
+            // 脚本调用总数减去归还次数，即为平均每次获取的脚本调用次数
+            double scriptsPerAcquire = (double) (evalshaCalls(jedis) - before - total) / total;
+            System.out.printf("[Semaphore] %d 线程争用 %d 个许可, 共 %d 次获取, 耗时 %dms, 最大并发 %d, 每次获取 %.2f 次脚本调用%n",
+                    threadCount, permits, total, elapsedMillis, maxConcurrent.get(), scriptsPerAcquire);
+
+            assertEquals(total, acquired.get(), "每次获取都应在等待时间内成功");
+            assertTrue(maxConcurrent.get() <= permits, "并发持有数不应超过许可总数");
+            assertTrue(scriptsPerAcquire < 4, "被唤醒的等待者大多应一次重试就获取成功");
+        }
+        assertEquals(permits, semaphore.availablePermits(), "全部归还后许可应全部可用");
+    }
+
+    private static long evalshaCalls(Jedis jedis) {
+        for (String line : jedis.info("commandstats").split("\r\n")) {
+            if (line.startsWith("cmdstat_evalsha:")) {
+                String calls = line.substring(line.indexOf("calls=") + 6);
+                return Long.parseLong(calls.substring(0, calls.indexOf(',')));
+            }
+        }
+        return 0;
+    }
+}
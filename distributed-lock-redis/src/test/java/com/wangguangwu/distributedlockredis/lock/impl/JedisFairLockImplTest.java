@@ -0,0 +1,255 @@
+package com.wangguangwu.distributedlockredis.lock.impl;
+
+import com.wangguangwu.distributedlockredis.lock.AbstractDistributedLock;
+import com.wangguangwu.distributedlockredis.lock.LockHandle;
+import com.wangguangwu.distributedlockredis.lock.factory.JedisLockFactory;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockWatchdog;
+import com.wangguangwu.distributedlockredis.script.JedisScriptExecutor;
+import com.wangguangwu.distributedlockredis.script.LockScripts;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 测试 Jedis 公平锁：
+ * <ul>
+ *   <li>等待者按排队顺序获取锁，新来的加锁请求不能插队</li>
+ *   <li>放弃等待的等待者立即出队，崩溃的等待者超时后被惰性清理</li>
+ *   <li>同步、异步获取的锁句柄可以在其他线程解锁</li>
+ *   <li>500 个客户端反复争用同一个 key 时与非公平锁的对比（p99 等待时间与每次加锁的 Redis 往返次数）</li>
+ * </ul>
+ */
+@SpringBootTest
+@DisplayName("测试 Jedis 公平锁")
+public class JedisFairLockImplTest {
+
+    private static final int CLIENT_COUNT = 500;
+
+    /**
+     * 模拟业务处理的持锁时间
+     */
+    private static final long HOLD_MILLIS = 2;
+
+    private static final int ITERATIONS = 3;
+
+    @Autowired
+    private JedisLockFactory jedisLockFactory;
+
+    @Autowired
+    private JedisScriptExecutor scriptExecutor;
+
+    @Autowired
+    private JedisLockReleaseSubscriber releaseSubscriber;
+
+    @Autowired
+    private JedisLockWatchdog watchdog;
+
+    @Autowired
+    private JedisPool jedisPool;
+
+    @Test
+    @DisplayName("等待者按排队顺序获取锁，锁空闲时新来的请求不能插队")
+    void testFifoOrder() throws Exception {
+        JedisFairLockImpl lock = jedisLockFactory.getFairLock("fair:order");
+        long holder = 1L << 43;
+        assertTrue(lock.tryLock(0, 10, TimeUnit.SECONDS, holder), "应成功获取锁");
+
+        int waiterCount = 5;
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newFixedThreadPool(waiterCount);
+        CountDownLatch done = new CountDownLatch(waiterCount);
+        try (Jedis jedis = jedisPool.getResource()) {
+            String queueKey = JedisDistributedLockImpl.relatedKeyOf("fair:order", "queue");
+            for (int i = 0; i < waiterCount; i++) {
+                int index = i;
+                executor.submit(() -> {
+                    try {
+                        if (lock.tryLock(10, 10, TimeUnit.SECONDS)) {
+                            order.add(index);
+                            TimeUnit.MILLISECONDS.sleep(20);
+                            lock.unlock();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+                // 等上一个等待者入队后再启动下一个，保证排队顺序
+                long deadline = System.currentTimeMillis() + 2000;
+                while (jedis.llen(queueKey) < i + 1 && System.currentTimeMillis() < deadline) {
+                    TimeUnit.MILLISECONDS.sleep(5);
+                }
+            }
+            assertEquals(waiterCount, jedis.llen(queueKey), "全部等待者应已入队");
+
+            lock.unlock(holder);
+            assertFalse(lock.tryLock(0, 10, TimeUnit.SECONDS, holder), "队列中有等待者时不等待的加锁请求不能插队");
+            assertTrue(done.await(10, TimeUnit.SECONDS), "等待者应全部获取到锁");
+            assertEquals(List.of(0, 1, 2, 3, 4), order, "等待者应按排队顺序获取锁");
+            assertEquals(0, jedis.llen(queueKey), "全部获取后队列应为空");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("锁句柄：同步、异步获取的句柄都可以在其他线程解锁")
+    void testLockHandle() throws Exception {
+        JedisFairLockImpl lock = jedisLockFactory.getFairLock("fair:handle");
+        LockHandle handle = lock.acquire(1, 10, TimeUnit.SECONDS);
+        assertNotNull(handle, "应成功获取锁");
+        CompletableFuture.runAsync(handle::close).get(5, TimeUnit.SECONDS);
+
+        LockHandle asyncHandle = lock.acquireAsync(1, 10, TimeUnit.SECONDS).toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertNotNull(asyncHandle, "异步获取也应成功");
+        assertFalse(lock.tryLock(0, 10, TimeUnit.SECONDS), "句柄持有期间其他持有者不能加锁");
+        CompletableFuture.runAsync(asyncHandle::close).get(5, TimeUnit.SECONDS);
+        assertTrue(lock.tryLock(0, 10, TimeUnit.SECONDS), "句柄解锁后应能获取锁");
+        lock.unlock();
+    }
+
+    @Test
+    @DisplayName("放弃等待的等待者立即出队，崩溃的等待者超时后被清理")
+    void testAbandonedWaiters() throws InterruptedException {
+        JedisFairLockImpl lock = new JedisFairLockImpl("fair:abandoned", scriptExecutor, releaseSubscriber, watchdog, 600);
+        String queueKey = JedisDistributedLockImpl.relatedKeyOf("fair:abandoned", "queue");
+        long holder = 1L << 44;
+        long waiter = holder + 1;
+        try (Jedis jedis = jedisPool.getResource()) {
+            assertTrue(lock.tryLock(0, 10, TimeUnit.SECONDS, holder), "应成功获取锁");
+            assertFalse(lock.tryLock(200, 10000, TimeUnit.MILLISECONDS, waiter), "锁被持有时等待应超时");
+            assertEquals(0, jedis.llen(queueKey), "放弃等待后应立即出队");
+
+            // 模拟崩溃的等待者：入队后不再刷新超时时间，也不会主动出队
+            scriptExecutor.evalsha(LockScripts.FAIR_LOCK, 3,
+                    SafeEncoder.encode("fair:abandoned"), SafeEncoder.encode(queueKey),
+                    SafeEncoder.encode(JedisDistributedLockImpl.relatedKeyOf("fair:abandoned", "timeouts")),
+                    SafeEncoder.encode("crashed-waiter"), SafeEncoder.encode("10000"), SafeEncoder.encode("600"));
+            assertEquals(1, jedis.llen(queueKey), "崩溃的等待者应在队列中");
+            lock.unlock(holder);
+
+            long start = System.currentTimeMillis();
+            assertTrue(lock.tryLock(5, 10, TimeUnit.SECONDS, waiter), "崩溃的等待者超时后应轮到后面的等待者");
+            long waited = System.currentTimeMillis() - start;
+            assertTrue(waited < 2000, "应在崩溃的等待者超时后不久获取锁，实际等待 " + waited + "ms");
+            assertEquals(0, jedis.llen(queueKey), "超时的等待者应被清理");
+            lock.unlock(waiter);
+        }
+    }
+
+    @Test
+    @DisplayName("500 个客户端反复争用同一个 key：公平锁与非公平锁的 p99 等待时间与 Redis 往返次数对比")
+    void testContentionBenchmark() throws InterruptedException {
+        // 预热连接池与 JIT
+        runContention(jedisLockFactory.getLock("fair:warmup:plain"), 50);
+        runContention(jedisLockFactory.getFairLock("fair:warmup:fair"), 50);
+
+        try (Jedis jedis = jedisPool.getResource()) {
+            int total = CLIENT_COUNT * ITERATIONS;
+            long[][] waits = new long[2][];
+            long plainCommands = countClientCommands(jedis, () -> waits[0] = runContention(jedisLockFactory.getLock("fair:bench:plain"), CLIENT_COUNT));
+            long fairCommands = countClientCommands(jedis, () -> waits[1] = runContention(jedisLockFactory.getFairLock("fair:bench:fair"), CLIENT_COUNT));
+
+            long plainP99 = percentile(waits[0], 0.99);
+            long fairP99 = percentile(waits[1], 0.99);
+            System.out.printf("[FairLock] %d 个客户端争用同一个 key, 每个客户端加锁 %d 次, 持锁 %dms%n", CLIENT_COUNT, ITERATIONS, HOLD_MILLIS);
+            System.out.printf("[FairLock] 非公平锁: p50 %dms, p99 %dms, max %dms, %.2f 次往返/次%n",
+                    percentile(waits[0], 0.5), plainP99, percentile(waits[0], 1), (double) plainCommands / total);
+            System.out.printf("[FairLock] 公平锁:   p50 %dms, p99 %dms, max %dms, %.2f 次往返/次%n",
+                    percentile(waits[1], 0.5), fairP99, percentile(waits[1], 1), (double) fairCommands / total);
+
+            assertTrue(fairP99 < plainP99, "公平锁的 p99 等待时间应低于非公平锁");
+            assertTrue(fairCommands < plainCommands, "公平锁每次加锁的 Redis 往返次数应少于非公平锁");
+        }
+    }
+
+    /**
+     * 每个客户端反复加锁，返回每次从开始加锁到获取锁的等待时间（毫秒）
+     */
+    private static long[] runContention(AbstractDistributedLock lock, int clientCount) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(clientCount);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch doneLatch = new CountDownLatch(clientCount);
+        AtomicInteger successCount = new AtomicInteger();
+        long[] waits = new long[clientCount * ITERATIONS];
+        for (int c = 0; c < clientCount; c++) {
+            int client = c;
+            executor.submit(() -> {
+                try {
+                    startLatch.await();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        long start = System.nanoTime();
+                        if (lock.tryLock(60, 10, TimeUnit.SECONDS)) {
+                            waits[client * ITERATIONS + i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                            successCount.incrementAndGet();
+                            try {
+                                TimeUnit.MILLISECONDS.sleep(HOLD_MILLIS);
+                            } finally {
+                                lock.unlock();
+                            }
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    doneLatch.countDown();
+                }
+            });
+        }
+        startLatch.countDown();
+        doneLatch.await();
+        executor.shutdown();
+        assertEquals(clientCount * ITERATIONS, successCount.get(), "每次加锁都应在等待时间内成功");
+        return waits;
+    }
+
+    private static long percentile(long[] values, double percentile) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(percentile * sorted.length) - 1];
+    }
+
+    /**
+     * 统计执行期间客户端发往 Redis 的命令数（脚本、订阅与取消订阅），脚本内部执行的命令不计入
+     */
+    private static long countClientCommands(Jedis jedis, Task task) throws InterruptedException {
+        long before = clientCommands(jedis);
+        task.run();
+        return clientCommands(jedis) - before;
+    }
+
+    private static long clientCommands(Jedis jedis) {
+        long calls = 0;
+        for (String line : jedis.info("commandstats").split("\r\n")) {
+            if (line.startsWith("cmdstat_evalsha:") || line.startsWith("cmdstat_subscribe:") || line.startsWith("cmdstat_unsubscribe:")) {
+                String value = line.substring(line.indexOf("calls=") + 6);
+                calls += Long.parseLong(value.substring(0, value.indexOf(',')));
+            }
+        }
+        return calls;
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run() throws InterruptedException;
+    }
+}
@@ -0,0 +1,153 @@
+package com.wangguangwu.distributedlockredis.lock.impl;
+
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockWatchdog;
+import com.wangguangwu.distributedlockredis.properties.JedisLockProperties;
+import com.wangguangwu.distributedlockredis.script.JedisScriptExecutor;
+import com.wangguangwu.distributedlockredis.script.LockScripts;
+import com.wangguangwu.distributedlockredis.transport.RespConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 加锁、解锁热路径的延迟与分配率（配合 {@code -prof gc} 查看 gc.alloc.rate.norm）：
+ * <ul>
+ *   <li>scripts：直接执行加锁、解锁脚本，是传输层本身的开销</li>
+ *   <li>lockUnlock：通过 {@link JedisDistributedLockImpl} 加锁、解锁，与 scripts 的差值是锁本身的开销。
+ *   线程持有者的本地记录释放后保留复用，差值应接近 0（此前每次加锁新建本地记录及其 Map 节点，约 80 B/op）</li>
+ *   <li>reentrant：已持有锁时重入再退出，只访问本地记录，不应有任何分配</li>
+ * </ul>
+ * 需要本地 6379 端口的 Redis，可直接运行 main 方法。
+ *
+ * @author wangguangwu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JedisLockHotPathBenchmark {
+
+    private static final String LOCK_KEY = "hotpath:benchmark";
+
+    private static final byte[] LOCK_KEY_BYTES = SafeEncoder.encode(LOCK_KEY);
+
+    private static final byte[] FENCING_KEY_BYTES = SafeEncoder.encode(JedisDistributedLockImpl.fencingKeyOf(LOCK_KEY));
+
+    private static final byte[] CHANNEL_BYTES = SafeEncoder.encode(JedisLockReleaseSubscriber.channelOf(LOCK_KEY));
+
+    private static final byte[] LEASE_MILLIS = SafeEncoder.encode("30000");
+
+    @Param({"jedis-pipeline", "nio"})
+    public String transport;
+
+    private JedisPool jedisPool;
+
+    private RespConnection respConnection;
+
+    private JedisScriptExecutor executor;
+
+    private JedisLockReleaseSubscriber releaseSubscriber;
+
+    private JedisLockWatchdog watchdog;
+
+    private JedisDistributedLockImpl lock;
+
+    private JedisDistributedLockImpl heldLock;
+
+    private byte[] owner;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        jedisPool = new JedisPool("127.0.0.1", 6379);
+        JedisLockProperties properties = new JedisLockProperties();
+        if ("nio".equals(transport)) {
+            respConnection = new RespConnection(new HostAndPort("127.0.0.1", 6379), Protocol.DEFAULT_TIMEOUT);
+        }
+        executor = new JedisScriptExecutor(jedisPool, properties, respConnection);
+        executor.preload();
+        releaseSubscriber = new JedisLockReleaseSubscriber(new HostAndPort("127.0.0.1", 6379));
+        releaseSubscriber.start();
+        watchdog = new JedisLockWatchdog(executor, properties);
+        watchdog.start();
+        lock = new JedisDistributedLockImpl(LOCK_KEY, executor, releaseSubscriber, watchdog, properties);
+        heldLock = new JedisDistributedLockImpl(LOCK_KEY + ":held", executor, releaseSubscriber, watchdog, properties);
+        // 看门狗模式下本地记录一直有效，重入不会因为租期到期而访问 Redis
+        if (!heldLock.tryLock(0, -1, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("无法获取 " + LOCK_KEY + ":held");
+        }
+        owner = SafeEncoder.encode(JedisDistributedLockImpl.currentOwner());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        heldLock.unlock();
+        watchdog.shutdown();
+        releaseSubscriber.shutdown();
+        executor.shutdown();
+        if (respConnection != null) {
+            respConnection.close();
+        }
+        jedisPool.close();
+    }
+
+    /**
+     * 直接执行加锁、解锁脚本
+     */
+    @Benchmark
+    public Object scripts() {
+        executor.evalsha(LockScripts.LOCK, 2, LOCK_KEY_BYTES, FENCING_KEY_BYTES, owner, LEASE_MILLIS);
+        return executor.evalsha(LockScripts.UNLOCK, 1, LOCK_KEY_BYTES, owner, CHANNEL_BYTES);
+    }
+
+    /**
+     * 通过锁实例加锁、解锁，固定租期
+     */
+    @Benchmark
+    public boolean lockUnlock() throws InterruptedException {
+        boolean locked = lock.tryLock(0, 30, TimeUnit.SECONDS);
+        if (locked) {
+            lock.unlock();
+        }
+        return locked;
+    }
+
+    /**
+     * 已持有锁时重入再退出
+     */
+    @Benchmark
+    public boolean reentrant() {
+        boolean locked = heldLock.lock();
+        heldLock.unlock();
+        return locked;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JedisLockHotPathBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
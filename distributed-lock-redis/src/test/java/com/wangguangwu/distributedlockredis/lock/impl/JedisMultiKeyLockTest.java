@@ -0,0 +1,211 @@
+package com.wangguangwu.distributedlockredis.lock.impl;
+
+import com.wangguangwu.distributedlockredis.lock.factory.JedisLockFactory;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockWatchdog;
+import com.wangguangwu.distributedlockredis.properties.JedisLockProperties;
+import com.wangguangwu.distributedlockredis.script.JedisScriptExecutor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 测试 Jedis 批量分布式锁：
+ * <ul>
+ *   <li>全部 key 一次加锁、一次解锁</li>
+ *   <li>任一 key 被他人持有时全部失败，不留下任何 key</li>
+ *   <li>等待冲突 key 释放后获取全部 key</li>
+ *   <li>集群模式下只接受同一 slot 的 key</li>
+ *   <li>与逐个加锁的延迟对比</li>
+ * </ul>
+ */
+@SpringBootTest
+@DisplayName("测试 Jedis 批量分布式锁")
+public class JedisMultiKeyLockTest {
+
+    private static final int KEY_COUNT = 50;
+
+    @Autowired
+    private JedisMultiKeyLock jedisMultiKeyLock;
+
+    @Autowired
+    private JedisLockFactory jedisLockFactory;
+
+    @Autowired
+    private JedisScriptExecutor scriptExecutor;
+
+    @Autowired
+    private JedisLockReleaseSubscriber releaseSubscriber;
+
+    @Autowired
+    private JedisLockWatchdog watchdog;
+
+    @Autowired
+    private JedisPool jedisPool;
+
+    @Test
+    @DisplayName("一次加锁全部 key，解锁后全部删除")
+    void testLockAllAndUnlockAll() {
+        List<String> keys = keys("multi:basic:", KEY_COUNT);
+        assertTrue(jedisMultiKeyLock.lockAll(keys, 10, TimeUnit.SECONDS), "应成功获取全部 key 的锁");
+        try (Jedis jedis = jedisPool.getResource()) {
+            for (String key : keys) {
+                assertEquals(List.of("1"), jedis.hvals(key), "每个 key 的重入次数应为 1");
+                assertTrue(jedis.pttl(key) > 0, "每个 key 都应设置租期");
+            }
+            jedisMultiKeyLock.unlockAll(keys);
+            for (String key : keys) {
+                assertFalse(jedis.exists(key), "解锁后 key 应被删除");
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("任一 key 被他人持有时全部失败，不留下任何 key")
+    void testAllOrNothing() throws Exception {
+        List<String> keys = keys("multi:conflict:", 10);
+        JedisDistributedLockImpl other = jedisLockFactory.getLock(keys.get(7));
+        assertTrue(CompletableFuture.supplyAsync(other::lock).get(), "其他线程应成功获取其中一个 key");
+
+        assertFalse(jedisMultiKeyLock.lockAll(keys, 10, TimeUnit.SECONDS), "有 key 被他人持有时应加锁失败");
+        try (Jedis jedis = jedisPool.getResource()) {
+            for (String key : keys) {
+                if (!key.equals(keys.get(7))) {
+                    assertFalse(jedis.exists(key), "加锁失败时不应留下任何 key");
+                }
+            }
+            jedis.del(keys.get(7));
+        }
+    }
+
+    @Test
+    @DisplayName("等待冲突 key 释放后获取全部 key，同一线程可与单 key 锁互相重入")
+    void testTryLockAllWaitsForRelease() throws Exception {
+        List<String> keys = keys("multi:wait:", 10);
+        JedisDistributedLockImpl other = jedisLockFactory.getLock(keys.get(3));
+        CountDownLatch locked = new CountDownLatch(1);
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> {
+            other.lock();
+            locked.countDown();
+            try {
+                TimeUnit.MILLISECONDS.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            other.unlock();
+        });
+        locked.await();
+
+        long start = System.nanoTime();
+        assertTrue(jedisMultiKeyLock.tryLockAll(keys, 5, 10, TimeUnit.SECONDS), "冲突 key 释放后应获取全部 key");
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(waitedMillis < 2000, "应在收到释放消息后立即重试，而不是等待租期到期");
+        holder.get();
+
+        JedisDistributedLockImpl single = jedisLockFactory.getLock(keys.get(0));
+        assertTrue(single.lock(), "持有批量锁的线程应能通过单 key 锁重入");
+        single.unlock();
+        assertTrue(exists(keys.get(0)), "单 key 锁解锁后批量锁仍应持有该 key");
+        jedisMultiKeyLock.unlockAll(keys);
+        assertFalse(exists(keys.get(0)), "批量解锁后 key 应被删除");
+    }
+
+    @Test
+    @DisplayName("集群模式下按 slot 升序逐组加锁，后面的组冲突时释放已获取的组")
+    void testClusterModeSlotBatches() throws Exception {
+        JedisLockProperties properties = new JedisLockProperties();
+        properties.setClusterMode(true);
+        // 单节点 Redis 接受任意 slot 的 key，这里验证分组、顺序与回滚；按 slot 路由由 JedisCluster 完成
+        JedisMultiKeyLock clusterLock = new JedisMultiKeyLock(scriptExecutor, releaseSubscriber, watchdog, properties);
+
+        List<String> keys = new ArrayList<>(Arrays.asList("{multi:order}:1", "{multi:order}:2", "{multi:order}:3"));
+        keys.addAll(keys("multi:cluster:", 10));
+        assertTrue(clusterLock.lockAll(keys, 10, TimeUnit.SECONDS), "跨 slot 的 key 应按组全部加锁成功");
+        JedisDistributedLockImpl other = jedisLockFactory.getLock(keys.get(0));
+        assertFalse(CompletableFuture.supplyAsync(other::lock).get(), "其他线程不能获取已加锁的 key");
+        clusterLock.unlockAll(keys);
+        try (Jedis jedis = jedisPool.getResource()) {
+            assertEquals(0, jedis.exists(keys.toArray(new String[0])), "批量解锁后全部 key 应被删除");
+        }
+
+        // slot 最大的 key 被他人持有：前面的组加锁后应被回滚，失败时不持有任何 key
+        String last = keys.stream().max(Comparator.comparingInt(JedisClusterCRC16::getSlot)).orElseThrow();
+        JedisDistributedLockImpl holder = jedisLockFactory.getLock(last);
+        assertTrue(CompletableFuture.supplyAsync(holder::lock).get(), "其他线程应成功获取 slot 最大的 key");
+        assertFalse(clusterLock.lockAll(keys, 10, TimeUnit.SECONDS), "存在冲突 key 时应加锁失败");
+        try (Jedis jedis = jedisPool.getResource()) {
+            assertEquals(1, jedis.exists(keys.toArray(new String[0])), "失败时只应保留他人持有的 key");
+            jedis.del(last);
+        }
+    }
+
+    @Test
+    @DisplayName("延迟对比：批量加锁 50 个 key 与逐个加锁")
+    void testLatencyAgainstSequentialLocks() {
+        List<String> keys = keys("multi:latency:", KEY_COUNT);
+        List<JedisDistributedLockImpl> locks = new ArrayList<>();
+        for (String key : keys) {
+            locks.add(jedisLockFactory.getLock(key));
+        }
+        int rounds = 200;
+        // 预热
+        runSequential(locks, rounds);
+        runBatched(keys, rounds);
+
+        long sequentialNanos = runSequential(locks, rounds);
+        long batchedNanos = runBatched(keys, rounds);
+        System.out.printf("[JedisMultiKeyLock] %d 个 key, 逐个加锁解锁: %.3f ms/次, 批量加锁解锁: %.3f ms/次%n",
+                KEY_COUNT, sequentialNanos / 1e6 / rounds, batchedNanos / 1e6 / rounds);
+        assertTrue(batchedNanos * 3 < sequentialNanos, "批量加锁只需一次往返，应明显快于逐个加锁");
+    }
+
+    private long runSequential(List<JedisDistributedLockImpl> locks, int rounds) {
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (JedisDistributedLockImpl lock : locks) {
+                assertTrue(lock.lock());
+            }
+            for (JedisDistributedLockImpl lock : locks) {
+                lock.unlock();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long runBatched(List<String> keys, int rounds) {
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            assertTrue(jedisMultiKeyLock.lockAll(keys, 10, TimeUnit.SECONDS));
+            jedisMultiKeyLock.unlockAll(keys);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private boolean exists(String key) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.exists(key);
+        }
+    }
+
+    private static List<String> keys(String prefix, int count) {
+        List<String> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add(prefix + i);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,256 @@
+package com.wangguangwu.distributedlockredis.lock.impl;
+
+import com.wangguangwu.distributedlockredis.lock.AbstractDistributedLock;
+import com.wangguangwu.distributedlockredis.lock.factory.JedisLockFactory;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockWatchdog;
+import com.wangguangwu.distributedlockredis.properties.JedisLockProperties;
+import com.wangguangwu.distributedlockredis.script.JedisScriptExecutor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 测试 Jedis 分布式读写锁：
+ * <ul>
+ *   <li>读锁共享、写锁独占，写锁可以降级为读锁</li>
+ *   <li>读锁、写锁均可重入，重入次数记录在 Redis 中</li>
+ *   <li>写者优先时有写者等待会拒绝新的读者，关闭后读者不受影响</li>
+ *   <li>每个读者的租期单独到期，不会被其他读者延长</li>
+ *   <li>看门狗为读写锁续期</li>
+ *   <li>读吞吐量随读者数量的扩展，与独占写锁的对比</li>
+ * </ul>
+ */
+@SpringBootTest
+@DisplayName("测试 Jedis 分布式读写锁")
+public class JedisReadWriteLockImplTest {
+
+    /**
+     * 模拟读操作的耗时
+     */
+    private static final long HOLD_MILLIS = 5;
+
+    private static final int ITERATIONS = 40;
+
+    @Autowired
+    private JedisLockFactory jedisLockFactory;
+
+    @Autowired
+    private JedisScriptExecutor scriptExecutor;
+
+    @Autowired
+    private JedisLockReleaseSubscriber releaseSubscriber;
+
+    @Autowired
+    private JedisLockWatchdog watchdog;
+
+    @Autowired
+    private JedisPool jedisPool;
+
+    @Test
+    @DisplayName("读锁共享、写锁独占，写锁持有者可以降级为读锁")
+    void testSharedReadExclusiveWrite() throws InterruptedException {
+        JedisReadWriteLockImpl lock = jedisLockFactory.getReadWriteLock("rw:basic");
+        AbstractDistributedLock read = lock.readLock();
+        AbstractDistributedLock write = lock.writeLock();
+        long reader1 = 1L << 40;
+        long reader2 = reader1 + 1;
+        long writer = reader1 + 2;
+
+        assertTrue(read.tryLock(0, 10, TimeUnit.SECONDS, reader1), "第一个读者应获取读锁");
+        assertTrue(read.tryLock(0, 10, TimeUnit.SECONDS, reader2), "读锁应被多个读者共享");
+        assertFalse(write.tryLock(0, 10, TimeUnit.SECONDS, writer), "有读者时不能获取写锁");
+        read.unlock(reader1);
+        assertFalse(write.tryLock(0, 10, TimeUnit.SECONDS, writer), "仍有读者时不能获取写锁");
+        read.unlock(reader2);
+
+        assertTrue(write.tryLock(0, 10, TimeUnit.SECONDS, writer), "读者全部释放后应获取写锁");
+        assertFalse(read.tryLock(0, 10, TimeUnit.SECONDS, reader1), "写锁被持有时其他读者不能获取读锁");
+        assertTrue(read.tryLock(0, 10, TimeUnit.SECONDS, writer), "写锁持有者应能再获取读锁（降级）");
+        write.unlock(writer);
+        assertTrue(read.tryLock(0, 10, TimeUnit.SECONDS, reader1), "写锁释放后其他读者应能与降级的读者共享");
+
+        read.unlock(writer);
+        read.unlock(reader1);
+        try (Jedis jedis = jedisPool.getResource()) {
+            assertFalse(jedis.exists("rw:basic"), "全部释放后 Redis 中不应再有锁");
+        }
+    }
+
+    @Test
+    @DisplayName("读锁与写锁均可重入，全部释放后才删除")
+    void testReentrancy() throws InterruptedException {
+        JedisReadWriteLockImpl lock = jedisLockFactory.getReadWriteLock("rw:reentrant");
+        try (Jedis jedis = jedisPool.getResource()) {
+            for (AbstractDistributedLock mode : new AbstractDistributedLock[]{lock.readLock(), lock.writeLock()}) {
+                assertTrue(mode.tryLock(0, 10, TimeUnit.SECONDS), "应成功加锁");
+                assertTrue(mode.tryLock(0, 10, TimeUnit.SECONDS), "持有者应能重入");
+                assertEquals(2, jedis.hlen("rw:reentrant"), "hash 中应只有 mode 与当前持有者");
+                assertTrue(jedis.hvals("rw:reentrant").contains("2"), "重入次数应记录在 Redis 中");
+                mode.unlock();
+                assertTrue(mode.isLockHeldByCurrentThread(), "重入一次解锁后仍应持有锁");
+                assertTrue(jedis.exists("rw:reentrant"), "重入未全部释放时不应删除锁");
+                mode.unlock();
+                assertFalse(mode.isLockHeldByCurrentThread(), "全部释放后不应再持有锁");
+                assertFalse(jedis.exists("rw:reentrant"), "全部释放后应删除锁");
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("写者优先：写者等待期间拒绝新的读者，已持有的读者仍可重入")
+    void testWriterPreference() throws Exception {
+        assertFalse(newReaderAdmittedWhileWriterWaits("rw:preference:on", true), "写者优先时新的读者应被拒绝");
+        assertTrue(newReaderAdmittedWhileWriterWaits("rw:preference:off", false), "关闭写者优先时新的读者不受等待写者影响");
+    }
+
+    @Test
+    @DisplayName("每个读者的租期单独到期：崩溃读者的持有不会被其他读者延长")
+    void testReaderLeaseExpiresIndependently() throws Exception {
+        JedisReadWriteLockImpl lock = jedisLockFactory.getReadWriteLock("rw:lease");
+        long crashedReader = 1L << 41;
+        long reader = crashedReader + 1;
+        long writer = crashedReader + 2;
+        // 模拟崩溃的读者：租期 300ms，永远不会解锁
+        assertTrue(lock.readLock().tryLock(0, 300, TimeUnit.MILLISECONDS, crashedReader), "应成功获取读锁");
+        assertTrue(lock.readLock().tryLock(0, 10, TimeUnit.SECONDS, reader), "应成功获取读锁");
+
+        long start = System.nanoTime();
+        CompletableFuture<Boolean> writerFuture = CompletableFuture.supplyAsync(() -> tryLock(lock.writeLock(), 5000, writer));
+        TimeUnit.MILLISECONDS.sleep(500);
+        assertFalse(writerFuture.isDone(), "仍有读者时写者应等待");
+        lock.readLock().unlock(reader);
+        assertTrue(writerFuture.get(2, TimeUnit.SECONDS), "正常读者释放、崩溃读者租期到期后写者应获取锁");
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(waitedMillis < 2000, "写者不应等到锁 key 的 10 秒 TTL 到期");
+        lock.writeLock().unlock(writer);
+    }
+
+    @Test
+    @DisplayName("看门狗模式：读锁的持有时间超过租期后仍然有效")
+    void testWatchdogRenewal() throws InterruptedException {
+        JedisLockProperties properties = new JedisLockProperties();
+        properties.setWatchdogTimeoutMillis(600);
+        JedisLockWatchdog fastWatchdog = new JedisLockWatchdog(scriptExecutor, properties);
+        fastWatchdog.start();
+        try {
+            JedisReadWriteLockImpl lock = new JedisReadWriteLockImpl("rw:watchdog", scriptExecutor, releaseSubscriber, fastWatchdog, true);
+            long writer = 1L << 42;
+            assertTrue(lock.readLock().tryLock(0, -1, TimeUnit.MILLISECONDS), "应成功获取读锁");
+            TimeUnit.MILLISECONDS.sleep(1500);
+            assertFalse(lock.writeLock().tryLock(0, 10, TimeUnit.SECONDS, writer), "看门狗应持续续期，写者不能获取锁");
+            lock.readLock().unlock();
+            assertEquals(0, fastWatchdog.size(), "解锁后应停止续期");
+            assertTrue(lock.writeLock().tryLock(0, 10, TimeUnit.SECONDS, writer), "读锁释放后写者应获取锁");
+            lock.writeLock().unlock(writer);
+        } finally {
+            fastWatchdog.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("读吞吐量随读者数量扩展，与独占写锁对比")
+    void testReadThroughputScaling() throws InterruptedException {
+        JedisReadWriteLockImpl lock = jedisLockFactory.getReadWriteLock("rw:bench");
+        // 预热
+        run(lock.readLock(), 4);
+
+        double[] readThroughput = new double[4];
+        int[] readerCounts = {1, 2, 4, 8};
+        for (int i = 0; i < readerCounts.length; i++) {
+            readThroughput[i] = run(lock.readLock(), readerCounts[i]);
+            System.out.printf("[JedisReadWriteLock] %d 个读者: %.0f ops/s%n", readerCounts[i], readThroughput[i]);
+        }
+        double writeThroughput = run(lock.writeLock(), 8);
+        System.out.printf("[JedisReadWriteLock] 8 个写者（独占）: %.0f ops/s%n", writeThroughput);
+
+        assertTrue(readThroughput[3] > readThroughput[0] * 3, "读者之间共享锁，吞吐量应随读者数量增长");
+        assertTrue(readThroughput[3] > writeThroughput * 3, "相同线程数下读锁吞吐量应远高于独占锁");
+    }
+
+    /**
+     * 读者 A 持有读锁、写者等待时，新的读者 B 能否获取读锁
+     */
+    private boolean newReaderAdmittedWhileWriterWaits(String lockKey, boolean writerPreference) throws Exception {
+        JedisReadWriteLockImpl lock = new JedisReadWriteLockImpl(lockKey, scriptExecutor, releaseSubscriber, watchdog, writerPreference);
+        long readerA = 1L << 43;
+        long readerB = readerA + 1;
+        long writer = readerA + 2;
+        assertTrue(lock.readLock().tryLock(0, 10, TimeUnit.SECONDS, readerA), "读者 A 应获取读锁");
+        CompletableFuture<Boolean> writerFuture = CompletableFuture.supplyAsync(() -> tryLock(lock.writeLock(), 5000, writer));
+        // 保证写者已经加锁失败并进入等待
+        TimeUnit.MILLISECONDS.sleep(200);
+
+        boolean admitted = lock.readLock().tryLock(0, 10, TimeUnit.SECONDS, readerB);
+        assertTrue(lock.readLock().tryLock(0, 10, TimeUnit.SECONDS, readerA), "已持有读锁的读者应能重入");
+        lock.readLock().unlock(readerA);
+        lock.readLock().unlock(readerA);
+        if (admitted) {
+            lock.readLock().unlock(readerB);
+        }
+        assertTrue(writerFuture.get(2, TimeUnit.SECONDS), "读者全部释放后写者应获取锁");
+        lock.writeLock().unlock(writer);
+        return admitted;
+    }
+
+    private static boolean tryLock(AbstractDistributedLock lock, long waitMillis, long ownerId) {
+        try {
+            return lock.tryLock(waitMillis, 10_000, TimeUnit.MILLISECONDS, ownerId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 多个线程反复加锁，持锁期间模拟一次读操作
+     *
+     * @return 吞吐量（ops/s）
+     */
+    private static double run(AbstractDistributedLock lock, int threadCount) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch doneLatch = new CountDownLatch(threadCount);
+        AtomicInteger successCount = new AtomicInteger();
+        for (int t = 0; t < threadCount; t++) {
+            executor.submit(() -> {
+                try {
+                    startLatch.await();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        if (lock.tryLock(30, 10, TimeUnit.SECONDS)) {
+                            try {
+                                successCount.incrementAndGet();
+                                TimeUnit.MILLISECONDS.sleep(HOLD_MILLIS);
+                            } finally {
+                                lock.unlock();
+                            }
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    doneLatch.countDown();
+                }
+            });
+        }
+        long start = System.nanoTime();
+        startLatch.countDown();
+        doneLatch.await();
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        assertEquals(threadCount * ITERATIONS, successCount.get(), "每次加锁都应在等待时间内成功");
+        return successCount.get() * 1_000_000_000.0 / elapsed;
+    }
+}
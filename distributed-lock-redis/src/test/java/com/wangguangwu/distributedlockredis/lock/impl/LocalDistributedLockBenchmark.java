@@ -0,0 +1,140 @@
+package com.wangguangwu.distributedlockredis.lock.impl;
+
+import com.wangguangwu.distributedlockredis.lock.factory.LocalLockFactory;
+import com.wangguangwu.distributedlockredis.lock.support.LocalLeaseTimer;
+import com.wangguangwu.distributedlockredis.properties.LocalLockProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 进程内锁的加锁、解锁吞吐量：
+ * <ul>
+ *   <li>uncontended：每个线程使用自己的 key，固定租期，单线程即应达到每秒千万次以上</li>
+ *   <li>viaFactory：每次加锁前从 LocalLockFactory 取出实例，包含一次 Map 查找与实例是否已被淘汰的判断</li>
+ *   <li>uncontendedMultiThread：8 个线程各用自己的 key，key 之间没有共享状态，吞吐量应随线程数线性增长</li>
+ *   <li>reentrant：已持有锁时重入再退出，只修改重入次数</li>
+ *   <li>contended：4 个线程争用同一个 key，反映排队与唤醒的开销</li>
+ * </ul>
+ * 不绑定指标注册表，与未开启 Actuator 时相同。可直接运行 main 方法。
+ * <p>
+ * 单核虚拟机上的一次结果（-prof gc）：uncontended 与 viaFactory 均约 43 ops/us（每秒四千万次以上），reentrant 约 470 ops/us，
+ * 每次新的持有分配 56 B（Hold），重入不分配；单核上多线程用例只反映调度开销，不代表扩展性。
+ *
+ * @author wangguangwu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalDistributedLockBenchmark {
+
+    private final AtomicInteger threadIds = new AtomicInteger();
+
+    private LocalLeaseTimer leaseTimer;
+
+    private LocalDistributedLockImpl sharedLock;
+
+    private LocalLockFactory factory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        leaseTimer = new LocalLeaseTimer(new LocalLockProperties());
+        leaseTimer.start();
+        sharedLock = new LocalDistributedLockImpl("benchmark:local:contended", leaseTimer);
+        factory = new LocalLockFactory(leaseTimer, new LocalLockProperties());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        leaseTimer.shutdown();
+    }
+
+    /**
+     * 每个线程自己的 key，以及一把已持有的锁
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private LocalDistributedLockImpl ownLock;
+
+        private LocalDistributedLockImpl heldLock;
+
+        private String factoryKey;
+
+        @Setup(Level.Trial)
+        public void setUp(LocalDistributedLockBenchmark benchmark) throws InterruptedException {
+            int threadId = benchmark.threadIds.getAndIncrement();
+            ownLock = new LocalDistributedLockImpl("benchmark:local:" + threadId, benchmark.leaseTimer);
+            heldLock = new LocalDistributedLockImpl("benchmark:local:held:" + threadId, benchmark.leaseTimer);
+            factoryKey = "benchmark:local:factory:" + threadId;
+            heldLock.tryLock(0, 0, TimeUnit.MILLISECONDS);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            heldLock.unlock();
+        }
+    }
+
+    @Benchmark
+    public boolean uncontended(ThreadState state) throws InterruptedException {
+        return lockAndUnlock(state.ownLock);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean uncontendedMultiThread(ThreadState state) throws InterruptedException {
+        return lockAndUnlock(state.ownLock);
+    }
+
+    @Benchmark
+    public boolean viaFactory(ThreadState state) throws InterruptedException {
+        return lockAndUnlock(factory.getLock(state.factoryKey));
+    }
+
+    @Benchmark
+    public boolean reentrant(ThreadState state) throws InterruptedException {
+        return lockAndUnlock(state.heldLock);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean contended() throws InterruptedException {
+        return lockAndUnlock(sharedLock);
+    }
+
+    private static boolean lockAndUnlock(LocalDistributedLockImpl lock) throws InterruptedException {
+        if (!lock.tryLock(30, 30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("等待 30 秒仍未获取到锁");
+        }
+        lock.unlock();
+        return true;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LocalDistributedLockBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,256 @@
+package com.wangguangwu.distributedlockredis.lock.impl;
+
+import com.wangguangwu.distributedlockredis.lock.LockHandle;
+import com.wangguangwu.distributedlockredis.lock.factory.LocalLockFactory;
+import com.wangguangwu.distributedlockredis.lock.support.LocalLeaseTimer;
+import com.wangguangwu.distributedlockredis.properties.LocalLockProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 测试进程内锁，不依赖 Redis：
+ * <ul>
+ *   <li>多线程之间互斥，可重入，每次新的持有 fencing token 递增</li>
+ *   <li>租期到期后由他人接管，原持有者解锁不影响新持有者</li>
+ *   <li>解锁与租期到期都能唤醒等待者</li>
+ *   <li>句柄跨线程解锁，异步等待的成功与超时</li>
+ *   <li>实例被工厂淘汰后仍然互斥，token 不回退</li>
+ * </ul>
+ */
+@DisplayName("测试进程内锁")
+public class LocalDistributedLockImplTest {
+
+    private LocalLeaseTimer leaseTimer;
+
+    private LocalLockFactory localLockFactory;
+
+    @BeforeEach
+    void setUp() {
+        LocalLockProperties properties = new LocalLockProperties();
+        leaseTimer = new LocalLeaseTimer(properties);
+        leaseTimer.start();
+        localLockFactory = new LocalLockFactory(leaseTimer, properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        leaseTimer.shutdown();
+    }
+
+    private LocalLockFactory newFactory(int maxCachedLocks) {
+        LocalLockProperties properties = new LocalLockProperties();
+        properties.setMaxCachedLocks(maxCachedLocks);
+        return new LocalLockFactory(leaseTimer, properties);
+    }
+
+    @Test
+    @DisplayName("多线程争用同一 key：临界区内的非原子累加不丢失更新")
+    void testMutualExclusion() throws Exception {
+        LocalDistributedLockImpl lock = localLockFactory.getLock("local:mutex");
+        int[] counter = new int[1];
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    int acquired = 0;
+                    for (int j = 0; j < 10_000; j++) {
+                        if (lock.tryLock(5, 30, TimeUnit.SECONDS)) {
+                            try {
+                                counter[0]++;
+                                acquired++;
+                            } finally {
+                                lock.unlock();
+                            }
+                        }
+                    }
+                    return acquired;
+                }));
+            }
+            int acquired = 0;
+            for (Future<Integer> future : futures) {
+                acquired += future.get();
+            }
+            assertEquals(80_000, acquired, "每次加锁都应在等待时间内成功");
+            assertEquals(80_000, counter[0], "临界区内的非原子累加不应丢失更新");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("重入不改变 fencing token，新的持有 token 递增")
+    void testReentrantAndFencingToken() throws InterruptedException {
+        LocalDistributedLockImpl lock = localLockFactory.getLock("local:reentrant");
+        assertTrue(lock.tryLock(0, 30, TimeUnit.SECONDS));
+        long token = lock.getFencingToken();
+        assertTrue(lock.tryLock(0, 30, TimeUnit.SECONDS), "持有者应能重入");
+        assertEquals(token, lock.getFencingToken(), "重入不应产生新的 token");
+
+        lock.unlock();
+        assertTrue(lock.isLockHeldByCurrentThread(), "重入一次只解锁一次时仍应持有");
+        lock.unlock();
+        assertFalse(lock.isLockHeldByCurrentThread());
+        assertEquals(0, lock.getFencingToken(), "解锁后 token 为 0");
+
+        assertTrue(lock.tryLock(0, 30, TimeUnit.SECONDS));
+        assertTrue(lock.getFencingToken() > token, "新的持有应分配更大的 token");
+        lock.unlock();
+    }
+
+    @Test
+    @DisplayName("实例被淘汰后，此前取出的实例把操作转交给新实例，token 不回退")
+    void testRetiredInstanceForwards() throws InterruptedException {
+        LocalLockFactory smallFactory = newFactory(16);
+        LocalDistributedLockImpl evicted = smallFactory.getLock("local:evicted");
+        assertTrue(evicted.tryLock(0, 30, TimeUnit.SECONDS));
+        long token = evicted.getFencingToken();
+        evicted.unlock();
+        for (int i = 0; i < 100; i++) {
+            smallFactory.getLock("local:churn:" + i);
+        }
+        LocalDistributedLockImpl current = smallFactory.getLock("local:evicted");
+        assertNotSame(evicted, current, "空闲的实例应被淘汰");
+
+        assertTrue(evicted.tryLock(0, 30, TimeUnit.SECONDS), "废弃的实例应转交给新实例加锁");
+        assertTrue(current.isLockHeldByCurrentThread(), "锁应持有在新实例上");
+        assertTrue(evicted.getFencingToken() > token, "淘汰后重新创建的实例分配的 token 不应回退");
+        assertFalse(current.tryLockAsync(0, 30, TimeUnit.SECONDS, -1).toCompletableFuture().join(), "新实例上的锁应互斥");
+        evicted.unlock();
+        assertFalse(current.isLockHeldByCurrentThread(), "通过废弃的实例解锁应释放新实例上的锁");
+    }
+
+    @Test
+    @DisplayName("淘汰与取出实例后加锁并发：持有旧实例与新实例的线程之间仍然互斥")
+    void testMutualExclusionUnderEviction() throws Exception {
+        LocalLockFactory smallFactory = newFactory(16);
+        int[] counter = new int[1];
+        long[] lastToken = new long[1];
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> {
+                    int acquired = 0;
+                    LocalDistributedLockImpl lock = smallFactory.getLock("local:evicting");
+                    for (int j = 0; j < 20_000; j++) {
+                        // 一半的加锁重新从工厂获取实例，另一半沿用可能已被淘汰的旧实例
+                        if (j % 2 == 0) {
+                            lock = smallFactory.getLock("local:evicting");
+                        }
+                        if (lock.tryLock(5, 30, TimeUnit.SECONDS)) {
+                            try {
+                                long token = lock.getFencingToken();
+                                if (token <= lastToken[0]) {
+                                    throw new IllegalStateException("token 回退: " + token + " <= " + lastToken[0]);
+                                }
+                                lastToken[0] = token;
+                                counter[0]++;
+                                acquired++;
+                            } finally {
+                                lock.unlock();
+                            }
+                        }
+                    }
+                    return acquired;
+                }));
+            }
+            Future<?> churn = executor.submit(() -> {
+                for (int i = 0; i < 200_000; i++) {
+                    smallFactory.getLock("local:churn:" + i);
+                }
+            });
+            int acquired = 0;
+            for (Future<Integer> future : futures) {
+                acquired += future.get();
+            }
+            churn.get();
+            assertEquals(80_000, acquired, "每次加锁都应在等待时间内成功");
+            assertEquals(80_000, counter[0], "淘汰期间临界区内的非原子累加不应丢失更新");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("租期到期后等待者被唤醒并接管，原持有者解锁不释放新持有者的锁")
+    void testLeaseExpiry() throws Exception {
+        LocalDistributedLockImpl lock = localLockFactory.getLock("local:lease");
+        assertTrue(lock.tryLock(0, 200, TimeUnit.MILLISECONDS));
+
+        long start = System.nanoTime();
+        LockHandle handle = CompletableFuture.supplyAsync(() -> {
+            try {
+                return lock.acquire(5, 30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }).get();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertNotNull(handle, "租期到期后等待者应获取到锁");
+        assertTrue(elapsedMillis >= 150 && elapsedMillis < 1000, "应在租期到期后不久被唤醒: " + elapsedMillis + "ms");
+        assertFalse(lock.isLockHeldByCurrentThread(), "租期已过，原持有者不再持有");
+
+        lock.unlock();
+        assertTrue(lock.isLockHeldRemotely(handle.getOwnerId()), "原持有者解锁不应释放新持有者的锁");
+        handle.unlock();
+        assertFalse(lock.isHeldLocally());
+    }
+
+    @Test
+    @DisplayName("解锁唤醒等待者，句柄可以在另一个线程解锁")
+    void testWakeUpOnUnlock() throws Exception {
+        LocalDistributedLockImpl lock = localLockFactory.getLock("local:wake");
+        LockHandle handle = lock.acquire(0, 30, TimeUnit.SECONDS);
+        assertNotNull(handle);
+
+        CompletableFuture<Boolean> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                boolean acquired = lock.tryLock(5, 30, TimeUnit.SECONDS);
+                if (acquired) {
+                    lock.unlock();
+                }
+                return acquired;
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        TimeUnit.MILLISECONDS.sleep(50);
+        assertFalse(waiter.isDone(), "持有期间等待者应一直等待");
+
+        long start = System.nanoTime();
+        CompletableFuture.runAsync(handle::unlock).get();
+        assertTrue(waiter.get(1, TimeUnit.SECONDS), "解锁后等待者应获取到锁");
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500, "等待者应被立即唤醒");
+    }
+
+    @Test
+    @DisplayName("异步加锁：超时返回 false，解锁后返回 true")
+    void testAsync() throws Exception {
+        LocalDistributedLockImpl lock = localLockFactory.getLock("local:async");
+        assertTrue(lock.tryLock(0, 30, TimeUnit.SECONDS));
+
+        assertFalse(lock.tryLockAsync(100, 30_000, TimeUnit.MILLISECONDS, 1L << 40).toCompletableFuture().get(1, TimeUnit.SECONDS),
+                "等待时间内未释放时应返回 false");
+
+        CompletableFuture<Boolean> pending = lock.tryLockAsync(5, 30, TimeUnit.SECONDS, 1L << 41).toCompletableFuture();
+        assertFalse(pending.isDone());
+        lock.unlock();
+        assertTrue(pending.get(1, TimeUnit.SECONDS), "解锁后异步等待者应获取到锁");
+        assertTrue(lock.isLockHeldRemotely(1L << 41));
+        lock.unlock(1L << 41);
+        assertFalse(lock.isHeldLocally());
+    }
+}
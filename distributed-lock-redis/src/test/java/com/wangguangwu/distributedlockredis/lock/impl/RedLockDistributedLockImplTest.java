@@ -1,21 +1,25 @@
 package com.wangguangwu.distributedlockredis.lock.impl;
 
+import com.wangguangwu.distributedlockredis.lock.factory.RedLockFactory;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.commands.ProtocolCommand;
+import redis.clients.jedis.util.SafeEncoder;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
- * 测试基于 RedLock（RedissonMultiLock）实现的分布式锁：
+ * 测试基于 RedLock 算法（5 个独立节点，过半数成功）实现的分布式锁：
  * <ul>
  *   <li>单线程测试：加锁与解锁</li>
  *   <li>自动续锁测试：锁持有时间超过租期后仍被当前线程持有</li>
@@ -23,15 +27,32 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
  *   <li>其他线程尝试解锁：非持锁线程调用 unlock() 不会释放锁</li>
  *   <li>测试锁获取失败：当锁被长时间持有时，其他线程 tryLock 短等待应获取失败</li>
  *   <li>测试不同锁 key：不同 key 之间并发加锁互不干扰</li>
+ *   <li>多数节点：少数节点被占用时仍能加锁，多数节点被占用时加锁失败</li>
+ *   <li>慢节点：加锁耗时取决于中位数节点，不等待最慢的节点</li>
+ *   <li>有效期：扣除加锁耗时与时钟漂移后有效期不足时加锁失败，并释放已加锁的节点</li>
+ *   <li>持有状态：本地查询不访问任何节点，远端查询在多数节点上的锁丢失后返回未持有</li>
  * </ul>
  */
 @SpringBootTest
 @DisplayName("测试使用 RedLock 实现分布式锁")
 public class RedLockDistributedLockImplTest {
 
+    /**
+     * 与 redisson-red-lock.addresses 一致的节点端口
+     */
+    private static final int[] NODE_PORTS = {6379, 6380, 6381, 6382, 6383};
+
+    /**
+     * Jedis 没有内置 DEBUG SLEEP，直接发送原始命令
+     */
+    private static final ProtocolCommand DEBUG = () -> SafeEncoder.encode("DEBUG");
+
     @Autowired
     private RedLockDistributedLockImpl redLockDistributedLockImpl;
 
+    @Autowired
+    private RedLockFactory redLockFactory;
+
     @Test
     @DisplayName("单线程测试：加锁与解锁")
     void testSingleThreadLockUnlock() {
@@ -154,4 +175,184 @@ public class RedLockDistributedLockImplTest {
         // 主线程释放锁
         redLockDistributedLockImpl.unlock();
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("测试不同锁 key：按 key 创建的实例之间互不干扰，同一 key 返回同一实例")
+    void testLocksPerKey() throws InterruptedException {
+        RedLockDistributedLockImpl lockA = redLockFactory.getLock("redLock:key:a");
+        RedLockDistributedLockImpl lockB = redLockFactory.getLock("redLock:key:b");
+        assertSame(lockA, redLockFactory.getLock("redLock:key:a"), "同一 key 应返回缓存的实例");
+        assertEquals(5, redLockFactory.getNodeCount(), "应使用 5 个节点");
+        assertEquals(3, lockA.getQuorum(), "5 个节点的多数为 3");
+
+        assertTrue(lockA.tryLock(0, 10, TimeUnit.SECONDS), "应获取 key a 的锁");
+        assertTrue(lockB.tryLock(0, 10, TimeUnit.SECONDS), "不同 key 的锁互不干扰");
+        assertTrue(lockA.tryLock(0, 10, TimeUnit.SECONDS), "持锁线程应能重入");
+        lockA.unlock();
+        assertTrue(lockA.isLockHeldByCurrentThread(), "重入一次解锁后仍应持有锁");
+        lockA.unlock();
+        lockB.unlock();
+        assertFalse(lockA.isLockHeldByCurrentThread(), "完全解锁后不应再持有锁");
+    }
+
+    @Test
+    @DisplayName("多数节点：2 个节点被占用时仍能加锁，3 个节点被占用时加锁失败")
+    void testQuorum() throws InterruptedException {
+        String key = "redLock:quorum";
+        RedLockDistributedLockImpl lock = redLockFactory.getLock(key);
+        try {
+            occupy(key, 6382, 6383);
+            assertTrue(lock.tryLock(0, 10, TimeUnit.SECONDS), "3 个节点加锁成功即达到多数");
+            lock.unlock();
+            assertFalse(isLocked(key, 6379), "解锁后应释放已加锁的节点");
+
+            occupy(key, 6381);
+            long start = System.currentTimeMillis();
+            assertFalse(lock.tryLock(300, 10000, TimeUnit.MILLISECONDS), "只有 2 个节点可用时无法达到多数");
+            assertTrue(System.currentTimeMillis() - start >= 300, "应在等待时间内重试");
+            assertFalse(isLocked(key, 6379) || isLocked(key, 6380), "加锁失败后应释放少数节点上的锁");
+        } finally {
+            release(key);
+        }
+    }
+
+    @Test
+    @DisplayName("异步取消：调用方放弃等待后不再重试，也不在节点上遗留锁")
+    void testAsyncAbandoned() throws Exception {
+        String key = "redLock:abandoned";
+        RedLockDistributedLockImpl lock = redLockFactory.getLock(key);
+        long ownerId = (1L << 40) + 20;
+        try {
+            occupy(key, 6381, 6382, 6383);
+            CompletableFuture<Boolean> waiter = lock.tryLockAsync(5, 10, TimeUnit.SECONDS, ownerId).toCompletableFuture();
+            TimeUnit.MILLISECONDS.sleep(100);
+            assertFalse(waiter.isDone(), "多数节点被占用时应继续重试");
+            waiter.cancel(false);
+            release(key);
+            // 超过一次重试退避，已取消的请求不应再加锁
+            TimeUnit.MILLISECONDS.sleep(300);
+            assertFalse(lock.isHeldLocally(), "放弃等待的持有者不应留在本地记录中");
+            for (int port : NODE_PORTS) {
+                assertFalse(isLocked(key, port), "放弃等待后不应在节点 " + port + " 上遗留锁");
+            }
+        } finally {
+            release(key);
+        }
+    }
+
+    @Test
+    @DisplayName("慢节点：一个节点阻塞时加锁耗时取决于中位数节点")
+    void testSlowNode() throws Exception {
+        RedLockDistributedLockImpl lock = redLockFactory.getLock("redLock:slow");
+        // 预热各节点的连接与脚本缓存
+        assertTrue(lock.tryLock(0, 10, TimeUnit.SECONDS), "应成功获取锁");
+        lock.unlock();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (Jedis slowNode = new Jedis("127.0.0.1", 6383)) {
+            // DEBUG SLEEP 让节点阻塞 1 秒，模拟慢节点
+            CompletableFuture<Object> sleeping = CompletableFuture.supplyAsync(
+                    () -> slowNode.sendCommand(DEBUG, "SLEEP", "1"), executor);
+            TimeUnit.MILLISECONDS.sleep(100);
+
+            long start = System.nanoTime();
+            assertTrue(lock.tryLock(0, 10, TimeUnit.SECONDS), "多数节点正常时应成功获取锁");
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            System.out.printf("[RedLock] 一个节点阻塞 1s 时加锁耗时: %dms%n", elapsedMillis);
+            assertTrue(elapsedMillis < 500, "不应等待阻塞的节点，实际耗时 " + elapsedMillis + "ms");
+
+            sleeping.get(5, TimeUnit.SECONDS);
+            lock.unlock();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("有效期：租期不足以覆盖加锁耗时与时钟漂移时加锁失败")
+    void testValidityWindow() throws InterruptedException {
+        String key = "redLock:validity";
+        RedLockDistributedLockImpl lock = redLockFactory.getLock(key);
+        // 时钟漂移至少 2ms，1ms 的租期一定没有剩余有效期
+        assertFalse(lock.tryLock(0, 1, TimeUnit.MILLISECONDS), "有效期小于等于 0 时应视为加锁失败");
+        assertFalse(lock.isLockHeldByCurrentThread(), "加锁失败后不应持有锁");
+        assertTrue(lock.tryLock(0, 10, TimeUnit.SECONDS), "租期充足时应成功获取锁");
+        lock.unlock();
+    }
+
+    @Test
+    @DisplayName("持有状态：本地查询不访问任何节点，远端查询在多数节点上的锁丢失后返回未持有")
+    void testLocalAndRemoteHoldCheck() throws InterruptedException {
+        String key = "redLock:held";
+        RedLockDistributedLockImpl lock = redLockFactory.getLock(key);
+        assertTrue(lock.tryLock(0, 10, TimeUnit.SECONDS), "应成功获取锁");
+        try {
+            long before = hexistsCalls();
+            for (int i = 0; i < 10000; i++) {
+                assertTrue(lock.isLockHeldByCurrentThread(), "本地记录应显示当前线程持有锁");
+            }
+            assertEquals(before, hexistsCalls(), "本地查询不应访问任何节点");
+            assertTrue(lock.isLockHeldRemotely(), "远端查询应与本地记录一致");
+
+            // 模拟少数节点上的锁丢失，多数节点仍持有
+            deleteOn(key, 6379, 6380);
+            assertTrue(lock.isLockHeldRemotely(), "少数节点丢失时仍由多数节点持有");
+            deleteOn(key, 6381);
+            assertTrue(lock.isLockHeldByCurrentThread(), "本地记录无法感知锁在节点上丢失");
+            assertFalse(lock.isLockHeldRemotely(), "多数节点丢失时远端查询应返回未持有");
+        } finally {
+            lock.unlock();
+            release(key);
+        }
+        assertFalse(lock.isLockHeldByCurrentThread(), "解锁后应清理本地记录");
+    }
+
+    private static long hexistsCalls() {
+        long calls = 0;
+        for (int port : NODE_PORTS) {
+            try (Jedis jedis = new Jedis("127.0.0.1", port)) {
+                for (String line : jedis.info("commandstats").split("\r\n")) {
+                    if (line.startsWith("cmdstat_hexists:")) {
+                        String value = line.substring(line.indexOf("calls=") + 6);
+                        calls += Long.parseLong(value.substring(0, value.indexOf(',')));
+                    }
+                }
+            }
+        }
+        return calls;
+    }
+
+    private static void deleteOn(String key, int... ports) {
+        for (int port : ports) {
+            try (Jedis jedis = new Jedis("127.0.0.1", port)) {
+                jedis.del(key);
+            }
+        }
+    }
+
+    /**
+     * 在指定节点上以其他持有者的身份占用锁
+     */
+    private static void occupy(String key, int... ports) {
+        for (int port : ports) {
+            try (Jedis jedis = new Jedis("127.0.0.1", port)) {
+                jedis.hset(key, "other-client:1", "1");
+                jedis.pexpire(key, 30000);
+            }
+        }
+    }
+
+    private static boolean isLocked(String key, int port) {
+        try (Jedis jedis = new Jedis("127.0.0.1", port)) {
+            return jedis.exists(key);
+        }
+    }
+
+    private static void release(String key) {
+        for (int port : NODE_PORTS) {
+            try (Jedis jedis = new Jedis("127.0.0.1", port)) {
+                jedis.del(key);
+            }
+        }
+    }
+}
@@ -4,14 +4,22 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import redis.clients.jedis.Jedis;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -21,6 +29,8 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
  *   <li>测试自动续锁：锁持有时间超过租期后仍被当前线程持有</li>
  *   <li>多线程测试：在同一时刻仅有一个线程持有锁</li>
  *   <li>测试其他线程尝试解锁：非持锁线程调用 unlock() 不会释放锁</li>
+ *   <li>异步测试：大量异步请求争用同一把锁时互斥，且可以在其他线程以相同 ownerId 解锁</li>
+ *   <li>持有状态：本地查询与解锁前的校验不访问 Redis，显式的远端查询能发现锁在 Redis 中丢失</li>
  * </ul>
  */
 @SpringBootTest
@@ -108,4 +118,92 @@ public class RedissonDistributedLockImplTest {
         // 主线程仍然持有锁，最后释放锁
         redissonDistributedLockImpl.unlock();
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("异步测试：大量异步请求争用同一把锁时互斥")
+    void testAsyncLock() {
+        int requests = 200;
+        AtomicBoolean inUse = new AtomicBoolean();
+        AtomicInteger violations = new AtomicInteger();
+        AtomicInteger success = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(requests);
+        long ownerBase = 1L << 40;
+        for (int i = 0; i < requests; i++) {
+            long ownerId = ownerBase + i;
+            futures.add(redissonDistributedLockImpl.tryLockAsync(30, 10, TimeUnit.SECONDS, ownerId)
+                    .thenCompose(acquired -> {
+                        assertTrue(acquired, "每个请求都应在等待时间内获取锁");
+                        if (!inUse.compareAndSet(false, true)) {
+                            violations.incrementAndGet();
+                        }
+                        inUse.set(false);
+                        success.incrementAndGet();
+                        // 在 Redisson 的回调线程中以相同 ownerId 解锁
+                        return redissonDistributedLockImpl.unlockAsync(ownerId);
+                    }).toCompletableFuture());
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        assertEquals(requests, success.get(), "每个请求都应获取到锁");
+        assertEquals(0, violations.get(), "同一时刻只能有一个持有者");
+        assertFalse(redissonDistributedLockImpl.isLockHeldByCurrentThread(), "全部解锁后锁应被释放");
+    }
+
+    @Test
+    @DisplayName("持有状态：本地查询不访问 Redis，远端查询能发现锁在 Redis 中被删除")
+    void testLocalAndRemoteHoldCheck() throws InterruptedException {
+        assertTrue(redissonDistributedLockImpl.tryLock(0, 10, TimeUnit.SECONDS), "应成功获取锁");
+        try (Jedis jedis = new Jedis("127.0.0.1", 6379)) {
+            long before = hexistsCalls(jedis);
+            for (int i = 0; i < 10000; i++) {
+                assertTrue(redissonDistributedLockImpl.isLockHeldByCurrentThread(), "本地记录应显示当前线程持有锁");
+            }
+            assertEquals(before, hexistsCalls(jedis), "本地查询不应访问 Redis");
+            assertTrue(redissonDistributedLockImpl.isLockHeldRemotely(), "远端查询应与本地记录一致");
+            assertEquals(before + 1, hexistsCalls(jedis), "远端查询应访问一次 Redis");
+
+            // 模拟锁在 Redis 中丢失（主从切换、被误删）
+            jedis.del("redissonLock");
+            assertTrue(redissonDistributedLockImpl.isLockHeldByCurrentThread(), "本地记录无法感知锁在 Redis 中丢失");
+            assertFalse(redissonDistributedLockImpl.isLockHeldRemotely(), "远端查询应发现锁已丢失");
+            redissonDistributedLockImpl.unlock();
+            assertFalse(redissonDistributedLockImpl.isLockHeldByCurrentThread(), "解锁后应清理本地记录");
+
+            long evalBefore = evalCalls(jedis);
+            redissonDistributedLockImpl.unlock();
+            CompletableFuture<Void> future = redissonDistributedLockImpl.unlockAsync(1L << 41).toCompletableFuture();
+            assertThrows(CompletionException.class, future::join, "非持有者异步解锁应返回异常完成的结果");
+            assertEquals(evalBefore, evalCalls(jedis), "未持有锁时解锁不应访问 Redis");
+        }
+    }
+
+    @Test
+    @DisplayName("持有状态：租期到期后本地查询不访问 Redis 即返回未持有")
+    void testLocalLeaseExpiry() throws InterruptedException {
+        assertTrue(redissonDistributedLockImpl.tryLock(0, 300, TimeUnit.MILLISECONDS), "应成功获取锁");
+        assertTrue(redissonDistributedLockImpl.isLockHeldByCurrentThread(), "租期内应持有锁");
+        TimeUnit.MILLISECONDS.sleep(400);
+        assertFalse(redissonDistributedLockImpl.isLockHeldByCurrentThread(), "租期到期后本地记录应失效");
+        assertFalse(redissonDistributedLockImpl.isLockHeldRemotely(), "租期到期后 Redis 中的锁也应失效");
+    }
+
+    private static long hexistsCalls(Jedis jedis) {
+        return commandCalls(jedis, "cmdstat_hexists:");
+    }
+
+    /**
+     * Redisson 的加锁与解锁均以 EVAL 执行脚本
+     */
+    private static long evalCalls(Jedis jedis) {
+        return commandCalls(jedis, "cmdstat_eval:") + commandCalls(jedis, "cmdstat_evalsha:");
+    }
+
+    private static long commandCalls(Jedis jedis, String prefix) {
+        for (String line : jedis.info("commandstats").split("\r\n")) {
+            if (line.startsWith(prefix)) {
+                String calls = line.substring(line.indexOf("calls=") + 6);
+                return Long.parseLong(calls.substring(0, calls.indexOf(',')));
+            }
+        }
+        return 0;
+    }
+}
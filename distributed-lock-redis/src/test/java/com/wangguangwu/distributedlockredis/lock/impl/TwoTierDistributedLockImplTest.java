@@ -0,0 +1,302 @@
+package com.wangguangwu.distributedlockredis.lock.impl;
+
+import com.wangguangwu.distributedlockredis.lock.AbstractDistributedLock;
+import com.wangguangwu.distributedlockredis.lock.SharedOwnerLock;
+import com.wangguangwu.distributedlockredis.lock.factory.JedisLockFactory;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockWatchdog;
+import com.wangguangwu.distributedlockredis.properties.JedisLockProperties;
+import com.wangguangwu.distributedlockredis.script.JedisScriptExecutor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 测试两级分布式锁：
+ * <ul>
+ *   <li>本地多线程、多个锁实例之间互斥</li>
+ *   <li>本地有等待者时远程租约直接交接，交接次数受预算限制</li>
+ *   <li>交接的租约在本地过期后重新加锁，Redis 中残留的持有被重置，一次释放即可删除远程锁</li>
+ *   <li>单 key 高并发下与直接使用 Jedis 锁的对比（吞吐量与每次加锁的 Redis 命令数）</li>
+ *   <li>持有者与线程绑定，请求锁句柄时直接拒绝</li>
+ * </ul>
+ */
+@SpringBootTest
+@DisplayName("测试两级分布式锁")
+public class TwoTierDistributedLockImplTest {
+
+    private static final int THREAD_COUNT = 50;
+
+    private static final int ITERATIONS = 20;
+
+    /**
+     * 模拟业务处理的持锁时间
+     */
+    private static final long HOLD_MILLIS = 1;
+
+    @Autowired
+    private JedisLockFactory jedisLockFactory;
+
+    @Autowired
+    private JedisScriptExecutor scriptExecutor;
+
+    @Autowired
+    private JedisLockReleaseSubscriber releaseSubscriber;
+
+    @Autowired
+    private JedisLockWatchdog watchdog;
+
+    @Autowired
+    private JedisLockProperties jedisLockProperties;
+
+    @Autowired
+    private RedissonDistributedLockImpl redissonDistributedLock;
+
+    @Autowired
+    private JedisPool jedisPool;
+
+    @Autowired
+    @Qualifier("redissonSingleClient")
+    private RedissonClient redissonClient;
+
+    @Test
+    @DisplayName("两个锁实例（模拟两个进程）的多线程之间互斥")
+    void testMutualExclusionAcrossInstances() throws InterruptedException {
+        TwoTierDistributedLockImpl lockA = newJedisTwoTierLock("twoTier:mutex", 4);
+        TwoTierDistributedLockImpl lockB = newJedisTwoTierLock("twoTier:mutex", 4);
+        int[] counter = new int[1];
+
+        int acquired = runContention(i -> i % 2 == 0 ? lockA : lockB, 10, 50, counter);
+
+        assertEquals(500, acquired, "每次加锁都应在等待时间内成功");
+        assertEquals(500, counter[0], "临界区内的非原子累加不应丢失更新");
+    }
+
+    @Test
+    @DisplayName("Redisson 作为远程锁时同样互斥，且支持本地重入")
+    void testRedissonTwoTier() throws InterruptedException {
+        TwoTierDistributedLockImpl lock = new TwoTierDistributedLockImpl("redissonLock", redissonDistributedLock, 16);
+        assertTrue(lock.tryLock(1, 10, TimeUnit.SECONDS), "应成功获取锁");
+        assertTrue(lock.tryLock(1, 10, TimeUnit.SECONDS), "持锁线程应能重入");
+        lock.unlock();
+        assertTrue(lock.isLockHeldByCurrentThread(), "重入一次解锁后仍应持有锁");
+        lock.unlock();
+        assertFalse(lock.isLockHeldByCurrentThread(), "完全解锁后不应再持有锁");
+
+        int[] counter = new int[1];
+        int acquired = runContention(i -> lock, 10, 20, counter);
+        assertEquals(200, acquired, "每次加锁都应在等待时间内成功");
+        assertEquals(200, counter[0], "临界区内的非原子累加不应丢失更新");
+    }
+
+    @Test
+    @DisplayName("交接预算为 0 时每次都释放远程锁，预算用完后也会释放")
+    void testHandoffBudget() throws InterruptedException {
+        try (Jedis jedis = jedisPool.getResource()) {
+            TwoTierDistributedLockImpl noHandoff = newJedisTwoTierLock("twoTier:budget:0", 0);
+            TwoTierDistributedLockImpl withHandoff = newJedisTwoTierLock("twoTier:budget:16", 16);
+
+            int[] acquired = new int[2];
+            long noHandoffCommands = countCommands(jedis, () -> acquired[0] = runContention(i -> noHandoff, 5, 40, new int[1], 1));
+            long withHandoffCommands = countCommands(jedis, () -> acquired[1] = runContention(i -> withHandoff, 5, 40, new int[1], 1));
+            assertEquals(200, acquired[0], "每次加锁都应在等待时间内成功");
+            assertEquals(200, acquired[1], "每次加锁都应在等待时间内成功");
+
+            System.out.printf("[TwoTier] 200 次加锁, 预算 0: %d 条命令, 预算 16: %d 条命令%n", noHandoffCommands, withHandoffCommands);
+            assertTrue(noHandoffCommands >= 400, "不交接时每次加锁都应访问 Redis 加锁和解锁");
+            assertTrue(withHandoffCommands < noHandoffCommands / 4, "交接后大部分加锁不应访问 Redis");
+        }
+    }
+
+    @Test
+    @DisplayName("交接的租约在本地过期：重新加锁重置残留的持有，一次释放后其他进程立即可以获取")
+    void testLeaseExpiredAcrossHandoff() throws InterruptedException {
+        String jedisKey = "twoTier:expired:jedis";
+        assertStaleHoldReset(new JedisDistributedLockImpl(jedisKey, scriptExecutor, releaseSubscriber, watchdog, jedisLockProperties),
+                new JedisDistributedLockImpl(jedisKey, scriptExecutor, releaseSubscriber, watchdog, jedisLockProperties));
+        String redissonKey = "twoTier:expired:redisson";
+        assertStaleHoldReset(new RedissonDistributedLockImpl(redissonKey, redissonClient),
+                new RedissonDistributedLockImpl(redissonKey, redissonClient));
+
+        // 完整走一次两级锁：短租期交接给等待者，等待者持有到租约过期后解锁，另一个进程立即可以获取
+        TwoTierDistributedLockImpl lockA = newJedisTwoTierLock("twoTier:expired:handoff", 16);
+        TwoTierDistributedLockImpl lockB = newJedisTwoTierLock("twoTier:expired:handoff", 16);
+        assertTrue(lockA.tryLock(1, 300, TimeUnit.MILLISECONDS), "应成功获取锁");
+        CountDownLatch handedOff = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                if (lockA.tryLock(5, 300, TimeUnit.SECONDS)) {
+                    handedOff.countDown();
+                    TimeUnit.MILLISECONDS.sleep(400);
+                    lockA.unlock();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        while (!lockA.isHeldLocally() || waiter.getState() != Thread.State.TIMED_WAITING) {
+            Thread.onSpinWait();
+        }
+        lockA.unlock();
+        assertTrue(handedOff.await(1, TimeUnit.SECONDS), "本地等待者应通过交接获取锁");
+        waiter.join();
+        assertTrue(lockB.tryLock(0, 10, TimeUnit.SECONDS), "租约过期后解锁，另一个进程应立即获取锁");
+        lockB.unlock();
+    }
+
+    @Test
+    @DisplayName("持有者与线程绑定：请求锁句柄、以 ownerId 加锁时直接拒绝，不访问 Redis")
+    void testHandleUnsupported() {
+        TwoTierDistributedLockImpl lock = newJedisTwoTierLock("twoTier:handle", 4);
+        assertThrows(UnsupportedOperationException.class, () -> lock.acquire(1, 10, TimeUnit.SECONDS));
+        assertThrows(UnsupportedOperationException.class, () -> lock.acquireAsync(1, 10, TimeUnit.SECONDS));
+        assertThrows(UnsupportedOperationException.class, () -> lock.unlock(1L));
+        assertFalse(lock.isHeldLocally(), "拒绝后不应留下任何持有状态");
+    }
+
+    @Test
+    @DisplayName("单 key 高并发：两级锁与直接使用 Jedis 锁的对比")
+    void testContentionBenchmark() throws InterruptedException {
+        // 预热连接池与 JIT
+        runContention(i -> jedisLockFactory.getLock("twoTier:warmup"), THREAD_COUNT, ITERATIONS, new int[1]);
+        runContention(i -> jedisLockFactory.getTwoTierLock("twoTier:warmup"), THREAD_COUNT, ITERATIONS, new int[1]);
+
+        try (Jedis jedis = jedisPool.getResource()) {
+            int total = THREAD_COUNT * ITERATIONS;
+            long[] plainNanos = new long[1];
+            long plainCommands = countCommands(jedis, () -> plainNanos[0] = timed(() ->
+                    runContention(i -> jedisLockFactory.getLock("twoTier:bench:plain"), THREAD_COUNT, ITERATIONS, new int[1], HOLD_MILLIS)));
+            long[] twoTierNanos = new long[1];
+            long twoTierCommands = countCommands(jedis, () -> twoTierNanos[0] = timed(() ->
+                    runContention(i -> jedisLockFactory.getTwoTierLock("twoTier:bench:twoTier"), THREAD_COUNT, ITERATIONS, new int[1], HOLD_MILLIS)));
+
+            double plainThroughput = total * 1_000_000_000.0 / plainNanos[0];
+            double twoTierThroughput = total * 1_000_000_000.0 / twoTierNanos[0];
+            System.out.printf("[TwoTier] %d 线程争用同一个 key, 共 %d 次加锁, 持锁 %dms%n", THREAD_COUNT, total, HOLD_MILLIS);
+            System.out.printf("[TwoTier] Jedis 锁: %.0f ops/s, %.2f 条命令/次%n", plainThroughput, (double) plainCommands / total);
+            System.out.printf("[TwoTier] 两级锁:   %.0f ops/s, %.2f 条命令/次%n", twoTierThroughput, (double) twoTierCommands / total);
+
+            assertTrue(twoTierCommands * 4 < plainCommands, "两级锁每次加锁访问 Redis 的次数应显著减少");
+            assertTrue(twoTierThroughput > plainThroughput, "两级锁的吞吐量应高于直接争用 Redis");
+        }
+    }
+
+    private TwoTierDistributedLockImpl newJedisTwoTierLock(String lockKey, int handoffBudget) {
+        return new TwoTierDistributedLockImpl(lockKey,
+                new JedisDistributedLockImpl(lockKey, scriptExecutor, releaseSubscriber, watchdog, jedisLockProperties),
+                handoffBudget);
+    }
+
+    /**
+     * 多个线程争用锁，每次持锁后在临界区内做一次非原子累加
+     *
+     * @param lockSupplier 按线程序号返回该线程使用的锁实例
+     * @return 成功加锁的次数
+     */
+    private static int runContention(LockSupplier lockSupplier, int threadCount, int iterations, int[] counter)
+            throws InterruptedException {
+        return runContention(lockSupplier, threadCount, iterations, counter, 0);
+    }
+
+    /**
+     * 同上，持锁期间额外停留 holdMillis，保证解锁时本地一定有等待者
+     */
+    private static int runContention(LockSupplier lockSupplier, int threadCount, int iterations, int[] counter, long holdMillis)
+            throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch doneLatch = new CountDownLatch(threadCount);
+        AtomicInteger successCount = new AtomicInteger(0);
+
+        for (int t = 0; t < threadCount; t++) {
+            AbstractDistributedLock lock = lockSupplier.get(t);
+            executor.submit(() -> {
+                try {
+                    startLatch.await();
+                    for (int i = 0; i < iterations; i++) {
+                        if (lock.tryLock(30, 10, TimeUnit.SECONDS)) {
+                            try {
+                                counter[0]++;
+                                successCount.incrementAndGet();
+                                if (holdMillis > 0) {
+                                    TimeUnit.MILLISECONDS.sleep(holdMillis);
+                                }
+                            } finally {
+                                lock.unlock();
+                            }
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    doneLatch.countDown();
+                }
+            });
+        }
+        startLatch.countDown();
+        doneLatch.await();
+        executor.shutdown();
+        return successCount.get();
+    }
+
+    /**
+     * 两级锁在交接时发现租约已在本地过期，会不经释放直接再次加锁；本地到期时间从发出请求前算起，
+     * 此时 Redis 中通常仍残留上一次的持有，这里直接构造这一状态：连续两次加锁后只释放一次，锁应已被删除
+     */
+    private static void assertStaleHoldReset(SharedOwnerLock remote, SharedOwnerLock otherProcess) throws InterruptedException {
+        assertTrue(remote.tryAcquireShared(0, 10_000), "应成功获取锁");
+        assertTrue(remote.tryAcquireShared(0, 10_000), "残留的持有属于同一个实例持有者，应能再次加锁");
+        remote.releaseShared();
+        assertTrue(otherProcess.tryAcquireShared(0, 10_000), "一次释放后锁应已删除，其他进程不必等到 TTL 到期");
+        otherProcess.releaseShared();
+    }
+
+    /**
+     * 统计执行期间 Redis 处理的命令总数（包含订阅连接上的命令）
+     */
+    private static long countCommands(Jedis jedis, Task task) throws InterruptedException {
+        long before = totalCommands(jedis);
+        task.run();
+        // 减去 INFO 命令本身
+        return totalCommands(jedis) - before - 1;
+    }
+
+    private static long totalCommands(Jedis jedis) {
+        for (String line : jedis.info("stats").split("\r\n")) {
+            if (line.startsWith("total_commands_processed:")) {
+                return Long.parseLong(line.substring(line.indexOf(':') + 1));
+            }
+        }
+        throw new IllegalStateException("INFO stats 中没有 total_commands_processed");
+    }
+
+    private static long timed(Task task) throws InterruptedException {
+        long start = System.nanoTime();
+        task.run();
+        return System.nanoTime() - start;
+    }
+
+    @FunctionalInterface
+    private interface LockSupplier {
+        AbstractDistributedLock get(int threadIndex);
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run() throws InterruptedException;
+    }
+}
@@ -0,0 +1,79 @@
+package com.wangguangwu.distributedlockredis.lock.support;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 测试锁工厂共用的按 key 缓存，不依赖 Redis：
+ * <ul>
+ *   <li>同一 key 返回同一个实例</li>
+ *   <li>超过上限时淘汰到上限的 3/4，仍在使用的实例不被淘汰</li>
+ *   <li>不能复用的实例被替换</li>
+ * </ul>
+ */
+@DisplayName("测试锁实例缓存")
+public class BoundedLockCacheTest {
+
+    @Test
+    @DisplayName("同一 key 返回同一个实例")
+    void testSameInstance() {
+        AtomicInteger created = new AtomicInteger();
+        BoundedLockCache<Entry> cache = new BoundedLockCache<>(10, entry -> !entry.inUse);
+        Entry first = cache.get("a", key -> new Entry(key, created.incrementAndGet()));
+        assertSame(first, cache.get("a", key -> new Entry(key, created.incrementAndGet())), "同一 key 应返回缓存的实例");
+        assertEquals(1, created.get(), "同一 key 只应创建一个实例");
+    }
+
+    @Test
+    @DisplayName("超过上限时淘汰到上限的 3/4，仍在使用的实例保留")
+    void testEviction() {
+        BoundedLockCache<Entry> cache = new BoundedLockCache<>(100, entry -> !entry.inUse);
+        List<Entry> used = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Entry entry = cache.get("key:" + i, key -> new Entry(key, 0));
+            if (i % 2 == 0) {
+                entry.inUse = true;
+                used.add(entry);
+            }
+        }
+        assertEquals(100, cache.size(), "未超过上限时不淘汰");
+        cache.get("key:100", key -> new Entry(key, 0));
+        assertEquals(75, cache.size(), "超过上限后应淘汰到上限的 3/4");
+        for (Entry entry : used) {
+            assertSame(entry, cache.get(entry.key, key -> new Entry(key, 0)), "仍在使用的实例不应被淘汰");
+        }
+    }
+
+    @Test
+    @DisplayName("不能复用的实例被替换为新建的实例")
+    void testReplaceStale() {
+        BoundedLockCache<Entry> cache = new BoundedLockCache<>(10, entry -> !entry.inUse);
+        Entry first = cache.get("a", entry -> entry.version == 1, key -> new Entry(key, 1));
+        assertSame(first, cache.get("a", entry -> entry.version == 1, key -> new Entry(key, 1)), "可复用时返回缓存的实例");
+        Entry second = cache.get("a", entry -> entry.version == 2, key -> new Entry(key, 2));
+        assertNotSame(first, second, "不能复用时应替换");
+        assertEquals(1, cache.size(), "替换不增加缓存数量");
+        cache.removeIf(entry -> entry.version == 2);
+        assertEquals(0, cache.size(), "removeIf 应移除满足条件的实例");
+    }
+
+    private static final class Entry {
+
+        private final String key;
+
+        private final int version;
+
+        private volatile boolean inUse;
+
+        private Entry(String key, int version) {
+            this.key = key;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.wangguangwu.distributedlockredis.lock.support;
+
+import com.wangguangwu.distributedlockredis.lock.factory.JedisLockFactory;
+import com.wangguangwu.distributedlockredis.lock.impl.JedisDistributedLockImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 测试 Jedis 分布式锁的看门狗：
+ * <ul>
+ *   <li>看门狗模式下持锁时间超过租期后锁仍然有效，解锁后停止续期</li>
+ *   <li>数万把锁同时持有时，一次 pipeline 完成全部续期，已丢失的锁被移除</li>
+ * </ul>
+ */
+@SpringBootTest(properties = "jedis.lock.watchdog-timeout-millis=3000")
+@DisplayName("测试 Jedis 分布式锁看门狗")
+public class JedisLockWatchdogTest {
+
+    @Autowired
+    private JedisLockFactory jedisLockFactory;
+
+    @Autowired
+    private JedisLockWatchdog jedisLockWatchdog;
+
+    @Autowired
+    private JedisPool jedisPool;
+
+    @Test
+    @DisplayName("看门狗模式：持锁时间超过租期后仍被当前线程持有")
+    void testAutoRenewLock() throws InterruptedException {
+        JedisDistributedLockImpl lock = jedisLockFactory.getLock("watchdog:renew");
+        assertTrue(lock.tryLock(1, -1, TimeUnit.SECONDS), "应成功获取锁");
+        // 持锁时间超过看门狗租期（3 秒）
+        TimeUnit.SECONDS.sleep(5);
+
+        AtomicBoolean acquiredByOther = new AtomicBoolean(true);
+        Thread other = new Thread(() -> acquiredByOther.set(lock.lock()));
+        other.start();
+        other.join();
+        assertFalse(acquiredByOther.get(), "看门狗应持续续期，其他线程不能获取锁");
+
+        lock.unlock();
+        assertEquals(0, jedisLockWatchdog.size(), "解锁后应停止续期");
+    }
+
+    @Test
+    @DisplayName("批量续期：一次 pipeline 为数万把锁续期")
+    void testRenewManyLocks() {
+        int lockCount = 20000;
+        String lostKey = "watchdog:bulk:0";
+        try (Jedis jedis = jedisPool.getResource()) {
+            Pipeline pipeline = jedis.pipelined();
+            for (int i = 0; i < lockCount; i++) {
+                pipeline.hset("watchdog:bulk:" + i, "owner-" + i, "1");
+                pipeline.pexpire("watchdog:bulk:" + i, 1000);
+            }
+            pipeline.sync();
+            for (int i = 0; i < lockCount; i++) {
+                String lockKey = "watchdog:bulk:" + i;
+                jedisLockWatchdog.watch(lockKey, SafeEncoder.encode(lockKey), "owner-" + i);
+            }
+            // 模拟第一把锁已被其他客户端持有
+            jedis.del(lostKey);
+            jedis.hset(lostKey, "other-owner", "1");
+
+            long start = System.nanoTime();
+            int lost = jedisLockWatchdog.renewAll();
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            System.out.println("[Jedis] 看门狗续期 " + lockCount + " 把锁耗时 " + elapsedMillis + "ms");
+
+            assertTrue(jedis.pttl("watchdog:bulk:" + (lockCount - 1)) > 1000, "锁的租期应被延长到看门狗租期");
+            assertEquals(-1, jedis.pttl(lostKey), "不属于当前持有者的锁不应被续期");
+            assertEquals(lockCount - 1, jedisLockWatchdog.size(), "已丢失的锁应从登记表中移除");
+            assertEquals(1, lost, "续期结果应报告丢失的锁数量");
+        } finally {
+            for (int i = 0; i < lockCount; i++) {
+                jedisLockWatchdog.unwatch("watchdog:bulk:" + i, "owner-" + i);
+            }
+            try (Jedis jedis = jedisPool.getResource()) {
+                jedis.del(lostKey);
+            }
+        }
+    }
+}
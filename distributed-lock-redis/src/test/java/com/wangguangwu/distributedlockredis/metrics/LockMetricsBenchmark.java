@@ -0,0 +1,76 @@
+package com.wangguangwu.distributedlockredis.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 锁指标在加锁、解锁热路径上的开销：
+ * <ul>
+ *   <li>baseline：加锁、解锁本来就要读取的两次 System.nanoTime</li>
+ *   <li>acquiredReleased：记录一次加锁耗时与一次持有时间</li>
+ *   <li>contended：记录一次竞争</li>
+ * </ul>
+ * 在 Spring 上下文中运行时使用 Actuator 的注册表，单独运行时绑定一个 SimpleMeterRegistry。
+ *
+ * @author wangguangwu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LockMetricsBenchmark {
+
+    private LockMetrics metrics;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (!LockMetrics.isBound()) {
+            LockMetrics.bindTo(new SimpleMeterRegistry());
+        }
+        metrics = LockMetrics.of("benchmark", "metrics:benchmark");
+    }
+
+    @Benchmark
+    public long baseline() {
+        long startNanos = System.nanoTime();
+        return System.nanoTime() - startNanos;
+    }
+
+    @Benchmark
+    public long acquiredReleased() {
+        long startNanos = System.nanoTime();
+        long acquiredNanos = metrics.acquired(startNanos);
+        metrics.released(acquiredNanos);
+        return acquiredNanos;
+    }
+
+    @Benchmark
+    public void contended() {
+        metrics.contended();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LockMetricsBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,220 @@
+package com.wangguangwu.distributedlockredis.metrics;
+
+import com.wangguangwu.distributedlockredis.lock.factory.JedisLockFactory;
+import com.wangguangwu.distributedlockredis.lock.impl.JedisDistributedLockImpl;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.metrics.MetricsEndpoint;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 测试分布式锁的 Micrometer 指标：
+ * <ul>
+ *   <li>加锁耗时、持有时间、竞争、超时与锁丢失按 backend 与分组记录，并通过 Actuator 的 metrics 端点暴露</li>
+ *   <li>看门狗续期记录续期延迟，续期 Meter 缓存复用</li>
+ *   <li>分组规则与分组数量上限</li>
+ *   <li>记录一次加锁与解锁的开销在纳秒级，且不分配内存</li>
+ * </ul>
+ */
+@SpringBootTest(properties = "jedis.lock.watchdog-timeout-millis=3000")
+@DisplayName("测试分布式锁指标")
+public class LockMetricsTest {
+
+    /**
+     * 记录一次加锁与解锁相对两次 System.nanoTime 的额外耗时上限（纳秒），留出 CI 机器抖动的余量
+     */
+    private static final double OVERHEAD_NANOS = 1000;
+
+    @Autowired
+    private JedisLockFactory jedisLockFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MetricsEndpoint metricsEndpoint;
+
+    @BeforeEach
+    void bindRegistry() {
+        // 测试中会启动多个 Spring 上下文，指标绑定在最后启动的上下文上，这里重新绑定到当前上下文的注册表
+        LockMetrics.bindTo(meterRegistry);
+    }
+
+    @Test
+    @DisplayName("加锁、解锁：记录加锁耗时与持有时间")
+    void testAcquireAndHeld() throws InterruptedException {
+        JedisDistributedLockImpl lock = jedisLockFactory.getLock("metrics-held:1");
+        long acquireCount = timer(LockMetrics.ACQUIRE, "metrics-held").count();
+        long heldCount = timer(LockMetrics.HELD, "metrics-held").count();
+
+        assertTrue(lock.tryLock(1, 10, TimeUnit.SECONDS), "应成功获取锁");
+        // 重入不记录加锁耗时
+        assertTrue(lock.tryLock(1, 10, TimeUnit.SECONDS), "应成功重入");
+        TimeUnit.MILLISECONDS.sleep(50);
+        lock.unlock();
+        lock.unlock();
+
+        assertEquals(acquireCount + 1, timer(LockMetrics.ACQUIRE, "metrics-held").count(), "加锁耗时应只记录一次");
+        Timer held = timer(LockMetrics.HELD, "metrics-held");
+        assertEquals(heldCount + 1, held.count(), "持有时间应记录一次");
+        assertTrue(held.max(TimeUnit.MILLISECONDS) >= 50, "持有时间应不少于 50ms");
+
+        MetricsEndpoint.MetricDescriptor descriptor = metricsEndpoint.metric(LockMetrics.ACQUIRE,
+                List.of("backend:jedis", "group:metrics-held"));
+        assertNotNull(descriptor, "metrics 端点应暴露加锁耗时");
+        assertTrue(descriptor.getMeasurements().stream()
+                .anyMatch(sample -> "COUNT".equals(sample.getStatistic().name()) && sample.getValue() >= 1));
+    }
+
+    @Test
+    @DisplayName("锁竞争：等待超时时记录竞争与超时")
+    void testContendedAndTimeout() throws InterruptedException {
+        JedisDistributedLockImpl lock = jedisLockFactory.getLock("metrics-contended:1");
+        double contended = counter(LockMetrics.CONTENDED, "metrics-contended", null).count();
+        double timeouts = counter(LockMetrics.FAILURES, "metrics-contended", "timeout").count();
+
+        assertTrue(lock.tryLock(1, 10, TimeUnit.SECONDS), "应成功获取锁");
+        AtomicBoolean acquiredByOther = new AtomicBoolean(true);
+        Thread other = new Thread(() -> {
+            try {
+                acquiredByOther.set(lock.tryLock(200, 10000, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        other.start();
+        other.join();
+        lock.unlock();
+
+        assertFalse(acquiredByOther.get(), "锁被持有时其他线程不能获取锁");
+        assertEquals(contended + 1, counter(LockMetrics.CONTENDED, "metrics-contended", null).count(), "应记录一次竞争");
+        assertEquals(timeouts + 1, counter(LockMetrics.FAILURES, "metrics-contended", "timeout").count(), "应记录一次超时");
+    }
+
+    @Test
+    @DisplayName("锁丢失：租期到期后解锁记录锁丢失")
+    void testLost() throws InterruptedException {
+        JedisDistributedLockImpl lock = jedisLockFactory.getLock("metrics-lost:1");
+        double lost = counter(LockMetrics.FAILURES, "metrics-lost", "lost").count();
+
+        assertTrue(lock.tryLock(1, 200, TimeUnit.MILLISECONDS), "应成功获取锁");
+        TimeUnit.MILLISECONDS.sleep(400);
+        lock.unlock();
+
+        assertEquals(lost + 1, counter(LockMetrics.FAILURES, "metrics-lost", "lost").count(), "应记录一次锁丢失");
+    }
+
+    @Test
+    @DisplayName("看门狗：续期时记录续期延迟")
+    void testRenewalLag() throws InterruptedException {
+        JedisDistributedLockImpl lock = jedisLockFactory.getLock("metrics-renewal:1");
+        assertTrue(lock.tryLock(1, -1, TimeUnit.SECONDS), "应成功获取锁");
+        // 看门狗租期 3 秒，每 1 秒续期一次
+        TimeUnit.MILLISECONDS.sleep(1500);
+        lock.unlock();
+
+        Timer lag = meterRegistry.find(LockMetrics.RENEWAL_LAG).tag("backend", "jedis").timer();
+        assertNotNull(lag, "应记录续期延迟");
+        assertTrue(lag.count() >= 1, "至少续期一次");
+        System.out.printf("[Metrics] 看门狗续期延迟 max=%.3fms%n", lag.max(TimeUnit.MICROSECONDS) / 1000.0);
+    }
+
+    @Test
+    @DisplayName("看门狗：续期 Meter 缓存复用，重新绑定注册表后记录到新的注册表")
+    void testRenewalMetersCached() {
+        LockMetrics.recordRenewal("test-renewal", 1_000_000, 0);
+        LockMetrics.recordRenewal("test-renewal", 2_000_000, 1);
+        Timer lag = meterRegistry.find(LockMetrics.RENEWAL_LAG).tag("backend", "test-renewal").timer();
+        assertNotNull(lag, "应记录续期延迟");
+        assertEquals(2, lag.count(), "两次续期记录到同一个 Timer");
+
+        MeterRegistry rebound = new SimpleMeterRegistry();
+        LockMetrics.bindTo(rebound);
+        try {
+            LockMetrics.recordRenewal("test-renewal", 1_000_000, 1);
+            assertEquals(1, rebound.get(LockMetrics.RENEWAL_LAG).tag("backend", "test-renewal").timer().count(),
+                    "重新绑定后应记录到新的注册表");
+            assertEquals(1, rebound.get(LockMetrics.RENEWAL_LOST).tag("backend", "test-renewal").counter().count());
+            assertEquals(2, lag.count(), "旧注册表不再记录");
+        } finally {
+            LockMetrics.bindTo(meterRegistry);
+        }
+    }
+
+    @Test
+    @DisplayName("分组：取第一个冒号之前的部分，超过上限后归入 other")
+    void testGroups() {
+        assertEquals("order", LockMetrics.groupOf("order:1001"));
+        assertEquals("order", LockMetrics.groupOf("{order}:1001"));
+        assertEquals("order", LockMetrics.groupOf("order"));
+        assertEquals("{}", LockMetrics.groupOf("{}:1001"));
+        assertSame(LockMetrics.of("test", "order:1"), LockMetrics.of("test", "order:2"), "同一分组应共用指标");
+
+        for (int i = 0; i < LockMetrics.MAX_GROUPS; i++) {
+            LockMetrics.of("test-cap", "group" + i + ":1");
+        }
+        LockMetrics overflow = LockMetrics.of("test-cap", "overflow:1");
+        assertEquals(LockMetrics.OTHER_GROUP, overflow.getGroup(), "超过上限的分组应归入 other");
+        assertSame(overflow, LockMetrics.of("test-cap", "another:1"));
+        assertEquals("group0", LockMetrics.of("test-cap", "group0:2").getGroup(), "已有分组不受上限影响");
+    }
+
+    @Test
+    @DisplayName("开销：记录一次加锁与解锁在纳秒级且不分配内存")
+    void testRecordingOverhead() throws Exception {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(LockMetricsBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                // 在当前 JVM 内运行，记录到 Actuator 的注册表
+                .forks(0)
+                .warmupIterations(2)
+                .warmupTime(TimeValue.milliseconds(500))
+                .measurementIterations(3)
+                .measurementTime(TimeValue.milliseconds(500))
+                .build()).run();
+
+        Map<String, Double> latencies = new HashMap<>();
+        Map<String, Double> allocations = new HashMap<>();
+        for (RunResult result : results) {
+            String name = result.getParams().getBenchmark().replaceAll(".*\\.", "");
+            latencies.put(name, result.getPrimaryResult().getScore());
+            allocations.put(name, result.getSecondaryResults().get("gc.alloc.rate.norm").getScore());
+            System.out.printf("[Metrics] %-18s %8.1f ns/op %8.1f B/op%n", name, latencies.get(name), allocations.get(name));
+        }
+        double overhead = latencies.get("acquiredReleased") - latencies.get("baseline");
+        assertTrue(overhead < OVERHEAD_NANOS, "记录一次加锁与解锁额外耗时 " + overhead + " ns");
+        assertTrue(allocations.get("acquiredReleased") < 1, "记录加锁与解锁不应分配内存");
+        assertTrue(allocations.get("contended") < 1, "记录竞争不应分配内存");
+    }
+
+    private Timer timer(String name, String group) {
+        return meterRegistry.get(name).tag("backend", "jedis").tag("group", group).timer();
+    }
+
+    private Counter counter(String name, String group, String reason) {
+        if (reason == null) {
+            return meterRegistry.get(name).tag("backend", "jedis").tag("group", group).counter();
+        }
+        return meterRegistry.get(name).tag("backend", "jedis").tag("group", group).tag("reason", reason).counter();
+    }
+}
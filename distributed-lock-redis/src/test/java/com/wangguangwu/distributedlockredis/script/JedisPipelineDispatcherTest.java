@@ -0,0 +1,195 @@
+package com.wangguangwu.distributedlockredis.script;
+
+import com.wangguangwu.distributedlockredis.lock.impl.JedisDistributedLockImpl;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockWatchdog;
+import com.wangguangwu.distributedlockredis.properties.JedisLockProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 测试自动 pipeline 分发器：
+ * <ul>
+ *   <li>低负载时每条命令单独发送，不为凑批等待</li>
+ *   <li>多线程并发加锁解锁时命令自动合并为批次，与每条命令各自借用连接的方式对比吞吐量</li>
+ *   <li>脚本缓存被清空后，合并发送的命令重新加载脚本后重发</li>
+ *   <li>与 shutdown 并发提交的命令都会完成，不会永远等待</li>
+ * </ul>
+ */
+@SpringBootTest(properties = "jedis.lock.auto-pipelining=true")
+@DisplayName("测试自动 pipeline 分发器")
+public class JedisPipelineDispatcherTest {
+
+    private static final int THREAD_COUNT = 64;
+
+    private static final int ITERATIONS = 200;
+
+    @Autowired
+    private JedisPool jedisPool;
+
+    @Autowired
+    private JedisScriptExecutor jedisScriptExecutor;
+
+    @Autowired
+    private JedisLockReleaseSubscriber releaseSubscriber;
+
+    @Autowired
+    private JedisLockWatchdog watchdog;
+
+    @Autowired
+    private JedisLockProperties jedisLockProperties;
+
+    @Test
+    @DisplayName("低负载：单线程依次执行时每条命令单独发送")
+    void testNoBatchingWhenIdle() throws InterruptedException {
+        JedisPipelineDispatcher dispatcher = jedisScriptExecutor.getDispatcher();
+        assertNotNull(dispatcher, "开启自动 pipeline 后应创建分发器");
+        JedisDistributedLockImpl lock = newLock("pipeline:idle", jedisScriptExecutor);
+        long batches = dispatcher.getBatchCount();
+        long commands = dispatcher.getCommandCount();
+        for (int i = 0; i < 50; i++) {
+            assertTrue(lock.tryLock(0, 10, TimeUnit.SECONDS, i), "应成功获取锁");
+            lock.unlock(i);
+        }
+        assertEquals(100, dispatcher.getCommandCount() - commands, "加锁与解锁各一条命令");
+        assertEquals(dispatcher.getCommandCount() - commands, dispatcher.getBatchCount() - batches,
+                "没有并发时每批只有一条命令，不等待凑批");
+    }
+
+    @Test
+    @DisplayName("高并发：64 个线程加锁解锁时命令自动合并，与逐条借用连接对比吞吐量")
+    void testBatchingUnderLoad() throws InterruptedException {
+        JedisPipelineDispatcher dispatcher = jedisScriptExecutor.getDispatcher();
+        JedisLockProperties directProperties = new JedisLockProperties();
+        directProperties.setAutoPipelining(false);
+        JedisScriptExecutor directExecutor = new JedisScriptExecutor(jedisPool, directProperties);
+        try {
+            // 预热
+            runLockUnlock("pipeline:warmup:direct", directExecutor);
+            runLockUnlock("pipeline:warmup:pipelined", jedisScriptExecutor);
+
+            long directOps = runLockUnlock("pipeline:direct", directExecutor);
+            long batches = dispatcher.getBatchCount();
+            long commands = dispatcher.getCommandCount();
+            long pipelinedOps = runLockUnlock("pipeline:pipelined", jedisScriptExecutor);
+            double averageBatch = (double) (dispatcher.getCommandCount() - commands) / (dispatcher.getBatchCount() - batches);
+
+            System.out.printf("[Pipeline] %d 线程加锁解锁: 逐条借用连接 %d ops/s, 自动 pipeline %d ops/s, 平均每批 %.1f 条命令%n",
+                    THREAD_COUNT, directOps, pipelinedOps, averageBatch);
+            assertTrue(averageBatch > 2, "高并发下命令应合并为批次，实际平均每批 " + averageBatch);
+            // 测试线程与 Redis 共用 CPU 时客户端开销占主导，只要求不低于逐条借用连接，避免偶发抖动导致失败
+            assertTrue(pipelinedOps > directOps * 0.9, "自动 pipeline 的吞吐量不应低于逐条借用连接");
+        } finally {
+            directExecutor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("NOSCRIPT：脚本缓存清空后，合并发送的命令重新加载脚本后重发")
+    void testReloadAfterScriptFlush() {
+        JedisPipelineDispatcher dispatcher = jedisScriptExecutor.getDispatcher();
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.scriptFlush();
+        }
+        List<CompletableFuture<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(dispatcher.submit(LockScripts.HELD, 1,
+                    SafeEncoder.encode("pipeline:noscript"), SafeEncoder.encode("owner-" + i)));
+        }
+        for (CompletableFuture<Object> future : futures) {
+            assertEquals(0L, future.join(), "脚本重新加载后命令应执行成功");
+        }
+    }
+
+    @Test
+    @DisplayName("关闭：与 shutdown 并发提交的命令都会完成，不会遗留在队列中")
+    void testSubmitRacingShutdown() throws Exception {
+        // 连接一个没有服务的端口，已取出的命令以连接异常完成，只验证每个 future 都会完成
+        JedisPool unreachablePool = new JedisPool("127.0.0.1", 1);
+        ExecutorService submitters = Executors.newFixedThreadPool(4);
+        try {
+            for (int round = 0; round < 100; round++) {
+                JedisPipelineDispatcher dispatcher = new JedisPipelineDispatcher(unreachablePool, 1, 16);
+                List<CompletableFuture<Object>> futures = new ArrayList<>();
+                List<Future<?>> tasks = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    tasks.add(submitters.submit(() -> {
+                        for (int i = 0; i < 200; i++) {
+                            CompletableFuture<Object> future = dispatcher.submit(LockScripts.HELD, 1,
+                                    SafeEncoder.encode("pipeline:shutdown"), SafeEncoder.encode("owner"));
+                            synchronized (futures) {
+                                futures.add(future);
+                            }
+                        }
+                    }));
+                }
+                dispatcher.shutdown();
+                for (Future<?> task : tasks) {
+                    task.get();
+                }
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                        .handle((r, e) -> null)
+                        .get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            submitters.shutdownNow();
+            unreachablePool.close();
+        }
+    }
+
+    /**
+     * 多个线程各自对不同的 key 反复加锁、解锁，返回每秒完成的加锁解锁次数
+     */
+    private long runLockUnlock(String keyPrefix, JedisScriptExecutor executor) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(THREAD_COUNT);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch doneLatch = new CountDownLatch(THREAD_COUNT);
+        AtomicInteger success = new AtomicInteger();
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            JedisDistributedLockImpl lock = newLock(keyPrefix + ":" + t, executor);
+            pool.submit(() -> {
+                try {
+                    startLatch.await();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        if (lock.tryLock(1, 10, TimeUnit.SECONDS)) {
+                            lock.unlock();
+                            success.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    doneLatch.countDown();
+                }
+            });
+        }
+        long start = System.nanoTime();
+        startLatch.countDown();
+        doneLatch.await();
+        long elapsedNanos = System.nanoTime() - start;
+        pool.shutdown();
+        assertEquals(THREAD_COUNT * ITERATIONS, success.get(), "每次加锁都应成功");
+        return success.get() * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    private JedisDistributedLockImpl newLock(String key, JedisScriptExecutor executor) {
+        return new JedisDistributedLockImpl(key, executor, releaseSubscriber, watchdog, jedisLockProperties);
+    }
+}
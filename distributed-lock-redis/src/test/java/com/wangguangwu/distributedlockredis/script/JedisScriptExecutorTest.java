@@ -0,0 +1,58 @@
+package com.wangguangwu.distributedlockredis.script;
+
+import com.wangguangwu.distributedlockredis.lock.impl.JedisDistributedLockImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 测试 Lua 脚本的 EVALSHA 执行：
+ * <ul>
+ *   <li>启动时预加载全部锁脚本</li>
+ *   <li>脚本缓存被清空（重启、主从切换）后，加锁解锁自动重新加载脚本</li>
+ * </ul>
+ */
+@SpringBootTest
+@DisplayName("测试 Lua 脚本 EVALSHA 执行")
+public class JedisScriptExecutorTest {
+
+    @Autowired
+    private JedisPool jedisPool;
+
+    @Autowired
+    private JedisScriptExecutor jedisScriptExecutor;
+
+    @Autowired
+    private JedisDistributedLockImpl jedisDistributedLockImpl;
+
+    @Test
+    @DisplayName("启动时预加载全部锁脚本")
+    void testPreload() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.scriptFlush();
+            jedisScriptExecutor.preload();
+            for (RedisLuaScript script : LockScripts.all()) {
+                assertTrue(jedis.scriptExists(script.getSha1()), "脚本应已加载: " + script);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("NOSCRIPT 后自动重新加载脚本")
+    void testReloadAfterScriptFlush() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.scriptFlush();
+            assertFalse(jedis.scriptExists(LockScripts.LOCK.getSha1()), "脚本缓存应已清空");
+        }
+        assertTrue(jedisDistributedLockImpl.lock(), "脚本缓存清空后仍应成功获取锁");
+        jedisDistributedLockImpl.unlock();
+        assertTrue(jedisDistributedLockImpl.lock(), "释放后应能再次获取锁");
+        jedisDistributedLockImpl.unlock();
+    }
+}
@@ -0,0 +1,125 @@
+package com.wangguangwu.distributedlockredis.transport;
+
+import com.wangguangwu.distributedlockredis.properties.JedisLockProperties;
+import com.wangguangwu.distributedlockredis.script.JedisScriptExecutor;
+import com.wangguangwu.distributedlockredis.script.LockScripts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比三种传输层执行锁脚本的延迟与分配率：
+ * <ul>
+ *   <li>jedis-pool：默认方式，每次从连接池借用连接执行（关闭自动 pipeline）</li>
+ *   <li>jedis-pipeline：交给自动 pipeline 分发器</li>
+ *   <li>nio：{@link RespConnection} 多路复用连接</li>
+ * </ul>
+ * 同步调用改为由调用线程自己读取回复（{@link RespConnection#evalshaSync}）之前，nio 要等 I/O 线程读到回复后再唤醒调用线程，
+ * 每条命令多一次线程切换，单线程 lockUnlock 比 jedis-pool 慢。改动后单线程的结果（单核机器，3 fork × 10 次迭代）：
+ * <pre>
+ *               lockUnlock          held               分配（lockUnlock）
+ * jedis-pool    15.54 ± 0.77 µs    7.11 ± 0.26 µs     784 B/op
+ * nio（改动前）  20.35 ± 1.14 µs    8.82 ± 0.50 µs     406 B/op
+ * nio           14.66 ± 0.25 µs    7.00 ± 0.24 µs     208 B/op
+ * </pre>
+ * 单核机器上调用线程自旋时只能让出 CPU 给 Redis，与连接池阻塞读取的切换次数相同，延迟只略低于 jedis-pool；
+ * 多核机器上回复到达时调用线程仍在运行，不必从阻塞中被唤醒，差距会更大。nio 的另一优势在于并发线程多时命令合并发送、
+ * 每个节点只占一条连接。
+ * <p>
+ * 需要本地 6379 端口的 Redis，可直接运行 main 方法，或执行
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main RespConnectionBenchmark -prof gc}。
+ *
+ * @author wangguangwu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RespConnectionBenchmark {
+
+    private static final byte[] LOCK_KEY = SafeEncoder.encode("resp:benchmark");
+
+    private static final byte[] FENCING_KEY = SafeEncoder.encode("resp:benchmark:fencing");
+
+    private static final byte[] CHANNEL = SafeEncoder.encode("resp:benchmark:channel");
+
+    private static final byte[] OWNER = SafeEncoder.encode("resp-benchmark-owner");
+
+    private static final byte[] LEASE_MILLIS = SafeEncoder.encode("30000");
+
+    @Param({"jedis-pool", "jedis-pipeline", "nio"})
+    public String transport;
+
+    private JedisPool jedisPool;
+
+    private RespConnection respConnection;
+
+    private JedisScriptExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        jedisPool = new JedisPool("127.0.0.1", 6379);
+        JedisLockProperties properties = new JedisLockProperties();
+        properties.setAutoPipelining("jedis-pipeline".equals(transport));
+        if ("nio".equals(transport)) {
+            respConnection = new RespConnection(new HostAndPort("127.0.0.1", 6379), Protocol.DEFAULT_TIMEOUT);
+        }
+        executor = new JedisScriptExecutor(jedisPool, properties, respConnection);
+        executor.preload();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+        if (respConnection != null) {
+            respConnection.close();
+        }
+        jedisPool.close();
+    }
+
+    /**
+     * 检查持有者，整数回复
+     */
+    @Benchmark
+    public Object held() {
+        return executor.evalsha(LockScripts.HELD, 1, LOCK_KEY, OWNER);
+    }
+
+    /**
+     * 加锁后解锁，两次往返
+     */
+    @Benchmark
+    public Object lockUnlock() {
+        executor.evalsha(LockScripts.LOCK, 2, LOCK_KEY, FENCING_KEY, OWNER, LEASE_MILLIS);
+        return executor.evalsha(LockScripts.UNLOCK, 1, LOCK_KEY, OWNER, CHANNEL);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RespConnectionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,355 @@
+package com.wangguangwu.distributedlockredis.transport;
+
+import com.wangguangwu.distributedlockredis.lock.impl.JedisDistributedLockImpl;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockReleaseSubscriber;
+import com.wangguangwu.distributedlockredis.lock.support.JedisLockWatchdog;
+import com.wangguangwu.distributedlockredis.properties.JedisLockProperties;
+import com.wangguangwu.distributedlockredis.script.JedisScriptExecutor;
+import com.wangguangwu.distributedlockredis.script.LockScripts;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 测试 NIO 传输层：
+ * <ul>
+ *   <li>SET NX PX、PEXPIRE、PUBLISH、EVALSHA 与 SCRIPT LOAD 的回复解析，错误回复与 NOSCRIPT 映射为 Jedis 异常</li>
+ *   <li>超过缓冲区容量的请求与回复</li>
+ *   <li>同步调用在连接空闲时自己读取回复，与异步调用、其他线程的命令混合时回复仍一一对应</li>
+ *   <li>多个线程的命令在一条连接上多路复用，并发时多条命令合并为一次写出</li>
+ *   <li>Redis 重启后在途命令以异常完成，之后的命令自动重连</li>
+ *   <li>作为 JedisScriptExecutor 的传输层支撑现有的加锁、解锁、异步加锁</li>
+ *   <li>JMH 对比 Jedis 连接池、自动 pipeline 与 NIO 传输层的延迟与分配率</li>
+ * </ul>
+ */
+@SpringBootTest
+@DisplayName("测试 NIO 传输层")
+public class RespConnectionTest {
+
+    /**
+     * 重连测试启动的 redis-server 端口，与其他测试使用的节点分开
+     */
+    private static final int RESTART_PORT = 6395;
+
+    @Autowired
+    private JedisPool jedisPool;
+
+    @Autowired
+    private JedisLockReleaseSubscriber releaseSubscriber;
+
+    @Autowired
+    private JedisLockWatchdog watchdog;
+
+    @Autowired
+    private JedisLockProperties jedisLockProperties;
+
+    private RespConnection connection;
+
+    @BeforeEach
+    void setUp() {
+        connection = new RespConnection(new HostAndPort("127.0.0.1", 6379), 2000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connection.close();
+    }
+
+    @Test
+    @DisplayName("基本命令：SET NX PX、PEXPIRE、PUBLISH、EVALSHA 与错误回复")
+    void testCommands() {
+        byte[] key = SafeEncoder.encode("resp:commands");
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.del(key);
+        }
+        assertArrayEquals(SafeEncoder.encode("OK"), (byte[]) connection.setNxPx(key, SafeEncoder.encode("owner"), SafeEncoder.encode("10000")).join(),
+                "key 不存在时 SET NX 应成功");
+        assertNull(connection.setNxPx(key, SafeEncoder.encode("other"), SafeEncoder.encode("10000")).join(), "key 已存在时 SET NX 返回 nil");
+        assertEquals(1L, connection.pexpire(key, SafeEncoder.encode("20000")).join(), "key 存在时 PEXPIRE 返回 1");
+        assertEquals(0L, connection.pexpire(SafeEncoder.encode("resp:missing"), SafeEncoder.encode("20000")).join(), "key 不存在时返回 0");
+        assertEquals(0L, connection.publish(SafeEncoder.encode("resp:channel"), SafeEncoder.encode("hello")).join(), "没有订阅者");
+        try (Jedis jedis = jedisPool.getResource()) {
+            assertEquals("owner", jedis.get("resp:commands"), "值应由 SET 写入");
+            assertTrue(jedis.pttl("resp:commands") > 10000, "PEXPIRE 应已刷新过期时间");
+        }
+
+        byte[] sha1 = (byte[]) connection.scriptLoad(SafeEncoder.encode(LockScripts.HELD.getSource())).join();
+        assertEquals(LockScripts.HELD.getSha1(), SafeEncoder.encode(sha1), "SCRIPT LOAD 返回脚本 SHA1");
+        assertEquals(0L, connection.evalsha(LockScripts.HELD.getSha1Bytes(), 1, SafeEncoder.encode("resp:missing"), SafeEncoder.encode("owner")).join(),
+                "EVALSHA 返回整数回复");
+
+        CompletionException wrongType = assertThrows(CompletionException.class,
+                () -> connection.pexpire(key, SafeEncoder.encode("not-a-number")).join());
+        assertInstanceOf(JedisDataException.class, wrongType.getCause(), "错误回复映射为 JedisDataException");
+        CompletionException noScript = assertThrows(CompletionException.class,
+                () -> connection.evalsha(SafeEncoder.encode("0000000000000000000000000000000000000000"), 0).join());
+        assertInstanceOf(JedisNoScriptException.class, noScript.getCause(), "NOSCRIPT 映射为 JedisNoScriptException");
+        assertEquals(1L, connection.pexpire(key, SafeEncoder.encode("20000")).join(), "错误回复之后连接仍可继续使用");
+    }
+
+    @Test
+    @DisplayName("超过缓冲区容量的请求与回复")
+    void testLargePayload() {
+        byte[] key = SafeEncoder.encode("resp:large");
+        byte[] value = new byte[300 * 1024];
+        Arrays.fill(value, (byte) 'x');
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.del(key);
+        }
+        assertNotNull(connection.setNxPx(key, value, SafeEncoder.encode("10000")).join(), "大于写缓冲区的请求应完整发送");
+        byte[] sha1 = (byte[]) connection.scriptLoad(SafeEncoder.encode("return redis.call('get', KEYS[1])")).join();
+        assertArrayEquals(value, (byte[]) connection.evalsha(sha1, 1, key).join(), "大于读缓冲区的回复应完整解析");
+    }
+
+    @Test
+    @DisplayName("同步调用自己读取回复：与异步调用交替、多线程混合时回复仍与请求一一对应")
+    void testSyncReadsOwnReply() throws Exception {
+        byte[] sha1 = (byte[]) connection.scriptLoad(SafeEncoder.encode("return ARGV[1]")).join();
+        for (int i = 0; i < 1000; i++) {
+            byte[] value = SafeEncoder.encode("sync:" + i);
+            assertArrayEquals(value, (byte[]) connection.evalshaSync(sha1, 0, value), "同步调用应返回自己的回复");
+            if (i % 3 == 0) {
+                // 同步调用期间连接不关注 OP_READ，之后的异步调用应重新由 I/O 线程读取
+                byte[] async = SafeEncoder.encode("async:" + i);
+                assertArrayEquals(async, (byte[]) connection.evalsha(sha1, 0, async).get(2, TimeUnit.SECONDS),
+                        "同步调用之后的异步调用应正常完成");
+            }
+        }
+        assertEquals(connection.getCommandCount(), connection.getWriteCount(), "空闲连接上的命令应由调用线程各自直接写出");
+        assertThrows(JedisNoScriptException.class,
+                () -> connection.evalshaSync(SafeEncoder.encode("0000000000000000000000000000000000000000"), 0),
+                "同步调用直接抛出 Jedis 异常");
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<CompletableFuture<Void>> workers = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                int thread = t;
+                workers.add(CompletableFuture.runAsync(() -> {
+                    List<CompletableFuture<Object>> pending = new ArrayList<>();
+                    for (int i = 0; i < 500; i++) {
+                        byte[] value = SafeEncoder.encode(thread + ":" + i);
+                        if (i % 2 == 0) {
+                            assertArrayEquals(value, (byte[]) connection.evalshaSync(sha1, 0, value), "并发时同步调用的回复不应错位");
+                        } else {
+                            pending.add(connection.evalsha(sha1, 0, value));
+                        }
+                    }
+                    for (int i = 0; i < pending.size(); i++) {
+                        assertArrayEquals(SafeEncoder.encode(thread + ":" + (i * 2 + 1)), (byte[]) pending.get(i).join(),
+                                "并发时异步调用的回复不应错位");
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("多路复用：32 个线程共用一条连接，并发时多条命令合并为一次写出")
+    void testMultiplexing() throws InterruptedException {
+        int threads = 32;
+        int iterations = 500;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch doneLatch = new CountDownLatch(threads);
+        AtomicInteger mismatches = new AtomicInteger();
+        byte[] setAndGet = (byte[]) connection.scriptLoad(
+                SafeEncoder.encode("redis.call('set', KEYS[1], ARGV[1]) return redis.call('get', KEYS[1])")).join();
+        long commands = connection.getCommandCount();
+        long writes = connection.getWriteCount();
+        for (int t = 0; t < threads; t++) {
+            byte[] key = SafeEncoder.encode("resp:multiplex:" + t);
+            pool.submit(() -> {
+                try {
+                    startLatch.await();
+                    for (int i = 0; i < iterations; i++) {
+                        // 每个线程写入自己的 key，并读回自己的值，回复错配时能被发现
+                        byte[] value = SafeEncoder.encode(String.valueOf(i));
+                        List<CompletableFuture<Object>> futures = new ArrayList<>();
+                        futures.add(connection.evalsha(setAndGet, 1, key, value));
+                        futures.add(connection.pexpire(key, SafeEncoder.encode("10000")));
+                        if (!Arrays.equals(value, (byte[]) futures.get(0).join()) || !Long.valueOf(1).equals(futures.get(1).join())) {
+                            mismatches.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    doneLatch.countDown();
+                }
+            });
+        }
+        startLatch.countDown();
+        assertTrue(doneLatch.await(60, TimeUnit.SECONDS), "全部命令应在超时前完成");
+        pool.shutdown();
+        long sentCommands = connection.getCommandCount() - commands;
+        long sentWrites = connection.getWriteCount() - writes;
+        System.out.printf("[RESP] %d 条命令，%d 次 write，平均每次写出 %.1f 条%n",
+                sentCommands, sentWrites, (double) sentCommands / sentWrites);
+        assertEquals(0, mismatches.get(), "每条命令都应收到自己的回复");
+        assertEquals(threads * iterations * 2L, sentCommands, "全部命令都应发送");
+        assertTrue(sentWrites < sentCommands / 2, "并发提交的命令应合并写出");
+    }
+
+    @Test
+    @DisplayName("Redis 重启：在途命令以异常完成，之后的命令自动重连")
+    void testReconnect() throws Exception {
+        assumeTrue(redisServerAvailable(), "未找到 redis-server，跳过重连测试");
+        RespConnection restartConnection = new RespConnection(new HostAndPort("127.0.0.1", RESTART_PORT), 2000);
+        Process server = startRedisServer(RESTART_PORT);
+        try {
+            byte[] key = SafeEncoder.encode("resp:reconnect");
+            assertNotNull(restartConnection.setNxPx(key, SafeEncoder.encode("1"), SafeEncoder.encode("10000")).join(), "首次连接后命令应成功");
+
+            server.destroy();
+            server.waitFor(5, TimeUnit.SECONDS);
+            CompletionException failure = assertThrows(CompletionException.class,
+                    () -> restartConnection.pexpire(key, SafeEncoder.encode("10000")).join());
+            assertInstanceOf(JedisConnectionException.class, failure.getCause(), "Redis 不可用时命令以连接异常完成");
+
+            server = startRedisServer(RESTART_PORT);
+            assertNotNull(restartConnection.setNxPx(key, SafeEncoder.encode("1"), SafeEncoder.encode("10000")).join(),
+                    "Redis 恢复后命令应自动重连并成功");
+        } finally {
+            restartConnection.close();
+            server.destroy();
+            server.waitFor(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    @DisplayName("作为 JedisScriptExecutor 的传输层：加锁、解锁、互斥与异步加锁")
+    void testLockOverNioTransport() throws Exception {
+        JedisScriptExecutor executor = new JedisScriptExecutor(jedisPool, jedisLockProperties, connection);
+        assertNull(executor.getDispatcher(), "NIO 传输层不使用自动 pipeline 分发器");
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.scriptFlush();
+        }
+        JedisDistributedLockImpl lock = newLock("resp:lock", executor);
+        assertTrue(lock.tryLock(0, 10, TimeUnit.SECONDS), "脚本缓存清空后应重新加载脚本并获取锁");
+        assertTrue(lock.isLockHeldRemotely(), "锁应由 NIO 连接写入 Redis");
+        CompletableFuture<Boolean> contender = CompletableFuture.supplyAsync(() -> {
+            try {
+                return newLock("resp:lock", executor).tryLock(0, 10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        });
+        assertFalse(contender.get(5, TimeUnit.SECONDS), "其他线程不应获取已被持有的锁");
+        lock.unlock();
+        assertFalse(lock.isLockHeldRemotely(), "解锁后 Redis 中不应再有持有者");
+
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.scriptFlush();
+        }
+        JedisDistributedLockImpl asyncLock = newLock("resp:lock:async", executor);
+        assertTrue(asyncLock.tryLockAsync(1, 10, TimeUnit.SECONDS, 1L).toCompletableFuture().get(5, TimeUnit.SECONDS), "异步加锁同样重新加载脚本");
+        asyncLock.unlockAsync(1L).toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertFalse(asyncLock.isLockHeldRemotely(1L), "异步解锁后不应再有持有者");
+    }
+
+    @Test
+    @DisplayName("JMH：NIO 传输层的分配率与延迟低于当前的 Jedis 自动 pipeline")
+    void testBenchmarkAgainstJedis() throws Exception {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(RespConnectionBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                // 在当前 JVM 内运行，避免依赖 surefire 的类路径启动子进程
+                .forks(0)
+                .warmupIterations(2)
+                .warmupTime(TimeValue.milliseconds(500))
+                .measurementIterations(3)
+                .measurementTime(TimeValue.milliseconds(500))
+                .build()).run();
+
+        Map<String, double[]> scores = new HashMap<>();
+        for (RunResult result : results) {
+            String name = result.getParams().getBenchmark().replaceAll(".*\\.", "")
+                    + ":" + result.getParams().getParam("transport");
+            double latency = result.getPrimaryResult().getScore();
+            double allocation = result.getSecondaryResults().get("gc.alloc.rate.norm").getScore();
+            scores.put(name, new double[]{latency, allocation});
+            System.out.printf("[RESP] %-28s %8.2f us/op %10.1f B/op%n", name, latency, allocation);
+        }
+        for (String benchmark : new String[]{"held", "lockUnlock"}) {
+            double[] nio = scores.get(benchmark + ":nio");
+            double[] pipeline = scores.get(benchmark + ":jedis-pipeline");
+            double[] pooled = scores.get(benchmark + ":jedis-pool");
+            assertTrue(nio[1] < pipeline[1] && nio[1] < pooled[1],
+                    benchmark + " 的 NIO 分配量应低于 Jedis: " + nio[1] + " B/op");
+            assertTrue(nio[0] < pipeline[0], benchmark + " 的 NIO 延迟应低于自动 pipeline: " + nio[0] + " us/op");
+        }
+    }
+
+    private JedisDistributedLockImpl newLock(String key, JedisScriptExecutor executor) {
+        return new JedisDistributedLockImpl(key, executor, releaseSubscriber, watchdog, jedisLockProperties);
+    }
+
+    private static boolean redisServerAvailable() {
+        try {
+            Process process = new ProcessBuilder("redis-server", "--version").redirectErrorStream(true).start();
+            return process.waitFor(5, TimeUnit.SECONDS) && process.exitValue() == 0;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 启动一个不落盘的 redis-server 进程，等待其可以接受连接
+     */
+    private static Process startRedisServer(int port) throws Exception {
+        Process process = new ProcessBuilder("redis-server", "--port", String.valueOf(port),
+                "--save", "", "--appendonly", "no")
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            try (Jedis jedis = new Jedis("127.0.0.1", port)) {
+                if ("PONG".equals(jedis.ping())) {
+                    return process;
+                }
+            } catch (Exception e) {
+                TimeUnit.MILLISECONDS.sleep(50);
+            }
+        }
+        process.destroy();
+        throw new IllegalStateException("redis-server 启动超时: " + port);
+    }
+}
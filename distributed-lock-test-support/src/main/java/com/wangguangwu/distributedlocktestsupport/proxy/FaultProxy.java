@@ -0,0 +1,435 @@
+package com.wangguangwu.distributedlocktestsupport.proxy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 放在 Redis 等服务前面的 TCP 代理，可在运行中通过 {@link #setFault(NetworkFault)} 注入延迟、抖动、带宽限制或黑洞，
+ * 用于测量锁实现在个别节点变慢或被分区时的表现：
+ * <pre>
+ * try (FaultProxy proxy = FaultProxy.start("127.0.0.1", 6379)) {
+ *     // 客户端连接 127.0.0.1:proxy.getPort()
+ *     proxy.setFault(NetworkFault.latency(25, TimeUnit.MILLISECONDS));
+ * }
+ * </pre>
+ * 全部连接由一个 NIO 线程处理：读到的数据按故障计算转发时间后排队，到期再写出，同一方向的数据保持原有顺序。
+ * 延迟、抖动与带宽限制在读到数据时生效，切换故障不影响已经排队的数据。
+ * 黑洞期间两个方向都暂停读取与写出，数据留在队列与内核缓冲区中，与 TCP 在分区期间不断重传相同；
+ * 恢复后按原有顺序继续送达，不会丢弃字节流中间的数据，RESP 等协议的帧不会因此错位。
+ * 某个方向积压超过 {@value #MAX_QUEUED_BYTES} 字节时暂停读取，由 TCP 流控让发送方慢下来。
+ *
+ * @author wangguangwu
+ */
+public class FaultProxy implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(FaultProxy.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final long MAX_QUEUED_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * 限制带宽时按每秒可发送字节数的 1/50 切分数据，使数据以约 20ms 的粒度逐步到达，而不是攒够后一次到达
+     */
+    private static final int SLICES_PER_SECOND = 50;
+
+    private final InetSocketAddress upstream;
+
+    private final Selector selector;
+
+    private final ServerSocketChannel serverChannel;
+
+    private final Thread ioThread;
+
+    /**
+     * 只在 IO 线程中访问
+     */
+    private final List<Connection> connections = new ArrayList<>();
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private volatile NetworkFault fault = NetworkFault.none();
+
+    private volatile boolean closed;
+
+    private FaultProxy(InetSocketAddress upstream) throws IOException {
+        this.upstream = upstream;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+        this.ioThread = new Thread(this::run, "fault-proxy-" + getPort());
+        this.ioThread.setDaemon(true);
+    }
+
+    /**
+     * 在本机空闲端口上启动代理，转发到 host:port
+     *
+     * @param host 被代理服务的地址
+     * @param port 被代理服务的端口
+     * @return 已启动的代理，使用完毕后需要关闭
+     */
+    public static FaultProxy start(String host, int port) {
+        try {
+            FaultProxy proxy = new FaultProxy(new InetSocketAddress(host, port));
+            proxy.ioThread.start();
+            return proxy;
+        } catch (IOException e) {
+            throw new IllegalStateException("无法启动代理，被代理的地址 " + host + ":" + port, e);
+        }
+    }
+
+    /**
+     * 代理监听的本机端口
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public NetworkFault getFault() {
+        return fault;
+    }
+
+    /**
+     * 切换故障：延迟、抖动与带宽限制对之后读到的数据生效，黑洞的开始与结束立即生效
+     *
+     * @param fault 故障，{@link NetworkFault#none()} 表示恢复正常
+     */
+    public void setFault(NetworkFault fault) {
+        if (fault == null) {
+            throw new IllegalArgumentException("fault 不能为 null");
+        }
+        this.fault = fault;
+        // IO 线程可能正无限期等待，唤醒它按新的故障调整读写
+        selector.wakeup();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        try {
+            ioThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                long waitNanos = flushConnections();
+                if (waitNanos < 0) {
+                    selector.select();
+                } else {
+                    selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos + 999_999)));
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        ((Connection) key.attachment()).handle(key);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (!closed) {
+                log.error("代理 {} 异常退出", getPort(), e);
+            }
+        } finally {
+            connections.forEach(Connection::close);
+            connections.clear();
+            closeQuietly(serverChannel);
+            closeQuietly(selector);
+        }
+    }
+
+    /**
+     * 写出各连接已到期的数据，关闭已结束的连接
+     *
+     * @return 距离下一块数据到期的纳秒数，没有等待到期的数据时返回 -1
+     */
+    private long flushConnections() {
+        if (fault.isBlackhole()) {
+            // 暂停全部连接的读写，直到 setFault 唤醒
+            connections.forEach(Connection::pause);
+            return -1;
+        }
+        long now = System.nanoTime();
+        long waitNanos = -1;
+        Iterator<Connection> iterator = connections.iterator();
+        while (iterator.hasNext()) {
+            Connection connection = iterator.next();
+            long connectionWait = connection.flush(now);
+            if (connection.closed) {
+                iterator.remove();
+                continue;
+            }
+            if (connectionWait >= 0 && (waitNanos < 0 || connectionWait < waitNanos)) {
+                waitNanos = connectionWait;
+            }
+        }
+        return waitNanos;
+    }
+
+    private void accept() throws IOException {
+        SocketChannel client = serverChannel.accept();
+        if (client == null) {
+            return;
+        }
+        SocketChannel server;
+        try {
+            // 被代理的服务在本机，阻塞连接的耗时可以忽略；连接失败时关闭客户端连接，与服务宕机时的表现一致
+            server = SocketChannel.open(upstream);
+        } catch (IOException e) {
+            closeQuietly(client);
+            return;
+        }
+        try {
+            connections.add(new Connection(client, server));
+        } catch (IOException e) {
+            closeQuietly(client);
+            closeQuietly(server);
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // 关闭失败时忽略
+        }
+    }
+
+    /**
+     * 一个客户端连接与对应的上游连接
+     */
+    private final class Connection {
+
+        private final SocketChannel client;
+
+        private final SocketChannel server;
+
+        private final SelectionKey clientKey;
+
+        private final SelectionKey serverKey;
+
+        private final Pipe toServer;
+
+        private final Pipe toClient;
+
+        private boolean closed;
+
+        private Connection(SocketChannel client, SocketChannel server) throws IOException {
+            this.client = client;
+            this.server = server;
+            for (SocketChannel channel : new SocketChannel[]{client, server}) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+            this.toServer = new Pipe(client, server);
+            this.toClient = new Pipe(server, client);
+            this.clientKey = client.register(selector, SelectionKey.OP_READ, this);
+            this.serverKey = server.register(selector, SelectionKey.OP_READ, this);
+        }
+
+        private void handle(SelectionKey key) {
+            Pipe reading = key == clientKey ? toServer : toClient;
+            Pipe writing = key == clientKey ? toClient : toServer;
+            try {
+                if (key.isWritable()) {
+                    writing.writeBlocked = false;
+                }
+                if (key.isReadable()) {
+                    reading.read();
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private long flush(long now) {
+            if (closed) {
+                return -1;
+            }
+            try {
+                long toServerWait = toServer.flush(now);
+                long toClientWait = toClient.flush(now);
+                if (toServer.outputShutdown && toClient.outputShutdown) {
+                    close();
+                    return -1;
+                }
+                clientKey.interestOps((toServer.isReadable() ? SelectionKey.OP_READ : 0)
+                        | (toClient.writeBlocked ? SelectionKey.OP_WRITE : 0));
+                serverKey.interestOps((toClient.isReadable() ? SelectionKey.OP_READ : 0)
+                        | (toServer.writeBlocked ? SelectionKey.OP_WRITE : 0));
+                if (toServerWait < 0 || toClientWait < 0) {
+                    return Math.max(toServerWait, toClientWait);
+                }
+                return Math.min(toServerWait, toClientWait);
+            } catch (IOException e) {
+                close();
+                return -1;
+            }
+        }
+
+        /**
+         * 黑洞期间不读不写，已排队的数据保留到恢复后送达
+         */
+        private void pause() {
+            if (!closed) {
+                clientKey.interestOps(0);
+                serverKey.interestOps(0);
+            }
+        }
+
+        private void close() {
+            closed = true;
+            closeQuietly(client);
+            closeQuietly(server);
+        }
+    }
+
+    /**
+     * 连接的一个方向：从 source 读出，按故障排队，到期后写入 target
+     */
+    private final class Pipe {
+
+        private final SocketChannel source;
+
+        private final SocketChannel target;
+
+        private final ArrayDeque<Chunk> queue = new ArrayDeque<>();
+
+        private long queuedBytes;
+
+        /**
+         * 最后一块数据的到期时间（System.nanoTime），抖动与带宽限制下后读到的数据不早于它到期，保证顺序
+         */
+        private long lastDeliverNanos;
+
+        /**
+         * source 已读到 EOF
+         */
+        private boolean eof;
+
+        /**
+         * 已向 target 转发 EOF
+         */
+        private boolean outputShutdown;
+
+        /**
+         * target 的发送缓冲区已满，等待可写
+         */
+        private boolean writeBlocked;
+
+        private Pipe(SocketChannel source, SocketChannel target) {
+            this.source = source;
+            this.target = target;
+        }
+
+        private boolean isReadable() {
+            return !eof && queuedBytes < MAX_QUEUED_BYTES;
+        }
+
+        private void read() throws IOException {
+            readBuffer.clear();
+            int read = source.read(readBuffer);
+            if (read < 0) {
+                eof = true;
+                return;
+            }
+            if (read == 0) {
+                return;
+            }
+            // 黑洞开始前已就绪的读取照常排队，由 flush 暂停写出
+            NetworkFault current = fault;
+            readBuffer.flip();
+            long deliverNanos = Math.max(System.nanoTime() + current.nextDelayNanos(), lastDeliverNanos);
+            long bytesPerSecond = current.getBytesPerSecond();
+            int sliceSize = bytesPerSecond == 0 ? read : (int) Math.max(1, Math.min(read, bytesPerSecond / SLICES_PER_SECOND));
+            while (readBuffer.hasRemaining()) {
+                int size = Math.min(sliceSize, readBuffer.remaining());
+                ByteBuffer data = ByteBuffer.allocate(size);
+                int limit = readBuffer.limit();
+                readBuffer.limit(readBuffer.position() + size);
+                data.put(readBuffer).flip();
+                readBuffer.limit(limit);
+                if (bytesPerSecond > 0) {
+                    deliverNanos += TimeUnit.SECONDS.toNanos(size) / bytesPerSecond;
+                }
+                queue.add(new Chunk(data, deliverNanos));
+                queuedBytes += size;
+            }
+            lastDeliverNanos = deliverNanos;
+        }
+
+        /**
+         * 写出已到期的数据，全部写完且 source 已结束时转发 EOF
+         *
+         * @return 距离下一块数据到期的纳秒数，没有等待到期的数据时返回 -1
+         */
+        private long flush(long now) throws IOException {
+            while (!writeBlocked && !queue.isEmpty()) {
+                Chunk chunk = queue.peek();
+                long waitNanos = chunk.deliverNanos - now;
+                if (waitNanos > 0) {
+                    return waitNanos;
+                }
+                target.write(chunk.data);
+                if (chunk.data.hasRemaining()) {
+                    writeBlocked = true;
+                    return -1;
+                }
+                queue.poll();
+                queuedBytes -= chunk.data.capacity();
+            }
+            if (eof && queue.isEmpty() && !outputShutdown) {
+                outputShutdown = true;
+                target.shutdownOutput();
+            }
+            return -1;
+        }
+    }
+
+    private static final class Chunk {
+
+        private final ByteBuffer data;
+
+        private final long deliverNanos;
+
+        private Chunk(ByteBuffer data, long deliverNanos) {
+            this.data = data;
+            this.deliverNanos = deliverNanos;
+        }
+    }
+}
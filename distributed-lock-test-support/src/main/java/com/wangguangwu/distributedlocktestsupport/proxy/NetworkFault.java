@@ -0,0 +1,116 @@
+package com.wangguangwu.distributedlocktestsupport.proxy;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FaultProxy} 注入的网络故障，不可变，分别作用于代理的两个方向：
+ * <ul>
+ *   <li>latency：每个方向上的数据延迟转发的时间，往返时间增加 2 倍 latency</li>
+ *   <li>jitter：在 latency 之上再随机增加 [0, jitter] 的延迟，同一连接上的数据仍按顺序到达</li>
+ *   <li>bytesPerSecond：每个连接每个方向的带宽上限，0 表示不限制</li>
+ *   <li>blackhole：连接保持打开，但两个方向的数据都停止送达，相当于网络分区，调用方只能等到超时；
+ *   分区恢复后积压的数据按顺序送达</li>
+ * </ul>
+ *
+ * @author wangguangwu
+ */
+public final class NetworkFault {
+
+    private static final NetworkFault NONE = new NetworkFault(0, 0, 0, false);
+
+    private static final NetworkFault BLACKHOLE = new NetworkFault(0, 0, 0, true);
+
+    private final long latencyNanos;
+
+    private final long jitterNanos;
+
+    private final long bytesPerSecond;
+
+    private final boolean blackhole;
+
+    private NetworkFault(long latencyNanos, long jitterNanos, long bytesPerSecond, boolean blackhole) {
+        this.latencyNanos = latencyNanos;
+        this.jitterNanos = jitterNanos;
+        this.bytesPerSecond = bytesPerSecond;
+        this.blackhole = blackhole;
+    }
+
+    /**
+     * 没有故障，原样转发
+     */
+    public static NetworkFault none() {
+        return NONE;
+    }
+
+    /**
+     * 暂停两个方向的转发，恢复后积压的数据按顺序送达
+     */
+    public static NetworkFault blackhole() {
+        return BLACKHOLE;
+    }
+
+    /**
+     * 每个方向固定增加的延迟
+     *
+     * @param latency 单向延迟
+     * @param unit    时间单位
+     */
+    public static NetworkFault latency(long latency, TimeUnit unit) {
+        return NONE.withLatency(latency, unit);
+    }
+
+    public NetworkFault withLatency(long latency, TimeUnit unit) {
+        return new NetworkFault(nonNegative(unit.toNanos(latency)), jitterNanos, bytesPerSecond, blackhole);
+    }
+
+    public NetworkFault withJitter(long jitter, TimeUnit unit) {
+        return new NetworkFault(latencyNanos, nonNegative(unit.toNanos(jitter)), bytesPerSecond, blackhole);
+    }
+
+    public NetworkFault withBandwidth(long bytesPerSecond) {
+        return new NetworkFault(latencyNanos, jitterNanos, nonNegative(bytesPerSecond), blackhole);
+    }
+
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    public long getJitterNanos() {
+        return jitterNanos;
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public boolean isBlackhole() {
+        return blackhole;
+    }
+
+    /**
+     * 本次转发的延迟：latency 加上 [0, jitter] 的随机值
+     *
+     * @return 延迟（纳秒）
+     */
+    long nextDelayNanos() {
+        return jitterNanos == 0 ? latencyNanos : latencyNanos + ThreadLocalRandom.current().nextLong(jitterNanos + 1);
+    }
+
+    private static long nonNegative(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("故障参数不能为负数: " + value);
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        if (blackhole) {
+            return "blackhole";
+        }
+        return "latency=" + TimeUnit.NANOSECONDS.toMillis(latencyNanos) + "ms"
+                + ", jitter=" + TimeUnit.NANOSECONDS.toMillis(jitterNanos) + "ms"
+                + ", bandwidth=" + (bytesPerSecond == 0 ? "unlimited" : bytesPerSecond + "B/s");
+    }
+}
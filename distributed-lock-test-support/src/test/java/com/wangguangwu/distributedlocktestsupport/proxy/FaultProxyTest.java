@@ -0,0 +1,177 @@
+package com.wangguangwu.distributedlocktestsupport.proxy;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 测试 FaultProxy：在回显服务前放置代理，验证
+ * <ul>
+ *   <li>没有故障时原样转发</li>
+ *   <li>延迟与抖动使往返时间增加，数据顺序不变</li>
+ *   <li>带宽限制使大块数据按限速到达</li>
+ *   <li>黑洞期间数据停止送达，恢复后积压的数据按顺序送达，字节流不缺失</li>
+ * </ul>
+ *
+ * @author wangguangwu
+ */
+@DisplayName("测试 TCP 故障代理")
+public class FaultProxyTest {
+
+    private final ExecutorService echoThreads = Executors.newCachedThreadPool();
+
+    private ServerSocket echoServer;
+
+    private FaultProxy proxy;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        echoServer = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        echoThreads.submit(() -> {
+            while (!echoServer.isClosed()) {
+                Socket socket = echoServer.accept();
+                echoThreads.submit(() -> echo(socket));
+            }
+            return null;
+        });
+        proxy = FaultProxy.start("127.0.0.1", echoServer.getLocalPort());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        proxy.close();
+        echoServer.close();
+        echoThreads.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("没有故障：数据原样往返")
+    void testForward() throws IOException {
+        try (Socket socket = connect()) {
+            assertEquals("hello", roundTrip(socket, "hello"));
+            assertEquals("world", roundTrip(socket, "world"));
+        }
+    }
+
+    @Test
+    @DisplayName("延迟与抖动：往返时间增加 2 倍单向延迟，多次写入按顺序到达")
+    void testLatencyAndJitter() throws IOException {
+        try (Socket socket = connect()) {
+            proxy.setFault(NetworkFault.latency(50, TimeUnit.MILLISECONDS));
+            long start = System.nanoTime();
+            assertEquals("ping", roundTrip(socket, "ping"));
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsedMillis >= 100, "往返应经过两次 50ms 延迟: " + elapsedMillis + "ms");
+
+            proxy.setFault(NetworkFault.latency(1, TimeUnit.MILLISECONDS).withJitter(20, TimeUnit.MILLISECONDS));
+            StringBuilder expected = new StringBuilder();
+            OutputStream out = socket.getOutputStream();
+            for (int i = 0; i < 50; i++) {
+                String part = i + ",";
+                expected.append(part);
+                out.write(part.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+            assertEquals(expected.toString(), read(socket, expected.length()), "抖动不应打乱数据顺序");
+        }
+    }
+
+    @Test
+    @DisplayName("带宽限制：10KB/s 下往返 5KB 数据约需 0.5 秒")
+    void testBandwidth() throws IOException {
+        proxy.setFault(NetworkFault.none().withBandwidth(10 * 1024));
+        try (Socket socket = connect()) {
+            String payload = "x".repeat(5 * 1024);
+            long start = System.nanoTime();
+            assertEquals(payload, roundTrip(socket, payload));
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            // 每个方向各需 0.5 秒，回显服务边收边发，两个方向同时进行
+            assertTrue(elapsedMillis >= 450, "应按带宽上限转发: " + elapsedMillis + "ms");
+        }
+    }
+
+    @Test
+    @DisplayName("黑洞：连接保持打开但收不到响应，恢复后积压的数据按顺序送达")
+    void testBlackhole() throws IOException {
+        try (Socket socket = connect()) {
+            // 模拟一帧数据被分区截断在中间：前半段在分区前送达，后半段在分区期间发出
+            assertEquals("*1\r\n", roundTrip(socket, "*1\r\n"));
+            proxy.setFault(NetworkFault.blackhole());
+            socket.getOutputStream().write("$4\r\nPING\r\n".getBytes(StandardCharsets.UTF_8));
+            socket.setSoTimeout(300);
+            assertThrows(SocketTimeoutException.class, () -> socket.getInputStream().read(), "黑洞期间不应收到数据");
+
+            proxy.setFault(NetworkFault.none());
+            socket.setSoTimeout(5000);
+            assertEquals("$4\r\nPING\r\n", read(socket, 10), "恢复后应收到分区期间积压的数据，不缺失中间的字节");
+            assertEquals("back", roundTrip(socket, "back"), "之后的数据正常往返");
+        }
+    }
+
+    @Test
+    @DisplayName("上游关闭：客户端读到 EOF")
+    void testUpstreamClosed() throws IOException {
+        try (Socket socket = connect()) {
+            socket.shutdownOutput();
+            assertEquals(-1, socket.getInputStream().read(), "回显服务读到 EOF 后关闭，客户端应读到 EOF");
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket("127.0.0.1", proxy.getPort());
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private static String roundTrip(Socket socket, String message) throws IOException {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        socket.getOutputStream().write(bytes);
+        socket.getOutputStream().flush();
+        return read(socket, bytes.length);
+    }
+
+    private static String read(Socket socket, int length) throws IOException {
+        byte[] buffer = new byte[length];
+        InputStream in = socket.getInputStream();
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(buffer, offset, length - offset);
+            if (read < 0) {
+                throw new IOException("连接已关闭，已读取 " + offset + " 字节");
+            }
+            offset += read;
+        }
+        return new String(buffer, StandardCharsets.UTF_8);
+    }
+
+    private static void echo(Socket socket) {
+        try (Socket s = socket) {
+            InputStream in = s.getInputStream();
+            OutputStream out = s.getOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // 连接被关闭
+        }
+    }
+}